@@ -0,0 +1,195 @@
+package com.washington.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+import android.view.View;
+
+import com.washington.inventoryapp.data.InventoryContract;
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryPager;
+import com.washington.inventoryapp.data.InventoryProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation benchmark counting how many rows {@link InvRecyclerAdapter} rebinds on a
+ * 10k-row list, comparing a full rebind (what every change used to cost) with a single Sale.
+ * <p>
+ * The provider runs on a renamed database. Its change notifications are forwarded to the real
+ * ContentResolver so the pager's observer hears them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InvRecyclerAdapterBindBenchmarkTest {
+
+    private static final String LOG_TAG = InvRecyclerAdapterBindBenchmarkTest.class
+            .getSimpleName();
+
+    private static final String DATABASE_PREFIX = "bind_benchmark.";
+
+    private static final int ROW_COUNT = 10000;
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private Context mTargetContext;
+    private ContentResolver mResolver;
+    private RecyclerView mRecyclerView;
+    private CountingAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        mTargetContext = InstrumentationRegistry.getTargetContext();
+        final ContentResolver realResolver = mTargetContext.getContentResolver();
+        MockContentResolver resolver = new MockContentResolver() {
+            @Override
+            public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+                realResolver.notifyChange(uri, observer, false);
+            }
+        };
+        InventoryProvider provider = new InventoryProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = InventoryContract.CONTENT_AUTHORITY;
+        provider.attachInfo(new IsolatedContext(resolver,
+                new RenamingDelegatingContext(mTargetContext, DATABASE_PREFIX)), info);
+        resolver.addProvider(InventoryContract.CONTENT_AUTHORITY, provider);
+        mResolver = resolver;
+
+        ContentValues[] rows = new ContentValues[ROW_COUNT];
+        for (int i = 0; i < ROW_COUNT; i++) {
+            ContentValues values = new ContentValues();
+            values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+            values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, 100);
+            values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+            rows[i] = values;
+        }
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRecyclerView = new RecyclerView(mTargetContext);
+                mRecyclerView.setLayoutManager(new LinearLayoutManager(mTargetContext));
+                // No change animations, so each changed row is bound exactly once.
+                mRecyclerView.setItemAnimator(null);
+                mAdapter = new CountingAdapter(mTargetContext);
+                mRecyclerView.setAdapter(mAdapter);
+                mAdapter.swapPager(new InventoryPager(mResolver, InventoryEntry.CONTENT_URI,
+                        mAdapter));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.swapPager(null);
+            }
+        });
+        mTargetContext.deleteDatabase(DATABASE_PREFIX + "inventory.db");
+    }
+
+    @Test
+    public void singleSale_rebindsOneRow() throws Exception {
+        // Wait for the first page and lay out the visible rows.
+        awaitBinds(1);
+        int visibleRows = layoutAndCount();
+        assertTrue(visibleRows > 1);
+
+        // A full rebind, as every change did with the CursorAdapter.
+        mAdapter.binds = 0;
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mAdapter.notifyDataSetChanged();
+            }
+        });
+        int fullRebinds = layoutAndCount();
+
+        // A single Sale of the first row.
+        mAdapter.binds = 0;
+        InventoryEntry.adjustQuantity(mResolver, firstId(), -1);
+        int saleRebinds = awaitBinds(1);
+
+        Log.i(LOG_TAG, ROW_COUNT + " rows: full rebind bound " + fullRebinds
+                + " rows, a single sale bound " + saleRebinds);
+        assertEquals(visibleRows, fullRebinds);
+        assertEquals(1, saleRebinds);
+    }
+
+    /**
+     * Lays out the RecyclerView and returns the number of rows bound since the counter was reset.
+     */
+    private int layoutAndCount() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRecyclerView.measure(
+                        View.MeasureSpec.makeMeasureSpec(1080, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(1920, View.MeasureSpec.EXACTLY));
+                mRecyclerView.layout(0, 0, 1080, 1920);
+            }
+        });
+        return mAdapter.binds;
+    }
+
+    /**
+     * Keeps laying out until at least the given number of rows were bound, then lets any other
+     * pending changes arrive before returning the count.
+     */
+    private int awaitBinds(int atLeast) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (layoutAndCount() < atLeast && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(200);
+        return layoutAndCount();
+    }
+
+    private long firstId() {
+        Cursor cursor = mResolver.query(InventoryEntry.CONTENT_URI,
+                new String[]{InventoryEntry._ID}, null, null, InventoryEntry._ID + " ASC");
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Counts the rows that are bound.
+     */
+    private static class CountingAdapter extends InvRecyclerAdapter {
+        int binds;
+
+        CountingAdapter(Context context) {
+            super(context, null);
+        }
+
+        @Override
+        public void onBindViewHolder(ItemViewHolder holder, int position) {
+            binds++;
+            super.onBindViewHolder(holder, position);
+        }
+    }
+}
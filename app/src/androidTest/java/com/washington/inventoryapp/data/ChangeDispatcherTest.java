@@ -0,0 +1,96 @@
+package com.washington.inventoryapp.data;
+
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentResolver;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation test for how {@link ChangeDispatcher} merges the changes of one window into
+ * notifications. The window is long and flushed by hand, so the results don't depend on timing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChangeDispatcherTest {
+
+    private final List<Uri> mNotified = new ArrayList<>();
+
+    private ChangeDispatcher mDispatcher;
+
+    @Before
+    public void setUp() {
+        MockContentResolver resolver = new MockContentResolver() {
+            @Override
+            public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+                mNotified.add(uri);
+            }
+        };
+        mDispatcher = new ChangeDispatcher(resolver, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        mDispatcher.close();
+    }
+
+    @Test
+    public void repeatedChanges_sendOneNotificationPerItem() {
+        for (int i = 0; i < 1000; i++) {
+            mDispatcher.itemChanged(7, InventoryContract.CHANGE_UPDATE);
+        }
+        mDispatcher.itemChanged(8, InventoryContract.CHANGE_INSERT);
+        mDispatcher.itemChanged(8, InventoryContract.CHANGE_UPDATE);
+        mDispatcher.itemChanged(9, InventoryContract.CHANGE_UPDATE);
+        mDispatcher.itemChanged(9, InventoryContract.CHANGE_DELETE);
+        mDispatcher.flush();
+
+        assertEquals(3, mNotified.size());
+        assertNotified(0, InventoryEntry.inventoryUri(7), InventoryContract.CHANGE_UPDATE);
+        assertNotified(1, InventoryEntry.inventoryUri(8), InventoryContract.CHANGE_INSERT);
+        assertNotified(2, InventoryEntry.inventoryUri(9), InventoryContract.CHANGE_DELETE);
+
+        // Nothing is left for the next window.
+        mDispatcher.flush();
+        assertEquals(3, mNotified.size());
+    }
+
+    @Test
+    public void manyItems_foldIntoTableChange() {
+        for (int id = 0; id <= ChangeDispatcher.MAX_ITEM_CHANGES; id++) {
+            mDispatcher.itemChanged(id, InventoryContract.CHANGE_UPDATE);
+        }
+        mDispatcher.itemChanged(100, InventoryContract.CHANGE_INSERT);
+        mDispatcher.flush();
+
+        assertEquals(1, mNotified.size());
+        assertNotified(0, InventoryEntry.CONTENT_URI, InventoryContract.CHANGE_INSERT);
+    }
+
+    @Test
+    public void tableChange_coversItemChanges() {
+        mDispatcher.itemChanged(1, InventoryContract.CHANGE_DELETE);
+        mDispatcher.tableChanged(InventoryContract.CHANGE_UPDATE);
+        mDispatcher.itemChanged(2, InventoryContract.CHANGE_UPDATE);
+        mDispatcher.flush();
+
+        assertEquals(1, mNotified.size());
+        assertNotified(0, InventoryEntry.CONTENT_URI, InventoryContract.CHANGE_DELETE);
+    }
+
+    private void assertNotified(int index, Uri uri, String changeType) {
+        Uri notified = mNotified.get(index);
+        assertEquals(uri.getPath(), notified.getPath());
+        assertEquals(changeType, InventoryContract.getChangeType(notified));
+    }
+}
@@ -0,0 +1,157 @@
+package com.washington.inventoryapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test that upgrades a populated version 1 database with {@link
+ * InventoryDbHelper} and checks that every item survives with its price in cents and that the
+ * new indexes are used.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperMigrationTest {
+
+    private static final String DATABASE_NAME = "migration_test.db";
+
+    private static final int ROW_COUNT = 1000;
+
+    private Context mContext;
+    private InventoryDbHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mHelper != null) {
+            mHelper.close();
+        }
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion1_keepsItemsAndConvertsPrices() {
+        createVersion1Database();
+
+        mHelper = new InventoryDbHelper(mContext, DATABASE_NAME);
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+
+        assertEquals(ROW_COUNT, DatabaseUtils.queryNumEntries(db, InventoryEntry.TABLE_NAME));
+        assertEquals(499, price(db, "Item 0"));
+        assertEquals(500, price(db, "Item 1"));
+        assertEquals(125050, price(db, "Item 2"));
+        assertEquals(0, price(db, "Item 3"));
+
+        // Every row is indexed for search and stamped with the migration time.
+        assertEquals(ROW_COUNT, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM "
+                + InventoryEntry.SEARCH_TABLE_NAME + " WHERE " + InventoryEntry.SEARCH_TABLE_NAME
+                + " MATCH 'item*'", null));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, InventoryEntry.TABLE_NAME,
+                InventoryEntry.COLUMN_ITEM_UPDATED_AT + " = 0"));
+
+        // Every item's stock is in the ledger as an opening movement.
+        assertEquals(0, StockLedger.check(db));
+
+        // Every item has a sync ID and waits in the outbox for the first sync.
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, InventoryEntry.TABLE_NAME,
+                InventoryEntry.COLUMN_ITEM_SYNC_ID + " IS NULL"));
+        assertEquals(ROW_COUNT, DatabaseUtils.queryNumEntries(db, SyncStore.OUTBOX_TABLE_NAME));
+
+        // Every quantity is its counter's value.
+        assertEquals(0, QuantityCounters.check(db));
+
+        // New items continue after the old IDs.
+        db.execSQL("INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+                + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_PRICE
+                + ") VALUES ('New', 100)");
+        assertEquals(ROW_COUNT + 1, DatabaseUtils.longForQuery(db, "SELECT MAX("
+                + InventoryEntry._ID + ") FROM " + InventoryEntry.TABLE_NAME, null));
+    }
+
+    @Test
+    public void upgradeFromVersion1_queriesUseIndexes() {
+        createVersion1Database();
+
+        mHelper = new InventoryDbHelper(mContext, DATABASE_NAME);
+        SQLiteDatabase db = mHelper.getReadableDatabase();
+
+        assertPlanUses(db, InventoryDbHelper.SUPPLIER_INDEX, "SELECT " + InventoryEntry._ID
+                + " FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER + " = 'Acme'");
+        assertPlanUses(db, InventoryDbHelper.QUANTITY_INDEX, "SELECT COUNT(*) FROM "
+                + InventoryEntry.TABLE_NAME + " WHERE " + InventoryEntry.COLUMN_ITEM_QUANTITY
+                + " < 5");
+        assertPlanUses(db, InventoryDbHelper.NAME_INDEX, "SELECT " + InventoryEntry._ID
+                + " FROM " + InventoryEntry.TABLE_NAME + " ORDER BY "
+                + InventoryEntry.COLUMN_ITEM_NAME + " COLLATE NOCASE");
+        assertPlanUses(db, InventoryDbHelper.SKU_INDEX, "SELECT " + InventoryEntry._ID
+                + " FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                + InventoryEntry.COLUMN_ITEM_SKU + " = '0123456789012'");
+    }
+
+    /**
+     * Writes a database the way version 1 of the app did, with prices as typed text.
+     */
+    private void createVersion1Database() {
+        SQLiteDatabase db = mContext.openOrCreateDatabase(DATABASE_NAME, 0, null);
+        try {
+            db.execSQL("CREATE TABLE Inventory (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "name TEXT NOT NULL, quantity INTEGER NOT NULL DEFAULT 0, "
+                    + "price TEXT NOT NULL, image TEXT, supplier TEXT );");
+            String[] prices = {"4.99", "$5", "1,250.50", "free"};
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < ROW_COUNT; i++) {
+                    db.execSQL("INSERT INTO Inventory (name, quantity, price, supplier) "
+                                    + "VALUES (?, ?, ?, ?)",
+                            new Object[]{"Item " + i, i % 10, prices[i % prices.length],
+                                    i % 2 == 0 ? "Acme" : "Cableco"});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long price(SQLiteDatabase db, String name) {
+        return DatabaseUtils.longForQuery(db, "SELECT " + InventoryEntry.COLUMN_ITEM_PRICE
+                + " FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                + InventoryEntry.COLUMN_ITEM_NAME + " = ?", new String[]{name});
+    }
+
+    private static void assertPlanUses(SQLiteDatabase db, String index, String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        assertTrue(sql + " should use " + index + " but the plan was:\n" + plan,
+                plan.toString().contains(index));
+    }
+}
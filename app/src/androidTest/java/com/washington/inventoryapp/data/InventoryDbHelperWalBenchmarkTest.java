@@ -0,0 +1,152 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Instrumentation benchmark showing that with write-ahead logging, pages of the list can be
+ * read while a large bulkInsert() is running. With a rollback journal the reads would wait for
+ * the whole write to commit. The read times, idle and during the write, are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryDbHelperWalBenchmarkTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventoryDbHelperWalBenchmarkTest.class
+            .getSimpleName();
+
+    // Rows in the table before the benchmark starts
+    private static final int BASE_ROWS = 10000;
+
+    // Rows written by the concurrent bulkInsert(), one transaction
+    private static final int WRITE_ROWS = 50000;
+
+    // Reads timed while the database is idle
+    private static final int IDLE_READS = 200;
+
+    // Rows per page, as read by the list
+    private static final int PAGE_SIZE = 50;
+
+    private ContentResolver mResolver;
+
+    private final Random mRandom = new Random(42);
+
+    public InventoryDbHelperWalBenchmarkTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void readLatency_staysFlatDuringBulkWrite() throws Exception {
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, buildRows(BASE_ROWS));
+
+        long[] idle = new long[IDLE_READS];
+        for (int i = 0; i < idle.length; i++) {
+            idle[i] = timePageRead();
+        }
+
+        final ContentValues[] writeRows = buildRows(WRITE_ROWS);
+        final long[] writeNanos = new long[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                mResolver.bulkInsert(InventoryEntry.CONTENT_URI, writeRows);
+                writeNanos[0] = System.nanoTime() - start;
+            }
+        });
+
+        long[] busy = new long[1024];
+        int busyReads = 0;
+        writer.start();
+        while (writer.isAlive()) {
+            if (busyReads == busy.length) {
+                busy = Arrays.copyOf(busy, busy.length * 2);
+            }
+            busy[busyReads++] = timePageRead();
+        }
+        writer.join();
+        busy = Arrays.copyOf(busy, busyReads);
+
+        // Reads kept completing while the write transaction was open. How long they took
+        // depends on how the device schedules the two threads, so that is only logged.
+        assertTrue("Only " + busyReads + " reads finished during the write", busyReads >= 10);
+
+        long idleMedian = percentile(idle, 50);
+        long busyMedian = percentile(busy, 50);
+        Log.i(LOG_TAG, "bulkInsert of " + WRITE_ROWS + " rows took " + writeNanos[0] / 1000000
+                + " ms. Page reads idle: median " + idleMedian / 1000 + " us, p95 "
+                + percentile(idle, 95) / 1000 + " us. During the write: " + busyReads
+                + " reads, median " + busyMedian / 1000 + " us, p95 "
+                + percentile(busy, 95) / 1000 + " us");
+    }
+
+    /**
+     * Reads one page of the list from a random position and returns how long it took.
+     */
+    private long timePageRead() {
+        Uri uri = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(PAGE_SIZE))
+                .build();
+        long start = System.nanoTime();
+        Cursor cursor = mResolver.query(uri, InventoryItem.PROJECTION,
+                InventoryEntry._ID + " > ?",
+                new String[]{String.valueOf(mRandom.nextInt(BASE_ROWS - PAGE_SIZE))},
+                InventoryEntry._ID + " ASC");
+        try {
+            // Fill the cursor window so the rows are really read.
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long percentile(long[] nanos, int percent) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    private static ContentValues[] buildRows(int count) {
+        ContentValues[] rows = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+            values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, i % 100);
+            values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+            values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + (i % 10));
+            rows[i] = values;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,115 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Instrumentation benchmark for {@link InventoryExporter}. Exports 100k rows to a stream that
+ * only counts bytes, logs the time taken and checks how much heap the export kept hold of.
+ * Timings on a shared emulator vary too much to assert on.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryExporterBenchmarkTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventoryExporterBenchmarkTest.class.getSimpleName();
+
+    private static final int ROW_COUNT = 100000;
+
+    // The export may not grow the heap by more than this, no matter how many rows there are
+    private static final long HEAP_BUDGET_BYTES = 8 * 1024 * 1024;
+
+    private ContentResolver mResolver;
+
+    public InventoryExporterBenchmarkTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+
+        // Fill the table in batches so setting up doesn't take longer than the export.
+        ContentValues[] batch = new ContentValues[1000];
+        for (int start = 0; start < ROW_COUNT; start += batch.length) {
+            for (int i = 0; i < batch.length; i++) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item, \"" + (start + i) + "\"");
+                values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, i);
+                values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+                values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + (i % 10));
+                batch[i] = values;
+            }
+            mResolver.bulkInsert(InventoryEntry.CONTENT_URI, batch);
+        }
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void exportCsv() throws Exception {
+        runExport(InventoryExporter.Format.CSV);
+    }
+
+    @Test
+    public void exportJson() throws Exception {
+        runExport(InventoryExporter.Format.JSON);
+    }
+
+    private void runExport(InventoryExporter.Format format) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        long start = System.nanoTime();
+        int rows = new InventoryExporter(mResolver).exportTo(out, format);
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        // Collect the garbage the export left so only memory still held by it is counted.
+        runtime.gc();
+        long heapGrowth = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+        Log.i(LOG_TAG, format + ": " + rows + " rows, " + out.count + " bytes in " + millis
+                + " ms, heap grew " + heapGrowth / 1024 + " KB");
+
+        assertEquals(ROW_COUNT, rows);
+        assertTrue("Heap grew " + heapGrowth + " bytes", heapGrowth < HEAP_BUDGET_BYTES);
+    }
+
+    /**
+     * Discards everything written to it, keeping only the number of bytes.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
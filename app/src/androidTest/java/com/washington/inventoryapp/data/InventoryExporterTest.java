@@ -0,0 +1,56 @@
+package com.washington.inventoryapp.data;
+
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test checking that {@link InventoryExporter#exportAsync} reports a destination
+ * it can't open to its listener rather than failing on its own thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryExporterTest {
+
+    private static final String AUTHORITY = "com.washington.inventoryapp.test.revoked";
+
+    @Test
+    public void exportAsync_reportsRevokedPermission() throws InterruptedException {
+        MockContentResolver resolver = new MockContentResolver();
+        // A document whose permission was revoked, as the Storage Access Framework does.
+        resolver.addProvider(AUTHORITY, new MockContentProvider() {
+            @Override
+            public ParcelFileDescriptor openFile(Uri uri, String mode) {
+                throw new SecurityException("Permission to " + uri + " was revoked");
+            }
+        });
+
+        final CountDownLatch finished = new CountDownLatch(1);
+        final Exception[] error = new Exception[1];
+        final int[] rows = {-1};
+        new InventoryExporter(resolver).exportAsync(
+                Uri.parse("content://" + AUTHORITY + "/export.csv"),
+                InventoryExporter.Format.CSV, new InventoryExporter.Listener() {
+                    @Override
+                    public void onFinished(int rowsExported, Exception e) {
+                        rows[0] = rowsExported;
+                        error[0] = e;
+                        finished.countDown();
+                    }
+                });
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(0, rows[0]);
+        assertTrue(error[0] instanceof SecurityException);
+    }
+}
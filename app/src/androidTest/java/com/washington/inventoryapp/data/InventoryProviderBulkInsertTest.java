@@ -0,0 +1,164 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+/**
+ * Instrumentation test comparing the per-row insert path of {@link InventoryProvider} with
+ * bulkInsert() and applyBatch(). Runs against an isolated copy of the provider.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderBulkInsertTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventoryProviderBulkInsertTest.class.getSimpleName();
+
+    // Number of rows inserted by each path
+    private static final int ROW_COUNT = 2000;
+
+    private ContentResolver mResolver;
+
+    public InventoryProviderBulkInsertTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void bulkInsert_insertsEveryRow() {
+        int inserted = mResolver.bulkInsert(InventoryEntry.CONTENT_URI, buildRows(ROW_COUNT));
+
+        assertEquals(ROW_COUNT, inserted);
+        assertEquals(ROW_COUNT, countRows());
+    }
+
+    @Test
+    public void bulkInsert_skipsRowsThatBreakAConstraint() {
+        ContentValues[] rows = buildRows(3);
+        rows[0].put(InventoryEntry.COLUMN_ITEM_SKU, "SKU-1");
+        rows[1].put(InventoryEntry.COLUMN_ITEM_SKU, "SKU-1");
+
+        assertEquals(2, mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows));
+        assertEquals(2, countRows());
+    }
+
+    @Test
+    public void applyBatch_insertsEveryRow() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (ContentValues row : buildRows(ROW_COUNT)) {
+            operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                    .withValues(row)
+                    .build());
+        }
+
+        assertEquals(ROW_COUNT, mResolver.applyBatch(
+                InventoryContract.CONTENT_AUTHORITY, operations).length);
+        assertEquals(ROW_COUNT, countRows());
+    }
+
+    @Test
+    public void applyBatch_keepsInsertsAroundOperationsOnMissingItems() throws Exception {
+        ContentValues[] rows = buildRows(2);
+        Uri missing = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, Long.MAX_VALUE);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                .withValues(rows[0])
+                .build());
+        operations.add(ContentProviderOperation.newUpdate(missing)
+                .withValue(InventoryEntry.COLUMN_ITEM_QUANTITY, 5)
+                .build());
+        operations.add(ContentProviderOperation.newDelete(missing).build());
+        operations.add(ContentProviderOperation.newInsert(InventoryEntry.CONTENT_URI)
+                .withValues(rows[1])
+                .build());
+
+        ContentProviderResult[] results = mResolver.applyBatch(
+                InventoryContract.CONTENT_AUTHORITY, operations);
+
+        assertEquals(0, results[1].count.intValue());
+        assertEquals(0, results[2].count.intValue());
+        assertEquals(2, countRows());
+    }
+
+    /**
+     * Logs the throughput of both paths. Timings on a shared emulator vary too much to assert
+     * on, so only the rows are checked.
+     */
+    @Test
+    public void bulkInsert_comparedWithSingleInserts() {
+        ContentValues[] rows = buildRows(ROW_COUNT);
+
+        long start = System.nanoTime();
+        for (ContentValues row : rows) {
+            mResolver.insert(InventoryEntry.CONTENT_URI, row);
+        }
+        long singleNanos = System.nanoTime() - start;
+        assertEquals(ROW_COUNT, countRows());
+
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+
+        start = System.nanoTime();
+        assertEquals(ROW_COUNT, mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows));
+        long bulkNanos = System.nanoTime() - start;
+        assertEquals(ROW_COUNT, countRows());
+
+        Log.i(LOG_TAG, "single insert: " + rowsPerSecond(singleNanos) + " rows/s, "
+                + "bulkInsert: " + rowsPerSecond(bulkNanos) + " rows/s");
+    }
+
+    private static ContentValues[] buildRows(int count) {
+        ContentValues[] rows = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues values = new ContentValues();
+            values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+            values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, i % 100);
+            values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+            values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + (i % 10));
+            rows[i] = values;
+        }
+        return rows;
+    }
+
+    private int countRows() {
+        Cursor cursor = mResolver.query(InventoryEntry.CONTENT_URI,
+                new String[]{InventoryEntry._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long rowsPerSecond(long nanos) {
+        return ROW_COUNT * 1000000000L / Math.max(nanos, 1);
+    }
+}
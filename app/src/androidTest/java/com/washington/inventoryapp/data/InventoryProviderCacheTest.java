@@ -0,0 +1,178 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+/**
+ * Instrumentation test for the provider's cache of single items: reads by ID must see every
+ * write, however it was made, and repeated reads must be answered from memory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderCacheTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventoryProviderCacheTest.class.getSimpleName();
+
+    private static final int READ_COUNT = 10000;
+
+    private static final String[] PROJECTION = {
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_QUANTITY};
+
+    private ContentResolver mResolver;
+
+    public InventoryProviderCacheTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void cachedItem_seesEveryWrite() throws Exception {
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values("Cable", 10));
+        long id = Long.parseLong(uri.getLastPathSegment());
+        assertItem(uri, "Cable", 10);
+
+        InventoryEntry.adjustQuantity(mResolver, id, -1);
+        assertItem(uri, "Cable", 9);
+
+        ContentValues renamed = new ContentValues();
+        renamed.put(InventoryEntry.COLUMN_ITEM_NAME, "USB cable");
+        mResolver.update(uri, renamed, null, null);
+        assertItem(uri, "USB cable", 9);
+
+        // Writes by selection don't name the item.
+        ContentValues emptied = new ContentValues();
+        emptied.put(InventoryEntry.COLUMN_ITEM_QUANTITY, 0);
+        mResolver.update(InventoryEntry.CONTENT_URI, emptied, null, null);
+        assertItem(uri, "USB cable", 0);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newUpdate(uri)
+                .withValue(InventoryEntry.COLUMN_ITEM_QUANTITY, 4)
+                .build());
+        mResolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+        assertItem(uri, "USB cable", 4);
+
+        mResolver.delete(InventoryEntry.CONTENT_URI, null, null);
+        Cursor cursor = mResolver.query(uri, PROJECTION, null, null, null);
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void cachedItem_hasEveryColumn() {
+        ContentValues values = values("Speaker", 2);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values);
+
+        // Read twice, so the second read comes from the cache.
+        for (int i = 0; i < 2; i++) {
+            Cursor cursor = mResolver.query(uri, null, null, null, null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(uri.getLastPathSegment(), cursor.getString(
+                        cursor.getColumnIndex(InventoryEntry._ID)));
+                assertEquals(500, cursor.getLong(
+                        cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_PRICE)));
+                assertEquals("Acme", cursor.getString(
+                        cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_SUPPLIER)));
+                assertTrue(cursor.isNull(
+                        cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_IMAGE)));
+                assertTrue(cursor.getLong(
+                        cursor.getColumnIndex(InventoryEntry.COLUMN_ITEM_UPDATED_AT)) > 0);
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    @Test
+    public void repeatedReads_areServedFromMemory() {
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values("Headphones", 3));
+        Bundle before = cacheStats();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < READ_COUNT; i++) {
+            mResolver.query(uri, PROJECTION, null, null, null).close();
+        }
+        long cachedNanos = System.nanoTime() - start;
+
+        // An expression in the projection can only be answered by SQLite.
+        String[] uncachedProjection = {InventoryEntry.COLUMN_ITEM_NAME,
+                InventoryEntry.COLUMN_ITEM_QUANTITY + " * 1"};
+        start = System.nanoTime();
+        for (int i = 0; i < READ_COUNT; i++) {
+            mResolver.query(uri, uncachedProjection, null, null, null).close();
+        }
+        long uncachedNanos = System.nanoTime() - start;
+
+        Bundle after = cacheStats();
+        int hits = after.getInt(InventoryContract.EXTRA_CACHE_HITS)
+                - before.getInt(InventoryContract.EXTRA_CACHE_HITS);
+        int misses = after.getInt(InventoryContract.EXTRA_CACHE_MISSES)
+                - before.getInt(InventoryContract.EXTRA_CACHE_MISSES);
+        Log.i(LOG_TAG, READ_COUNT + " reads by ID: " + cachedNanos / READ_COUNT
+                + " ns each from the cache, " + uncachedNanos / READ_COUNT
+                + " ns each from SQLite; " + hits + " hits, " + misses + " misses");
+
+        assertEquals(READ_COUNT - 1, hits);
+        assertEquals(1, misses);
+        assertEquals(1, after.getInt(InventoryContract.EXTRA_CACHE_SIZE));
+    }
+
+    private Bundle cacheStats() {
+        return mResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_CACHE_STATS,
+                null, null);
+    }
+
+    private void assertItem(Uri uri, String name, int quantity) {
+        Cursor cursor = mResolver.query(uri, PROJECTION, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(name, cursor.getString(0));
+            assertEquals(quantity, cursor.getInt(1));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues values(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        return values;
+    }
+}
@@ -0,0 +1,183 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+/**
+ * Instrumentation test for the stock movements {@link InventoryProvider} records with every
+ * quantity change, and the point in time quantities it answers from them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderLedgerTest extends ProviderTestCase2<InventoryProvider> {
+
+    private ContentResolver mResolver;
+
+    public InventoryProviderLedgerTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void ledger_recordsEveryQuantityChange() {
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values("Headphones", 10));
+        long id = Long.parseLong(uri.getLastPathSegment());
+
+        assertEquals(9, InventoryEntry.adjustQuantity(mResolver, id, -1));
+        assertEquals(12, InventoryEntry.adjustQuantity(mResolver, id, 3));
+
+        // A count that found fewer items than expected
+        ContentValues counted = new ContentValues();
+        counted.put(InventoryEntry.COLUMN_ITEM_QUANTITY, 7);
+        mResolver.update(MovementEntry.withReason(uri, "shrinkage"), counted, null, null);
+
+        // Changes that leave the quantity alone aren't recorded.
+        ContentValues renamed = new ContentValues();
+        renamed.put(InventoryEntry.COLUMN_ITEM_NAME, "Earbuds");
+        mResolver.update(uri, renamed, null, null);
+        mResolver.update(uri, counted, null, null);
+
+        mResolver.delete(uri, null, null);
+
+        assertMovements(id,
+                new String[]{MovementEntry.REASON_RECEIVED, MovementEntry.REASON_SALE,
+                        MovementEntry.REASON_RESTOCK, "shrinkage", MovementEntry.REASON_REMOVED},
+                new long[]{10, -1, 3, -5, -7});
+    }
+
+    @Test
+    public void adjustQuantities_checksEachAdjustmentAndMergesTheRest() {
+        long cable = Long.parseLong(mResolver.insert(InventoryEntry.CONTENT_URI,
+                values("Cable", 2)).getLastPathSegment());
+        long plug = Long.parseLong(mResolver.insert(InventoryEntry.CONTENT_URI,
+                values("Plug", 1)).getLastPathSegment());
+
+        // The third sale of a cable is refused, the restock after it is not.
+        int[] quantities = InventoryEntry.adjustQuantities(mResolver,
+                new long[]{cable, plug, cable, cable, cable, plug, 999},
+                new int[]{-1, -1, -1, -1, 4, -1, -1});
+        assertTrue(Arrays.equals(new int[]{1, 0, 0, -1, 4, -1, -1}, quantities));
+
+        // One sale and one restock of the cable, one sale of the plug
+        assertMovements(cable,
+                new String[]{MovementEntry.REASON_RECEIVED, MovementEntry.REASON_SALE,
+                        MovementEntry.REASON_RESTOCK},
+                new long[]{2, -2, 4});
+        assertMovements(plug,
+                new String[]{MovementEntry.REASON_RECEIVED, MovementEntry.REASON_SALE},
+                new long[]{1, -1});
+    }
+
+    @Test
+    public void ledger_recordsEachUpdatedItem() {
+        mResolver.insert(InventoryEntry.CONTENT_URI, values("Cable", 3));
+        mResolver.insert(InventoryEntry.CONTENT_URI, values("Adapter", 5));
+        mResolver.insert(InventoryEntry.CONTENT_URI, values("Plug", 0));
+
+        ContentValues emptied = new ContentValues();
+        emptied.put(InventoryEntry.COLUMN_ITEM_QUANTITY, 0);
+        assertEquals(3, mResolver.update(InventoryEntry.CONTENT_URI, emptied, null, null));
+
+        // The plug was already empty, so only two items moved.
+        Cursor cursor = mResolver.query(MovementEntry.CONTENT_URI,
+                new String[]{MovementEntry.COLUMN_DELTA},
+                MovementEntry.COLUMN_REASON + " = ?",
+                new String[]{MovementEntry.REASON_CORRECTION}, null);
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(-3, cursor.getLong(0));
+            assertTrue(cursor.moveToNext());
+            assertEquals(-5, cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void quantityAt_replaysTheLedger() {
+        long beforeInsert = tick();
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values("Speaker", 4));
+        long id = Long.parseLong(uri.getLastPathSegment());
+        long afterInsert = tick();
+        InventoryEntry.adjustQuantity(mResolver, id, -3);
+        long afterSale = tick();
+        mResolver.delete(uri, null, null);
+        long afterDelete = tick();
+
+        assertEquals(0, MovementEntry.quantityAt(mResolver, id, beforeInsert));
+        assertEquals(4, MovementEntry.quantityAt(mResolver, id, afterInsert));
+        assertEquals(1, MovementEntry.quantityAt(mResolver, id, afterSale));
+        assertEquals(0, MovementEntry.quantityAt(mResolver, id, afterDelete));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void update_rejectsQuantityThatIsNotANumber() {
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values("Cable", 3));
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, "a few");
+        mResolver.update(uri, values, null, null);
+    }
+
+    /**
+     * Returns the current time, making sure the writes before and after it get other times.
+     */
+    private static long tick() {
+        SystemClock.sleep(2);
+        long now = System.currentTimeMillis();
+        SystemClock.sleep(2);
+        return now;
+    }
+
+    private void assertMovements(long id, String[] reasons, long[] deltas) {
+        Cursor cursor = mResolver.query(MovementEntry.CONTENT_URI,
+                new String[]{MovementEntry.COLUMN_REASON, MovementEntry.COLUMN_DELTA},
+                MovementEntry.COLUMN_ITEM_ID + " = ?", new String[]{String.valueOf(id)}, null);
+        try {
+            assertEquals(reasons.length, cursor.getCount());
+            for (int i = 0; i < reasons.length; i++) {
+                assertTrue(cursor.moveToPosition(i));
+                assertEquals(reasons[i], cursor.getString(0));
+                assertEquals(deltas[i], cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static ContentValues values(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        return values;
+    }
+}
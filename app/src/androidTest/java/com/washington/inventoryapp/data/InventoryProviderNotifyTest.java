@@ -0,0 +1,162 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.SummaryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test counting how often an observer of the items re-queries during a burst
+ * of 1,000 sales. Before the notifications were coalesced it re-queried once per sale.
+ * <p>
+ * The provider runs on a renamed database. Its change notifications are forwarded to the real
+ * ContentResolver, where the observer listens the way a CursorLoader does.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderNotifyTest {
+
+    private static final String LOG_TAG = InventoryProviderNotifyTest.class.getSimpleName();
+
+    private static final String DATABASE_PREFIX = "notify_test.";
+
+    private static final int SALE_COUNT = 1000;
+
+    private Context mTargetContext;
+    private ContentResolver mResolver;
+    private InventoryProvider mProvider;
+    private HandlerThread mObserverThread;
+    private ContentObserver mObserver;
+
+    // Written on the observer thread
+    private final List<Uri> mNotified = new ArrayList<>();
+    private int mRequeries;
+
+    @Before
+    public void setUp() {
+        mTargetContext = InstrumentationRegistry.getTargetContext();
+        final ContentResolver realResolver = mTargetContext.getContentResolver();
+        MockContentResolver resolver = new MockContentResolver() {
+            @Override
+            public void notifyChange(Uri uri, ContentObserver observer, boolean syncToNetwork) {
+                realResolver.notifyChange(uri, observer, false);
+            }
+        };
+        mProvider = new InventoryProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = InventoryContract.CONTENT_AUTHORITY;
+        mProvider.attachInfo(new IsolatedContext(resolver,
+                new RenamingDelegatingContext(mTargetContext, DATABASE_PREFIX)), info);
+        resolver.addProvider(InventoryContract.CONTENT_AUTHORITY, mProvider);
+        mResolver = resolver;
+
+        // Re-reads the totals on every notification, like the header's loader.
+        mObserverThread = new HandlerThread(LOG_TAG);
+        mObserverThread.start();
+        mObserver = new ContentObserver(new Handler(mObserverThread.getLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                synchronized (mNotified) {
+                    mNotified.add(uri);
+                }
+                Cursor cursor = mResolver.query(SummaryEntry.CONTENT_URI, null, null, null, null);
+                cursor.close();
+                synchronized (mNotified) {
+                    mRequeries++;
+                }
+            }
+        };
+        realResolver.registerContentObserver(InventoryEntry.CONTENT_URI, true, mObserver);
+    }
+
+    @After
+    public void tearDown() {
+        mTargetContext.getContentResolver().unregisterContentObserver(mObserver);
+        mObserverThread.quit();
+        mProvider.shutdown();
+        mTargetContext.deleteDatabase(DATABASE_PREFIX + "inventory.db");
+    }
+
+    @Test
+    public void saleBurst_requeriesOncePerWindow() {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, "Cable");
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, SALE_COUNT);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        Uri uri = mResolver.insert(InventoryEntry.CONTENT_URI, values);
+        long id = Long.parseLong(uri.getLastPathSegment());
+        awaitQuiet();
+        synchronized (mNotified) {
+            mNotified.clear();
+            mRequeries = 0;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < SALE_COUNT; i++) {
+            InventoryEntry.adjustQuantity(mResolver, id, -1);
+        }
+        long burstMillis = SystemClock.elapsedRealtime() - start;
+        awaitQuiet();
+
+        synchronized (mNotified) {
+            Log.i(LOG_TAG, SALE_COUNT + " sales in " + burstMillis + " ms caused " + mRequeries
+                    + " re-queries");
+            // At most one per window, plus the window the burst ended in.
+            assertTrue(mRequeries >= 1);
+            assertTrue(mRequeries <= burstMillis / ChangeDispatcher.DEFAULT_WINDOW_MILLIS + 2);
+
+            // Only the sold item's URI is notified, as an update.
+            for (Uri notified : mNotified) {
+                assertEquals(uri.getPath(), notified.getPath());
+                assertEquals(InventoryContract.CHANGE_UPDATE,
+                        InventoryContract.getChangeType(notified));
+            }
+        }
+    }
+
+    /**
+     * Waits until no notification has arrived for a few windows.
+     */
+    private void awaitQuiet() {
+        int seen = -1;
+        while (true) {
+            SystemClock.sleep(ChangeDispatcher.DEFAULT_WINDOW_MILLIS * 3);
+            synchronized (mNotified) {
+                if (mRequeries == seen) {
+                    return;
+                }
+                seen = mRequeries;
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instrumentation test for the search URI of {@link InventoryProvider} and the triggers that
+ * keep the search index in step with the items table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderSearchTest extends ProviderTestCase2<InventoryProvider> {
+
+    private ContentResolver mResolver;
+
+    public InventoryProviderSearchTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void search_matchesWordPrefixesOfNameAndSupplier() {
+        insert("Wireless Headphones", "Acme");
+        insert("Headphone Cable", "Cableco");
+        insert("Speaker", "Acme Audio");
+
+        assertEquals(listOf("Headphone Cable", "Wireless Headphones"), names("head"));
+        assertEquals(listOf("Speaker", "Wireless Headphones"), names("acme"));
+        assertEquals(listOf("Wireless Headphones"), names("head acme"));
+        assertEquals(listOf(), names("nothing"));
+    }
+
+    @Test
+    public void search_followsUpdatesAndDeletes() {
+        Uri itemUri = insert("Headphones", "Acme");
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, "Speaker");
+        mResolver.update(itemUri, values, null, null);
+        assertEquals(listOf(), names("head"));
+        assertEquals(listOf("Speaker"), names("speak"));
+
+        mResolver.delete(itemUri, null, null);
+        assertEquals(listOf(), names("speak"));
+    }
+
+    @Test
+    public void search_isLimited() {
+        for (int i = 0; i < 20; i++) {
+            insert("Item " + i, "Acme");
+        }
+
+        Cursor cursor = mResolver.query(InventoryEntry.searchUri("acme", 5),
+                null, null, null, null);
+        try {
+            assertEquals(5, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Uri insert(String name, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, supplier);
+        return mResolver.insert(InventoryEntry.CONTENT_URI, values);
+    }
+
+    private List<String> names(String query) {
+        Cursor cursor = mResolver.query(InventoryEntry.searchUri(query, 50),
+                new String[]{InventoryEntry.COLUMN_ITEM_NAME}, null, null, null);
+        List<String> names = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    private static List<String> listOf(String... names) {
+        List<String> list = new ArrayList<>();
+        for (String name : names) {
+            list.add(name);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,196 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Instrumentation test for items addressed by SKU: upserts, selling a scanned code, and how
+ * long a lookup takes among 100,000 items.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderSkuTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventoryProviderSkuTest.class.getSimpleName();
+
+    private static final int LARGE_ROW_COUNT = 100000;
+
+    private static final int LOOKUP_COUNT = 1000;
+
+    // Lookups that scan the table are slow, so fewer of them are timed.
+    private static final int SCAN_COUNT = 20;
+
+    private static final String[] PROJECTION = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_QUANTITY};
+
+    private ContentResolver mResolver;
+
+    public InventoryProviderSkuTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void upsert_insertsThenUpdates() {
+        Uri skuUri = InventoryEntry.skuUri("0123456789012");
+        Uri inserted = mResolver.insert(skuUri, values("Cable", 10));
+        Uri updated = mResolver.insert(skuUri, values("USB cable", 4));
+
+        // The second upsert changed the same item.
+        assertEquals(inserted, updated);
+        Cursor cursor = mResolver.query(skuUri, new String[]{InventoryEntry._ID,
+                InventoryEntry.COLUMN_ITEM_NAME, InventoryEntry.COLUMN_ITEM_SKU}, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(Long.parseLong(inserted.getLastPathSegment()), cursor.getLong(0));
+            assertEquals("USB cable", cursor.getString(1));
+            assertEquals("0123456789012", cursor.getString(2));
+        } finally {
+            cursor.close();
+        }
+
+        // Both quantities are in the ledger.
+        long id = Long.parseLong(inserted.getLastPathSegment());
+        assertEquals(4, MovementEntry.quantityAt(mResolver, id, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void insert_refusesDuplicateSku() {
+        ContentValues values = values("Cable", 1);
+        values.put(InventoryEntry.COLUMN_ITEM_SKU, "A-1");
+        assertNotNull(mResolver.insert(InventoryEntry.CONTENT_URI, values));
+        assertNull(mResolver.insert(InventoryEntry.CONTENT_URI, values));
+
+        // Items without a SKU don't clash.
+        assertNotNull(mResolver.insert(InventoryEntry.CONTENT_URI, values("Plug", 1)));
+        assertNotNull(mResolver.insert(InventoryEntry.CONTENT_URI, values("Adapter", 1)));
+    }
+
+    @Test
+    public void adjustQuantityBySku_sellsScannedItem() {
+        Uri skuUri = InventoryEntry.skuUri("4006381333931");
+        mResolver.insert(skuUri, values("Pen", 2));
+
+        assertEquals(1, InventoryEntry.adjustQuantityBySku(mResolver, "4006381333931", -1));
+        assertEquals(0, InventoryEntry.adjustQuantityBySku(mResolver, "4006381333931", -1));
+        // Out of stock, and a code no item has
+        assertEquals(-1, InventoryEntry.adjustQuantityBySku(mResolver, "4006381333931", -1));
+        assertEquals(-1, InventoryEntry.adjustQuantityBySku(mResolver, "0000000000000", -1));
+
+        // A SKU with a slash is still one path segment.
+        mResolver.insert(InventoryEntry.skuUri("BOX/12"), values("Box", 3));
+        assertEquals(2, InventoryEntry.adjustQuantityBySku(mResolver, "BOX/12", -1));
+        assertEquals(1, mResolver.delete(InventoryEntry.skuUri("BOX/12"), null, null));
+    }
+
+    @Test
+    public void lookupBySku_usesTheIndexAt100kRows() {
+        ContentValues[] rows = new ContentValues[LARGE_ROW_COUNT];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = values("Item " + i, 1000);
+            rows[i].put(InventoryEntry.COLUMN_ITEM_SKU, sku(i));
+        }
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+
+        Random random = new Random(16);
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            Cursor cursor = mResolver.query(InventoryEntry.skuUri(sku(random.nextInt(
+                    LARGE_ROW_COUNT))), PROJECTION, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        }
+        long lookupNanos = (System.nanoTime() - start) / LOOKUP_COUNT;
+
+        // Sell one each of items spread over the table.
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUP_COUNT; i++) {
+            assertEquals(999, InventoryEntry.adjustQuantityBySku(mResolver,
+                    sku(i * (LARGE_ROW_COUNT / LOOKUP_COUNT)), -1));
+        }
+        long saleNanos = (System.nanoTime() - start) / LOOKUP_COUNT;
+
+        // Looking an item up by name the way scanning worked before reads the whole table.
+        start = System.nanoTime();
+        for (int i = 0; i < SCAN_COUNT; i++) {
+            Cursor cursor = mResolver.query(InventoryEntry.CONTENT_URI, PROJECTION,
+                    InventoryEntry.COLUMN_ITEM_NAME + " = ?",
+                    new String[]{"Item " + random.nextInt(LARGE_ROW_COUNT)}, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        }
+        long scanNanos = (System.nanoTime() - start) / SCAN_COUNT;
+
+        Log.i(LOG_TAG, LARGE_ROW_COUNT + " rows: lookup by SKU " + lookupNanos / 1000
+                + " us, sale by SKU " + saleNanos / 1000 + " us, lookup by name "
+                + scanNanos / 1000 + " us");
+
+        // Timings on a shared emulator vary too much to assert on, so check the plan instead.
+        InventoryDbHelper helper = new InventoryDbHelper(getMockContext());
+        try {
+            Cursor plan = helper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT "
+                    + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                    + InventoryEntry.COLUMN_ITEM_SKU + " = ?", new String[]{sku(0)});
+            try {
+                assertTrue(plan.moveToFirst());
+                String detail = plan.getString(plan.getColumnIndexOrThrow("detail"));
+                assertTrue(detail, detail.contains("USING INDEX " + InventoryDbHelper.SKU_INDEX)
+                        || detail.contains("USING COVERING INDEX "
+                        + InventoryDbHelper.SKU_INDEX));
+            } finally {
+                plan.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    private static String sku(int i) {
+        return String.format(Locale.US, "%013d", 4000000000000L + i);
+    }
+
+    private static ContentValues values(String name, int quantity) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        return values;
+    }
+}
@@ -0,0 +1,235 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.SummaryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Instrumentation test for the stock totals served by {@link InventoryProvider}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryProviderSummaryTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventoryProviderSummaryTest.class.getSimpleName();
+
+    // Rows for the timing test
+    private static final int LARGE_ROW_COUNT = 100000;
+
+    private ContentResolver mResolver;
+
+    public InventoryProviderSummaryTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @Test
+    public void summary_ofEmptyInventoryIsZero() {
+        Cursor cursor = mResolver.query(SummaryEntry.CONTENT_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, getLong(cursor, SummaryEntry.COLUMN_ITEM_COUNT));
+            assertEquals(0, getLong(cursor, SummaryEntry.COLUMN_TOTAL_UNITS));
+            assertEquals(0, getLong(cursor, SummaryEntry.COLUMN_STOCK_VALUE));
+            assertEquals(0, getLong(cursor, SummaryEntry.COLUMN_LOW_STOCK_COUNT));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void summary_totalsEveryItem() {
+        insert("Headphones", 10, 2500, "Acme");
+        insert("Cable", 3, 499, "Acme");
+        insert("Speaker", 1, 10000, "Cableco");
+        insert("Adapter", 0, 150, null);
+
+        Cursor cursor = mResolver.query(SummaryEntry.CONTENT_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(4, getLong(cursor, SummaryEntry.COLUMN_ITEM_COUNT));
+            assertEquals(14, getLong(cursor, SummaryEntry.COLUMN_TOTAL_UNITS));
+            assertEquals(10 * 2500 + 3 * 499 + 10000,
+                    getLong(cursor, SummaryEntry.COLUMN_STOCK_VALUE));
+            // Below the default threshold of 5
+            assertEquals(3, getLong(cursor, SummaryEntry.COLUMN_LOW_STOCK_COUNT));
+        } finally {
+            cursor.close();
+        }
+
+        cursor = mResolver.query(SummaryEntry.summaryUri(SummaryEntry.CONTENT_URI, 1),
+                new String[]{SummaryEntry.COLUMN_LOW_STOCK_COUNT}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getLong(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void suppliers_totalsEachSupplier() {
+        insert("Headphones", 10, 2500, "Acme");
+        insert("Cable", 3, 499, "Acme");
+        insert("Speaker", 1, 10000, "Cableco");
+        insert("Adapter", 0, 150, null);
+
+        Cursor cursor = mResolver.query(SummaryEntry.SUPPLIERS_URI, null, null, null, null);
+        try {
+            assertEquals(3, cursor.getCount());
+
+            // Sorted by supplier, so items without one come first.
+            assertTrue(cursor.moveToFirst());
+            assertTrue(cursor.isNull(cursor.getColumnIndex(SummaryEntry.COLUMN_SUPPLIER)));
+            assertEquals(1, getLong(cursor, SummaryEntry.COLUMN_ITEM_COUNT));
+
+            assertTrue(cursor.moveToNext());
+            assertEquals("Acme", cursor.getString(
+                    cursor.getColumnIndex(SummaryEntry.COLUMN_SUPPLIER)));
+            assertEquals(2, getLong(cursor, SummaryEntry.COLUMN_ITEM_COUNT));
+            assertEquals(13, getLong(cursor, SummaryEntry.COLUMN_TOTAL_UNITS));
+            assertEquals(10 * 2500 + 3 * 499, getLong(cursor, SummaryEntry.COLUMN_STOCK_VALUE));
+            assertEquals(1, getLong(cursor, SummaryEntry.COLUMN_LOW_STOCK_COUNT));
+        } finally {
+            cursor.close();
+        }
+
+        // A selection picks out one supplier.
+        cursor = mResolver.query(SummaryEntry.SUPPLIERS_URI, null,
+                SummaryEntry.COLUMN_SUPPLIER + " = ?", new String[]{"Cableco"}, null);
+        try {
+            assertEquals(1, cursor.getCount());
+            assertTrue(cursor.moveToFirst());
+            assertEquals(10000, getLong(cursor, SummaryEntry.COLUMN_STOCK_VALUE));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void summary_rejectsInvalidThreshold() {
+        mResolver.query(SummaryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LOW_STOCK, "-1")
+                .build(), null, null, null, null);
+    }
+
+    @Test
+    public void summary_at100kRows() {
+        ContentValues[] rows = new ContentValues[LARGE_ROW_COUNT];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = values("Item " + i, i % 100, 100 + i % 1000, "Supplier " + (i % 50));
+        }
+        mResolver.bulkInsert(InventoryEntry.CONTENT_URI, rows);
+
+        // Another threshold computes the totals from the items...
+        int threshold = InventoryContract.DEFAULT_LOW_STOCK_THRESHOLD + 1;
+        long summaryNanos = timeQuery(SummaryEntry.summaryUri(SummaryEntry.CONTENT_URI,
+                threshold));
+        long suppliersNanos = timeQuery(SummaryEntry.summaryUri(SummaryEntry.SUPPLIERS_URI,
+                threshold));
+
+        // ...while the default one reads the totals the triggers keep.
+        long storedSummaryNanos = timeQuery(SummaryEntry.CONTENT_URI);
+        long storedSuppliersNanos = timeQuery(SummaryEntry.SUPPLIERS_URI);
+
+        Log.i(LOG_TAG, LARGE_ROW_COUNT + " rows: summary " + summaryNanos / 1000
+                + " us computed, " + storedSummaryNanos / 1000 + " us stored; per supplier "
+                + suppliersNanos / 1000 + " us computed, " + storedSuppliersNanos / 1000
+                + " us stored");
+
+        // Timings on a shared emulator vary too much to assert on, so only the totals are.
+        Cursor cursor = mResolver.query(SummaryEntry.CONTENT_URI, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(LARGE_ROW_COUNT, getLong(cursor, SummaryEntry.COLUMN_ITEM_COUNT));
+            // Quantities 0 to 99, a thousand times over
+            assertEquals(LARGE_ROW_COUNT / 100 * 4950,
+                    getLong(cursor, SummaryEntry.COLUMN_TOTAL_UNITS));
+        } finally {
+            cursor.close();
+        }
+
+        // Both ways give the same totals.
+        assertEquals(0, SummaryEntry.checkSummary(mResolver));
+    }
+
+    @Test
+    public void suppliers_mergeNullAndEmptySupplier() {
+        insert("Adapter", 0, 150, null);
+        insert("Plug", 2, 100, "");
+
+        for (Uri uri : new Uri[]{SummaryEntry.SUPPLIERS_URI,
+                SummaryEntry.summaryUri(SummaryEntry.SUPPLIERS_URI, 1)}) {
+            Cursor cursor = mResolver.query(uri, null, null, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+                assertTrue(cursor.moveToFirst());
+                assertTrue(cursor.isNull(cursor.getColumnIndex(SummaryEntry.COLUMN_SUPPLIER)));
+                assertEquals(2, getLong(cursor, SummaryEntry.COLUMN_ITEM_COUNT));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the fastest of a few runs of the query, reading every row.
+     */
+    private long timeQuery(Uri uri) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            long start = System.nanoTime();
+            Cursor cursor = mResolver.query(uri, null, null, null, null);
+            try {
+                cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private void insert(String name, int quantity, long priceCents, String supplier) {
+        mResolver.insert(InventoryEntry.CONTENT_URI, values(name, quantity, priceCents, supplier));
+    }
+
+    private static ContentValues values(String name, int quantity, long priceCents,
+                                        String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, priceCents);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, supplier);
+        return values;
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+}
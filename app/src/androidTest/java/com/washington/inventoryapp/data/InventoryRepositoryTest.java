@@ -0,0 +1,110 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentation test for {@link InventoryRepository}: writes reach the provider in the order
+ * they were made, and callbacks are called on the main thread in that order.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventoryRepositoryTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final int SALES = 50;
+
+    private InventoryRepository mRepository;
+
+    public InventoryRepositoryTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mRepository = new InventoryRepository(getMockContentResolver(), 0, 1);
+    }
+
+    @Test
+    public void writesRunInOrderAndCallBackOnTheMainThread() throws InterruptedException {
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, "Hammer");
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, SALES);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 1299);
+        final Uri[] itemUri = new Uri[1];
+        mRepository.insert(values, new InventoryRepository.Callback<Uri>() {
+            @Override
+            public void onResult(Uri uri) {
+                itemUri[0] = uri;
+                results.add(onMainThread() + "insert");
+            }
+        });
+
+        // Queued without waiting for the insert, which has to happen first for these to work.
+        long id = 1;
+        for (int i = 0; i < SALES; i++) {
+            mRepository.adjustQuantity(id, -1, new InventoryRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer quantity) {
+                    results.add(onMainThread() + quantity);
+                }
+            });
+        }
+        mRepository.adjustQuantity(id, -1, new InventoryRepository.Callback<Integer>() {
+            @Override
+            public void onResult(Integer quantity) {
+                results.add(onMainThread() + "refused " + quantity);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        List<String> expected = new ArrayList<>();
+        expected.add("main: insert");
+        for (int i = SALES - 1; i >= 0; i--) {
+            expected.add("main: " + i);
+        }
+        expected.add("main: refused -1");
+        assertEquals(expected, results);
+        assertEquals(ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id), itemUri[0]);
+        assertEquals(0, readQuantity(id));
+    }
+
+    private static String onMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper() ? "main: " : "background: ";
+    }
+
+    private int readQuantity(long id) {
+        Cursor cursor = getMockContentResolver().query(
+                ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id),
+                new String[]{InventoryEntry.COLUMN_ITEM_QUANTITY}, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.ParcelFileDescriptor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instrumentation test for {@link InventorySnapshot} through the provider: full and
+ * incremental snapshots restore the items exactly, a damaged snapshot changes nothing, and a
+ * snapshot is smaller than a copy of the database file. The sizes and times of both are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventorySnapshotTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = InventorySnapshotTest.class.getSimpleName();
+
+    private static final int ROW_COUNT = 20000;
+
+    private ContentResolver mResolver;
+    private File mDirectory;
+
+    public InventorySnapshotTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+        mDirectory = new File(InstrumentationRegistry.getTargetContext().getCacheDir(),
+                "snapshot_test");
+        mDirectory.mkdirs();
+
+        // Fill the table in batches, with few distinct suppliers like a real inventory.
+        ContentValues[] batch = new ContentValues[1000];
+        for (int start = 0; start < ROW_COUNT; start += batch.length) {
+            for (int i = 0; i < batch.length; i++) {
+                ContentValues values = new ContentValues();
+                values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + (start + i));
+                values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, i % 50);
+                values.put(InventoryEntry.COLUMN_ITEM_PRICE, 100 + i);
+                values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + (i % 20));
+                values.put(InventoryEntry.COLUMN_ITEM_SKU, "SKU-" + (start + i));
+                batch[i] = values;
+            }
+            mResolver.bulkInsert(InventoryEntry.CONTENT_URI, batch);
+        }
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        for (File file : mDirectory.listFiles()) {
+            file.delete();
+        }
+        super.tearDown();
+    }
+
+    @Test
+    public void fullSnapshot_restoresEveryItem() throws IOException {
+        List<String> before = readItems();
+        File snapshot = new File(mDirectory, "full.snapshot");
+        assertEquals(ROW_COUNT, writeSnapshot(snapshot, null));
+
+        // Lose some items and change others.
+        mResolver.delete(InventoryEntry.CONTENT_URI, InventoryEntry._ID + " <= 100", null);
+        InventoryEntry.adjustQuantityBySku(mResolver, "SKU-500", 7);
+
+        assertEquals(ROW_COUNT, restoreSnapshot(snapshot));
+        assertEquals(before, readItems());
+    }
+
+    @Test
+    public void incrementalSnapshot_holdsOnlyChanges() throws IOException {
+        File base = new File(mDirectory, "base.snapshot");
+        writeSnapshot(base, null);
+
+        InventoryEntry.adjustQuantityBySku(mResolver, "SKU-10", 3);
+        InventoryEntry.adjustQuantityBySku(mResolver, "SKU-20", -1);
+        mResolver.delete(InventoryEntry.skuUri("SKU-30"), null, null);
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, "New item");
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 250);
+        mResolver.insert(InventoryEntry.CONTENT_URI, values);
+        List<String> expected = readItems();
+
+        File incremental = new File(mDirectory, "incremental.snapshot");
+        assertEquals(3, writeSnapshot(incremental, base));
+        assertTrue(incremental.length() < 1024);
+
+        // Go back to the base, then forward to the changes.
+        restoreSnapshot(base);
+        assertEquals(ROW_COUNT, readItems().size());
+        assertEquals(3, restoreSnapshot(incremental));
+        assertEquals(expected, readItems());
+    }
+
+    @Test
+    public void damagedSnapshot_changesNothing() throws IOException {
+        File snapshot = new File(mDirectory, "damaged.snapshot");
+        writeSnapshot(snapshot, null);
+        RandomAccessFile file = new RandomAccessFile(snapshot, "rw");
+        try {
+            file.seek(file.length() / 2);
+            int b = file.read();
+            file.seek(file.length() / 2);
+            file.write(b ^ 0x10);
+        } finally {
+            file.close();
+        }
+        mResolver.delete(InventoryEntry.skuUri("SKU-1"), null, null);
+        List<String> before = readItems();
+
+        try {
+            restoreSnapshot(snapshot);
+            fail("Restored a damaged snapshot");
+        } catch (IllegalArgumentException expected) {
+            // The restore was rolled back.
+        }
+        assertEquals(before, readItems());
+    }
+
+    @Test
+    public void snapshot_isSmallerThanTheDatabaseFile() throws IOException {
+        File snapshot = new File(mDirectory, "size.snapshot");
+        long start = System.nanoTime();
+        writeSnapshot(snapshot, null);
+        long writeMillis = (System.nanoTime() - start) / 1000000;
+
+        start = System.nanoTime();
+        restoreSnapshot(snapshot);
+        long restoreMillis = (System.nanoTime() - start) / 1000000;
+
+        // The backup this replaces: a copy of the database file and its WAL.
+        File database = getMockContext().getDatabasePath("inventory.db");
+        long copyBytes = 0;
+        start = System.nanoTime();
+        for (String suffix : new String[]{"", "-wal"}) {
+            File source = new File(database.getPath() + suffix);
+            if (source.exists()) {
+                copyBytes += copy(source, new File(mDirectory, "copy" + suffix));
+            }
+        }
+        long copyMillis = (System.nanoTime() - start) / 1000000;
+
+        Log.i(LOG_TAG, ROW_COUNT + " items: snapshot " + snapshot.length() + " bytes, written in "
+                + writeMillis + " ms, restored in " + restoreMillis + " ms; database file copy "
+                + copyBytes + " bytes in " + copyMillis + " ms");
+        assertTrue("Snapshot is " + snapshot.length() + " bytes, the database " + copyBytes,
+                snapshot.length() * 4 < copyBytes);
+    }
+
+    private int writeSnapshot(File snapshot, File base) throws IOException {
+        ParcelFileDescriptor out = ParcelFileDescriptor.open(snapshot,
+                ParcelFileDescriptor.MODE_WRITE_ONLY | ParcelFileDescriptor.MODE_CREATE
+                        | ParcelFileDescriptor.MODE_TRUNCATE);
+        ParcelFileDescriptor in = base == null ? null
+                : ParcelFileDescriptor.open(base, ParcelFileDescriptor.MODE_READ_ONLY);
+        try {
+            return InventoryEntry.writeSnapshot(mResolver, out, in);
+        } finally {
+            out.close();
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    private int restoreSnapshot(File snapshot) throws IOException {
+        ParcelFileDescriptor in = ParcelFileDescriptor.open(snapshot,
+                ParcelFileDescriptor.MODE_READ_ONLY);
+        try {
+            return InventoryEntry.restoreSnapshot(mResolver, in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns every item as one string of all its columns, in ID order.
+     */
+    private List<String> readItems() {
+        List<String> items = new ArrayList<>();
+        Cursor cursor = mResolver.query(InventoryEntry.CONTENT_URI, null, null, null,
+                InventoryEntry._ID);
+        try {
+            while (cursor.moveToNext()) {
+                StringBuilder item = new StringBuilder();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    item.append(cursor.getString(i)).append('|');
+                }
+                items.add(item.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+
+    private static long copy(File source, File destination) throws IOException {
+        FileChannel in = new FileInputStream(source).getChannel();
+        FileChannel out = new FileOutputStream(destination).getChannel();
+        try {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+            return size;
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteFullException;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation test syncing two devices through an in-process server. Each device is a
+ * provider on its own renamed database, synced by calling {@link InventorySync#syncNow()}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class InventorySyncTest {
+
+    private static final String PREFIX_A = "sync_a.";
+    private static final String PREFIX_B = "sync_b.";
+
+    private static final int ITEM_COUNT = 200;
+
+    private Context mTargetContext;
+    private FakeServer mServer;
+    private InventoryProvider mProviderA;
+    private InventoryProvider mProviderB;
+    private ContentResolver mResolverA;
+    private ContentResolver mResolverB;
+    private InventorySync mSyncA;
+    private InventorySync mSyncB;
+
+    @Before
+    public void setUp() {
+        mTargetContext = InstrumentationRegistry.getTargetContext();
+        mServer = new FakeServer();
+        mProviderA = new InventoryProvider();
+        mResolverA = attach(mProviderA, PREFIX_A);
+        mSyncA = new InventorySync(mResolverA, mServer);
+        mProviderB = new InventoryProvider();
+        mResolverB = attach(mProviderB, PREFIX_B);
+        mSyncB = new InventorySync(mResolverB, mServer);
+    }
+
+    @After
+    public void tearDown() {
+        mProviderA.shutdown();
+        mProviderB.shutdown();
+        mTargetContext.deleteDatabase(PREFIX_A + "inventory.db");
+        mTargetContext.deleteDatabase(PREFIX_B + "inventory.db");
+    }
+
+    private ContentResolver attach(InventoryProvider provider, String prefix) {
+        MockContentResolver resolver = new MockContentResolver();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = InventoryContract.CONTENT_AUTHORITY;
+        provider.attachInfo(new IsolatedContext(resolver,
+                new RenamingDelegatingContext(mTargetContext, prefix)), info);
+        resolver.addProvider(InventoryContract.CONTENT_AUTHORITY, provider);
+        return resolver;
+    }
+
+    @Test
+    public void insertedItemReachesOtherDevice() {
+        insert(mResolverA, "Hammer", 12, "HAM-1");
+
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        Cursor cursor = query(mResolverB, "HAM-1");
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("Hammer", cursor.getString(cursor.getColumnIndexOrThrow(
+                    InventoryEntry.COLUMN_ITEM_NAME)));
+            assertEquals(12, cursor.getInt(cursor.getColumnIndexOrThrow(
+                    InventoryEntry.COLUMN_ITEM_QUANTITY)));
+        } finally {
+            cursor.close();
+        }
+
+        // Nothing changed since, so the next syncs send nothing.
+        int pushed = mServer.mPushedChanges;
+        assertTrue(mSyncB.syncNow());
+        assertTrue(mSyncA.syncNow());
+        assertEquals(pushed, mServer.mPushedChanges);
+    }
+
+    @Test
+    public void onlyChangedItemsArePushed() {
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            insert(mResolverA, "Item " + i, 10, "SKU-" + i);
+        }
+        assertTrue(mSyncA.syncNow());
+        assertEquals(ITEM_COUNT, mServer.mPushedChanges);
+
+        // Sold twice, but only its latest state is sent.
+        InventoryEntry.adjustQuantityBySku(mResolverA, "SKU-7", -1);
+        InventoryEntry.adjustQuantityBySku(mResolverA, "SKU-7", -1);
+        assertTrue(mSyncA.syncNow());
+        assertEquals(ITEM_COUNT + 1, mServer.mPushedChanges);
+
+        assertTrue(mSyncB.syncNow());
+        assertEquals(8, quantity(mResolverB, "SKU-7"));
+        assertEquals(10, quantity(mResolverB, "SKU-8"));
+    }
+
+    @Test
+    public void deletedItemIsDeletedOnOtherDevice() {
+        insert(mResolverA, "Hammer", 12, "HAM-1");
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        assertEquals(1, mResolverA.delete(InventoryEntry.skuUri("HAM-1"), null, null));
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        Cursor cursor = query(mResolverB, "HAM-1");
+        try {
+            assertFalse(cursor.moveToFirst());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void salesOnBothDevicesAddUp() {
+        insert(mResolverA, "Hammer", 12, "HAM-1");
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        // Both devices sell offline. Keeping the later quantity would lose A's sales.
+        InventoryEntry.adjustQuantityBySku(mResolverA, "HAM-1", -2);
+        SystemClock.sleep(5);
+        InventoryEntry.adjustQuantityBySku(mResolverB, "HAM-1", -5);
+        InventoryEntry.adjustQuantityBySku(mResolverB, "HAM-1", 3);
+
+        assertTrue(mSyncB.syncNow());
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        assertEquals(8, quantity(mResolverA, "HAM-1"));
+        assertEquals(8, quantity(mResolverB, "HAM-1"));
+    }
+
+    @Test
+    public void latestEditWinsAndSalesStillAddUp() {
+        insert(mResolverA, "Hammer", 12, "HAM-1");
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        // A sells one, then B renames the item.
+        InventoryEntry.adjustQuantityBySku(mResolverA, "HAM-1", -1);
+        SystemClock.sleep(5);
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, "Claw hammer");
+        assertEquals(1, mResolverB.update(InventoryEntry.skuUri("HAM-1"), values, null, null));
+
+        assertTrue(mSyncB.syncNow());
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+
+        for (ContentResolver resolver : new ContentResolver[]{mResolverA, mResolverB}) {
+            Cursor cursor = query(resolver, "HAM-1");
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("Claw hammer", cursor.getString(cursor.getColumnIndexOrThrow(
+                        InventoryEntry.COLUMN_ITEM_NAME)));
+                assertEquals(11, cursor.getInt(cursor.getColumnIndexOrThrow(
+                        InventoryEntry.COLUMN_ITEM_QUANTITY)));
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    @Test
+    public void restoredSnapshotDoesNotCountStockTwice() throws IOException {
+        insert(mResolverA, "Hammer", 10, "HAM-1");
+        assertTrue(mSyncA.syncNow());
+        assertTrue(mSyncB.syncNow());
+        InventoryEntry.adjustQuantityBySku(mResolverB, "HAM-1", -3);
+        assertTrue(mSyncB.syncNow());
+
+        // B restores a backup of the stock it has, then syncs.
+        File snapshot = new File(mTargetContext.getCacheDir(), "sync_snapshot");
+        try {
+            ParcelFileDescriptor out = ParcelFileDescriptor.open(snapshot,
+                    ParcelFileDescriptor.MODE_WRITE_ONLY | ParcelFileDescriptor.MODE_CREATE
+                            | ParcelFileDescriptor.MODE_TRUNCATE);
+            try {
+                assertEquals(1, InventoryEntry.writeSnapshot(mResolverB, out, null));
+            } finally {
+                out.close();
+            }
+            ParcelFileDescriptor in = ParcelFileDescriptor.open(snapshot,
+                    ParcelFileDescriptor.MODE_READ_ONLY);
+            try {
+                assertEquals(1, InventoryEntry.restoreSnapshot(mResolverB, in));
+            } finally {
+                in.close();
+            }
+        } finally {
+            snapshot.delete();
+        }
+
+        assertTrue(mSyncB.syncNow());
+        assertTrue(mSyncA.syncNow());
+        assertEquals(7, quantity(mResolverA, "HAM-1"));
+        assertEquals(7, quantity(mResolverB, "HAM-1"));
+    }
+
+    @Test
+    public void failedSyncKeepsChangesAndBacksOff() {
+        insert(mResolverA, "Hammer", 12, "HAM-1");
+
+        mServer.mFailing = true;
+        assertFalse(mSyncA.syncNow());
+        assertEquals(0, mServer.mPushedChanges);
+
+        mServer.mFailing = false;
+        assertTrue(mSyncA.syncNow());
+        assertEquals(1, mServer.mPushedChanges);
+
+        assertEquals(InventorySync.INITIAL_BACKOFF_MILLIS, InventorySync.backoffMillis(1));
+        assertEquals(InventorySync.INITIAL_BACKOFF_MILLIS * 2, InventorySync.backoffMillis(2));
+        assertEquals(InventorySync.MAX_BACKOFF_MILLIS, InventorySync.backoffMillis(100));
+    }
+
+    @Test
+    public void providerFailureFailsTheSync() {
+        // The disk is full, so the provider can't read the outbox.
+        MockContentResolver resolver = new MockContentResolver();
+        resolver.addProvider(InventoryContract.CONTENT_AUTHORITY, new MockContentProvider() {
+            @Override
+            public Bundle call(String method, String arg, Bundle extras) {
+                throw new SQLiteFullException("database or disk is full");
+            }
+        });
+        InventorySync sync = new InventorySync(resolver, mServer);
+
+        assertFalse(sync.syncNow());
+        assertFalse(sync.syncNow());
+        assertEquals(0, mServer.mPushedChanges);
+    }
+
+    @Test
+    public void corruptPullFailsAndIsFetchedAgain() {
+        insert(mResolverA, "Hammer", 12, "HAM-1");
+        assertTrue(mSyncA.syncNow());
+
+        mServer.mCorrupt = true;
+        assertFalse(mSyncB.syncNow());
+        assertFalse(mSyncB.syncNow());
+
+        // The cursor stayed before the batch, so it arrives once the server sends it intact.
+        mServer.mCorrupt = false;
+        assertTrue(mSyncB.syncNow());
+        assertEquals(12, quantity(mResolverB, "HAM-1"));
+    }
+
+    private static void insert(ContentResolver resolver, String name, int quantity, String sku) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        values.put(InventoryEntry.COLUMN_ITEM_SKU, sku);
+        resolver.insert(InventoryEntry.CONTENT_URI, values);
+    }
+
+    private static Cursor query(ContentResolver resolver, String sku) {
+        return resolver.query(InventoryEntry.skuUri(sku), null, null, null, null);
+    }
+
+    private static int quantity(ContentResolver resolver, String sku) {
+        Cursor cursor = query(resolver, sku);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(cursor.getColumnIndexOrThrow(
+                    InventoryEntry.COLUMN_ITEM_QUANTITY));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * A sync server in memory. It keeps the newest change of each item with the quantity
+     * counters of all its changes merged, stamped with a counter that serves as the cursor.
+     */
+    private static class FakeServer implements SyncTransport {
+
+        private static final int PULL_LIMIT = 50;
+
+        // Latest change of each item, in the order they were stamped
+        private final Map<String, SyncChange> mChanges = new LinkedHashMap<>();
+        private final Map<String, Long> mStamps = new LinkedHashMap<>();
+        private long mLastStamp;
+
+        int mPushedChanges;
+        boolean mFailing;
+        // Whether pulls return a batch that can't be decoded
+        boolean mCorrupt;
+
+        @Override
+        public synchronized void push(byte[] batch) throws IOException {
+            if (mFailing) {
+                throw new IOException("Server unreachable");
+            }
+            for (SyncChange change : SyncBatch.decode(batch)) {
+                mPushedChanges++;
+                SyncChange current = mChanges.get(change.syncId);
+                SyncChange merged = merge(current, change);
+                if (merged == current) {
+                    continue;
+                }
+                mChanges.remove(change.syncId);
+                mStamps.remove(change.syncId);
+                mChanges.put(change.syncId, merged);
+                mStamps.put(change.syncId, ++mLastStamp);
+            }
+        }
+
+        /**
+         * Returns the newer of the two changes with both quantity counters merged, or current
+         * if the change adds nothing to it.
+         */
+        private static SyncChange merge(SyncChange current, SyncChange change) {
+            if (current == null) {
+                return change;
+            }
+            boolean newer = change.updatedAt > current.updatedAt;
+            if (current.deleted || change.deleted) {
+                return newer ? change : current;
+            }
+            PnCounter counter = new PnCounter();
+            counter.merge(current.counter);
+            boolean counted = counter.merge(change.counter);
+            if (!newer && !counted) {
+                return current;
+            }
+            SyncChange fields = newer ? change : current;
+            return new SyncChange(fields.syncId, fields.updatedAt, fields.name, fields.price,
+                    fields.supplier, fields.sku, counter);
+        }
+
+        @Override
+        public synchronized Pull pull(long cursor) throws IOException {
+            if (mFailing) {
+                throw new IOException("Server unreachable");
+            }
+            List<SyncChange> changes = new ArrayList<>();
+            long last = cursor;
+            boolean hasMore = false;
+            for (Map.Entry<String, Long> stamp : mStamps.entrySet()) {
+                if (stamp.getValue() <= cursor) {
+                    continue;
+                }
+                if (changes.size() == PULL_LIMIT) {
+                    hasMore = true;
+                    break;
+                }
+                changes.add(mChanges.get(stamp.getKey()));
+                last = stamp.getValue();
+            }
+            if (mCorrupt && !changes.isEmpty()) {
+                return new Pull(new byte[]{1, 2, 3}, last, hasMore);
+            }
+            return new Pull(changes.isEmpty() ? null : SyncBatch.encode(changes), last, hasMore);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumentation microbenchmark of the by-ID paths: each operation is run the way the provider
+ * used to run it, through the generic query, update and delete helpers with the ID as a string,
+ * and through {@link ItemStatements}. The time and allocations per operation of both are logged,
+ * and the statements must allocate less.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemStatementsBenchmarkTest {
+
+    private static final String LOG_TAG = ItemStatementsBenchmarkTest.class.getSimpleName();
+
+    private static final String DATABASE_NAME = "statements_benchmark.db";
+
+    // Operations timed per path. Each deletes that many items, so the table has twice as many.
+    private static final int OPERATIONS = 2000;
+
+    // Operations run before timing, so both paths are compiled and cached
+    private static final int WARM_UP = 200;
+
+    private static final String ID_SELECTION = InventoryEntry._ID + "=?";
+
+    private Context mContext;
+    private InventoryDbHelper mHelper;
+    private SQLiteDatabase mDatabase;
+    private ItemStatements mStatements;
+
+    /**
+     * One operation on the item with the given ID.
+     */
+    private interface Operation {
+        void run(long id);
+    }
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new InventoryDbHelper(mContext, DATABASE_NAME);
+        mDatabase = mHelper.getWritableDatabase();
+        mStatements = new ItemStatements(mDatabase);
+
+        mDatabase.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < 2 * (OPERATIONS + WARM_UP); i++) {
+                values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+                values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, 100);
+                values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+                long id = mDatabase.insert(InventoryEntry.TABLE_NAME, null, values);
+                StockLedger.record(mDatabase, id, 100, MovementEntry.REASON_RECEIVED,
+                        System.currentTimeMillis());
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mStatements.close();
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void statements_allocateLessPerOperation() {
+        compare("read row", new Operation() {
+            @Override
+            public void run(long id) {
+                Cursor cursor = mDatabase.query(InventoryEntry.TABLE_NAME, ItemCache.COLUMNS,
+                        ID_SELECTION, new String[]{String.valueOf(id)}, null, null, null);
+                try {
+                    assertTrue(cursor.moveToFirst());
+                    ItemCache.read(cursor);
+                } finally {
+                    cursor.close();
+                }
+            }
+        }, new Operation() {
+            @Override
+            public void run(long id) {
+                Cursor cursor = ItemStatements.readItem(mDatabase, id);
+                try {
+                    assertTrue(cursor.moveToFirst());
+                    ItemCache.read(cursor);
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+
+        compare("set quantity", new Operation() {
+            @Override
+            public void run(long id) {
+                String[] args = {String.valueOf(id)};
+                long quantity = id % 50;
+                long now = System.currentTimeMillis();
+                mDatabase.beginTransaction();
+                try {
+                    StockLedger.recordUpdate(mDatabase, ID_SELECTION, args, quantity,
+                            MovementEntry.REASON_CORRECTION, now);
+                    ContentValues values = new ContentValues();
+                    values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+                    values.put(InventoryEntry.COLUMN_ITEM_UPDATED_AT, now);
+                    mDatabase.update(InventoryEntry.TABLE_NAME, values, ID_SELECTION, args);
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        }, new Operation() {
+            @Override
+            public void run(long id) {
+                long quantity = id % 50;
+                long now = System.currentTimeMillis();
+                mDatabase.beginTransaction();
+                try {
+                    mStatements.recordMovement(id, quantity - mStatements.quantity(id),
+                            MovementEntry.REASON_CORRECTION, now);
+                    mStatements.setQuantity(id, quantity, now);
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        });
+
+        compare("adjust quantity", new Operation() {
+            @Override
+            public void run(long id) {
+                long now = System.currentTimeMillis();
+                mDatabase.beginTransaction();
+                try {
+                    mDatabase.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                            + InventoryEntry.COLUMN_ITEM_QUANTITY + " = "
+                            + InventoryEntry.COLUMN_ITEM_QUANTITY + " + ?, "
+                            + InventoryEntry.COLUMN_ITEM_UPDATED_AT + " = ? WHERE "
+                            + ID_SELECTION + " AND " + InventoryEntry.COLUMN_ITEM_QUANTITY
+                            + " + ? >= 0", new Object[]{-1, now, id, -1});
+                    StockLedger.record(mDatabase, id, -1, MovementEntry.REASON_SALE, now);
+                    DatabaseUtils.longForQuery(mDatabase, "SELECT "
+                                    + InventoryEntry.COLUMN_ITEM_QUANTITY + " FROM "
+                                    + InventoryEntry.TABLE_NAME + " WHERE " + ID_SELECTION,
+                            new String[]{String.valueOf(id)});
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        }, new Operation() {
+            @Override
+            public void run(long id) {
+                long now = System.currentTimeMillis();
+                mDatabase.beginTransaction();
+                try {
+                    assertTrue(mStatements.adjustQuantity(id, -1, now));
+                    mStatements.recordMovement(id, -1, MovementEntry.REASON_SALE, now);
+                    mStatements.quantity(id);
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        });
+
+        compare("delete", new Operation() {
+            @Override
+            public void run(long id) {
+                String[] args = {String.valueOf(id)};
+                mDatabase.beginTransaction();
+                try {
+                    StockLedger.recordDelete(mDatabase, ID_SELECTION, args,
+                            MovementEntry.REASON_REMOVED, System.currentTimeMillis());
+                    assertEquals(1, mDatabase.delete(InventoryEntry.TABLE_NAME, ID_SELECTION,
+                            args));
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        }, new Operation() {
+            @Override
+            public void run(long id) {
+                mDatabase.beginTransaction();
+                try {
+                    mStatements.recordMovement(id, -mStatements.quantity(id),
+                            MovementEntry.REASON_REMOVED, System.currentTimeMillis());
+                    assertEquals(1, mStatements.delete(id));
+                    mDatabase.setTransactionSuccessful();
+                } finally {
+                    mDatabase.endTransaction();
+                }
+            }
+        });
+
+        // Both paths kept the ledger in step with the items.
+        assertEquals(0, StockLedger.check(mDatabase));
+    }
+
+    /**
+     * Runs the generic operation on the first half of the items and the statement operation on
+     * the second half, logs both and checks that the statements allocate less.
+     */
+    private void compare(String name, Operation generic, Operation statements) {
+        long[] genericCost = measure(generic, 1);
+        long[] statementCost = measure(statements, OPERATIONS + WARM_UP + 1);
+        Log.i(LOG_TAG, name + ": generic " + genericCost[0] + " ns, " + genericCost[1]
+                + " objects, " + genericCost[2] + " bytes per operation; statements "
+                + statementCost[0] + " ns, " + statementCost[1] + " objects, "
+                + statementCost[2] + " bytes per operation");
+        assertTrue(name + " allocates " + statementCost[2] + " bytes, generic "
+                + genericCost[2], statementCost[2] < genericCost[2]);
+    }
+
+    /**
+     * Runs the operation on OPERATIONS items from the first ID after warming up, and returns the
+     * nanoseconds, objects and bytes allocated per operation.
+     */
+    @SuppressWarnings("deprecation")
+    private static long[] measure(Operation operation, long firstId) {
+        for (int i = 0; i < WARM_UP; i++) {
+            operation.run(firstId + i);
+        }
+        long start = firstId + WARM_UP;
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            operation.run(start + i);
+        }
+        long nanos = System.nanoTime() - startNanos;
+        Debug.stopAllocCounting();
+
+        return new long[]{nanos / OPERATIONS, Debug.getThreadAllocCount() / OPERATIONS,
+                Debug.getThreadAllocSize() / OPERATIONS};
+    }
+}
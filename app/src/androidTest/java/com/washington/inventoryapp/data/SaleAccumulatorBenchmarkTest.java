@@ -0,0 +1,189 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.ProviderTestCase2;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Instrumentation benchmark comparing sustained sales per second through {@link
+ * SaleAccumulator}, which commits bursts of sales together, with one provider call and
+ * transaction per sale as the Sale button used to make. Both must count every sale.
+ * <p>
+ * The rates are only logged, since one run on a device or emulator is too noisy to compare.
+ * What is checked is the number of provider calls, each of which is one transaction.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SaleAccumulatorBenchmarkTest extends ProviderTestCase2<InventoryProvider> {
+
+    private static final String LOG_TAG = SaleAccumulatorBenchmarkTest.class.getSimpleName();
+
+    // Items the sales are spread over
+    private static final int ITEMS = 20;
+
+    // Sales made by each path
+    private static final int SALES = 2000;
+
+    // The grouped path's settings, as in res/values/database.xml
+    private static final long GROUP_DELAY_MILLIS = 50;
+    private static final int GROUP_MAX_EVENTS = 64;
+
+    private ContentResolver mResolver;
+
+    private final long[] mIds = new long[ITEMS];
+
+    public SaleAccumulatorBenchmarkTest() {
+        super(InventoryProvider.class, InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        setContext(InstrumentationRegistry.getTargetContext());
+        super.setUp();
+        mResolver = getMockContentResolver();
+
+        // Enough stock that neither path runs out.
+        for (int i = 0; i < ITEMS; i++) {
+            ContentValues values = new ContentValues();
+            values.put(InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+            values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, SALES);
+            values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+            mIds[i] = ContentUris.parseId(mResolver.insert(InventoryEntry.CONTENT_URI, values));
+        }
+    }
+
+    @Test
+    public void groupCommit_salesPerSecond() throws InterruptedException {
+        AtomicInteger directCalls = new AtomicInteger();
+        final InventoryRepository direct =
+                new InventoryRepository(countingResolver(directCalls), 0, 1);
+        double directRate = salesPerSecond(new Seller() {
+            @Override
+            public void sell(long id, InventoryRepository.Callback<Integer> callback) {
+                direct.adjustQuantity(id, -1, callback);
+            }
+        }, direct);
+
+        AtomicInteger groupedCalls = new AtomicInteger();
+        final InventoryRepository grouped = new InventoryRepository(
+                countingResolver(groupedCalls), GROUP_DELAY_MILLIS, GROUP_MAX_EVENTS);
+        double groupedRate = salesPerSecond(new Seller() {
+            @Override
+            public void sell(long id, InventoryRepository.Callback<Integer> callback) {
+                grouped.sell(id, callback);
+            }
+        }, grouped);
+
+        Log.i(LOG_TAG, SALES + " sales over " + ITEMS + " items: one transaction per sale "
+                + Math.round(directRate) + " sales/s, grouped commits of up to "
+                + GROUP_MAX_EVENTS + " in " + GROUP_DELAY_MILLIS + " ms "
+                + Math.round(groupedRate) + " sales/s in " + groupedCalls.get()
+                + " transactions");
+
+        // Both paths counted every sale...
+        Cursor cursor = mResolver.query(InventoryEntry.CONTENT_URI,
+                new String[]{InventoryEntry.COLUMN_ITEM_QUANTITY}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                assertEquals(SALES - 2 * SALES / ITEMS, cursor.getInt(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        // ...one transaction per sale, or at most a full group per transaction.
+        assertEquals(SALES, directCalls.get());
+        assertTrue(groupedCalls.get() >= minGroups(SALES));
+        assertTrue(groupedCalls.get() <= SALES);
+    }
+
+    @Test
+    public void groupCommit_commitsFullGroupsInOneTransactionEach() throws InterruptedException {
+        // Too long a delay to commit anything, so only full groups and the flush do.
+        AtomicInteger calls = new AtomicInteger();
+        final InventoryRepository grouped = new InventoryRepository(countingResolver(calls),
+                TimeUnit.MINUTES.toMillis(10), GROUP_MAX_EVENTS);
+        salesPerSecond(new Seller() {
+            @Override
+            public void sell(long id, InventoryRepository.Callback<Integer> callback) {
+                grouped.sell(id, callback);
+            }
+        }, grouped);
+
+        assertEquals(minGroups(SALES), calls.get());
+    }
+
+    private interface Seller {
+        void sell(long id, InventoryRepository.Callback<Integer> callback);
+    }
+
+    /**
+     * Makes SALES sales spread over the items as fast as they are accepted, and returns how
+     * many were committed per second.
+     */
+    private double salesPerSecond(Seller seller, InventoryRepository repository)
+            throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(SALES);
+        final AtomicInteger refused = new AtomicInteger();
+        InventoryRepository.Callback<Integer> callback =
+                new InventoryRepository.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer quantity) {
+                        if (quantity < 0) {
+                            refused.incrementAndGet();
+                        }
+                        done.countDown();
+                    }
+                };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SALES; i++) {
+            seller.sell(mIds[i % ITEMS], callback);
+        }
+        repository.flushSales();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long nanos = System.nanoTime() - start;
+
+        assertEquals(0, refused.get());
+        return SALES * 1e9 / nanos;
+    }
+
+    // Returns the fewest transactions that can commit the sales in groups
+    private static int minGroups(int sales) {
+        return (sales + GROUP_MAX_EVENTS - 1) / GROUP_MAX_EVENTS;
+    }
+
+    /**
+     * Returns a resolver that passes provider calls on to the provider under test and counts
+     * them in the given counter.
+     */
+    private ContentResolver countingResolver(final AtomicInteger calls) {
+        final InventoryProvider provider = getProvider();
+        MockContentResolver resolver = new MockContentResolver();
+        resolver.addProvider(InventoryContract.CONTENT_AUTHORITY, new MockContentProvider() {
+            @Override
+            public Bundle call(String method, String arg, Bundle extras) {
+                calls.incrementAndGet();
+                return provider.call(method, arg, extras);
+            }
+        });
+        return resolver;
+    }
+}
@@ -0,0 +1,117 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation test that compacts a ledger written at known times and checks that point in
+ * time quantities after the cutoff are unchanged and that items still match their ledger.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StockLedgerTest {
+
+    private static final String DATABASE_NAME = "stock_ledger_test.db";
+
+    private Context mContext;
+    private InventoryDbHelper mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new InventoryDbHelper(mContext, DATABASE_NAME);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void compact_keepsRecentHistory() {
+        long cable = insert("Cable", 10, 100);
+        long adapter = insert("Adapter", 5, 100);
+        // One cable sold at each of the times 200 to 204
+        for (long time = 200; time < 205; time++) {
+            move(cable, -1, time);
+        }
+        move(adapter, 2, 150);
+
+        assertEquals(5, StockLedger.compact(mDb, 202));
+
+        // Everything before 202 was folded into the snapshots, leaving the last three sales.
+        assertEquals(3, DatabaseUtils.queryNumEntries(mDb, MovementEntry.TABLE_NAME));
+        assertEquals(2, DatabaseUtils.queryNumEntries(mDb, MovementEntry.SNAPSHOT_TABLE_NAME));
+        assertEquals(0, StockLedger.check(mDb));
+
+        assertEquals(7, StockLedger.quantityAt(mDb, cable, 202));
+        assertEquals(5, StockLedger.quantityAt(mDb, cable, 204));
+        assertEquals(7, StockLedger.quantityAt(mDb, adapter, 300));
+
+        // Compacting again adds to the snapshots.
+        assertEquals(3, StockLedger.compact(mDb, 1000));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDb, MovementEntry.TABLE_NAME));
+        assertEquals(0, StockLedger.check(mDb));
+        assertEquals(5, StockLedger.quantityAt(mDb, cable, 1000));
+    }
+
+    @Test
+    public void compact_dropsDeletedItems() {
+        long cable = insert("Cable", 3, 100);
+        move(cable, -3, 110);
+        mDb.delete(InventoryEntry.TABLE_NAME, null, null);
+
+        StockLedger.compact(mDb, 200);
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDb, MovementEntry.TABLE_NAME));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDb, MovementEntry.SNAPSHOT_TABLE_NAME));
+    }
+
+    @Test(expected = SQLiteConstraintException.class)
+    public void movements_cannotBeChanged() {
+        long cable = insert("Cable", 3, 100);
+        mDb.execSQL("UPDATE " + MovementEntry.TABLE_NAME + " SET " + MovementEntry.COLUMN_DELTA
+                + " = 30 WHERE " + MovementEntry.COLUMN_ITEM_ID + " = " + cable);
+    }
+
+    /**
+     * Inserts an item and its starting quantity, received at the given time.
+     */
+    private long insert(String name, int quantity, long time) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
+        long id = mDb.insert(InventoryEntry.TABLE_NAME, null, values);
+        StockLedger.record(mDb, id, quantity, MovementEntry.REASON_RECEIVED, time);
+        return id;
+    }
+
+    /**
+     * Changes an item's quantity by the delta and records it at the given time.
+     */
+    private void move(long id, int delta, long time) {
+        mDb.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + " = " + InventoryEntry.COLUMN_ITEM_QUANTITY
+                + " + ? WHERE " + InventoryEntry._ID + " = ?", new Object[]{delta, id});
+        StockLedger.record(mDb, id, delta, MovementEntry.REASON_CORRECTION, time);
+    }
+}
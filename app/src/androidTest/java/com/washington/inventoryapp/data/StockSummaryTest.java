@@ -0,0 +1,152 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.SummaryEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumentation test that changes items in every way the app can and checks that the totals
+ * kept by {@link StockSummary}'s triggers still match totals computed from the items.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StockSummaryTest {
+
+    private static final String DATABASE_NAME = "stock_summary_test.db";
+
+    private static final String[] SUPPLIERS = {null, "", "Acme", "Cableco", "Sonic"};
+
+    private Context mContext;
+    private InventoryDbHelper mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mHelper = new InventoryDbHelper(mContext, DATABASE_NAME);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void triggers_keepTotalsInStep() {
+        long headphones = insert("Headphones", 10, 2500, "Acme");
+        long cable = insert("Cable", 3, 499, "Acme");
+        insert("Adapter", 0, 150, null);
+        assertEquals(0, StockSummary.check(mDb, false));
+        assertEquals(3, stored(SummaryEntry.COLUMN_ITEM_COUNT));
+        assertEquals(13, stored(SummaryEntry.COLUMN_TOTAL_UNITS));
+        assertEquals(10 * 2500 + 3 * 499, stored(SummaryEntry.COLUMN_STOCK_VALUE));
+        assertEquals(2, stored(SummaryEntry.COLUMN_LOW_STOCK_COUNT));
+
+        // A sale that takes an item below the threshold
+        update(headphones, InventoryEntry.COLUMN_ITEM_QUANTITY, 4);
+        assertEquals(0, StockSummary.check(mDb, false));
+        assertEquals(3, stored(SummaryEntry.COLUMN_LOW_STOCK_COUNT));
+
+        // Moving the last item of a supplier removes its row.
+        update(cable, InventoryEntry.COLUMN_ITEM_SUPPLIER, "Cableco");
+        update(headphones, InventoryEntry.COLUMN_ITEM_SUPPLIER, "");
+        assertEquals(0, StockSummary.check(mDb, false));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDb, SummaryEntry.SUPPLIERS_TABLE_NAME,
+                SummaryEntry.COLUMN_SUPPLIER + " = 'Acme'"));
+
+        mDb.delete(InventoryEntry.TABLE_NAME, null, null);
+        assertEquals(0, StockSummary.check(mDb, false));
+        assertEquals(0, stored(SummaryEntry.COLUMN_ITEM_COUNT));
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDb, SummaryEntry.SUPPLIERS_TABLE_NAME));
+    }
+
+    @Test
+    public void triggers_matchRecomputedTotalsAfterRandomChanges() {
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            insert("Item " + i, random.nextInt(20), 1 + random.nextInt(10000),
+                    SUPPLIERS[random.nextInt(SUPPLIERS.length)]);
+        }
+        mDb.beginTransaction();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                long id = 1 + random.nextInt(200);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        update(id, InventoryEntry.COLUMN_ITEM_QUANTITY, random.nextInt(20));
+                        break;
+                    case 1:
+                        update(id, InventoryEntry.COLUMN_ITEM_PRICE, 1 + random.nextInt(10000));
+                        break;
+                    case 2:
+                        update(id, InventoryEntry.COLUMN_ITEM_SUPPLIER,
+                                SUPPLIERS[random.nextInt(SUPPLIERS.length)]);
+                        break;
+                    default:
+                        // Changes to other columns leave the totals alone.
+                        update(id, InventoryEntry.COLUMN_ITEM_NAME, "Renamed " + i);
+                        break;
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        mDb.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + " % 3 = 0", null);
+
+        assertEquals(0, StockSummary.check(mDb, false));
+    }
+
+    @Test
+    public void check_repairsDriftedTotals() {
+        insert("Headphones", 10, 2500, "Acme");
+        insert("Cable", 3, 499, "Cableco");
+
+        // Change the totals behind the triggers' backs.
+        mDb.execSQL("UPDATE " + SummaryEntry.TOTALS_TABLE_NAME + " SET "
+                + SummaryEntry.COLUMN_TOTAL_UNITS + " = 99");
+        mDb.execSQL("DELETE FROM " + SummaryEntry.SUPPLIERS_TABLE_NAME + " WHERE "
+                + SummaryEntry.COLUMN_SUPPLIER + " = 'Cableco'");
+
+        assertEquals(3, StockSummary.check(mDb, false));
+        assertEquals(3, StockSummary.check(mDb, true));
+        assertEquals(0, StockSummary.check(mDb, false));
+        assertEquals(13, stored(SummaryEntry.COLUMN_TOTAL_UNITS));
+    }
+
+    private long insert(String name, int quantity, long priceCents, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, priceCents);
+        values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, supplier);
+        return mDb.insert(InventoryEntry.TABLE_NAME, null, values);
+    }
+
+    private void update(long id, String column, Object value) {
+        mDb.execSQL("UPDATE " + InventoryEntry.TABLE_NAME + " SET " + column + " = ? WHERE "
+                + InventoryEntry._ID + " = ?", new Object[]{value, id});
+    }
+
+    private long stored(String column) {
+        return DatabaseUtils.longForQuery(mDb, "SELECT " + column + " FROM "
+                + SummaryEntry.TOTALS_TABLE_NAME, null);
+    }
+}
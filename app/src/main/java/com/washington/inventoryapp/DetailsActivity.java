@@ -29,6 +29,11 @@ import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.Toast;
 
+import com.washington.inventoryapp.core.Items;
+import com.washington.inventoryapp.core.SupplierOrder;
+import com.washington.inventoryapp.data.InventoryRepository;
+import com.washington.inventoryapp.data.Price;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -72,14 +77,14 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
     // The EditText field for the supplier
     private EditText mItemSupplier;
 
-    // The supplier's email
-    private String mSupplierEmail;
+    // The item's supplier, who orders are sent to
+    private String mOrderSupplier;
 
     // Which item the user wants to order
     private String mOrderWhichItem;
 
     // The quantity of the item the user wants to order (e.g. 10)
-    private int mOrderQuantity = 10;
+    private int mOrderQuantity = SupplierOrder.DEFAULT_QUANTITY;
 
     // Button that deletes the item
     private Button deleteItem;
@@ -281,8 +286,8 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
         if (requestCode == PHOTO_REQUEST && resultCode == RESULT_OK) {
             if (resultData != null) {
                 mCurrentImageUri = resultData.getData();
-                mItemImage.setImageURI(mCurrentImageUri);
-                mItemImage.invalidate();
+                ThumbnailLoader.get(this).load(mCurrentImageUri.toString(), mItemImage,
+                        R.mipmap.ic_launcher_round);
             }
         }
     }
@@ -292,7 +297,6 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
      */
     private void decrement() {
         String currentQuantity = mItemQuantity.getText().toString();
-        int lastQuantity;
         /*
         If the quantity input is empty or equal to 0, then don't decrease.
         The user will be unable to decrease to a negative quantity.
@@ -301,8 +305,8 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             return;
             // If not, subtract 1 from the previous quantity.
         } else {
-            lastQuantity = Integer.parseInt(currentQuantity);
-            mItemQuantity.setText(String.valueOf(lastQuantity - 1));
+            int lastQuantity = Integer.parseInt(currentQuantity);
+            mItemQuantity.setText(String.valueOf(Items.decrement(lastQuantity)));
         }
     }
 
@@ -311,7 +315,6 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
      */
     private void increment() {
         String currentQuantity = mItemQuantity.getText().toString();
-        int lastQuantity;
         /*
         If the quantity input is empty, then don't increase because there is
         no entered quantity to increase.
@@ -320,8 +323,8 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             return;
             // If not, add 1 to the previous quantity.
         } else {
-            lastQuantity = Integer.parseInt(currentQuantity);
-            mItemQuantity.setText(String.valueOf(lastQuantity + 1));
+            int lastQuantity = Integer.parseInt(currentQuantity);
+            mItemQuantity.setText(String.valueOf(Items.increment(lastQuantity)));
         }
     }
 
@@ -356,40 +359,46 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             return;
         }
 
+        // Sanity Check: check that the item's price is a valid amount, stored in cents.
+        long priceCents;
+        try {
+            priceCents = Price.parseCents(priceString);
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, "Please enter a valid price", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        /*
+        Sanity Check: the item must have a name and a quantity of 0 or more, the same rules
+        the stores follow.
+         */
+        try {
+            nameString = Items.checkName(nameString);
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, "Please enter a valid name", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        int quantity;
+        try {
+            quantity = Items.parseQuantity(quantityString);
+        } catch (IllegalArgumentException e) {
+            Toast.makeText(this, "Please enter a valid quantity", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
         /*
         Create a ContentValues object where column names are the keys,
         and item details from the editor are the values.
         */
         ContentValues values = new ContentValues();
         values.put(InventoryEntry.COLUMN_ITEM_NAME, nameString);
-        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantityString);
-        values.put(InventoryEntry.COLUMN_ITEM_PRICE, priceString);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, quantity);
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, priceCents);
         values.put(InventoryEntry.COLUMN_ITEM_IMAGE, imageString);
         values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, supplierString);
 
         // Determines if this is a new or existing item and if mCurrentItemUri is null.
         if (mCurrentItemUri == null) {
-            /*
-            Sanity Check: check that the item's name is not null. If it is, show a Toast
-            telling the user that they need to enter a name.
-             */
-            if (nameString.isEmpty() || nameString.equals("")) {
-                Toast.makeText(this, "Please enter a valid name", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            // Sanity Check: check that the item's current quantity is not null.
-            if (quantityString.isEmpty()) {
-                Toast.makeText(this, "Please enter a valid quantity", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            // Sanity Check: check that the item's price is valid and not null.
-            if (priceString.isEmpty()) {
-                Toast.makeText(this, "Please enter a valid price", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
             // Sanity Check: check that the user added a photo
             if (mCurrentImageUri == null) {
                 Toast.makeText(this, "Please add a photo", Toast.LENGTH_SHORT).show();
@@ -397,24 +406,30 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             }
 
            /*
-           If this is a new item, insert a new item into the provider, returning the
-           content URI for the new item.
+           If this is a new item, insert a new item into the provider. The content URI for
+           the new item is handed back on the main thread once it has been written.
             */
-            Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
-
-            // Show a toast based on the results of the insertion.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.details_insert_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // If not, then the insertion was successful
-                Toast.makeText(this, getString(R.string.details_insert_item_successful),
-                        Toast.LENGTH_SHORT).show();
-                // Launch the InventoryActivity class after a successful insertion
-                Intent successfulIntent = new Intent(this, InventoryActivity.class);
-                startActivity(successfulIntent);
-            }
+            InventoryRepository.get(this).insert(values, new InventoryRepository.Callback<Uri>() {
+                @Override
+                public void onResult(Uri newUri) {
+                    // Show a toast based on the results of the insertion.
+                    if (newUri == null) {
+                        // If the new content URI is null, then there was an error with insertion.
+                        Toast.makeText(DetailsActivity.this,
+                                getString(R.string.details_insert_item_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // If not, then the insertion was successful
+                        Toast.makeText(DetailsActivity.this,
+                                getString(R.string.details_insert_item_successful),
+                                Toast.LENGTH_SHORT).show();
+                        // Launch the InventoryActivity class after a successful insertion
+                        Intent successfulIntent = new Intent(DetailsActivity.this,
+                                InventoryActivity.class);
+                        startActivity(successfulIntent);
+                    }
+                }
+            });
         } else {
              /*
              Otherwise this is an existing item, so update the item with content URI
@@ -422,41 +437,35 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
            because mCurrentItemUri will already identify the row in the database that is
            being modified.
             */
-            int rowsAffected = getContentResolver().update(mCurrentItemUri, values, null, null);
-
-            if (nameString.isEmpty() || nameString.equals("")) {
-                Toast.makeText(this, "Please enter a valid name", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            if (quantityString.isEmpty()) {
-                Toast.makeText(this, "Please enter a valid quantity", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
-            if (priceString.isEmpty()) {
-                Toast.makeText(this, "Please enter a valid price", Toast.LENGTH_SHORT).show();
-                return;
-            }
-
             /*
             Image Sanity Check is unnecessary because the image is already saved to
             the database.
              */
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.details_update_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // If rows WERE affected, then the update was successful
-                Toast.makeText(this, getString(R.string.details_item_updated),
-                        Toast.LENGTH_SHORT).show();
-                // Launch the InventoryActivity class after a successful update
-                Intent successfulIntent = new Intent(this, InventoryActivity.class);
-                startActivity(successfulIntent);
-            }
+            InventoryRepository.get(this).update(mCurrentItemUri, values,
+                    new InventoryRepository.Callback<Integer>() {
+                        @Override
+                        public void onResult(Integer rowsAffected) {
+                            /*
+                            Show a toast message depending on whether or not the update was
+                            successful.
+                             */
+                            if (rowsAffected == 0) {
+                                // If no rows were affected, then the update failed.
+                                Toast.makeText(DetailsActivity.this,
+                                        getString(R.string.details_update_item_failed),
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                // If rows WERE affected, then the update was successful
+                                Toast.makeText(DetailsActivity.this,
+                                        getString(R.string.details_item_updated),
+                                        Toast.LENGTH_SHORT).show();
+                                // Launch the InventoryActivity class after a successful update
+                                Intent successfulIntent = new Intent(DetailsActivity.this,
+                                        InventoryActivity.class);
+                                startActivity(successfulIntent);
+                            }
+                        }
+                    });
         }
     }
 
@@ -489,17 +498,17 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
 
     // Method for the user to order an item from their supplier
     private void itemOrder() {
-        String[] supplier = {mSupplierEmail};
+        SupplierOrder order = new SupplierOrder(mOrderWhichItem, mOrderSupplier, mOrderQuantity);
+        String[] supplier = {order.email};
         Intent supplierIntent = new Intent(Intent.ACTION_SEND);
         supplierIntent.setData(Uri.parse("mailto: "));
         supplierIntent.setType("text/plain");
         // The email for the supplier
         supplierIntent.putExtra(Intent.EXTRA_EMAIL, supplier);
         // Sets "Order Shipment" as the subject in the email
-        supplierIntent.putExtra(Intent.EXTRA_SUBJECT, "Order Shipment: " + mOrderWhichItem);
+        supplierIntent.putExtra(Intent.EXTRA_SUBJECT, order.subject);
         // Preset text for the email order
-        supplierIntent.putExtra(Intent.EXTRA_TEXT, "Item: " + mOrderWhichItem
-                + " \nQuantity: " + mOrderQuantity);
+        supplierIntent.putExtra(Intent.EXTRA_TEXT, order.text);
         try {
             startActivity(Intent.createChooser(supplierIntent, "Send "));
         } catch (android.content.ActivityNotFoundException exception) {
@@ -600,21 +609,27 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             Pass in null for the selection and selection args because the mCurrentItemUri
             content URI already identifies the item that is wanted.
              */
-            int rowsDeleted = getContentResolver().delete(mCurrentItemUri, null, null);
-
-            // Show a toast message depending on the results of the deletion.
-            if (rowsDeleted == 0) {
-                // If now rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, getString(R.string.details_delete_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful.
-                Toast.makeText(this, getString(R.string.details_delete_item_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            InventoryRepository.get(this).delete(mCurrentItemUri,
+                    new InventoryRepository.Callback<Integer>() {
+                        @Override
+                        public void onResult(Integer rowsDeleted) {
+                            // Show a toast message depending on the results of the deletion.
+                            if (rowsDeleted == 0) {
+                                // If no rows were deleted, then the delete failed.
+                                Toast.makeText(getApplicationContext(),
+                                        getString(R.string.details_delete_item_failed),
+                                        Toast.LENGTH_SHORT).show();
+                            } else {
+                                // Otherwise, the delete was successful.
+                                Toast.makeText(getApplicationContext(),
+                                        getString(R.string.details_delete_item_successful),
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        }
+                    });
         }
 
-        // Close the activity
+        // Close the activity. The delete finishes in the background.
         finish();
     }
 
@@ -664,7 +679,7 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             // Extract out the value from the Cursor for the given column
             String itemName = cursor.getString(nameColumnIndex);
             int itemQuantity = cursor.getInt(quantityColumnIndex);
-            int itemPrice = cursor.getInt(priceColumnIndex);
+            long itemPrice = cursor.getLong(priceColumnIndex);
             String itemImage = cursor.getString(imageColumnIndex);
             String itemSupplier = cursor.getString(supplierColumnIndex);
             /*
@@ -672,18 +687,17 @@ public class DetailsActivity extends AppCompatActivity implements LoaderManager.
             to order more of.
              */
             mOrderWhichItem = itemName;
-            /*
-            The supplier's email
-             */
-            mSupplierEmail = "udasupply@nano" + itemSupplier + ".net";
+            // The supplier the order is emailed to
+            mOrderSupplier = itemSupplier;
 
             mItemName.setText(itemName);
             mItemQuantity.setText(String.valueOf(itemQuantity));
-            mItemPrice.setText(String.valueOf(itemPrice));
+            mItemPrice.setText(Price.format(itemPrice));
             if (itemImage != null) {
                 mCurrentImageUri = Uri.parse(itemImage);
-                mItemImage.setImageURI(mCurrentImageUri);
+                ThumbnailLoader.get(this).load(itemImage, mItemImage, R.mipmap.ic_launcher_round);
             } else {
+                ThumbnailLoader.get(this).cancel(mItemImage);
                 mItemImage.setImageResource(R.mipmap.ic_launcher_round);
             }
             mItemSupplier.setText(itemSupplier);
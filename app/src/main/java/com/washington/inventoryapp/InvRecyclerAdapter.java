@@ -0,0 +1,264 @@
+package com.washington.inventoryapp;
+
+import android.content.Context;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.washington.inventoryapp.data.InventoryItem;
+import com.washington.inventoryapp.data.InventoryPager;
+import com.washington.inventoryapp.data.InventoryRepository;
+import com.washington.inventoryapp.data.Price;
+
+/**
+ * Created by Brent on 8/21/2017.
+ */
+
+public class InvRecyclerAdapter extends RecyclerView.Adapter<InvRecyclerAdapter.ItemViewHolder>
+        implements InventoryPager.Listener {
+
+    /**
+     * Told when the user clicks on a row.
+     */
+    public interface OnItemClickListener {
+        void onItemClick(InventoryItem item);
+    }
+
+    /**
+     * Told when the list becomes empty or stops being empty.
+     */
+    public interface OnEmptyChangedListener {
+        void onEmptyChanged(boolean empty);
+    }
+
+    private final Context mContext;
+
+    private final OnItemClickListener mItemClickListener;
+
+    private OnEmptyChangedListener mEmptyChangedListener;
+
+    // The pager that loads the rows, or null before one is set
+    private InventoryPager mPager;
+
+    /**
+     * One click listener for every row and Sale button. The ViewHolder is stored as the view's
+     * tag so the listener can find which item was clicked.
+     */
+    private final View.OnClickListener mClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            ItemViewHolder holder = (ItemViewHolder) v.getTag();
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            InventoryItem item = mPager.getItem(position);
+            // The row is still loading, so there is no item to act on yet.
+            if (item == null) {
+                return;
+            }
+            if (v == holder.saleButton) {
+                sell(item);
+            } else {
+                mItemClickListener.onItemClick(item);
+            }
+        }
+    };
+
+    /**
+     * Constructs a new {@link InvRecyclerAdapter}.
+     *
+     * @param context           The context
+     * @param itemClickListener told when the user clicks on a row
+     */
+    public InvRecyclerAdapter(Context context, OnItemClickListener itemClickListener) {
+        mContext = context;
+        mItemClickListener = itemClickListener;
+    }
+
+    public void setOnEmptyChangedListener(OnEmptyChangedListener listener) {
+        mEmptyChangedListener = listener;
+    }
+
+    /**
+     * Shows the rows of a different pager, closing the old one.
+     *
+     * @param pager the new pager, or null to show nothing
+     */
+    public void swapPager(InventoryPager pager) {
+        if (mPager != null) {
+            mPager.close();
+        }
+        mPager = pager;
+        onPagesChanged();
+    }
+
+    /**
+     * Tells the pager which rows are on screen so it can load and drop pages around them.
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        if (mPager != null) {
+            mPager.setVisibleRange(firstPosition, lastPosition);
+        }
+    }
+
+    /**
+     * The list is only empty once the pager knows there are no rows, so the empty view isn't
+     * shown while the first page is loading.
+     */
+    public boolean isEmpty() {
+        return mPager == null || (mPager.isComplete() && mPager.getCount() == 0);
+    }
+
+    @Override
+    public void onPagesChanged() {
+        notifyDataSetChanged();
+        if (mEmptyChangedListener != null) {
+            mEmptyChangedListener.onEmptyChanged(isEmpty());
+        }
+    }
+
+    @Override
+    public void onPageChanged(final int firstPosition, int rowCount, DiffUtil.DiffResult diff) {
+        if (diff == null) {
+            // The page's rows replace blank placeholder rows.
+            notifyItemRangeChanged(firstPosition, rowCount);
+            return;
+        }
+        // Only rebind the rows that actually changed, e.g. the one item that was sold.
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(firstPosition + position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(firstPosition + position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(firstPosition + fromPosition, firstPosition + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(firstPosition + position, count, payload);
+            }
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return mPager == null ? 0 : mPager.getCount();
+    }
+
+    /**
+     * Makes a new blank list item view. No data is set (or bound) to the views yet.
+     */
+    @Override
+    public ItemViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // Inflate a list item view using the layout specified in list_item.xml
+        View view = LayoutInflater.from(mContext).inflate(R.layout.list_item, parent, false);
+        ItemViewHolder holder = new ItemViewHolder(view);
+        view.setTag(holder);
+        view.setOnClickListener(mClickListener);
+        holder.saleButton.setTag(holder);
+        holder.saleButton.setOnClickListener(mClickListener);
+        return holder;
+    }
+
+    /**
+     * This method binds the item data to the given list item layout. Example: The item name binds
+     * to the name TextView. A row whose page is still loading is shown blank.
+     */
+    @Override
+    public void onBindViewHolder(ItemViewHolder holder, int position) {
+        InventoryItem item = mPager.getItem(position);
+
+        if (item == null) {
+            holder.name.setText("");
+            holder.quantity.setText("");
+            holder.price.setText("");
+            ThumbnailLoader.get(mContext).cancel(holder.image);
+            holder.image.setVisibility(View.INVISIBLE);
+            holder.saleButton.setVisibility(View.INVISIBLE);
+            return;
+        }
+        holder.saleButton.setVisibility(View.VISIBLE);
+
+        /*
+        Sets the image for the item. It is decoded off the main thread at the size of the view.
+        Rows without an image hide the view, and any image still loading for the recycled row
+        is cancelled.
+         */
+        if (item.image != null) {
+            holder.image.setVisibility(View.VISIBLE);
+            ThumbnailLoader.get(mContext).load(item.image, holder.image, R.mipmap.ic_launcher);
+        } else {
+            ThumbnailLoader.get(mContext).cancel(holder.image);
+            holder.image.setVisibility(View.GONE);
+        }
+
+        holder.name.setText(item.name);
+        // Display the quantity and the price.
+        holder.quantity.setText(String.valueOf(item.quantity));
+        holder.price.setText(Price.format(item.price));
+    }
+
+    /**
+     * The sale method. Decreases the quantity by 1 when the user clicks the sale button.
+     */
+    private void sell(final InventoryItem item) {
+        /*
+        Decrease the quantity by 1 inside the database. Sales made in quick succession are
+        committed together. The provider refuses the sale if the item's quantity is already 0,
+        and notifies the list of the change.
+         */
+        InventoryRepository.get(mContext).sell(item.id,
+                new InventoryRepository.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer newQuantity) {
+                        if (newQuantity >= 0) {
+                            // Toast telling the user the amount they sold
+                            String itemSaleToast = "Sold:(1) " + item.name;
+                            Toast.makeText(mContext, itemSaleToast, Toast.LENGTH_SHORT).show();
+                        } else {
+                            // If the item's quantity is 0, prompt the user to order more.
+                            String itemOutOfStockToast = item.name
+                                    + " is out of stock. Please order more.";
+                            Toast.makeText(mContext, itemOutOfStockToast, Toast.LENGTH_LONG)
+                                    .show();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Holds the views of one row so they are only looked up once.
+     */
+    public static class ItemViewHolder extends RecyclerView.ViewHolder {
+        final TextView name;
+        final TextView quantity;
+        final TextView price;
+        final Button saleButton;
+        final ImageView image;
+
+        ItemViewHolder(View view) {
+            super(view);
+            name = (TextView) view.findViewById(R.id.name);
+            quantity = (TextView) view.findViewById(R.id.quantity);
+            price = (TextView) view.findViewById(R.id.price);
+            saleButton = (Button) view.findViewById(R.id.sale_button);
+            image = (ImageView) view.findViewById(R.id.item_image);
+        }
+    }
+}
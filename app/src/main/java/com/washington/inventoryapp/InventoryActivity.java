@@ -1,30 +1,86 @@
 package com.washington.inventoryapp;
 
+import android.app.ProgressDialog;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
+import android.support.v4.content.Loader;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
 import android.widget.ImageButton;
-import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.SummaryEntry;
+import com.washington.inventoryapp.data.InventoryExporter;
+import com.washington.inventoryapp.data.InventoryImporter;
+import com.washington.inventoryapp.data.InventoryItem;
+import com.washington.inventoryapp.data.InventoryPager;
+import com.washington.inventoryapp.data.InventoryRepository;
+import com.washington.inventoryapp.data.Price;
 
 public class InventoryActivity extends AppCompatActivity
         implements LoaderManager.LoaderCallbacks<Cursor> {
 
-    private static final int INVENTORY_LOADER = 0;
+    // Loader for the stock totals in the header
+    private static final int SUMMARY_LOADER = 0;
 
-    private InvCursorAdapter mCursorAdapter;
+    // A burst of changes, like a run of sales, reloads the totals at most this often
+    private static final long SUMMARY_THROTTLE_MILLIS = 500;
+
+    // Columns of the totals in the header
+    private static final String[] SUMMARY_PROJECTION = {
+            SummaryEntry.COLUMN_ITEM_COUNT,
+            SummaryEntry.COLUMN_TOTAL_UNITS,
+            SummaryEntry.COLUMN_STOCK_VALUE,
+            SummaryEntry.COLUMN_LOW_STOCK_COUNT};
+
+    // The request code for picking a file to import
+    public static final int IMPORT_REQUEST = 30;
+
+    // The request codes for creating the file to export to, one per format
+    public static final int EXPORT_CSV_REQUEST = 31;
+    public static final int EXPORT_JSON_REQUEST = 32;
+
+    // Number of reject messages shown after an import
+    private static final int MAX_REJECTS_SHOWN = 10;
+
+    // How long to wait after the last keystroke before searching
+    private static final long SEARCH_DELAY_MILLIS = 300;
+
+    private InvRecyclerAdapter mPagedAdapter;
+
+    // Shows the stock totals above the list
+    private TextView mSummaryView;
+
+    // The text being searched for, or null to show every item
+    private String mSearchQuery;
+
+    private final Handler mSearchHandler = new Handler();
+
+    // Starts paging through the search results once typing has paused
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startPager();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -45,24 +101,21 @@ public class InventoryActivity extends AppCompatActivity
             }
         });
 
-        // Finds the ListView that contains the item data.
-        ListView inventoryListView = (ListView) findViewById(R.id.list);
+        // Finds the RecyclerView that contains the item data.
+        RecyclerView inventoryListView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        inventoryListView.setLayoutManager(layoutManager);
 
-        // Sets the empty view on the ListView, but only if the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        inventoryListView.setEmptyView(emptyView);
+        // Shows the empty view instead of the list, but only if the list has 0 items.
+        final View emptyView = findViewById(R.id.empty_view);
 
         /*
-        Sets up an adapter for the ListView of items. Since there are no entries yet,
-        remain as null to the Cursor until the Loader finishes.
+        Sets up an adapter for the list of items. The rows are loaded a page at a time
+        by an InventoryPager as the list scrolls. Clicking a row opens it in the DetailsActivity.
          */
-        mCursorAdapter = new InvCursorAdapter(this, null);
-        inventoryListView.setAdapter(mCursorAdapter);
-
-        // Sets up an item Click Listener
-        inventoryListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        mPagedAdapter = new InvRecyclerAdapter(this, new InvRecyclerAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+            public void onItemClick(InventoryItem item) {
                 Intent intent = new Intent(InventoryActivity.this, DetailsActivity.class);
 
                /*
@@ -70,7 +123,8 @@ public class InventoryActivity extends AppCompatActivity
                Example: "content://com.example.android.inventory/inventory/2" would be the URI
                for the item with an ID of 2 being clicked on.
                 */
-                Uri currentItemUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI, id);
+                Uri currentItemUri = ContentUris.withAppendedId(InventoryEntry.CONTENT_URI,
+                        item.id);
 
                 // Set the URI on the data field of the intent.
                 intent.setData(currentItemUri);
@@ -79,9 +133,96 @@ public class InventoryActivity extends AppCompatActivity
                 startActivity(intent);
             }
         });
+        mPagedAdapter.setOnEmptyChangedListener(new InvRecyclerAdapter.OnEmptyChangedListener() {
+            @Override
+            public void onEmptyChanged(boolean empty) {
+                emptyView.setVisibility(empty ? View.VISIBLE : View.GONE);
+            }
+        });
+        inventoryListView.setAdapter(mPagedAdapter);
+
+        // Lets the pager load the pages around the visible rows and drop the rest.
+        inventoryListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                mPagedAdapter.setVisibleRange(layoutManager.findFirstVisibleItemPosition(),
+                        layoutManager.findLastVisibleItemPosition());
+            }
+        });
+
+        // Starts loading the first page
+        startPager();
+
+        // Loads the stock totals, which reload by themselves whenever an item changes.
+        mSummaryView = (TextView) findViewById(R.id.summary);
+        getSupportLoaderManager().initLoader(SUMMARY_LOADER, null, this);
+    }
+
+    @Override
+    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        CursorLoader loader = new CursorLoader(this,
+                SummaryEntry.CONTENT_URI,
+                SUMMARY_PROJECTION,
+                null,
+                null,
+                null);
+        loader.setUpdateThrottle(SUMMARY_THROTTLE_MILLIS);
+        return loader;
+    }
+
+    @Override
+    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        if (data == null || !data.moveToFirst()) {
+            return;
+        }
+        // The columns are in the order of SUMMARY_PROJECTION.
+        mSummaryView.setText(getString(R.string.summary_header,
+                data.getInt(0),
+                data.getLong(1),
+                Price.format(data.getLong(2)),
+                data.getInt(3)));
+    }
 
-        // Starts the loader
-        getSupportLoaderManager().initLoader(INVENTORY_LOADER, null, this);
+    @Override
+    public void onLoaderReset(Loader<Cursor> loader) {
+        mSummaryView.setText("");
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Sales still waiting to be committed would be lost if the app is killed in the background.
+        InventoryRepository.get(this).flushSales();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mPagedAdapter.swapPager(null);
+    }
+
+    /**
+     * Starts paging through every item, or through the search results if there is a search.
+     */
+    private void startPager() {
+        Uri uri = mSearchQuery == null ? InventoryEntry.CONTENT_URI
+                : InventoryEntry.searchUri(mSearchQuery);
+        // The adapter listens to the pager so it can rebind only the rows that changed.
+        mPagedAdapter.swapPager(new InventoryPager(getContentResolver(), uri, mPagedAdapter));
+    }
+
+    /**
+     * Searches for the given text once the user stops typing. Empty text shows every item again.
+     */
+    private void search(String text) {
+        String query = text == null || text.trim().isEmpty() ? null : text.trim();
+        if (TextUtils.equals(query, mSearchQuery)) {
+            return;
+        }
+        mSearchQuery = query;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DELAY_MILLIS);
     }
 
     /**
@@ -96,22 +237,149 @@ public class InventoryActivity extends AppCompatActivity
         ContentValues values = new ContentValues();
         values.put(InventoryEntry.COLUMN_ITEM_NAME, "Headphones");
         values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, "45");
-        values.put(InventoryEntry.COLUMN_ITEM_PRICE, "5");
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, 500);
 
         /*
-        Insert a new row for the item into the provider using the ContentResolver.
+        Insert a new row for the item into the provider using the InventoryRepository.
         The content Uri will indicate that a new row should be inserted into the table.
-        A new content Uri will be given to access this item's data later.
+        A new content Uri will be given to access this item's data later. The insert runs
+        in the background, and the list is notified once it is done.
         */
-        Uri newUri = getContentResolver().insert(InventoryEntry.CONTENT_URI, values);
+        InventoryRepository.get(this).insert(values, null);
+    }
+
+    /**
+     * Lets the user pick a CSV or TSV file to import.
+     */
+    private void pickImportFile() {
+        Intent importIntent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        importIntent.addCategory(Intent.CATEGORY_OPENABLE);
+        importIntent.setType("text/*");
+        startActivityForResult(importIntent, IMPORT_REQUEST);
+    }
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent resultData) {
+        super.onActivityResult(requestCode, resultCode, resultData);
+        if (resultCode != RESULT_OK || resultData == null) {
+            return;
+        }
+        switch (requestCode) {
+            case IMPORT_REQUEST:
+                importItems(resultData.getData());
+                break;
+            case EXPORT_CSV_REQUEST:
+                exportItems(resultData.getData(), InventoryExporter.Format.CSV);
+                break;
+            case EXPORT_JSON_REQUEST:
+                exportItems(resultData.getData(), InventoryExporter.Format.JSON);
+                break;
+        }
+    }
+
+    /**
+     * Asks the user which format to export, then lets them choose where to save the file.
+     */
+    private void pickExportFile() {
+        final InventoryExporter.Format[] formats = InventoryExporter.Format.values();
+        String[] formatNames = new String[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            formatNames[i] = formats[i].name();
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_format_title)
+                .setItems(formatNames, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        InventoryExporter.Format format = formats[which];
+                        Intent exportIntent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                        exportIntent.addCategory(Intent.CATEGORY_OPENABLE);
+                        exportIntent.setType(format.mimeType);
+                        exportIntent.putExtra(Intent.EXTRA_TITLE,
+                                getString(R.string.export_file_name) + "." + format.extension);
+                        startActivityForResult(exportIntent,
+                                format == InventoryExporter.Format.CSV
+                                        ? EXPORT_CSV_REQUEST : EXPORT_JSON_REQUEST);
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Exports every item to the given file on a background thread.
+     */
+    private void exportItems(Uri destination, InventoryExporter.Format format) {
+        new InventoryExporter(getContentResolver()).exportAsync(destination, format,
+                new InventoryExporter.Listener() {
+                    @Override
+                    public void onFinished(int rowsExported, Exception error) {
+                        String message = error == null
+                                ? getString(R.string.export_finished, rowsExported)
+                                : getString(R.string.export_failed, error.getMessage());
+                        Toast.makeText(InventoryActivity.this, message, Toast.LENGTH_LONG).show();
+                    }
+                });
+    }
+
+    /**
+     * Imports the items in the given file on a background thread, showing the progress in a
+     * dialog and a summary of the rejected rows when it finishes.
+     */
+    private void importItems(Uri source) {
+        final ProgressDialog progressDialog = new ProgressDialog(this);
+        progressDialog.setIndeterminate(true);
+        progressDialog.setCancelable(false);
+        progressDialog.setMessage(getString(R.string.import_progress, 0, 0));
+        progressDialog.show();
+
+        new InventoryImporter(getContentResolver()).importAsync(source,
+                new InventoryImporter.Listener() {
+                    @Override
+                    public void onProgress(int rowsRead, int rowsImported, int rowsRejected) {
+                        progressDialog.setMessage(
+                                getString(R.string.import_progress, rowsImported, rowsRead));
+                    }
+
+                    @Override
+                    public void onFinished(InventoryImporter.Result result) {
+                        progressDialog.dismiss();
+                        if (isFinishing()) {
+                            return;
+                        }
+
+                        StringBuilder message = new StringBuilder(getString(
+                                R.string.import_finished, result.imported, result.rejected));
+                        if (result.error != null) {
+                            message.append("\n\n").append(getString(R.string.import_failed,
+                                    result.error.getMessage()));
+                        }
+                        // Show the first few rejected rows so the user can fix the file.
+                        int shown = Math.min(result.rejectMessages.size(), MAX_REJECTS_SHOWN);
+                        if (shown > 0) {
+                            message.append("\n\n").append(TextUtils.join("\n",
+                                    result.rejectMessages.subList(0, shown)));
+                        }
+
+                        new AlertDialog.Builder(InventoryActivity.this)
+                                .setMessage(message)
+                                .setPositiveButton(android.R.string.ok, null)
+                                .show();
+                    }
+                });
     }
 
     /**
      * Helper method to delete all items in the database.
      */
     private void deleteAllItems() {
-        int rowsDeleted = getContentResolver().delete(InventoryEntry.CONTENT_URI, null, null);
-        Log.v("InventoryActivity", rowsDeleted + " rows deleted from database");
+        InventoryRepository.get(this).delete(InventoryEntry.CONTENT_URI,
+                new InventoryRepository.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer rowsDeleted) {
+                        Log.v("InventoryActivity", rowsDeleted + " rows deleted from database");
+                    }
+                });
     }
 
     @Override
@@ -121,6 +389,23 @@ public class InventoryActivity extends AppCompatActivity
         This adds menu items to the app bar.
         */
         getMenuInflater().inflate(R.menu.inventory_menu, menu);
+
+        // Search as the user types in the app bar's search field.
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText);
+                return true;
+            }
+        });
         return true;
     }
 
@@ -132,6 +417,14 @@ public class InventoryActivity extends AppCompatActivity
             case R.id.generate_item:
                 insertItem();
                 return true;
+            // Responds to the "Import Items" menu option being clicked on
+            case R.id.action_import:
+                pickImportFile();
+                return true;
+            // Responds to the "Export Items" menu option being clicked on
+            case R.id.action_export:
+                pickExportFile();
+                return true;
             // Responds to the "Delete all Items" menu option being clicked on.
             case R.id.action_delete_all_entries:
                 deleteAllItems();
@@ -139,36 +432,4 @@ public class InventoryActivity extends AppCompatActivity
         }
         return super.onOptionsItemSelected(item);
     }
-
-    @Override
-    public android.support.v4.content.Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        // Define a column which specifies the column's row that we care about
-        String[] projection = {
-                InventoryEntry._ID,
-                InventoryEntry.COLUMN_ITEM_NAME,
-                InventoryEntry.COLUMN_ITEM_QUANTITY,
-                InventoryEntry.COLUMN_ITEM_PRICE,
-                InventoryEntry.COLUMN_ITEM_IMAGE,
-                InventoryEntry.COLUMN_ITEM_SUPPLIER};
-
-        // This loader will execute the ContentProvider's query method on a background thread.
-        return new CursorLoader(this,             // Parent activity context
-                InventoryEntry.CONTENT_URI,       // Provider content with URI  to query
-                projection,                       // Columns to include in the resulting Cursor
-                null,                             // No selection clause
-                null,                             // No selection arguments
-                null);                            // Default sort order
-    }
-
-    @Override
-    public void onLoadFinished(android.support.v4.content.Loader<Cursor> loader, Cursor data) {
-        // Swaps in the new cursor with the updated item data.
-        mCursorAdapter.swapCursor(data);
-    }
-
-    @Override
-    public void onLoaderReset(android.support.v4.content.Loader<Cursor> loader) {
-        // Called when the last cursor from onLoadFinished() needs to be deleted.
-        mCursorAdapter.swapCursor(null);
-    }
 }
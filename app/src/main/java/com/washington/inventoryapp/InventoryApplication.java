@@ -0,0 +1,26 @@
+package com.washington.inventoryapp;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+/**
+ * The app's {@link Application}. In debug builds it makes disk reads and writes on the main
+ * thread crash the app, so one that slips in is noticed during development instead of showing
+ * up as jank on slow devices. Database and file work belongs in
+ * {@link com.washington.inventoryapp.data.InventoryRepository} or another background thread.
+ */
+public class InventoryApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+        }
+    }
+}
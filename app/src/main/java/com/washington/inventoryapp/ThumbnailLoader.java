@@ -0,0 +1,324 @@
+package com.washington.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads item images into ImageViews as thumbnails.
+ * <p>
+ * Images are decoded on background threads, downsampled with inSampleSize to about the size of
+ * the view. Thumbnails are kept in a memory cache bounded by bytes and written to a disk cache,
+ * so an image is only decoded at full size once. Loading a new image into a view cancels the
+ * request that view had before, so recycled list rows never show the wrong image.
+ */
+public class ThumbnailLoader {
+
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    // Name of the thumbnail directory inside the app's cache directory
+    private static final String DISK_CACHE_DIR = "thumbnails";
+
+    // The disk cache is trimmed back to this size, oldest thumbnails first
+    private static final long DISK_CACHE_MAX_BYTES = 20 * 1024 * 1024;
+
+    // Size used when the view doesn't have a fixed size
+    private static final int DEFAULT_TARGET_SIZE_PX = 256;
+
+    private static final int THUMBNAIL_QUALITY = 85;
+
+    private static ThumbnailLoader sInstance;
+
+    private final ContentResolver mResolver;
+
+    private final Context mContext;
+
+    // Looked up on a background thread the first time it is needed, as that touches the disk
+    private File mDiskCacheDir;
+
+    // Bitmaps by cache key, bounded by their size in bytes
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(2);
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Returns the loader shared by the whole app.
+     */
+    public static synchronized ThumbnailLoader get(Context context) {
+        if (sInstance == null) {
+            sInstance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ThumbnailLoader(Context context) {
+        mResolver = context.getContentResolver();
+        mContext = context;
+
+        // Use an eighth of the memory the app may use for thumbnails.
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Shows the image at the given URI in the view, sized to the view. The placeholder is shown
+     * until the image has loaded, or if it can't be loaded.
+     *
+     * @param imageUri    the content URI of the image
+     * @param view        the view to show it in
+     * @param placeholder resource shown while loading
+     */
+    public void load(String imageUri, final ImageView view, int placeholder) {
+        cancel(view);
+
+        int width = targetSize(view.getLayoutParams() == null ? 0
+                : view.getLayoutParams().width);
+        int height = targetSize(view.getLayoutParams() == null ? 0
+                : view.getLayoutParams().height);
+        final String key = imageUri + "@" + width + "x" + height;
+
+        Bitmap cached = mMemoryCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        view.setImageResource(placeholder);
+        final Request request = new Request();
+        view.setTag(R.id.thumbnail_request, request);
+
+        final Uri uri = Uri.parse(imageUri);
+        final int targetWidth = width;
+        final int targetHeight = height;
+        request.future = mExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = loadThumbnail(key, uri, targetWidth, targetHeight);
+                if (bitmap == null || request.cancelled) {
+                    return;
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Only show it if the view hasn't been given another image since.
+                        if (!request.cancelled
+                                && view.getTag(R.id.thumbnail_request) == request) {
+                            view.setTag(R.id.thumbnail_request, null);
+                            view.setImageBitmap(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the image the view is waiting for, if there is one. Call this when a view is
+     * recycled for a row that has no image.
+     */
+    public void cancel(ImageView view) {
+        Object tag = view.getTag(R.id.thumbnail_request);
+        if (tag instanceof Request) {
+            Request request = (Request) tag;
+            request.cancelled = true;
+            if (request.future != null) {
+                request.future.cancel(false);
+            }
+            view.setTag(R.id.thumbnail_request, null);
+        }
+    }
+
+    /**
+     * Returns the thumbnail from the disk cache, or decodes the image and adds it to the disk
+     * cache. The result is added to the memory cache. Runs on a background thread.
+     */
+    private Bitmap loadThumbnail(String key, Uri uri, int width, int height) {
+        File file = new File(diskCacheDir(), diskCacheName(key));
+
+        Bitmap bitmap = null;
+        if (file.exists()) {
+            bitmap = BitmapFactory.decodeFile(file.getPath());
+            // Mark it as recently used so trimming keeps it.
+            file.setLastModified(System.currentTimeMillis());
+        }
+        if (bitmap == null) {
+            try {
+                bitmap = decodeSampled(uri, width, height);
+            } catch (IOException | SecurityException e) {
+                Log.w(LOG_TAG, "Unable to decode " + uri, e);
+                return null;
+            }
+            if (bitmap == null) {
+                return null;
+            }
+            writeToDisk(file, bitmap);
+        }
+
+        mMemoryCache.put(key, bitmap);
+        return bitmap;
+    }
+
+    private synchronized File diskCacheDir() {
+        if (mDiskCacheDir == null) {
+            mDiskCacheDir = new File(mContext.getCacheDir(), DISK_CACHE_DIR);
+        }
+        return mDiskCacheDir;
+    }
+
+    /**
+     * Decodes the image, reading only its bounds first so it can be downsampled by the largest
+     * power of 2 that keeps it at least as big as the target size.
+     */
+    private Bitmap decodeSampled(Uri uri, int width, int height) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream in = mResolver.openInputStream(uri);
+        if (in == null) {
+            return null;
+        }
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width
+                && options.outHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        in = mResolver.openInputStream(uri);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the thumbnail to the disk cache and trims the cache if it has grown too big.
+     */
+    private synchronized void writeToDisk(File file, Bitmap bitmap) {
+        File dir = diskCacheDir();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Unable to write thumbnail " + file, e);
+            file.delete();
+            return;
+        }
+        trimDiskCache();
+    }
+
+    /**
+     * Deletes the least recently used thumbnails until the cache fits in its size limit.
+     */
+    private void trimDiskCache() {
+        File[] files = diskCacheDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= DISK_CACHE_MAX_BYTES) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length && total > DISK_CACHE_MAX_BYTES; i++) {
+            total -= files[i].length();
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Returns a file name for the cache key, an MD5 hash so any URI gives a safe name.
+     */
+    private static String diskCacheName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            // Every Android device has MD5 and UTF-8.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a layout size in pixels, or the default size for wrap_content and match_parent.
+     */
+    private static int targetSize(int layoutSize) {
+        if (layoutSize == ViewGroup.LayoutParams.WRAP_CONTENT
+                || layoutSize == ViewGroup.LayoutParams.MATCH_PARENT || layoutSize <= 0) {
+            return DEFAULT_TARGET_SIZE_PX;
+        }
+        return layoutSize;
+    }
+
+    /**
+     * An image a view is waiting for.
+     */
+    private static class Request {
+        volatile boolean cancelled;
+        Future<?> future;
+    }
+}
@@ -0,0 +1,176 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends the provider's change notifications, a short window after the first change rather than
+ * one per write, so a burst of sales makes observers re-query once instead of once per sale.
+ * <p>
+ * Changes to the same item in one window are merged into one notification of its item URI.
+ * A change to rows the provider can't name, or more than {@link #MAX_ITEM_CHANGES} items in
+ * one window, is sent as one notification of {@link InventoryEntry#CONTENT_URI}, which covers
+ * every item. Each notified URI carries the type of the change, see {@link
+ * InventoryContract#getChangeType(Uri)}.
+ * <p>
+ * May be called from any thread. Notifications are sent from a background thread.
+ */
+class ChangeDispatcher {
+
+    // How long changes are collected before they are sent
+    static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    // More items than this changing in one window are sent as a change to the whole table
+    static final int MAX_ITEM_CHANGES = 20;
+
+    private final ContentResolver mResolver;
+    private final long mWindowMillis;
+
+    // Items changed in the current window and how, in the order they first changed
+    private final Map<Long, String> mItemChanges = new LinkedHashMap<>();
+
+    // How the whole table changed in the current window, or null if it didn't
+    private String mTableChange;
+
+    // Set while a window is open and its flush is posted
+    private boolean mFlushScheduled;
+
+    // Thread that sends the notifications, started on the first change
+    private HandlerThread mThread;
+    private Handler mHandler;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ChangeDispatcher(ContentResolver resolver, long windowMillis) {
+        mResolver = resolver;
+        mWindowMillis = windowMillis;
+    }
+
+    /**
+     * Queues a change to one item.
+     *
+     * @param changeType one of the CHANGE constants in {@link InventoryContract}
+     */
+    synchronized void itemChanged(long id, String changeType) {
+        if (mTableChange != null) {
+            // Observers will re-read the whole table anyway.
+            mTableChange = merge(mTableChange, changeType);
+        } else {
+            mItemChanges.put(id, merge(mItemChanges.get(id), changeType));
+            if (mItemChanges.size() > MAX_ITEM_CHANGES) {
+                foldIntoTable();
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Queues a change to any number of items.
+     *
+     * @param changeType one of the CHANGE constants in {@link InventoryContract}
+     */
+    synchronized void tableChanged(String changeType) {
+        foldIntoTable();
+        mTableChange = merge(mTableChange, changeType);
+        schedule();
+    }
+
+    // Turns the queued item changes into one change to the table
+    private void foldIntoTable() {
+        for (String changeType : mItemChanges.values()) {
+            mTableChange = merge(mTableChange, changeType);
+        }
+        mItemChanges.clear();
+    }
+
+    // Starts the window if this is its first change
+    private void schedule() {
+        if (mHandler == null) {
+            mThread = new HandlerThread(ChangeDispatcher.class.getSimpleName(),
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlush, mWindowMillis);
+        }
+    }
+
+    /**
+     * Sends the queued notifications now.
+     */
+    void flush() {
+        List<Uri> uris = new ArrayList<>();
+        synchronized (this) {
+            if (mFlushScheduled) {
+                mHandler.removeCallbacks(mFlush);
+                mFlushScheduled = false;
+            }
+            if (mTableChange != null) {
+                uris.add(InventoryContract.changeUri(InventoryEntry.CONTENT_URI, mTableChange));
+                mTableChange = null;
+            }
+            for (Map.Entry<Long, String> change : mItemChanges.entrySet()) {
+                uris.add(InventoryContract.changeUri(
+                        InventoryEntry.inventoryUri(change.getKey()), change.getValue()));
+            }
+            mItemChanges.clear();
+        }
+        // Outside the lock, so writers aren't held up by observers being told.
+        for (Uri uri : uris) {
+            mResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Sends anything still queued and stops the thread.
+     */
+    void close() {
+        flush();
+        synchronized (this) {
+            if (mThread != null) {
+                mThread.quit();
+                mThread = null;
+                mHandler = null;
+            }
+        }
+    }
+
+    /**
+     * Returns how an item or table changed overall, given how it had changed before in the
+     * window (null if it hadn't) and how it changed now. A delete outweighs an insert, which
+     * outweighs an update: an item inserted and then edited is still new to observers.
+     */
+    static String merge(String previous, String change) {
+        if (previous == null || rank(change) > rank(previous)) {
+            return change;
+        }
+        return previous;
+    }
+
+    private static int rank(String changeType) {
+        if (InventoryContract.CHANGE_DELETE.equals(changeType)) {
+            return 2;
+        }
+        if (InventoryContract.CHANGE_INSERT.equals(changeType)) {
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,130 @@
+package com.washington.inventoryapp.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads delimited text (CSV or TSV) one record at a time. Fields may be wrapped in double quotes,
+ * in which case they can contain the delimiter, line breaks and escaped quotes ("").
+ * <p>
+ * Only the current record is held in memory, so files of any size can be read.
+ */
+public class CsvReader {
+
+    // The source of the text. Reads are done one char at a time, so it should be buffered.
+    private final Reader mReader;
+
+    // The character that separates fields, usually ',' or '\t'
+    private final char mDelimiter;
+
+    // Reused to build up each field
+    private final StringBuilder mField = new StringBuilder();
+
+    // The line the last record started on, starting at 1
+    private int mRecordLine;
+
+    // The line the reader is currently on
+    private int mLine = 1;
+
+    // A char that was read ahead and still needs to be handled, or -2 if there is none
+    private int mPushedBack = -2;
+
+    /**
+     * Constructs a new {@link CsvReader}
+     *
+     * @param reader    a buffered reader over the text
+     * @param delimiter the character that separates fields
+     */
+    public CsvReader(Reader reader, char delimiter) {
+        mReader = reader;
+        mDelimiter = delimiter;
+    }
+
+    /**
+     * Returns the line number that the last record returned by {@link #readRecord()} started on.
+     */
+    public int getRecordLine() {
+        return mRecordLine;
+    }
+
+    /**
+     * Reads the next record. Blank lines are skipped.
+     *
+     * @return the fields of the record, or null at the end of the input
+     * @throws IOException if the input can't be read or ends inside a quoted field
+     */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        // Skip blank lines between records
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        mRecordLine = mLine;
+        List<String> fields = new ArrayList<>();
+        mField.setLength(0);
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line "
+                            + mRecordLine);
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        // An escaped quote inside a quoted field
+                        mField.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    mField.append((char) c);
+                }
+            } else if (c == mDelimiter) {
+                fields.add(mField.toString());
+                mField.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    // Treat "\r\n" as a single line break
+                    int next = read();
+                    if (next != '\n') {
+                        mPushedBack = next;
+                    }
+                }
+                fields.add(mField.toString());
+                return fields;
+            } else if (c == '"' && mField.length() == 0) {
+                quoted = true;
+            } else {
+                mField.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Reads the next char, keeping track of the current line.
+     */
+    private int read() throws IOException {
+        int c;
+        if (mPushedBack != -2) {
+            c = mPushedBack;
+            mPushedBack = -2;
+            return c;
+        }
+        c = mReader.read();
+        if (c == '\n') {
+            mLine++;
+        }
+        return c;
+    }
+}
@@ -3,8 +3,12 @@ package com.washington.inventoryapp.data;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.provider.BaseColumns;
 
+import com.washington.inventoryapp.core.InventorySql;
+
 /**
  * Created by Brent on 8/21/2017.
  */
@@ -31,6 +35,219 @@ public class InventoryContract {
 
     public static final String PATH_INVENTORY = "inventory";
 
+    // Path under PATH_INVENTORY for searching items by name and supplier
+    public static final String PATH_SEARCH = "search";
+
+    // Path under PATH_INVENTORY for the stock totals
+    public static final String PATH_SUMMARY = "summary";
+
+    // Path under PATH_SUMMARY for the stock totals of each supplier
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    // Path under PATH_INVENTORY for the stock movement ledger
+    public static final String PATH_MOVEMENTS = "movements";
+
+    // Path under PATH_INVENTORY for items addressed by SKU
+    public static final String PATH_SKU = "sku";
+
+    /**
+     * Query parameter for inserts, updates and deletes on {@link InventoryEntry#CONTENT_URI}
+     * giving the reason recorded in the ledger for the quantity changes, e.g. {@link
+     * MovementEntry#REASON_RESTOCK}. Each kind of write has a default.
+     */
+    public static final String QUERY_PARAMETER_REASON = "reason";
+
+    /**
+     * Query parameter for the summary URIs. Items with a quantity below it are counted as low on
+     * stock. Defaults to {@link #DEFAULT_LOW_STOCK_THRESHOLD}.
+     */
+    public static final String QUERY_PARAMETER_LOW_STOCK = "lowStock";
+
+    // Quantity below which an item is low on stock, unless the summary URI says otherwise
+    public static final int DEFAULT_LOW_STOCK_THRESHOLD = 5;
+
+    /**
+     * Query parameter holding the text to search for on {@link InventoryEntry#SEARCH_URI}.
+     * Each word is matched as a prefix of a word in the item's name or supplier.
+     */
+    public static final String QUERY_PARAMETER_SEARCH = "q";
+
+    /**
+     * Query parameter that limits the number of rows returned for {@link
+     * InventoryEntry#CONTENT_URI}. Combine it with a "_id > ?" selection to read the table in
+     * pages.
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+    /**
+     * Query parameter on the URIs the provider notifies observers of, saying how the data
+     * changed: {@link #CHANGE_INSERT}, {@link #CHANGE_UPDATE} or {@link #CHANGE_DELETE}. An item
+     * URI means only that item changed. {@link InventoryEntry#CONTENT_URI} means any number of
+     * items may have, so observers should read the table again.
+     */
+    public static final String QUERY_PARAMETER_CHANGE = "change";
+
+    // Change types carried by QUERY_PARAMETER_CHANGE
+    public static final String CHANGE_INSERT = "insert";
+    public static final String CHANGE_UPDATE = "update";
+    public static final String CHANGE_DELETE = "delete";
+
+    /**
+     * Returns the URI with the change type added, as the provider notifies it.
+     */
+    public static Uri changeUri(Uri uri, String changeType) {
+        return uri.buildUpon()
+                .appendQueryParameter(QUERY_PARAMETER_CHANGE, changeType)
+                .build();
+    }
+
+    /**
+     * Returns how the data at a notified URI changed, or {@link #CHANGE_UPDATE} if the URI
+     * doesn't say.
+     */
+    public static String getChangeType(Uri uri) {
+        String changeType = uri == null ? null : uri.getQueryParameter(QUERY_PARAMETER_CHANGE);
+        return changeType == null ? CHANGE_UPDATE : changeType;
+    }
+
+    /**
+     * Name of the provider call() method that adjusts an item's quantity by a delta in place.
+     * The item ID is passed as the call argument and the delta in {@link #EXTRA_DELTA}.
+     */
+    public static final String METHOD_ADJUST_QUANTITY = "adjustQuantity";
+
+    // Bundle key for the signed amount to add to an item's quantity
+    public static final String EXTRA_DELTA = "delta";
+
+    // Bundle key for the item's quantity after an adjustment or at a point in time
+    public static final String EXTRA_QUANTITY = "quantity";
+
+    // Bundle key for the reason an adjustment is recorded with in the ledger
+    public static final String EXTRA_REASON = "reason";
+
+    /**
+     * Name of the provider call() method that adjusts the quantity of the item with a SKU, e.g.
+     * a scanned barcode, like {@link #METHOD_ADJUST_QUANTITY}. The SKU is passed as the call
+     * argument and the delta in {@link #EXTRA_DELTA}. The item's ID is returned in {@link
+     * #EXTRA_ID} with its new quantity.
+     */
+    public static final String METHOD_ADJUST_QUANTITY_BY_SKU = "adjustQuantityBySku";
+
+    // Bundle key for an item's ID
+    public static final String EXTRA_ID = "id";
+
+    /**
+     * Name of the provider call() method that applies many quantity adjustments in one
+     * transaction, like that many calls of {@link #METHOD_ADJUST_QUANTITY} in order. The item
+     * IDs are passed in {@link #EXTRA_IDS} and their deltas in {@link #EXTRA_DELTAS}. The
+     * quantity after each adjustment, or -1 where it was refused, is returned in {@link
+     * #EXTRA_QUANTITIES}.
+     */
+    public static final String METHOD_ADJUST_QUANTITIES = "adjustQuantities";
+
+    // Bundle keys for the arrays of item IDs, deltas and resulting quantities
+    public static final String EXTRA_IDS = "ids";
+    public static final String EXTRA_DELTAS = "deltas";
+    public static final String EXTRA_QUANTITIES = "quantities";
+
+    /**
+     * Name of the provider call() method that returns an item's quantity at a point in time.
+     * The item ID is passed as the call argument and the time in {@link #EXTRA_TIME}.
+     */
+    public static final String METHOD_QUANTITY_AT = "quantityAt";
+
+    // Bundle key for a time in milliseconds since the epoch
+    public static final String EXTRA_TIME = "time";
+
+    /**
+     * Name of the provider call() method that compares the stored stock totals with totals
+     * computed from the items and rebuilds them if they differ. The number of rows that were
+     * wrong is returned in {@link #EXTRA_MISMATCHES}.
+     */
+    public static final String METHOD_CHECK_SUMMARY = "checkSummary";
+
+    // Bundle key for the number of stock total rows that didn't match the items
+    public static final String EXTRA_MISMATCHES = "mismatches";
+
+    /**
+     * Name of the provider call() method that reports how the provider's cache of single items
+     * is doing: lookups answered from memory in {@link #EXTRA_CACHE_HITS}, lookups that read
+     * the database in {@link #EXTRA_CACHE_MISSES} and items cached now in {@link
+     * #EXTRA_CACHE_SIZE}. The counts are since the provider started.
+     */
+    public static final String METHOD_CACHE_STATS = "cacheStats";
+
+    // Bundle keys for the item cache counts
+    public static final String EXTRA_CACHE_HITS = "hits";
+    public static final String EXTRA_CACHE_MISSES = "misses";
+    public static final String EXTRA_CACHE_SIZE = "size";
+
+    /**
+     * Name of the provider call() method that returns the oldest local changes not yet sent to
+     * the sync server, encoded by {@link SyncBatch}, in {@link #EXTRA_SYNC_BATCH}. Nothing is
+     * returned if every change has been sent. Pass the {@link #EXTRA_SYNC_OUTBOX_ID} it returns
+     * to {@link #METHOD_SYNC_ACKNOWLEDGE} once the server has them.
+     */
+    public static final String METHOD_SYNC_OUTBOX = "syncOutbox";
+
+    /**
+     * Name of the provider call() method that marks the local changes returned by {@link
+     * #METHOD_SYNC_OUTBOX} as sent. Their outbox ID is passed as the call argument. A change
+     * made to the same item since is still sent.
+     */
+    public static final String METHOD_SYNC_ACKNOWLEDGE = "syncAcknowledge";
+
+    /**
+     * Name of the provider call() method that applies changes received from the sync server,
+     * passed in {@link #EXTRA_SYNC_BATCH}, and stores the server's {@link #EXTRA_SYNC_CURSOR}
+     * after them in the same transaction. The newest change to an item wins.
+     */
+    public static final String METHOD_SYNC_APPLY = "syncApply";
+
+    /**
+     * Name of the provider call() method that returns the cursor stored by the last {@link
+     * #METHOD_SYNC_APPLY} in {@link #EXTRA_SYNC_CURSOR}, or 0 before the first.
+     */
+    public static final String METHOD_SYNC_CURSOR = "syncCursor";
+
+    // Bundle key for a batch of changes encoded by SyncBatch
+    public static final String EXTRA_SYNC_BATCH = "batch";
+
+    // Bundle key for the ID of the newest outbox entry in a batch
+    public static final String EXTRA_SYNC_OUTBOX_ID = "outboxId";
+
+    // Bundle key for the sync server's updated_at of the last change received from it
+    public static final String EXTRA_SYNC_CURSOR = "cursor";
+
+    /**
+     * Name of the provider call() method that writes a compact snapshot of the items to the
+     * ParcelFileDescriptor in {@link #EXTRA_SNAPSHOT_FILE}. With a full snapshot in {@link
+     * #EXTRA_SNAPSHOT_BASE}, only the items changed since it are written. The number of items
+     * written is returned in {@link #EXTRA_SNAPSHOT_ROWS} and the number deleted since the base
+     * in {@link #EXTRA_SNAPSHOT_DELETED}.
+     */
+    public static final String METHOD_WRITE_SNAPSHOT = "writeSnapshot";
+
+    /**
+     * Name of the provider call() method that restores the snapshot in {@link
+     * #EXTRA_SNAPSHOT_FILE} in one transaction. A full snapshot replaces every item. An
+     * incremental snapshot must be restored after its base.
+     */
+    public static final String METHOD_RESTORE_SNAPSHOT = "restoreSnapshot";
+
+    // Bundle key for the ParcelFileDescriptor of a snapshot. It is left open.
+    public static final String EXTRA_SNAPSHOT_FILE = "file";
+
+    // Bundle key for the ParcelFileDescriptor of the full snapshot an incremental one is based on
+    public static final String EXTRA_SNAPSHOT_BASE = "base";
+
+    // Bundle key for whether to compress a snapshot, true if not given
+    public static final String EXTRA_SNAPSHOT_DEFLATE = "deflate";
+
+    // Bundle keys for the number of items a snapshot wrote or restored, and deleted
+    public static final String EXTRA_SNAPSHOT_ROWS = "rows";
+    public static final String EXTRA_SNAPSHOT_DELETED = "deleted";
+
     public static class InventoryEntry implements BaseColumns {
 
         /**
@@ -39,42 +256,213 @@ public class InventoryContract {
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI,
                 PATH_INVENTORY);
 
+        /**
+         * The content URI to search items by name and supplier.
+         */
+        public static final Uri SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI under which an item's SKU addresses it, see {@link #skuUri(String)}.
+         */
+        public static final Uri SKU_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SKU);
+
         public static Uri inventoryUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
 
-        // Name of the table
-        public static final String TABLE_NAME = "Inventory";
+        /**
+         * Returns the URI of the item with the given SKU. Querying, updating and deleting it
+         * work like the item's own URI. Inserting into it adds the item with that SKU, or
+         * updates the item if one already has it.
+         */
+        public static Uri skuUri(String sku) {
+            return SKU_URI.buildUpon().appendPath(sku).build();
+        }
+
+        /**
+         * Returns the URI that searches for the given text.
+         */
+        public static Uri searchUri(String query) {
+            return SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, query)
+                    .build();
+        }
+
+        /**
+         * Returns the URI that searches for the given text, returning at most limit items.
+         */
+        public static Uri searchUri(String query, int limit) {
+            return SEARCH_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SEARCH, query)
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+        /**
+         * Adds the given delta to an item's quantity inside the provider. The change is applied
+         * by a single UPDATE so concurrent sales can't overwrite each other, and it is refused if
+         * the quantity would drop below 0.
+         *
+         * @param resolver the ContentResolver to call through
+         * @param id       the ID of the item
+         * @param delta    the amount to add (negative for a sale)
+         * @return the new quantity, or -1 if the item doesn't exist or is out of stock
+         */
+        public static int adjustQuantity(ContentResolver resolver, long id, int delta) {
+            return adjustQuantity(resolver, id, delta, null);
+        }
+
+        /**
+         * Adds the given delta to an item's quantity like {@link #adjustQuantity(ContentResolver,
+         * long, int)}, recording it in the ledger with the given reason.
+         *
+         * @param reason the reason for the change, or null for {@link
+         *               MovementEntry#REASON_SALE} or {@link MovementEntry#REASON_RESTOCK}
+         *               depending on the sign of the delta
+         */
+        public static int adjustQuantity(ContentResolver resolver, long id, int delta,
+                                         String reason) {
+            Bundle extras = new Bundle();
+            extras.putInt(EXTRA_DELTA, delta);
+            if (reason != null) {
+                extras.putString(EXTRA_REASON, reason);
+            }
+            Bundle result = resolver.call(CONTENT_URI, METHOD_ADJUST_QUANTITY,
+                    String.valueOf(id), extras);
+            if (result == null) {
+                return -1;
+            }
+            return result.getInt(EXTRA_QUANTITY, -1);
+        }
+
+        /**
+         * Applies many quantity adjustments in one transaction. The adjustment at each position
+         * is refused on its own if the item doesn't exist or is out of stock, as with {@link
+         * #adjustQuantity(ContentResolver, long, int)}.
+         *
+         * @param ids    the items to adjust, which may repeat
+         * @param deltas the amount to add to each, in the same order
+         * @return the quantity after each adjustment, or -1 where it was refused
+         */
+        public static int[] adjustQuantities(ContentResolver resolver, long[] ids,
+                                             int[] deltas) {
+            Bundle extras = new Bundle();
+            extras.putLongArray(EXTRA_IDS, ids);
+            extras.putIntArray(EXTRA_DELTAS, deltas);
+            Bundle result = resolver.call(CONTENT_URI, METHOD_ADJUST_QUANTITIES, null, extras);
+            return result.getIntArray(EXTRA_QUANTITIES);
+        }
+
+        /**
+         * Adds the given delta to the quantity of the item with the given SKU, e.g. to sell a
+         * scanned item, like {@link #adjustQuantity(ContentResolver, long, int)}.
+         *
+         * @return the new quantity, or -1 if no item has the SKU or it is out of stock
+         */
+        public static int adjustQuantityBySku(ContentResolver resolver, String sku, int delta) {
+            Bundle extras = new Bundle();
+            extras.putInt(EXTRA_DELTA, delta);
+            Bundle result = resolver.call(CONTENT_URI, METHOD_ADJUST_QUANTITY_BY_SKU, sku,
+                    extras);
+            if (result == null) {
+                return -1;
+            }
+            return result.getInt(EXTRA_QUANTITY, -1);
+        }
+
+        /**
+         * Writes a snapshot of the items to the file, e.g. for a backup. Don't call this on the
+         * main thread.
+         *
+         * @param base a full snapshot to write only the changes since, or null for a full one
+         * @return the number of items written
+         */
+        public static int writeSnapshot(ContentResolver resolver, ParcelFileDescriptor file,
+                                        ParcelFileDescriptor base) {
+            Bundle extras = new Bundle();
+            extras.putParcelable(EXTRA_SNAPSHOT_FILE, file);
+            if (base != null) {
+                extras.putParcelable(EXTRA_SNAPSHOT_BASE, base);
+            }
+            Bundle result = resolver.call(CONTENT_URI, METHOD_WRITE_SNAPSHOT, null, extras);
+            return result == null ? 0 : result.getInt(EXTRA_SNAPSHOT_ROWS);
+        }
+
+        /**
+         * Restores a snapshot written by {@link #writeSnapshot}. Don't call this on the main
+         * thread.
+         *
+         * @return the number of items restored
+         * @throws IllegalArgumentException if the snapshot is damaged; nothing is changed then
+         */
+        public static int restoreSnapshot(ContentResolver resolver, ParcelFileDescriptor file) {
+            Bundle extras = new Bundle();
+            extras.putParcelable(EXTRA_SNAPSHOT_FILE, file);
+            Bundle result = resolver.call(CONTENT_URI, METHOD_RESTORE_SNAPSHOT, null, extras);
+            return result == null ? 0 : result.getInt(EXTRA_SNAPSHOT_ROWS);
+        }
+
+        // Name of the table. The names of the table and its columns come from the core module.
+        public static final String TABLE_NAME = InventorySql.ITEMS;
+
+        /**
+         * Name of the full-text index over the name and supplier columns. It is an FTS4 table
+         * whose docid is the item's _ID, kept up to date by triggers on {@link #TABLE_NAME}.
+         */
+        public static final String SEARCH_TABLE_NAME = "inventory_search";
 
         // The _ID column
-        public static final String _ID = BaseColumns._ID;
+        public static final String _ID = InventorySql.COLUMN_ID;
 
         /**
          * The name of the item
          * <p>
          * Type: Text
          */
-        public static final String COLUMN_ITEM_NAME = "name";
+        public static final String COLUMN_ITEM_NAME = InventorySql.COLUMN_NAME;
 
         /**
          * The quantity of the item in stock
          * <p>
          * Type: Integer
          */
-        public static final String COLUMN_ITEM_QUANTITY = "quantity";
+        public static final String COLUMN_ITEM_QUANTITY = InventorySql.COLUMN_QUANTITY;
 
         /**
-         * The price of the item
+         * The price of the item in cents. Use {@link Price} to read and show it in dollars.
          * <p>
          * Type: Integer
          */
-        public static final String COLUMN_ITEM_PRICE = "price";
+        public static final String COLUMN_ITEM_PRICE = InventorySql.COLUMN_PRICE;
 
         // The supplier that the user can contact for an item
-        public static final String COLUMN_ITEM_SUPPLIER = "supplier";
+        public static final String COLUMN_ITEM_SUPPLIER = InventorySql.COLUMN_SUPPLIER;
 
         // An image of the item
-        public static final String COLUMN_ITEM_IMAGE = "image";
+        public static final String COLUMN_ITEM_IMAGE = InventorySql.COLUMN_IMAGE;
+
+        /**
+         * When the item was last inserted or changed, in milliseconds since the epoch. Set by
+         * the provider on every write.
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_ITEM_UPDATED_AT = InventorySql.COLUMN_UPDATED_AT;
+
+        /**
+         * The item's SKU or barcode. Optional, but no two items may have the same one.
+         * <p>
+         * Type: Text
+         */
+        public static final String COLUMN_ITEM_SKU = InventorySql.COLUMN_SKU;
+
+        /**
+         * The item's ID across every device that syncs the inventory, a random hex string set
+         * by the database when the item is inserted. The _ID is only unique on one device.
+         * <p>
+         * Type: Text
+         */
+        public static final String COLUMN_ITEM_SYNC_ID = InventorySql.COLUMN_SYNC_ID;
 
         /**
          * The MIME type of the {@link #CONTENT_URI} for a list of items.
@@ -90,5 +478,222 @@ public class InventoryContract {
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/"
                         + PATH_INVENTORY;
     }
-}
 
+    /**
+     * Stock totals computed by the provider. {@link #CONTENT_URI} returns one row for the whole
+     * inventory and {@link #SUPPLIERS_URI} one row per supplier. Both are read only.
+     * <p>
+     * Totals for the default low stock threshold are kept up to date as items change, so reading
+     * them doesn't depend on the number of items. Other thresholds are computed on each query.
+     */
+    public static class SummaryEntry implements BaseColumns {
+
+        /**
+         * Name of the table holding the running totals of the whole inventory, kept by triggers
+         * on {@link InventoryEntry#TABLE_NAME}. It has a single row.
+         */
+        public static final String TOTALS_TABLE_NAME = "stock_totals";
+
+        /**
+         * Name of the table holding the running totals of each supplier, kept by triggers on
+         * {@link InventoryEntry#TABLE_NAME}. Items without a supplier are totalled under "".
+         */
+        public static final String SUPPLIERS_TABLE_NAME = "supplier_stock";
+
+        /**
+         * The content URI for the totals of the whole inventory.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI,
+                PATH_SUMMARY);
+
+        /**
+         * The content URI for the totals of each supplier, sorted by supplier.
+         */
+        public static final Uri SUPPLIERS_URI = Uri.withAppendedPath(CONTENT_URI,
+                PATH_SUPPLIERS);
+
+        /**
+         * Returns the summary URI with the given low stock threshold.
+         */
+        public static Uri summaryUri(Uri uri, int lowStockThreshold) {
+            return uri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LOW_STOCK,
+                            String.valueOf(lowStockThreshold))
+                    .build();
+        }
+
+        /**
+         * Checks the stored totals against the items and repairs them if they have drifted.
+         *
+         * @param resolver the ContentResolver to call through
+         * @return the number of total rows that were wrong, 0 if they all matched
+         */
+        public static int checkSummary(ContentResolver resolver) {
+            Bundle result = resolver.call(CONTENT_URI, METHOD_CHECK_SUMMARY, null, null);
+            return result == null ? 0 : result.getInt(EXTRA_MISMATCHES);
+        }
+
+        /**
+         * The supplier the totals are for, only on {@link #SUPPLIERS_URI}. Items without a
+         * supplier, null or empty, are totalled in a row with a null supplier.
+         * <p>
+         * Type: Text
+         */
+        public static final String COLUMN_SUPPLIER = InventoryEntry.COLUMN_ITEM_SUPPLIER;
+
+        /**
+         * The number of items
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_ITEM_COUNT = "item_count";
+
+        /**
+         * The sum of the items' quantities
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_TOTAL_UNITS = "total_units";
+
+        /**
+         * The sum of quantity times price, in cents
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_STOCK_VALUE = "stock_value";
+
+        /**
+         * The number of items with a quantity below the low stock threshold
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_LOW_STOCK_COUNT = "low_stock_count";
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/"
+                        + PATH_SUMMARY;
+
+        /**
+         * The MIME type of the {@link #SUPPLIERS_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/"
+                        + PATH_SUMMARY;
+    }
+
+    /**
+     * The stock movement ledger. Every change to an item's quantity made through the provider
+     * appends a row with the change and its reason, in the same transaction as the change. Old
+     * movements are folded into one snapshot per item from time to time, so the ledger keeps
+     * the recent history of each item rather than all of it. {@link #CONTENT_URI} is read only.
+     */
+    public static class MovementEntry implements BaseColumns {
+
+        /**
+         * The content URI for the movements, oldest first.
+         */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI,
+                PATH_MOVEMENTS);
+
+        // Name of the ledger table
+        public static final String TABLE_NAME = InventorySql.MOVEMENTS;
+
+        /**
+         * Name of the table holding each item's quantity as of its last compaction, the sum of
+         * the movements that were folded into it.
+         */
+        public static final String SNAPSHOT_TABLE_NAME = "stock_snapshots";
+
+        // Reason for the quantity a new item starts with
+        public static final String REASON_RECEIVED = InventorySql.REASON_RECEIVED;
+
+        // Reason for the quantity of items added by an import
+        public static final String REASON_IMPORT = "import";
+
+        // Reason for a sale, the default for a negative adjustment
+        public static final String REASON_SALE = InventorySql.REASON_SALE;
+
+        // Reason for new stock, the default for a positive adjustment
+        public static final String REASON_RESTOCK = InventorySql.REASON_RESTOCK;
+
+        // Reason for a quantity that was edited, the default for an update
+        public static final String REASON_CORRECTION = InventorySql.REASON_CORRECTION;
+
+        // Reason for the quantity taken out when an item is deleted
+        public static final String REASON_REMOVED = InventorySql.REASON_REMOVED;
+
+        // Reason for the quantity items already had when the ledger was added
+        public static final String REASON_OPENING = "opening";
+
+        // Reason for a quantity changed on another device and received by sync
+        public static final String REASON_SYNC = "sync";
+
+        // Reason for a quantity changed by restoring a snapshot
+        public static final String REASON_RESTORE = "restore";
+
+        /**
+         * Returns the URI with the reason the ledger records for the write.
+         */
+        public static Uri withReason(Uri uri, String reason) {
+            return uri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_REASON, reason)
+                    .build();
+        }
+
+        /**
+         * Returns an item's quantity at the given time, from its snapshot and the movements
+         * since. The answer is only exact from the cutoff of the item's last compaction on;
+         * earlier times return the quantity at that cutoff.
+         *
+         * @param resolver the ContentResolver to call through
+         * @param id       the ID of the item
+         * @param time     the time in milliseconds since the epoch
+         * @return the quantity, 0 if the item didn't exist at that time
+         */
+        public static int quantityAt(ContentResolver resolver, long id, long time) {
+            Bundle extras = new Bundle();
+            extras.putLong(EXTRA_TIME, time);
+            Bundle result = resolver.call(CONTENT_URI, METHOD_QUANTITY_AT, String.valueOf(id),
+                    extras);
+            return result == null ? 0 : result.getInt(EXTRA_QUANTITY);
+        }
+
+        /**
+         * The ID of the item that moved. Movements stay after the item is deleted.
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_ITEM_ID = InventorySql.COLUMN_ITEM_ID;
+
+        /**
+         * The amount the quantity changed by, negative when stock went out
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_DELTA = InventorySql.COLUMN_DELTA;
+
+        /**
+         * Why the quantity changed, one of the REASON constants or a reason given by the caller
+         * <p>
+         * Type: Text
+         */
+        public static final String COLUMN_REASON = InventorySql.COLUMN_REASON;
+
+        /**
+         * When the quantity changed, in milliseconds since the epoch
+         * <p>
+         * Type: Integer
+         */
+        public static final String COLUMN_CREATED_AT = InventorySql.COLUMN_CREATED_AT;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI}.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/"
+                        + PATH_MOVEMENTS;
+    }
+}
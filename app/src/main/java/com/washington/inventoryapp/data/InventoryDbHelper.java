@@ -5,14 +5,31 @@ package com.washington.inventoryapp.data;
  */
 
 import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.util.Log;
 
+import com.washington.inventoryapp.R;
 import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
 /**
  * The database helper for the app. It manages database creation and the database version.
+ * <p>
+ * The database uses write-ahead logging, so the list can keep reading while an import or a
+ * sale is being written. The connection settings come from res/values/database.xml, and the log
+ * is checkpointed once writes have stopped for a while. The stock movement ledger is compacted
+ * at the same time, at most once per compaction interval.
  */
 public class InventoryDbHelper extends SQLiteOpenHelper {
 
@@ -24,9 +41,127 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "inventory.db";
 
     /**
-     * Database version. If the database schema is changed, the version must be incremented.
+     * Database version. If the database schema is changed, the version must be incremented and
+     * a {@link Migration} to the new version added to {@link #MIGRATIONS}.
+     */
+    private static final int DATABASE_VERSION = 9;
+
+    // Indexes on the columns the app filters and sorts on
+    static final String NAME_INDEX = "inventory_name_idx";
+    static final String SUPPLIER_INDEX = "inventory_supplier_stock_idx";
+    static final String QUANTITY_INDEX = "inventory_quantity_idx";
+    static final String SKU_INDEX = "inventory_sku_idx";
+
+    // Values PRAGMA synchronous accepts
+    private static final List<String> SYNCHRONOUS_MODES =
+            Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+
+    // Connection settings read from res/values/database.xml
+    private final String mSynchronous;
+    private final int mCacheSizeKib;
+    private final int mMmapSizeKib;
+    private final int mJournalSizeLimitKib;
+    private final long mCheckpointIdleMillis;
+
+    // Ledger compaction settings, also from res/values/database.xml
+    private final long mLedgerRetentionMillis;
+    private final long mCompactionIntervalMillis;
+
+    // When the ledger was last compacted. Only used on the checkpoint thread.
+    private long mLastCompaction;
+
+    // Thread that runs checkpoints, started on the first write
+    private HandlerThread mCheckpointThread;
+    private Handler mCheckpointHandler;
+
+    private final Runnable mCheckpoint = new Runnable() {
+        @Override
+        public void run() {
+            compactLedgerIfDue();
+            checkpoint();
+        }
+    };
+
+    /**
+     * One step of the schema history, upgrading a database from the version before toVersion.
+     * A migration must keep the items that are already stored.
      */
-    private static final int DATABASE_VERSION = 1;
+    private abstract static class Migration {
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    /**
+     * Every schema change in order. onUpgrade() runs the ones newer than the database.
+     */
+    private static final Migration[] MIGRATIONS = {
+            // Version 2 added the search index.
+            new Migration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    createSearchIndex(db);
+                }
+            },
+            // Version 3 stores prices in cents, adds updated_at and indexes.
+            new Migration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    migrateToVersion3(db);
+                }
+            },
+            // Version 4 lets the supplier index answer stock totals on its own.
+            new Migration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("DROP INDEX IF EXISTS inventory_supplier_idx");
+                    createSupplierIndex(db);
+                }
+            },
+            // Version 5 keeps running stock totals in summary tables.
+            new Migration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    StockSummary.create(db);
+                }
+            },
+            // Version 6 adds the stock movement ledger.
+            new Migration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    StockLedger.create(db);
+                }
+            },
+            // Version 7 adds the SKU column. Existing items don't have one yet.
+            new Migration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_ITEM_SKU + " TEXT");
+                    createSkuIndex(db);
+                }
+            },
+            // Version 8 adds sync IDs and the sync outbox.
+            new Migration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+                            + InventoryEntry.COLUMN_ITEM_SYNC_ID + " TEXT");
+                    SyncStore.create(db);
+                }
+            },
+            // Version 9 keeps quantities as counters that merge across devices.
+            new Migration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    QuantityCounters.create(db);
+                }
+            }
+    };
 
     /**
      * Constructs a new instance of {@link InventoryDbHelper}
@@ -34,7 +169,128 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     public InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructs a helper for a database with another file name, so tests can upgrade a database
+     * of their own.
+     */
+    InventoryDbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+
+        Resources resources = context.getResources();
+        mSynchronous = resources.getString(R.string.db_synchronous)
+                .toUpperCase(Locale.US);
+        if (!SYNCHRONOUS_MODES.contains(mSynchronous)) {
+            throw new IllegalArgumentException("Invalid synchronous mode " + mSynchronous);
+        }
+        mCacheSizeKib = resources.getInteger(R.integer.db_cache_size_kib);
+        mMmapSizeKib = resources.getInteger(R.integer.db_mmap_size_kib);
+        mJournalSizeLimitKib = resources.getInteger(R.integer.db_journal_size_limit_kib);
+        mCheckpointIdleMillis = resources.getInteger(R.integer.db_checkpoint_idle_millis);
+        mLedgerRetentionMillis = TimeUnit.DAYS.toMillis(
+                resources.getInteger(R.integer.ledger_retention_days));
+        mCompactionIntervalMillis = TimeUnit.HOURS.toMillis(
+                resources.getInteger(R.integer.ledger_compaction_interval_hours));
+
+        // Readers see the last commit instead of waiting for a write to finish.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Applies the connection settings. Called each time the database is opened, before it is
+     * created or upgraded.
+     * <p>
+     * The settings are per connection, so they apply to the connection that writes. The extra
+     * connections that write-ahead logging opens for concurrent reads use SQLite's defaults.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.execSQL("PRAGMA synchronous = " + mSynchronous);
+        // A negative cache size is in KiB rather than pages.
+        db.execSQL("PRAGMA cache_size = -" + mCacheSizeKib);
+        pragma(db, "mmap_size = " + mMmapSizeKib * 1024L);
+        pragma(db, "journal_size_limit = " + mJournalSizeLimitKib * 1024L);
+    }
+
+    /**
+     * Runs a pragma that returns its new value, which execSQL() refuses to run.
+     */
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Schedules a checkpoint for when the database has had no writes for the configured idle
+     * time. Each call pushes the checkpoint back, so a burst of writes leads to one checkpoint.
+     */
+    synchronized void scheduleCheckpoint() {
+        if (mCheckpointHandler == null) {
+            mCheckpointThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            mCheckpointThread.start();
+            mCheckpointHandler = new Handler(mCheckpointThread.getLooper());
+        }
+        mCheckpointHandler.removeCallbacks(mCheckpoint);
+        mCheckpointHandler.postDelayed(mCheckpoint, mCheckpointIdleMillis);
+    }
+
+    /**
+     * Folds the movements older than the retention period into snapshots, if the ledger hasn't
+     * been compacted for the configured interval. Runs on the checkpoint thread, so it only
+     * happens once writes have stopped.
+     */
+    private void compactLedgerIfDue() {
+        long now = System.currentTimeMillis();
+        if (mLastCompaction != 0 && now - mLastCompaction < mCompactionIntervalMillis) {
+            return;
+        }
+        mLastCompaction = now;
+        try {
+            StockLedger.compact(getWritableDatabase(), now - mLedgerRetentionMillis);
+        } catch (SQLiteException e) {
+            // The ledger stays as it is and the next interval tries again.
+            Log.w(LOG_TAG, "Ledger compaction failed", e);
+        }
+    }
+
+    /**
+     * Copies the write-ahead log back into the database file so later reads don't have to look
+     * through it, and lets the log be reset to its size limit. Runs on the checkpoint thread.
+     */
+    private void checkpoint() {
+        try {
+            Cursor cursor = getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+            try {
+                if (cursor.moveToFirst()) {
+                    Log.v(LOG_TAG, "Checkpointed " + cursor.getInt(2) + " of "
+                            + cursor.getInt(1) + " log pages");
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException e) {
+            // A write started in the meantime. The next idle period checkpoints instead.
+            Log.w(LOG_TAG, "Checkpoint failed", e);
+        }
+    }
+
+    /**
+     * Stops the checkpoint thread and closes the database.
+     */
+    @Override
+    public synchronized void close() {
+        if (mCheckpointThread != null) {
+            mCheckpointThread.quit();
+            mCheckpointThread = null;
+            mCheckpointHandler = null;
+        }
+        super.close();
     }
 
     /**
@@ -55,20 +311,166 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
                 then it will be 0.
                  */
                 + InventoryEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
-                // The item must have a price and cannot be null.
-                + InventoryEntry.COLUMN_ITEM_PRICE + " TEXT NOT NULL, "
+                // The item must have a price in cents and cannot be null.
+                + InventoryEntry.COLUMN_ITEM_PRICE + " INTEGER NOT NULL, "
                 // The image of the item
                 + InventoryEntry.COLUMN_ITEM_IMAGE + " TEXT, "
                 // The item's supplier
-                + InventoryEntry.COLUMN_ITEM_SUPPLIER + " TEXT " + ");";
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER + " TEXT, "
+                // When the item last changed, set by the provider.
+                + InventoryEntry.COLUMN_ITEM_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0, "
+                // The item's SKU or barcode, unique if set
+                + InventoryEntry.COLUMN_ITEM_SKU + " TEXT, "
+                // The item's ID on every device, set by a trigger.
+                + InventoryEntry.COLUMN_ITEM_SYNC_ID + " TEXT" + ");";
 
         db.execSQL(SQL_CREATE_INVENTORY_TABLE);
 
         Log.v(LOG_TAG, SQL_CREATE_INVENTORY_TABLE);
+
+        createIndexes(db);
+        createSkuIndex(db);
+        createSearchIndex(db);
+        StockSummary.create(db);
+        StockLedger.create(db);
+        SyncStore.create(db);
+        QuantityCounters.create(db);
+    }
+
+    /**
+     * Creates the indexes for looking items up by name and supplier and for finding items that
+     * are low on stock. The name index ignores case so it also serves the list's sort order.
+     */
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + NAME_INDEX + " ON " + InventoryEntry.TABLE_NAME + " ("
+                + InventoryEntry.COLUMN_ITEM_NAME + " COLLATE NOCASE)");
+        createSupplierIndex(db);
+        db.execSQL("CREATE INDEX " + QUANTITY_INDEX + " ON " + InventoryEntry.TABLE_NAME + " ("
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + ")");
     }
 
     /**
-     * This method will be called when the database needs to upgraded.
+     * Creates the supplier index. It also holds quantity and price, so the stock totals, overall
+     * and per supplier, are read from the index without touching the table rows.
+     */
+    private static void createSupplierIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX " + SUPPLIER_INDEX + " ON " + InventoryEntry.TABLE_NAME + " ("
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_QUANTITY
+                + ", " + InventoryEntry.COLUMN_ITEM_PRICE + ")");
+    }
+
+    /**
+     * Creates the unique index on SKUs, which finds a scanned code without reading the table
+     * and refuses a second item with the same SKU. Items without a SKU may share NULL.
+     */
+    private static void createSkuIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE UNIQUE INDEX " + SKU_INDEX + " ON " + InventoryEntry.TABLE_NAME
+                + " (" + InventoryEntry.COLUMN_ITEM_SKU + ")");
+    }
+
+    /**
+     * Creates the full-text search index over item names and suppliers, the triggers that keep
+     * it in step with the inventory table, and fills it with the items already in the table.
+     */
+    private static void createSearchIndex(SQLiteDatabase db) {
+        // An external content table, so the text is stored once in the inventory table.
+        db.execSQL("CREATE VIRTUAL TABLE " + InventoryEntry.SEARCH_TABLE_NAME
+                + " USING fts4(content=\"" + InventoryEntry.TABLE_NAME + "\", "
+                + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER
+                + ")");
+
+        createSearchTriggers(db);
+
+        // Index any items that already exist.
+        db.execSQL("INSERT INTO " + InventoryEntry.SEARCH_TABLE_NAME + "("
+                + InventoryEntry.SEARCH_TABLE_NAME + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Creates the triggers on the inventory table that keep the search index up to date.
+     */
+    private static void createSearchTriggers(SQLiteDatabase db) {
+        String search = InventoryEntry.SEARCH_TABLE_NAME;
+        String table = InventoryEntry.TABLE_NAME;
+        String indexedColumns = InventoryEntry.COLUMN_ITEM_NAME + ", "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER;
+        String newValues = "new." + InventoryEntry.COLUMN_ITEM_NAME + ", new."
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER;
+
+        /*
+        Remove the old entry before a row changes and add the new one afterwards. Updates only
+        fire the triggers when the name or supplier change, so a sale doesn't touch the index.
+         */
+        db.execSQL("CREATE TRIGGER " + search + "_bd BEFORE DELETE ON " + table + " BEGIN "
+                + "DELETE FROM " + search + " WHERE docid = old." + InventoryEntry._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + search + "_bu BEFORE UPDATE OF " + indexedColumns
+                + " ON " + table + " BEGIN "
+                + "DELETE FROM " + search + " WHERE docid = old." + InventoryEntry._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + search + "_ai AFTER INSERT ON " + table + " BEGIN "
+                + "INSERT INTO " + search + "(docid, " + indexedColumns + ") VALUES (new."
+                + InventoryEntry._ID + ", " + newValues + "); END");
+        db.execSQL("CREATE TRIGGER " + search + "_au AFTER UPDATE OF " + indexedColumns
+                + " ON " + table + " BEGIN "
+                + "INSERT INTO " + search + "(docid, " + indexedColumns + ") VALUES (new."
+                + InventoryEntry._ID + ", " + newValues + "); END");
+    }
+
+    /**
+     * Version 3 changes price from text to a whole number of cents, which SQLite can't do in
+     * place, so the table is copied into a new one with the version 3 schema and renamed. IDs are
+     * kept, so the search index still points at the right rows. The schema is written out here
+     * rather than shared with onCreate() because it must not change when later versions do.
+     */
+    private static void migrateToVersion3(SQLiteDatabase db) {
+        String table = InventoryEntry.TABLE_NAME;
+        String newTable = table + "_v3";
+
+        db.execSQL("CREATE TABLE " + newTable + " ("
+                + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + InventoryEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                + InventoryEntry.COLUMN_ITEM_PRICE + " INTEGER NOT NULL, "
+                + InventoryEntry.COLUMN_ITEM_IMAGE + " TEXT, "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER + " TEXT, "
+                + InventoryEntry.COLUMN_ITEM_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0)");
+
+        /*
+        Old prices are whatever was typed, e.g. "4.99" or "$5". Strip the dollar sign and
+        thousands separators and round to cents. Anything that isn't a number becomes 0.
+         */
+        String cents = "MAX(0, CAST(ROUND(CAST(REPLACE(REPLACE(TRIM("
+                + InventoryEntry.COLUMN_ITEM_PRICE + "), '$', ''), ',', '') AS REAL) * 100)"
+                + " AS INTEGER))";
+        String columns = InventoryEntry._ID + ", " + InventoryEntry.COLUMN_ITEM_NAME + ", "
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + InventoryEntry.COLUMN_ITEM_IMAGE
+                + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER;
+        db.execSQL("INSERT INTO " + newTable + " (" + columns + ", "
+                        + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                        + InventoryEntry.COLUMN_ITEM_UPDATED_AT + ") SELECT " + columns + ", "
+                        + cents + ", ? FROM " + table,
+                new Object[]{System.currentTimeMillis()});
+
+        // Carry the AUTOINCREMENT counter over so IDs of deleted items aren't handed out again.
+        db.execSQL("DELETE FROM sqlite_sequence WHERE name = ?", new Object[]{newTable});
+        db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT ?, seq FROM sqlite_sequence"
+                + " WHERE name = ?", new Object[]{newTable, table});
+
+        // Dropping the old table also drops its search triggers, so create them again.
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + table);
+        db.execSQL("CREATE INDEX inventory_name_idx ON " + table + " ("
+                + InventoryEntry.COLUMN_ITEM_NAME + " COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX inventory_supplier_idx ON " + table + " ("
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER + ")");
+        db.execSQL("CREATE INDEX inventory_quantity_idx ON " + table + " ("
+                + InventoryEntry.COLUMN_ITEM_QUANTITY + ")");
+        createSearchTriggers(db);
+    }
+
+    /**
+     * This method will be called when the database needs to upgraded. It runs every migration
+     * newer than the database in order. SQLiteOpenHelper runs it inside a transaction, so an
+     * upgrade that fails leaves the database as it was.
      *
      * @param db
      * @param oldVersion
@@ -76,8 +478,11 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL(" DROP TABLE IF EXISTS " + InventoryEntry.TABLE_NAME);
-        onCreate(db);
+        for (Migration migration : MIGRATIONS) {
+            if (migration.toVersion > oldVersion && migration.toVersion <= newVersion) {
+                Log.i(LOG_TAG, "Upgrading database to version " + migration.toVersion);
+                migration.migrate(db);
+            }
+        }
     }
 }
-
@@ -0,0 +1,291 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Exports the items in the {@link InventoryProvider} as CSV or JSON.
+ * <p>
+ * The table is read in windows of {@link #WINDOW_SIZE} rows ordered by ID, and each row is
+ * written to the stream as soon as it is read. Only one window is held in memory at a time, so
+ * the size of the table doesn't affect memory use.
+ */
+public class InventoryExporter {
+
+    /**
+     * The file formats that can be exported.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON("application/json", "json");
+
+        public final String mimeType;
+        public final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Receives the result of an export on the main thread.
+     */
+    public interface Listener {
+        /**
+         * @param rowsExported the number of rows written
+         * @param error        the reason the export failed, e.g. the file couldn't be written
+         *                     or its permission was revoked, or null if it succeeded
+         */
+        void onFinished(int rowsExported, Exception error);
+    }
+
+    // Number of rows read from the provider per query
+    public static final int WINDOW_SIZE = 1000;
+
+    // The columns written to the file, in order
+    private static final String[] COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryEntry.COLUMN_ITEM_IMAGE};
+
+    // Position of the price in COLUMNS. Prices are stored in cents and written in dollars.
+    private static final int PRICE_INDEX = 3;
+
+    // Exports run one at a time off the main thread
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final ContentResolver mResolver;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Constructs a new {@link InventoryExporter}
+     *
+     * @param resolver the ContentResolver used to read the items and open the destination
+     */
+    public InventoryExporter(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Exports every item to the given URI on a background thread. The listener is called on the
+     * main thread.
+     */
+    public void exportAsync(final Uri destination, final Format format, final Listener listener) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int rows = 0;
+                Exception error = null;
+                try {
+                    OutputStream out = mResolver.openOutputStream(destination);
+                    if (out == null) {
+                        throw new IOException("Unable to open " + destination);
+                    }
+                    try {
+                        rows = exportTo(out, format);
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // The listener is told either way, and the export thread carries on.
+                    error = e;
+                }
+
+                final int finalRows = rows;
+                final Exception finalError = error;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onFinished(finalRows, finalError);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Exports every item to the stream on the calling thread. Don't call this on the main thread.
+     * The stream is flushed but not closed.
+     *
+     * @return the number of rows written
+     */
+    public int exportTo(OutputStream out, Format format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        Uri windowUri = InventoryEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(WINDOW_SIZE))
+                .build();
+        String selection = InventoryEntry._ID + " > ?";
+        String[] selectionArgs = new String[1];
+
+        if (format == Format.CSV) {
+            writeCsvHeader(writer);
+        } else {
+            writer.write('[');
+        }
+
+        int rows = 0;
+        long lastId = -1;
+        while (true) {
+            // Read the next window of rows after the last ID that was written.
+            selectionArgs[0] = String.valueOf(lastId);
+            Cursor cursor = mResolver.query(windowUri, COLUMNS, selection, selectionArgs,
+                    InventoryEntry._ID + " ASC");
+            if (cursor == null) {
+                throw new IOException("Unable to query " + windowUri);
+            }
+
+            int windowRows;
+            try {
+                windowRows = cursor.getCount();
+                while (cursor.moveToNext()) {
+                    if (format == Format.CSV) {
+                        writeCsvRow(writer, cursor);
+                    } else {
+                        if (rows > 0) {
+                            writer.write(',');
+                        }
+                        writeJsonRow(writer, cursor);
+                    }
+                    lastId = cursor.getLong(0);
+                    rows++;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            if (windowRows < WINDOW_SIZE) {
+                break;
+            }
+        }
+
+        if (format == Format.JSON) {
+            writer.write("]\n");
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private static void writeCsvHeader(Writer writer) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(COLUMNS[i]);
+        }
+        writer.write('\n');
+    }
+
+    private static void writeCsvRow(Writer writer, Cursor cursor) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = i == PRICE_INDEX ? Price.format(cursor.getLong(i)) : cursor.getString(i);
+            if (value != null) {
+                writeCsvField(writer, value);
+            }
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Writes a field, quoting it if it contains a comma, quote or line break.
+     */
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static void writeJsonRow(Writer writer, Cursor cursor) throws IOException {
+        writer.write("\n{");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write('"');
+            writer.write(COLUMNS[i]);
+            writer.write("\":");
+            if (cursor.isNull(i)) {
+                writer.write("null");
+            } else if (i == PRICE_INDEX) {
+                // A JSON number in dollars, e.g. 4.99
+                writer.write(Price.format(cursor.getLong(i)));
+            } else if (cursor.getType(i) == Cursor.FIELD_TYPE_INTEGER) {
+                writer.write(String.valueOf(cursor.getLong(i)));
+            } else {
+                writeJsonString(writer, cursor.getString(i));
+            }
+        }
+        writer.write('}');
+    }
+
+    /**
+     * Writes a JSON string literal, escaping quotes, backslashes and control characters.
+     */
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,316 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import com.washington.inventoryapp.core.Items;
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Imports items from a CSV or TSV file into the {@link InventoryProvider}.
+ * <p>
+ * The file is streamed one record at a time and valid rows are written with bulkInsert() in
+ * batches of {@link #BATCH_SIZE}, so each batch is one transaction and memory use doesn't grow
+ * with the size of the file. Rows that fail validation are counted and reported instead of
+ * stopping the import.
+ * <p>
+ * Columns are matched by the header row if there is one (name, quantity, price, supplier, image).
+ * Otherwise the columns are expected in that order.
+ */
+public class InventoryImporter {
+
+    /**
+     * Receives the progress and result of an import. Called on the main thread when the import
+     * was started with {@link #importAsync(Uri, Listener)}.
+     */
+    public interface Listener {
+        void onProgress(int rowsRead, int rowsImported, int rowsRejected);
+
+        void onFinished(Result result);
+    }
+
+    /**
+     * The outcome of an import.
+     */
+    public static class Result {
+        // Number of rows written to the provider
+        public int imported;
+
+        // Number of rows that failed validation
+        public int rejected;
+
+        // Messages for the first MAX_REJECT_MESSAGES rejected rows, e.g. "Line 4: missing name"
+        public final List<String> rejectMessages = new ArrayList<>();
+
+        /*
+        Set if the file couldn't be read or the items couldn't be written, e.g. because the
+        file's permission was revoked or the disk is full. Rows imported before are kept.
+         */
+        public Exception error;
+    }
+
+    // Number of rows written per transaction
+    public static final int BATCH_SIZE = 500;
+
+    // Only this many reject messages are kept so a bad file can't use up memory
+    public static final int MAX_REJECT_MESSAGES = 100;
+
+    // How often (in rows read) progress is reported
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    // Imported quantities are recorded in the ledger as an import
+    private static final Uri IMPORT_URI = MovementEntry.withReason(InventoryEntry.CONTENT_URI,
+            MovementEntry.REASON_IMPORT);
+
+    // Column order used when the file has no header row
+    private static final String[] DEFAULT_COLUMNS = {
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryEntry.COLUMN_ITEM_IMAGE};
+
+    // Imports run one at a time off the main thread
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private final ContentResolver mResolver;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Constructs a new {@link InventoryImporter}
+     *
+     * @param resolver the ContentResolver used to open the file and write the items
+     */
+    public InventoryImporter(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    /**
+     * Imports the file at the given URI on a background thread. The listener is called on the
+     * main thread.
+     */
+    public void importAsync(final Uri source, final Listener listener) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Result result;
+                try {
+                    InputStream in = mResolver.openInputStream(source);
+                    if (in == null) {
+                        throw new IOException("Unable to open " + source);
+                    }
+                    try {
+                        result = importFrom(in, new Listener() {
+                            @Override
+                            public void onProgress(final int read, final int imported,
+                                                   final int rejected) {
+                                mMainHandler.post(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        listener.onProgress(read, imported, rejected);
+                                    }
+                                });
+                            }
+
+                            @Override
+                            public void onFinished(Result result) {
+                            }
+                        });
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // The listener is told either way, and the import thread carries on.
+                    result = new Result();
+                    result.error = e;
+                }
+
+                final Result finalResult = result;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onFinished(finalResult);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Imports the stream on the calling thread. Don't call this on the main thread.
+     *
+     * @param in       the CSV or TSV data
+     * @param listener receives progress, may be null
+     * @return the result of the import. If the stream fails part way, the error is set on the
+     * result and the rows imported so far are kept.
+     */
+    public Result importFrom(InputStream in, Listener listener) {
+        Result result = new Result();
+        List<ContentValues> batch = new ArrayList<>(BATCH_SIZE);
+        int rowsRead = 0;
+
+        try {
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            char delimiter = detectDelimiter(buffered);
+            CsvReader reader = new CsvReader(new BufferedReader(
+                    new InputStreamReader(buffered, "UTF-8")), delimiter);
+
+            List<String> record = reader.readRecord();
+            if (record == null) {
+                return result;
+            }
+
+            // Use the header to map the columns, or treat the first record as data.
+            String[] columns = parseHeader(record);
+            if (columns == null) {
+                columns = DEFAULT_COLUMNS;
+            } else {
+                record = reader.readRecord();
+            }
+
+            while (record != null) {
+                rowsRead++;
+                try {
+                    batch.add(parseRow(record, columns));
+                } catch (IllegalArgumentException e) {
+                    reject(result, reader.getRecordLine(), e.getMessage());
+                }
+
+                if (batch.size() == BATCH_SIZE) {
+                    flush(batch, result);
+                }
+                if (listener != null && rowsRead % PROGRESS_INTERVAL == 0) {
+                    listener.onProgress(rowsRead, result.imported, result.rejected);
+                }
+                record = reader.readRecord();
+            }
+        } catch (IOException e) {
+            result.error = e;
+        }
+
+        // Write whatever is left, even if reading failed part way.
+        flush(batch, result);
+        if (listener != null) {
+            listener.onProgress(rowsRead, result.imported, result.rejected);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the batch to the provider in one transaction and clears it.
+     */
+    private void flush(List<ContentValues> batch, Result result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        result.imported += mResolver.bulkInsert(IMPORT_URI,
+                batch.toArray(new ContentValues[batch.size()]));
+        batch.clear();
+    }
+
+    private static void reject(Result result, int line, String message) {
+        result.rejected++;
+        if (result.rejectMessages.size() < MAX_REJECT_MESSAGES) {
+            result.rejectMessages.add("Line " + line + ": " + message);
+        }
+    }
+
+    /**
+     * Looks at the first line of the stream and picks a tab delimiter if it contains a tab,
+     * otherwise a comma. The stream is reset afterwards.
+     */
+    private static char detectDelimiter(BufferedInputStream in) throws IOException {
+        in.mark(8192);
+        try {
+            for (int i = 0; i < 8192; i++) {
+                int b = in.read();
+                if (b == -1 || b == '\n') {
+                    break;
+                }
+                if (b == '\t') {
+                    return '\t';
+                }
+            }
+            return ',';
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Maps a header record to column names.
+     *
+     * @return the column for each field, with null for fields that aren't imported, or null if
+     * the record isn't a header
+     */
+    private static String[] parseHeader(List<String> record) {
+        String[] columns = new String[record.size()];
+        boolean hasName = false;
+        for (int i = 0; i < columns.length; i++) {
+            String field = record.get(i).trim().toLowerCase(Locale.US);
+            for (String column : DEFAULT_COLUMNS) {
+                if (column.equals(field)) {
+                    columns[i] = column;
+                    hasName |= column.equals(InventoryEntry.COLUMN_ITEM_NAME);
+                }
+            }
+        }
+        return hasName ? columns : null;
+    }
+
+    /**
+     * Validates one record and converts it to ContentValues for the items table.
+     *
+     * @throws IllegalArgumentException with the reason if the record isn't a valid item
+     */
+    static ContentValues parseRow(List<String> record, String[] columns) {
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < columns.length && i < record.size(); i++) {
+            if (columns[i] != null) {
+                values.put(columns[i], record.get(i).trim());
+            }
+        }
+
+        // Checked by the same rules as the details screen.
+        values.put(InventoryEntry.COLUMN_ITEM_NAME,
+                Items.checkName(values.getAsString(InventoryEntry.COLUMN_ITEM_NAME)));
+
+        // Quantity defaults to 0 like the table does, but must be a whole number if given.
+        String quantity = values.getAsString(InventoryEntry.COLUMN_ITEM_QUANTITY);
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY,
+                TextUtils.isEmpty(quantity) ? 0 : Items.parseQuantity(quantity));
+
+        // Prices are written in dollars and stored in cents.
+        String price = values.getAsString(InventoryEntry.COLUMN_ITEM_PRICE);
+        if (TextUtils.isEmpty(price)) {
+            throw new IllegalArgumentException("missing price");
+        }
+        values.put(InventoryEntry.COLUMN_ITEM_PRICE, Price.parseCents(price));
+
+        // Supplier and image are optional, store null rather than an empty string.
+        if (TextUtils.isEmpty(values.getAsString(InventoryEntry.COLUMN_ITEM_SUPPLIER))) {
+            values.putNull(InventoryEntry.COLUMN_ITEM_SUPPLIER);
+        }
+        if (TextUtils.isEmpty(values.getAsString(InventoryEntry.COLUMN_ITEM_IMAGE))) {
+            values.putNull(InventoryEntry.COLUMN_ITEM_IMAGE);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,84 @@
+package com.washington.inventoryapp.data;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+/**
+ * One row of the items table, read once from a cursor so it can outlive the cursor.
+ */
+public class InventoryItem {
+
+    /**
+     * The columns to query so that {@link #fromCursor(Cursor)} can read a row by position.
+     */
+    public static final String[] PROJECTION = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryEntry.COLUMN_ITEM_IMAGE};
+
+    // Positions of the columns in PROJECTION
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_NAME = 1;
+    private static final int INDEX_QUANTITY = 2;
+    private static final int INDEX_PRICE = 3;
+    private static final int INDEX_SUPPLIER = 4;
+    private static final int INDEX_IMAGE = 5;
+
+    public final long id;
+    public final String name;
+    public final int quantity;
+    // Price in cents
+    public final long price;
+    public final String supplier;
+    public final String image;
+
+    public InventoryItem(long id, String name, int quantity, long price, String supplier,
+                         String image) {
+        this.id = id;
+        this.name = name;
+        this.quantity = quantity;
+        this.price = price;
+        this.supplier = supplier;
+        this.image = image;
+    }
+
+    /**
+     * Reads the current row of a cursor that was queried with {@link #PROJECTION}.
+     */
+    public static InventoryItem fromCursor(Cursor cursor) {
+        return new InventoryItem(
+                cursor.getLong(INDEX_ID),
+                cursor.getString(INDEX_NAME),
+                cursor.getInt(INDEX_QUANTITY),
+                cursor.getLong(INDEX_PRICE),
+                cursor.getString(INDEX_SUPPLIER),
+                cursor.getString(INDEX_IMAGE));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InventoryItem)) {
+            return false;
+        }
+        InventoryItem other = (InventoryItem) o;
+        return id == other.id
+                && quantity == other.quantity
+                && price == other.price
+                && TextUtils.equals(name, other.name)
+                && TextUtils.equals(supplier, other.supplier)
+                && TextUtils.equals(image, other.image);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+}
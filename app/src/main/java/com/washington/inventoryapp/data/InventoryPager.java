@@ -0,0 +1,459 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the items of a list URI one page at a time, for a list that only shows a few rows at
+ * once.
+ * <p>
+ * Pages are read with keyset queries ("_id > ? ORDER BY _id LIMIT ?"), so reading a page costs
+ * the same wherever it is in the table. Only the start key of each page is kept for the whole
+ * list. The rows themselves are only kept for the pages near the visible ones, and the page
+ * after the visible ones is loaded ahead of time.
+ * <p>
+ * All methods must be called on the main thread. Queries run on a background thread.
+ */
+public class InventoryPager {
+
+    /**
+     * Told on the main thread when pages have loaded or the size of the list has changed.
+     */
+    public interface Listener {
+        /**
+         * The size of the list or the position of its rows changed, so every row may be
+         * different.
+         */
+        void onPagesChanged();
+
+        /**
+         * The rows of one page loaded without changing the size of the list.
+         *
+         * @param firstPosition the position of the page's first row
+         * @param rowCount      the number of rows in the page
+         * @param diff          the changes from the rows that were shown before, with positions
+         *                      relative to firstPosition, or null if the page wasn't shown
+         */
+        void onPageChanged(int firstPosition, int rowCount, DiffUtil.DiffResult diff);
+    }
+
+    // Number of rows in each page
+    public static final int PAGE_SIZE = 50;
+
+    // Pages further than this from the visible pages are dropped
+    private static final int RESIDENT_PAGE_DISTANCE = 2;
+
+    // Queries for every pager run one at a time off the main thread
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    private static final String PAGE_SELECTION = InventoryEntry._ID + " > ?";
+
+    private static final String PAGE_SORT_ORDER = InventoryEntry._ID + " ASC";
+
+    private final ContentResolver mResolver;
+
+    // The list URI to page through, without a limit
+    private final Uri mBaseUri;
+
+    private final Listener mListener;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /*
+    Page k holds the first PAGE_SIZE rows with an _id greater than mPageKeys[k]. The last page
+    with a key is the frontier: it is the only page that may have fewer than PAGE_SIZE rows.
+     */
+    private long[] mPageKeys = new long[16];
+    private int mPageCount;
+
+    // Number of rows in the frontier page, or -1 if it hasn't been loaded yet
+    private int mFrontierSize = -1;
+
+    // The rows of the pages that are loaded, by page number
+    private final SparseArray<List<InventoryItem>> mPages = new SparseArray<>();
+
+    // Pages with a query running
+    private final SparseBooleanArray mLoading = new SparseBooleanArray();
+
+    // Loaded pages whose rows have changed and need to be read again
+    private final SparseBooleanArray mStale = new SparseBooleanArray();
+
+    // Pages that changed while their query was running, so the result may already be old
+    private final SparseBooleanArray mChangedWhileLoading = new SparseBooleanArray();
+
+    private int mFirstVisiblePage;
+    private int mLastVisiblePage;
+
+    /*
+    Increased whenever the page keys are replaced or the pager is closed, so results of queries
+    started before then are ignored.
+     */
+    private int mGeneration;
+
+    private final ContentObserver mObserver;
+
+    /**
+     * Constructs a new {@link InventoryPager} and starts loading the first page.
+     *
+     * @param resolver the ContentResolver to query
+     * @param baseUri  {@link InventoryEntry#CONTENT_URI} or a search URI, without a limit
+     * @param listener told when pages load
+     */
+    public InventoryPager(ContentResolver resolver, Uri baseUri, Listener listener) {
+        mResolver = resolver;
+        mBaseUri = baseUri;
+        mListener = listener;
+
+        mPageKeys[0] = -1;
+        mPageCount = 1;
+
+        mObserver = new ContentObserver(mMainHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                onDataChanged(uri);
+            }
+        };
+        mResolver.registerContentObserver(InventoryEntry.CONTENT_URI, true, mObserver);
+
+        requestPage(0);
+    }
+
+    /**
+     * Stops watching for changes. Pages that are still loading are ignored.
+     */
+    public void close() {
+        mResolver.unregisterContentObserver(mObserver);
+        mGeneration++;
+    }
+
+    /**
+     * Returns the number of rows in the list as far as it is known. It grows as pages load.
+     */
+    public int getCount() {
+        return (mPageCount - 1) * PAGE_SIZE + Math.max(mFrontierSize, 0);
+    }
+
+    /**
+     * Returns true once the last page of the list has been loaded.
+     */
+    public boolean isComplete() {
+        return mFrontierSize >= 0 && mFrontierSize < PAGE_SIZE;
+    }
+
+    /**
+     * Returns the row at the given position, or null if its page hasn't loaded yet. In that case
+     * the page is requested and the listener is told when it arrives.
+     */
+    public InventoryItem getItem(int position) {
+        int page = position / PAGE_SIZE;
+        List<InventoryItem> rows = mPages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return null;
+        }
+        int index = position % PAGE_SIZE;
+        return index < rows.size() ? rows.get(index) : null;
+    }
+
+    /**
+     * Tells the pager which rows are on screen. Pages far from them are dropped, and the visible
+     * pages and the one after them are loaded.
+     */
+    public void setVisibleRange(int firstPosition, int lastPosition) {
+        mFirstVisiblePage = firstPosition / PAGE_SIZE;
+        mLastVisiblePage = Math.max(lastPosition, firstPosition) / PAGE_SIZE;
+
+        int firstResident = mFirstVisiblePage - RESIDENT_PAGE_DISTANCE;
+        int lastResident = mLastVisiblePage + RESIDENT_PAGE_DISTANCE;
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            int page = mPages.keyAt(i);
+            if (page < firstResident || page > lastResident) {
+                mPages.removeAt(i);
+                mStale.delete(page);
+            }
+        }
+
+        // Load the visible pages plus the next one, so scrolling down doesn't wait.
+        for (int page = mFirstVisiblePage; page <= mLastVisiblePage + 1; page++) {
+            requestPage(page);
+        }
+    }
+
+    /**
+     * Starts loading a page if it has a key and isn't already loaded and up to date.
+     */
+    private void requestPage(final int page) {
+        if (page >= mPageCount || mLoading.get(page)
+                || (mPages.get(page) != null && !mStale.get(page))) {
+            return;
+        }
+        mLoading.put(page, true);
+
+        final long key = mPageKeys[page];
+        final int generation = mGeneration;
+        // The rows on screen now, so the diff against them can be worked out off the main thread
+        final List<InventoryItem> oldRows = mPages.get(page);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<InventoryItem> rows = queryPage(key);
+                final DiffUtil.DiffResult diff = oldRows == null || oldRows.size() != rows.size()
+                        ? null : DiffUtil.calculateDiff(new PageDiff(oldRows, rows), false);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            onPageLoaded(page, rows, diff, oldRows != null);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the rows of the page that starts after the given key. Runs on the background thread.
+     */
+    private List<InventoryItem> queryPage(long key) {
+        List<InventoryItem> rows = new ArrayList<>(PAGE_SIZE);
+        Cursor cursor = mResolver.query(limitedUri(PAGE_SIZE), InventoryItem.PROJECTION,
+                PAGE_SELECTION, new String[]{String.valueOf(key)}, PAGE_SORT_ORDER);
+        if (cursor == null) {
+            return rows;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                rows.add(InventoryItem.fromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Stores a page that has loaded and tells the listener what changed.
+     *
+     * @param diff     the changes from the rows shown before, or null if they can't be compared
+     * @param wasShown true if the page had rows before this load
+     */
+    private void onPageLoaded(int page, List<InventoryItem> rows, DiffUtil.DiffResult diff,
+                              boolean wasShown) {
+        int countBefore = getCount();
+        int generation = mGeneration;
+        mLoading.delete(page);
+        mPages.put(page, rows);
+        if (mChangedWhileLoading.get(page)) {
+            // Show these rows for now, but read the page again to pick up the change.
+            mChangedWhileLoading.delete(page);
+            mStale.put(page, true);
+            requestPage(page);
+        } else {
+            mStale.delete(page);
+        }
+
+        if (page == mPageCount - 1) {
+            // The frontier page. If it's full there may be another page after it.
+            if (rows.size() == PAGE_SIZE) {
+                addPageKey(rows.get(PAGE_SIZE - 1).id);
+                mFrontierSize = -1;
+                if (page + 1 <= mLastVisiblePage + 1) {
+                    requestPage(page + 1);
+                }
+            } else {
+                mFrontierSize = rows.size();
+            }
+        } else if (rows.size() != PAGE_SIZE
+                || rows.get(PAGE_SIZE - 1).id != mPageKeys[page + 1]) {
+            /*
+            A full page no longer ends where the next one starts, so rows were added or removed
+            before the end of the list. Work the page keys out again.
+             */
+            rekey();
+        }
+
+        if (generation != mGeneration || getCount() != countBefore || (wasShown && diff == null)) {
+            mListener.onPagesChanged();
+        } else {
+            mListener.onPageChanged(page * PAGE_SIZE, rows.size(), diff);
+        }
+    }
+
+    private void addPageKey(long key) {
+        if (mPageCount == mPageKeys.length) {
+            mPageKeys = Arrays.copyOf(mPageKeys, mPageCount * 2);
+        }
+        mPageKeys[mPageCount++] = key;
+    }
+
+    /**
+     * Reloads the page holding the changed item, or works out every page key again if the whole
+     * list changed or an item was added or removed outside the loaded pages.
+     */
+    private void onDataChanged(Uri uri) {
+        long id = -1;
+        if (uri != null && !InventoryEntry.CONTENT_URI.getPath().equals(uri.getPath())) {
+            try {
+                id = ContentUris.parseId(uri);
+            } catch (NumberFormatException e) {
+                // Not an item URI, treat it as a change to the whole list.
+            }
+        }
+        if (id < 0) {
+            rekey();
+            return;
+        }
+
+        // Find the page whose key range holds the item and reload it if it's resident.
+        int page = Arrays.binarySearch(mPageKeys, 0, mPageCount, id);
+        page = page >= 0 ? page - 1 : -page - 2;
+        if (page < 0) {
+            return;
+        }
+        if (mLoading.get(page)) {
+            mChangedWhileLoading.put(page, true);
+        } else if (mPages.get(page) != null) {
+            mStale.put(page, true);
+            requestPage(page);
+        } else if (!InventoryContract.CHANGE_UPDATE.equals(
+                InventoryContract.getChangeType(uri))) {
+            // An update of a row that isn't loaded changes nothing on screen, but an insert or
+            // delete moves the rows after it.
+            rekey();
+        }
+    }
+
+    /**
+     * Works out the page keys again from the IDs up to just past the visible pages, reading
+     * only the _id column, then reloads the resident pages. Rows already shown stay on screen
+     * until their page has reloaded.
+     */
+    private void rekey() {
+        final int generation = ++mGeneration;
+        mLoading.clear();
+        mChangedWhileLoading.clear();
+
+        final int targetPages = mLastVisiblePage + RESIDENT_PAGE_DISTANCE + 1;
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long[] ids = queryIds(targetPages * PAGE_SIZE);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            onRekeyed(ids, targetPages);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads up to limit IDs in order. Runs on the background thread.
+     */
+    private long[] queryIds(int limit) {
+        Cursor cursor = mResolver.query(limitedUri(limit), new String[]{InventoryEntry._ID},
+                null, null, PAGE_SORT_ORDER);
+        if (cursor == null) {
+            return new long[0];
+        }
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void onRekeyed(long[] ids, int targetPages) {
+        mPageCount = 1;
+        mPageKeys[0] = -1;
+        for (int i = PAGE_SIZE - 1; i < ids.length; i += PAGE_SIZE) {
+            addPageKey(ids[i]);
+        }
+        // If fewer IDs came back than asked for, the frontier page is the end of the list.
+        mFrontierSize = ids.length < targetPages * PAGE_SIZE ? ids.length % PAGE_SIZE : -1;
+
+        // Drop pages past the end and reload the rest.
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            int page = mPages.keyAt(i);
+            if (page >= mPageCount) {
+                mPages.removeAt(i);
+                mStale.delete(page);
+            } else {
+                mStale.put(page, true);
+                requestPage(page);
+            }
+        }
+        requestPage(mFirstVisiblePage);
+
+        mListener.onPagesChanged();
+    }
+
+    /**
+     * Compares the rows of a page before and after it was reloaded. Rows are the same item if
+     * they have the same ID, and unchanged if every column is equal.
+     */
+    private static class PageDiff extends DiffUtil.Callback {
+        private final List<InventoryItem> mOldRows;
+        private final List<InventoryItem> mNewRows;
+
+        PageDiff(List<InventoryItem> oldRows, List<InventoryItem> newRows) {
+            mOldRows = oldRows;
+            mNewRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldRows.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewRows.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).id == mNewRows.get(newItemPosition).id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.get(oldItemPosition).equals(mNewRows.get(newItemPosition));
+        }
+    }
+
+    private Uri limitedUri(int limit) {
+        return mBaseUri.buildUpon()
+                .appendQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT,
+                        String.valueOf(limit))
+                .build();
+    }
+}
@@ -5,18 +5,41 @@ package com.washington.inventoryapp.data;
  */
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.washington.inventoryapp.R;
+import com.washington.inventoryapp.core.Items;
 import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+import com.washington.inventoryapp.data.InventoryContract.SummaryEntry;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The ContentProvider for the app
@@ -38,6 +61,31 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final int ITEM_ID = 101;
 
+    /**
+     * URI matcher code for the content URI that searches items by name and supplier
+     */
+    private static final int SEARCH = 102;
+
+    /**
+     * URI matcher code for the content URI for the stock totals
+     */
+    private static final int SUMMARY = 103;
+
+    /**
+     * URI matcher code for the content URI for the stock totals of each supplier
+     */
+    private static final int SUMMARY_SUPPLIERS = 104;
+
+    /**
+     * URI matcher code for the content URI for the stock movement ledger
+     */
+    private static final int MOVEMENTS = 105;
+
+    /**
+     * URI matcher code for the content URI for the item with a SKU
+     */
+    private static final int ITEM_SKU = 106;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -73,20 +121,156 @@ public class InventoryProvider extends ContentProvider {
          */
         sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY +
                 "/#", ITEM_ID);
+
+        /*
+        The content URI of the form "content://com.example.android.inventory/inventory/search"
+        will map to the integer code {@link #SEARCH}. The search text is passed in the "q" query
+        parameter.
+         */
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY +
+                "/" + InventoryContract.PATH_SEARCH, SEARCH);
+
+        /*
+        The content URIs "content://com.example.android.inventory/inventory/summary" and
+        ".../inventory/summary/suppliers" map to {@link #SUMMARY} and {@link #SUMMARY_SUPPLIERS}.
+        They return the stock totals of the items table.
+         */
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY +
+                "/" + InventoryContract.PATH_SUMMARY, SUMMARY);
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY +
+                "/" + InventoryContract.PATH_SUMMARY + "/" + InventoryContract.PATH_SUPPLIERS,
+                SUMMARY_SUPPLIERS);
+
+        /*
+        The content URI "content://com.example.android.inventory/inventory/movements" maps to
+        {@link #MOVEMENTS}. It returns the ledger of quantity changes.
+         */
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY +
+                "/" + InventoryContract.PATH_MOVEMENTS, MOVEMENTS);
+
+        /*
+        The content URI of the form "content://com.example.android.inventory/inventory/sku/*"
+        maps to {@link #ITEM_SKU}. It addresses the one item with the SKU in the last segment,
+        e.g. a scanned barcode.
+         */
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY +
+                "/" + InventoryContract.PATH_SKU + "/*", ITEM_SKU);
     }
 
+    // Default number of rows a search returns if no limit is given
+    private static final String DEFAULT_SEARCH_LIMIT = "50";
+
+    // Most changes returned by one sync outbox call
+    private static final int SYNC_BATCH_SIZE = 500;
+
+    // Selects the items whose name or supplier match the full-text query. Bind args: 1 = query.
+    private static final String SEARCH_SELECTION = InventoryEntry._ID + " IN (SELECT docid FROM "
+            + InventoryEntry.SEARCH_TABLE_NAME + " WHERE " + InventoryEntry.SEARCH_TABLE_NAME
+            + " MATCH ?)";
+
+    // The stock totals both summaries return
+    private static final String SUMMARY_COLUMNS = "COUNT(*) AS " + SummaryEntry.COLUMN_ITEM_COUNT
+            + ", IFNULL(SUM(" + InventoryEntry.COLUMN_ITEM_QUANTITY + "), 0) AS "
+            + SummaryEntry.COLUMN_TOTAL_UNITS
+            + ", IFNULL(SUM(" + InventoryEntry.COLUMN_ITEM_QUANTITY + " * "
+            + InventoryEntry.COLUMN_ITEM_PRICE + "), 0) AS " + SummaryEntry.COLUMN_STOCK_VALUE;
+
+    // The columns both summary tables store
+    private static final String STORED_SUMMARY_COLUMNS = SummaryEntry.COLUMN_ITEM_COUNT + ", "
+            + SummaryEntry.COLUMN_TOTAL_UNITS + ", " + SummaryEntry.COLUMN_STOCK_VALUE + ", "
+            + SummaryEntry.COLUMN_LOW_STOCK_COUNT;
+
+    /**
+     * Totals of the whole inventory for the default low stock threshold, read from the single
+     * row the triggers keep up to date. No bind args.
+     */
+    private static final String SQL_STORED_SUMMARY = "SELECT " + STORED_SUMMARY_COLUMNS
+            + " FROM " + SummaryEntry.TOTALS_TABLE_NAME;
+
+    /**
+     * Totals of each supplier for the default low stock threshold, read from the rows the
+     * triggers keep up to date. Items without a supplier are stored under "", which is returned
+     * as null. No bind args.
+     */
+    private static final String SQL_STORED_SUPPLIER_SUMMARY = "SELECT NULLIF("
+            + SummaryEntry.COLUMN_SUPPLIER + ", '') AS " + SummaryEntry.COLUMN_SUPPLIER + ", "
+            + STORED_SUMMARY_COLUMNS + " FROM " + SummaryEntry.SUPPLIERS_TABLE_NAME;
+
+    /**
+     * Totals of the whole inventory for any other threshold, read from the supplier index,
+     * which holds quantity and price. The low stock count is a range search on the quantity
+     * index.
+     * Bind args: 1 = low stock threshold.
+     */
+    private static final String SQL_SUMMARY = "SELECT " + SUMMARY_COLUMNS
+            + ", (SELECT COUNT(*) FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " < ?) AS "
+            + SummaryEntry.COLUMN_LOW_STOCK_COUNT
+            + " FROM " + InventoryEntry.TABLE_NAME;
+
+    /**
+     * Totals of each supplier for any other threshold, grouped in one pass over the supplier
+     * index. A null and an empty supplier share one row, as in the stored totals.
+     * Bind args: 1 = low stock threshold.
+     */
+    private static final String SQL_SUPPLIER_SUMMARY = "SELECT NULLIF("
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", '') AS " + SummaryEntry.COLUMN_SUPPLIER
+            + ", " + SUMMARY_COLUMNS
+            + ", IFNULL(SUM(" + InventoryEntry.COLUMN_ITEM_QUANTITY + " < ?), 0) AS "
+            + SummaryEntry.COLUMN_LOW_STOCK_COUNT
+            + " FROM " + InventoryEntry.TABLE_NAME
+            + " GROUP BY NULLIF(" + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", '')";
+
+    // Selects the item with a SKU. Bind args: 1 = SKU.
+    private static final String SKU_SELECTION = InventoryEntry.COLUMN_ITEM_SKU + "=?";
+
     // The database helper object
     private InventoryDbHelper mDbHelper;
 
+    // Collects change notifications and sends them in bursts
+    private ChangeDispatcher mDispatcher;
+
+    // Recently read items by ID
+    private ItemCache mItemCache;
+
+    // Compiled statements for the paths that touch one item, created on first use
+    private ItemStatements mStatements;
+
+    /**
+     * Set while applyBatch() runs on the current thread. Change notifications are held back
+     * until the batch commits so observers get one notification instead of one per operation.
+     */
+    private final ThreadLocal<Boolean> mInBatch = new ThreadLocal<>();
+
     /**
      * Initializes the provider and database helper object
      */
     @Override
     public boolean onCreate() {
         mDbHelper = new InventoryDbHelper(getContext());
+        mDispatcher = new ChangeDispatcher(getContext().getContentResolver(),
+                ChangeDispatcher.DEFAULT_WINDOW_MILLIS);
+        mItemCache = new ItemCache(getContext().getResources().getInteger(
+                R.integer.item_cache_size));
         return true;
     }
 
+    /**
+     * Sends any queued change notifications and closes the database. Only called by tests.
+     */
+    @Override
+    public void shutdown() {
+        mDispatcher.close();
+        synchronized (this) {
+            if (mStatements != null) {
+                mStatements.close();
+                mStatements = null;
+            }
+        }
+        mDbHelper.close();
+        super.shutdown();
+    }
+
     /**
      * Perform the query for the given URI. Use the given projection, selection, selection
      * arguments, and sort order.
@@ -111,7 +295,7 @@ public class InventoryProvider extends ContentProvider {
                 /*
                 For the ITEM code, query the items table directly with the given projection,
                 selection, selection arguments, and sort order. Multiple rows of the items table
-                can be in the cursor.
+                can be in the cursor, up to the limit query parameter if one was given.
                  */
                 cursor = database.query(InventoryEntry.TABLE_NAME,
                         projection,
@@ -119,14 +303,22 @@ public class InventoryProvider extends ContentProvider {
                         selectionArgs,
                         null,
                         null,
-                        sortOrder);
+                        sortOrder,
+                        getLimit(uri));
                 break;
             case ITEM_ID:
                 /*
-                For the ITEM_ID code, extract out the ID from the URI.
-                Example: "content://com.example.android.inventory/inventory/3" will have the
-                selection "_id=?" and the selection argument ID of 3 (String array).
+                For the ITEM_ID code, extract out the ID from the URI and answer from the item
+                cache, reading the row into it first if it isn't cached. Projections with
+                anything other than plain columns are queried from the database.
+                Example: "content://com.example.android.inventory/inventory/3" reads item 3.
                  */
+                long id = ContentUris.parseId(uri);
+                int[] indexes = ItemCache.indexesOf(projection);
+                if (indexes != null) {
+                    cursor = ItemCache.toCursor(readItem(database, id), projection, indexes);
+                    break;
+                }
 
                 /*
                 For every "?" in the selection, we need to have an element in the selection
@@ -134,7 +326,7 @@ public class InventoryProvider extends ContentProvider {
                 selection, we have 1 String in the selection arguments' String array.
                  */
                 selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                selectionArgs = new String[]{String.valueOf(id)};
 
                 /*
                  Performs a query on the table which will return a row specified by its
@@ -149,6 +341,108 @@ public class InventoryProvider extends ContentProvider {
                         null,
                         sortOrder);
                 break;
+            case ITEM_SKU:
+                /*
+                For the ITEM_SKU code, look the item up by the SKU in the last segment of the
+                URI, which the SKU index finds without reading the table.
+                 */
+                cursor = database.query(
+                        InventoryEntry.TABLE_NAME,
+                        projection,
+                        SKU_SELECTION,
+                        new String[]{uri.getLastPathSegment()},
+                        null,
+                        null,
+                        sortOrder);
+
+                // Changes are notified on the item URIs, so watch the whole table.
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryEntry.CONTENT_URI);
+                return cursor;
+            case SEARCH:
+                /*
+                For the SEARCH code, look the items up in the full-text index and combine it
+                with any selection the caller gave (e.g. "_id > ?" to read the next page).
+                 */
+                String matchQuery = buildMatchQuery(
+                        uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_SEARCH));
+                if (matchQuery != null) {
+                    selection = selection == null ? SEARCH_SELECTION
+                            : SEARCH_SELECTION + " AND (" + selection + ")";
+                    selectionArgs = prepend(matchQuery, selectionArgs);
+                }
+                if (sortOrder == null) {
+                    sortOrder = InventoryEntry.COLUMN_ITEM_NAME + " COLLATE NOCASE, "
+                            + InventoryEntry._ID;
+                }
+                String limit = getLimit(uri);
+                cursor = database.query(InventoryEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder,
+                        limit == null ? DEFAULT_SEARCH_LIMIT : limit);
+
+                /*
+                Changes are notified on the item URIs, which aren't below the search URI, so
+                watch the whole table instead.
+                 */
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryEntry.CONTENT_URI);
+                return cursor;
+            case SUMMARY:
+            case SUMMARY_SUPPLIERS:
+                /*
+                For the summary codes, query the totals as a subquery so the caller's projection,
+                selection and sort order still apply, e.g. to pick one supplier. The default
+                threshold reads the stored totals. Any other threshold computes them from the
+                items, with the threshold as the subquery's only argument before the selection's.
+                 */
+                if (match == SUMMARY_SUPPLIERS && sortOrder == null) {
+                    sortOrder = SummaryEntry.COLUMN_SUPPLIER;
+                }
+                int threshold = getLowStockThreshold(uri);
+                String summarySql;
+                if (threshold == InventoryContract.DEFAULT_LOW_STOCK_THRESHOLD) {
+                    summarySql = match == SUMMARY ? SQL_STORED_SUMMARY
+                            : SQL_STORED_SUPPLIER_SUMMARY;
+                } else {
+                    summarySql = match == SUMMARY ? SQL_SUMMARY : SQL_SUPPLIER_SUMMARY;
+                    selectionArgs = prepend(String.valueOf(threshold), selectionArgs);
+                }
+                cursor = database.query(
+                        "(" + summarySql + ")",
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder);
+
+                // The totals change with any item, so watch the whole table.
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryEntry.CONTENT_URI);
+                return cursor;
+            case MOVEMENTS:
+                /*
+                For the MOVEMENTS code, query the ledger with the caller's selection, e.g.
+                "item_id = ?" for one item's history, oldest first unless a sort order is given.
+                 */
+                cursor = database.query(MovementEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder == null ? MovementEntry._ID : sortOrder,
+                        getLimit(uri));
+
+                // Movements are written with item changes, so watch the whole table.
+                cursor.setNotificationUri(getContext().getContentResolver(),
+                        InventoryEntry.CONTENT_URI);
+                return cursor;
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
@@ -163,6 +457,143 @@ public class InventoryProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Returns the item with the given ID from the cache, or reads it from the database and
+     * caches it. Returns null if there is no such item.
+     */
+    private ItemCache.Item readItem(SQLiteDatabase database, long id) {
+        ItemCache.Item item = mItemCache.get(id);
+        if (item != null) {
+            return item;
+        }
+        long generation = mItemCache.generation();
+        Cursor cursor = ItemStatements.readItem(database, id);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            item = ItemCache.read(cursor);
+        } finally {
+            cursor.close();
+        }
+        mItemCache.put(item, generation);
+        return item;
+    }
+
+    /**
+     * Turns the text the user typed into an FTS query that matches every word as a prefix,
+     * e.g. "sony head" becomes "sony* head*".
+     *
+     * @return the query, or null if the text has no words to search for
+     */
+    static String buildMatchQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        // Anything other than letters and digits would be FTS syntax, so split on it.
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(word).append('*');
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+
+    /**
+     * Returns a new array with the value followed by the given arguments, which may be null.
+     */
+    private static String[] prepend(String value, String[] args) {
+        if (args == null) {
+            return new String[]{value};
+        }
+        String[] result = new String[args.length + 1];
+        result[0] = value;
+        System.arraycopy(args, 0, result, 1, args.length);
+        return result;
+    }
+
+    /**
+     * Returns the value of the URI's limit query parameter, or null if there isn't one.
+     *
+     * @throws IllegalArgumentException if the limit isn't a positive number
+     */
+    private static String getLimit(Uri uri) {
+        String limit = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            return null;
+        }
+        try {
+            if (Integer.parseInt(limit) > 0) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the exception below
+        }
+        throw new IllegalArgumentException("Invalid limit " + limit + " for " + uri);
+    }
+
+    /**
+     * Returns the URI's low stock threshold, or the default if it doesn't have one.
+     *
+     * @throws IllegalArgumentException if the threshold isn't a number of 0 or more
+     */
+    private static int getLowStockThreshold(Uri uri) {
+        String threshold = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_LOW_STOCK);
+        if (threshold == null) {
+            return InventoryContract.DEFAULT_LOW_STOCK_THRESHOLD;
+        }
+        try {
+            int value = Integer.parseInt(threshold);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the exception below
+        }
+        throw new IllegalArgumentException("Invalid low stock threshold " + threshold
+                + " for " + uri);
+    }
+
+    /**
+     * Returns the reason given in the URI's reason query parameter, or the default if there
+     * isn't one.
+     *
+     * @throws IllegalArgumentException if the reason is empty
+     */
+    private static String getReason(Uri uri, String defaultReason) {
+        String reason = uri.getQueryParameter(InventoryContract.QUERY_PARAMETER_REASON);
+        if (reason == null) {
+            return defaultReason;
+        }
+        if (reason.isEmpty()) {
+            throw new IllegalArgumentException("Empty reason for " + uri);
+        }
+        return reason;
+    }
+
+    /**
+     * Returns the quantity in the values, or 0 if they don't have one, which is the column's
+     * default.
+     *
+     * @throws IllegalArgumentException if the quantity isn't a whole number
+     */
+    private static long getQuantity(ContentValues values) {
+        if (!values.containsKey(InventoryEntry.COLUMN_ITEM_QUANTITY)) {
+            return 0;
+        }
+        Long quantity = values.getAsLong(InventoryEntry.COLUMN_ITEM_QUANTITY);
+        if (quantity == null) {
+            throw new IllegalArgumentException("Invalid quantity "
+                    + values.get(InventoryEntry.COLUMN_ITEM_QUANTITY));
+        }
+        return quantity;
+    }
+
     /**
      * Inserts new data into the provider with the given ContentValues.
      */
@@ -172,6 +603,8 @@ public class InventoryProvider extends ContentProvider {
         switch (match) {
             case ITEM:
                 return insertItem(uri, values);
+            case ITEM_SKU:
+                return upsertItem(uri, values);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
@@ -179,28 +612,309 @@ public class InventoryProvider extends ContentProvider {
 
     /**
      * Inserts an item into the database with the given content values. Returns the new content URI
-     * for that specific row in the database.
+     * for that specific row in the database. The item's starting quantity is recorded in the
+     * ledger in the same transaction.
      */
     private Uri insertItem(Uri uri, ContentValues values) {
+        long quantity = getQuantity(values);
+        String reason = getReason(uri, MovementEntry.REASON_RECEIVED);
+        long now = System.currentTimeMillis();
+
         // Gets a writable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
         // Insert a new item with the given values.
-        long id = database.insert(InventoryEntry.TABLE_NAME, null, values);
+        long id;
+        database.beginTransaction();
+        try {
+            id = database.insert(InventoryEntry.TABLE_NAME, null, stamped(values, now));
+            if (id != -1) {
+                StockLedger.record(database, id, quantity, reason, now);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
         // If the ID is -1, the insertion failed. Log the error and return null.
         if (id == -1) {
             Log.e(LOG_TAG, "Failed to insert row for " + uri);
             return null;
         }
 
-        // Notifies all listeners that the data has changed for the item content URI.
-        getContext().getContentResolver().notifyChange(uri, null);
+        // Notifies all listeners that the new item has been added.
+        notifyChange(InventoryEntry.inventoryUri(id), InventoryContract.CHANGE_INSERT);
 
         // Once we know the ID of the new row in the table,
         // return the new URI with the ID appended to the end of it
         return ContentUris.withAppendedId(uri, id);
     }
 
+    /**
+     * Inserts an item with the SKU in the URI, or updates the item that already has that SKU,
+     * in one transaction. Either way the change of quantity is recorded in the ledger. Returns
+     * the content URI of the item.
+     *
+     * @throws IllegalArgumentException if the values hold a different SKU
+     */
+    private Uri upsertItem(Uri uri, ContentValues values) {
+        String sku = uri.getLastPathSegment();
+        String valuesSku = values.getAsString(InventoryEntry.COLUMN_ITEM_SKU);
+        if (valuesSku != null && !valuesSku.equals(sku)) {
+            throw new IllegalArgumentException("SKU " + valuesSku + " doesn't match " + uri);
+        }
+        ContentValues row = new ContentValues(values);
+        row.put(InventoryEntry.COLUMN_ITEM_SKU, sku);
+        boolean quantityChanges = values.containsKey(InventoryEntry.COLUMN_ITEM_QUANTITY);
+        long quantity = getQuantity(values);
+        String reason = getReason(uri, null);
+        String[] skuArgs = {sku};
+        long now = System.currentTimeMillis();
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        long id;
+        boolean inserted;
+        database.beginTransaction();
+        try {
+            id = findIdBySku(database, sku);
+            inserted = id == -1;
+            if (inserted) {
+                id = database.insert(InventoryEntry.TABLE_NAME, null, stamped(row, now));
+                if (id != -1) {
+                    StockLedger.record(database, id, quantity,
+                            reason == null ? MovementEntry.REASON_RECEIVED : reason, now);
+                }
+            } else {
+                if (quantityChanges) {
+                    StockLedger.recordUpdate(database, SKU_SELECTION, skuArgs, quantity,
+                            reason == null ? MovementEntry.REASON_CORRECTION : reason, now);
+                }
+                database.update(InventoryEntry.TABLE_NAME, stamped(row, now), SKU_SELECTION,
+                        skuArgs);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        // If the ID is -1, the insertion failed. Log the error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        notifyChange(InventoryEntry.inventoryUri(id),
+                inserted ? InventoryContract.CHANGE_INSERT : InventoryContract.CHANGE_UPDATE);
+        return InventoryEntry.inventoryUri(id);
+    }
+
+    /**
+     * Returns the ID of the item with the SKU, or -1 if there isn't one.
+     */
+    private static long findIdBySku(SQLiteDatabase database, String sku) {
+        Cursor cursor = database.query(InventoryEntry.TABLE_NAME,
+                new String[]{InventoryEntry._ID}, SKU_SELECTION, new String[]{sku},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Inserts all of the given rows inside one transaction. Rows that share the same set of
+     * columns reuse one compiled INSERT statement, and listeners are notified once at the end.
+     * Rows without an updated_at time are given the current time, and each row's quantity is
+     * recorded in the ledger. A row that breaks a constraint, such as a SKU that is taken or a
+     * missing name, is logged and skipped, and the other rows are still inserted.
+     * Returns the number of rows that were inserted.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final int match = sUriMatcher.match(uri);
+        if (match != ITEM) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsInserted = 0;
+        long now = System.currentTimeMillis();
+        String reason = getReason(uri, MovementEntry.REASON_RECEIVED);
+
+        // The statement currently compiled and the columns it was compiled for.
+        SQLiteStatement statement = null;
+        String[] statementColumns = null;
+        SQLiteStatement movementStatement = null;
+
+        database.beginTransaction();
+        try {
+            for (ContentValues row : values) {
+                long quantity = getQuantity(row);
+                boolean stamp = !row.containsKey(InventoryEntry.COLUMN_ITEM_UPDATED_AT);
+                String[] columns = row.keySet().toArray(new String[row.size() + (stamp ? 1 : 0)]);
+                if (stamp) {
+                    columns[columns.length - 1] = InventoryEntry.COLUMN_ITEM_UPDATED_AT;
+                }
+                Arrays.sort(columns);
+
+                // Only compile a new statement when the row has different columns.
+                if (statement == null || !Arrays.equals(columns, statementColumns)) {
+                    if (statement != null) {
+                        statement.close();
+                    }
+                    statement = database.compileStatement(buildInsertSql(columns));
+                    statementColumns = columns;
+                }
+
+                statement.clearBindings();
+                for (int i = 0; i < columns.length; i++) {
+                    if (stamp && InventoryEntry.COLUMN_ITEM_UPDATED_AT.equals(columns[i])) {
+                        statement.bindLong(i + 1, now);
+                    } else {
+                        bindValue(statement, i + 1, row.get(columns[i]));
+                    }
+                }
+
+                long id;
+                try {
+                    id = statement.executeInsert();
+                } catch (SQLiteConstraintException e) {
+                    // Only this row's insert is undone, so the rest of the batch goes on.
+                    Log.e(LOG_TAG, "Failed to insert row for " + uri, e);
+                    continue;
+                }
+                rowsInserted++;
+                if (quantity != 0) {
+                    if (movementStatement == null) {
+                        movementStatement = database.compileStatement(
+                                StockLedger.SQL_INSERT_MOVEMENT);
+                    }
+                    StockLedger.record(movementStatement, id, quantity, reason, now);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            if (statement != null) {
+                statement.close();
+            }
+            if (movementStatement != null) {
+                movementStatement.close();
+            }
+        }
+
+        // One notification for the whole batch.
+        if (rowsInserted != 0) {
+            notifyChange(uri, InventoryContract.CHANGE_INSERT);
+        }
+        return rowsInserted;
+    }
+
+    /**
+     * Applies all of the operations inside one transaction. If any operation fails, none of
+     * them are kept. Listeners are notified once after the transaction commits.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+
+        mInBatch.set(Boolean.TRUE);
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mInBatch.remove();
+            // Reads inside the batch may have cached rows that were rolled back.
+            mItemCache.clear();
+        }
+
+        if (!operations.isEmpty()) {
+            notifyChange(InventoryEntry.CONTENT_URI, InventoryContract.CHANGE_UPDATE);
+        }
+        return results;
+    }
+
+    /**
+     * Builds an INSERT statement for the items table with one "?" per column.
+     */
+    private static String buildInsertSql(String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(InventoryEntry.TABLE_NAME).append(" (");
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                params.append(", ");
+            }
+            sql.append(columns[i]);
+            params.append('?');
+        }
+        return sql.append(") VALUES (").append(params).append(')').toString();
+    }
+
+    /**
+     * Binds a value taken from ContentValues to the statement using its matching SQLite type.
+     */
+    private static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            statement.bindLong(index, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            statement.bindLong(index, (Boolean) value ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            statement.bindBlob(index, (byte[]) value);
+        } else {
+            statement.bindString(index, value.toString());
+        }
+    }
+
+    /**
+     * Returns a copy of the values with updated_at set to now, leaving the caller's values as
+     * they were.
+     */
+    private static ContentValues stamped(ContentValues values, long now) {
+        ContentValues stamped = new ContentValues(values);
+        stamped.put(InventoryEntry.COLUMN_ITEM_UPDATED_AT, now);
+        return stamped;
+    }
+
+    /**
+     * Drops the changed items from the cache and queues a notification that the data at the URI
+     * has changed, unless a batch is running on this thread. The batch does both once it
+     * commits. A change to one item is sent for that item's URI only. Any other URI is sent as a
+     * change to the whole table.
+     * <p>
+     * Must be called after the write's transaction has ended, so a reader can't cache the rows
+     * from before it again.
+     *
+     * @param changeType one of the CHANGE constants in {@link InventoryContract}
+     */
+    private void notifyChange(Uri uri, String changeType) {
+        if (mInBatch.get() != null) {
+            return;
+        }
+        // Every committed write ends up here, so checkpoint once they stop.
+        mDbHelper.scheduleCheckpoint();
+        if (sUriMatcher.match(uri) == ITEM_ID) {
+            long id = ContentUris.parseId(uri);
+            mItemCache.remove(id);
+            mDispatcher.itemChanged(id, changeType);
+        } else {
+            mItemCache.clear();
+            mDispatcher.tableChanged(changeType);
+        }
+    }
+
     /**
      * Updates the data at the given selection and selection arguments, with the new ContentValues.
      */
@@ -211,6 +925,11 @@ public class InventoryProvider extends ContentProvider {
             case ITEM:
                 return updateItem(uri, values, selection, selectionArgs);
             case ITEM_ID:
+                // Setting only the quantity, e.g. after a stock count, has its own statements.
+                if (values.size() == 1
+                        && values.containsKey(InventoryEntry.COLUMN_ITEM_QUANTITY)) {
+                    return setQuantity(uri, ContentUris.parseId(uri), getQuantity(values));
+                }
                 /*
                 For the ITEM_ID code, extract out the ID from the URI,
                 so we know which row to update. Selection will be "_id=?" and selection
@@ -219,6 +938,10 @@ public class InventoryProvider extends ContentProvider {
                 selection = InventoryEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
                 return updateItem(uri, values, selection, selectionArgs);
+            case ITEM_SKU:
+                // For the ITEM_SKU code, update the item with the SKU in the URI.
+                return updateItem(uri, values, SKU_SELECTION,
+                        new String[]{uri.getLastPathSegment()});
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -228,26 +951,43 @@ public class InventoryProvider extends ContentProvider {
      * Update items in the database with the given content values. Apply the changes to the rows
      * specified in the selection and selection arguments (which could be 0, 1, or more items).
      * Return the number of rows that were successfully updated.
+     * If the quantity is set, the change of each item is recorded in the ledger first, in the
+     * same transaction.
      */
     private int updateItem(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
         // If there are no values to update, then don't update the database
         if (values.size() == 0) {
             return 0;
         }
+        boolean quantityChanges = values.containsKey(InventoryEntry.COLUMN_ITEM_QUANTITY);
+        long quantity = getQuantity(values);
+        String reason = getReason(uri, MovementEntry.REASON_CORRECTION);
+        long now = System.currentTimeMillis();
 
         // Otherwise, get a writeable database to update the data.
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
         // Perform the update on the database and get the number of rows affected.
-        int rowsUpdated = database.update(InventoryEntry.TABLE_NAME,
-                values, selection, selectionArgs);
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            if (quantityChanges) {
+                StockLedger.recordUpdate(database, selection, selectionArgs, quantity, reason,
+                        now);
+            }
+            rowsUpdated = database.update(InventoryEntry.TABLE_NAME,
+                    stamped(values, now), selection, selectionArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
         /*
         If 1 or more rows were updated, then notify all listeners that the data at the
         given URI has changed.
          */
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri, InventoryContract.CHANGE_UPDATE);
         }
 
         // Returns the number of database rows affected by the update statement.
@@ -255,43 +995,517 @@ public class InventoryProvider extends ContentProvider {
     }
 
     /**
-     * Delete the data at the given selection and selection arguments.
+     * Sets one item's quantity like {@link #updateItem} does, recording the change in the
+     * ledger, with the compiled statements and the ID bound as a long.
+     */
+    private int setQuantity(Uri uri, long id, long quantity) {
+        String reason = getReason(uri, MovementEntry.REASON_CORRECTION);
+        long now = System.currentTimeMillis();
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsUpdated;
+
+        database.beginTransaction();
+        try {
+            synchronized (this) {
+                ItemStatements statements = statements(database);
+                long oldQuantity;
+                try {
+                    oldQuantity = statements.quantity(id);
+                } catch (SQLiteDoneException e) {
+                    /*
+                    There is no such item. Nothing was written, but the transaction still has
+                    to succeed, or it would roll back the batch it may be nested in.
+                     */
+                    database.setTransactionSuccessful();
+                    return 0;
+                }
+                statements.recordMovement(id, quantity - oldQuantity, reason, now);
+                rowsUpdated = statements.setQuantity(id, quantity, now);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (rowsUpdated != 0) {
+            notifyChange(uri, InventoryContract.CHANGE_UPDATE);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Delete the data at the given selection and selection arguments. The stock the deleted
+     * items held is taken out in the ledger, in the same transaction.
      */
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         // Track the number of rows deleted.
         int rowsDeleted;
 
-        // Get writable database
-        SQLiteDatabase database = mDbHelper.getWritableDatabase();
-
         int match = sUriMatcher.match(uri);
         switch (match) {
             case ITEM:
                 // Delete all the rows that match the selection and selection args for ITEM.
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
                 break;
             case ITEM_ID:
-                selection = InventoryEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
                 // Delete the single row for the given by ID in the URI.
-                rowsDeleted = database.delete(InventoryEntry.TABLE_NAME,
-                        selection, selectionArgs);
+                return deleteItem(uri, ContentUris.parseId(uri));
+            case ITEM_SKU:
+                // Delete the single row with the SKU in the URI.
+                selection = SKU_SELECTION;
+                selectionArgs = new String[]{uri.getLastPathSegment()};
                 break;
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
+        String reason = getReason(uri, MovementEntry.REASON_REMOVED);
+
+        // Get writable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        database.beginTransaction();
+        try {
+            StockLedger.recordDelete(database, selection, selectionArgs, reason,
+                    System.currentTimeMillis());
+            rowsDeleted = database.delete(InventoryEntry.TABLE_NAME, selection, selectionArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
         /*
         If 1 or more rows were deleted, then notify all listeners that the data at
         the given URI has changed.
          */
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri, InventoryContract.CHANGE_DELETE);
         }
         // Return the number of rows deleted.
         return rowsDeleted;
     }
 
+    /**
+     * Deletes one item like {@link #delete} does, taking its stock out in the ledger, with the
+     * compiled statements and the ID bound as a long.
+     */
+    private int deleteItem(Uri uri, long id) {
+        String reason = getReason(uri, MovementEntry.REASON_REMOVED);
+        long now = System.currentTimeMillis();
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsDeleted;
+
+        database.beginTransaction();
+        try {
+            synchronized (this) {
+                ItemStatements statements = statements(database);
+                long quantity;
+                try {
+                    quantity = statements.quantity(id);
+                } catch (SQLiteDoneException e) {
+                    /*
+                    There is no such item. Nothing was written, but the transaction still has
+                    to succeed, or it would roll back the batch it may be nested in.
+                     */
+                    database.setTransactionSuccessful();
+                    return 0;
+                }
+                statements.recordMovement(id, -quantity, reason, now);
+                rowsDeleted = statements.delete(id);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        if (rowsDeleted != 0) {
+            notifyChange(uri, InventoryContract.CHANGE_DELETE);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Handles provider methods that don't fit query/insert/update/delete.
+     * {@link InventoryContract#METHOD_ADJUST_QUANTITY} adds a delta to an item's quantity,
+     * {@link InventoryContract#METHOD_ADJUST_QUANTITY_BY_SKU} does the same for a SKU,
+     * {@link InventoryContract#METHOD_ADJUST_QUANTITIES} applies many adjustments at once,
+     * {@link InventoryContract#METHOD_QUANTITY_AT} returns an item's quantity at a point in time,
+     * {@link InventoryContract#METHOD_CHECK_SUMMARY} checks and repairs the stored totals,
+     * the sync methods read and acknowledge the outbox and apply received changes, the snapshot
+     * methods back up and restore the items, and
+     * {@link InventoryContract#METHOD_CACHE_STATS} reports the item cache's hits and misses.
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (InventoryContract.METHOD_ADJUST_QUANTITY.equals(method)) {
+            if (arg == null || extras == null) {
+                throw new IllegalArgumentException("Item ID and delta are required for " + method);
+            }
+            int delta = extras.getInt(InventoryContract.EXTRA_DELTA);
+            String reason = extras.getString(InventoryContract.EXTRA_REASON);
+            if (reason == null) {
+                reason = delta < 0 ? MovementEntry.REASON_SALE : MovementEntry.REASON_RESTOCK;
+            }
+            return adjustQuantity(Long.parseLong(arg), delta, reason);
+        }
+        if (InventoryContract.METHOD_ADJUST_QUANTITY_BY_SKU.equals(method)) {
+            if (arg == null || extras == null) {
+                throw new IllegalArgumentException("SKU and delta are required for " + method);
+            }
+            int delta = extras.getInt(InventoryContract.EXTRA_DELTA);
+            String reason = extras.getString(InventoryContract.EXTRA_REASON);
+            if (reason == null) {
+                reason = delta < 0 ? MovementEntry.REASON_SALE : MovementEntry.REASON_RESTOCK;
+            }
+            return adjustQuantityBySku(arg, delta, reason);
+        }
+        if (InventoryContract.METHOD_ADJUST_QUANTITIES.equals(method)) {
+            long[] ids = extras == null ? null : extras.getLongArray(InventoryContract.EXTRA_IDS);
+            int[] deltas = extras == null ? null
+                    : extras.getIntArray(InventoryContract.EXTRA_DELTAS);
+            if (ids == null || deltas == null || ids.length != deltas.length) {
+                throw new IllegalArgumentException("Item IDs and as many deltas are required for "
+                        + method);
+            }
+            return adjustQuantities(ids, deltas);
+        }
+        if (InventoryContract.METHOD_QUANTITY_AT.equals(method)) {
+            if (arg == null || extras == null) {
+                throw new IllegalArgumentException("Item ID and time are required for " + method);
+            }
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_QUANTITY, (int) StockLedger.quantityAt(
+                    mDbHelper.getReadableDatabase(), Long.parseLong(arg),
+                    extras.getLong(InventoryContract.EXTRA_TIME)));
+            return result;
+        }
+        if (InventoryContract.METHOD_CHECK_SUMMARY.equals(method)) {
+            return checkSummary();
+        }
+        if (InventoryContract.METHOD_SYNC_OUTBOX.equals(method)) {
+            SyncStore.Outbox outbox = SyncStore.readOutbox(mDbHelper.getReadableDatabase(),
+                    SYNC_BATCH_SIZE);
+            Bundle result = new Bundle();
+            if (!outbox.changes.isEmpty()) {
+                result.putByteArray(InventoryContract.EXTRA_SYNC_BATCH,
+                        SyncBatch.encode(outbox.changes));
+                result.putLong(InventoryContract.EXTRA_SYNC_OUTBOX_ID, outbox.lastId);
+            }
+            return result;
+        }
+        if (InventoryContract.METHOD_SYNC_ACKNOWLEDGE.equals(method)) {
+            if (arg == null) {
+                throw new IllegalArgumentException("Outbox ID is required for " + method);
+            }
+            SyncStore.acknowledge(mDbHelper.getWritableDatabase(), Long.parseLong(arg));
+            return null;
+        }
+        if (InventoryContract.METHOD_SYNC_APPLY.equals(method)) {
+            if (extras == null || !extras.containsKey(InventoryContract.EXTRA_SYNC_CURSOR)) {
+                throw new IllegalArgumentException("Cursor is required for " + method);
+            }
+            return applySync(extras.getByteArray(InventoryContract.EXTRA_SYNC_BATCH),
+                    extras.getLong(InventoryContract.EXTRA_SYNC_CURSOR));
+        }
+        if (InventoryContract.METHOD_SYNC_CURSOR.equals(method)) {
+            Bundle result = new Bundle();
+            result.putLong(InventoryContract.EXTRA_SYNC_CURSOR,
+                    SyncStore.cursor(mDbHelper.getReadableDatabase()));
+            return result;
+        }
+        if (InventoryContract.METHOD_WRITE_SNAPSHOT.equals(method)) {
+            return writeSnapshot(method, extras);
+        }
+        if (InventoryContract.METHOD_RESTORE_SNAPSHOT.equals(method)) {
+            return restoreSnapshot(method, extras);
+        }
+        if (InventoryContract.METHOD_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putInt(InventoryContract.EXTRA_CACHE_HITS, mItemCache.hitCount());
+            result.putInt(InventoryContract.EXTRA_CACHE_MISSES, mItemCache.missCount());
+            result.putInt(InventoryContract.EXTRA_CACHE_SIZE, mItemCache.size());
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Applies a batch of changes received by sync, which may be null if there were none, and
+     * stores the cursor after it.
+     *
+     * @throws IllegalArgumentException if the batch can't be decoded
+     */
+    private Bundle applySync(byte[] batch, long cursor) {
+        List<SyncChange> changes;
+        try {
+            changes = batch == null ? Collections.<SyncChange>emptyList()
+                    : SyncBatch.decode(batch);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid sync batch", e);
+        }
+        int applied = SyncStore.apply(mDbHelper.getWritableDatabase(), changes, cursor,
+                System.currentTimeMillis());
+
+        // Which items changed isn't tracked, so reload them all.
+        if (applied != 0) {
+            notifyChange(InventoryEntry.CONTENT_URI, InventoryContract.CHANGE_UPDATE);
+        }
+        return null;
+    }
+
+    /**
+     * Writes a snapshot of the items to the file in the extras, or of the changes since the
+     * base snapshot if one is given.
+     *
+     * @throws IllegalStateException if the snapshot couldn't be written
+     */
+    private Bundle writeSnapshot(String method, Bundle extras) {
+        ParcelFileDescriptor file = getSnapshotFile(method, extras);
+        ParcelFileDescriptor base = extras.getParcelable(InventoryContract.EXTRA_SNAPSHOT_BASE);
+        // The channels aren't closed, since the caller owns the file descriptors.
+        FileChannel out = new FileOutputStream(file.getFileDescriptor()).getChannel();
+        FileChannel in = base == null ? null
+                : new FileInputStream(base.getFileDescriptor()).getChannel();
+        InventorySnapshot.Result written;
+        try {
+            written = InventorySnapshot.write(mDbHelper.getReadableDatabase(), out, in,
+                    extras.getBoolean(InventoryContract.EXTRA_SNAPSHOT_DEFLATE, true),
+                    System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write snapshot", e);
+        }
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_SNAPSHOT_ROWS, written.rows);
+        result.putInt(InventoryContract.EXTRA_SNAPSHOT_DELETED, written.deleted);
+        return result;
+    }
+
+    /**
+     * Restores the snapshot in the extras in one transaction.
+     *
+     * @throws IllegalArgumentException if the snapshot is damaged
+     */
+    private Bundle restoreSnapshot(String method, Bundle extras) {
+        ParcelFileDescriptor file = getSnapshotFile(method, extras);
+        InventorySnapshot.Result restored;
+        try {
+            restored = InventorySnapshot.restore(mDbHelper.getWritableDatabase(),
+                    new FileInputStream(file.getFileDescriptor()).getChannel(),
+                    System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid snapshot", e);
+        }
+
+        // Any item may have changed, so drop the cached ones and reload them all.
+        notifyChange(InventoryEntry.CONTENT_URI, InventoryContract.CHANGE_UPDATE);
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_SNAPSHOT_ROWS, restored.rows);
+        result.putInt(InventoryContract.EXTRA_SNAPSHOT_DELETED, restored.deleted);
+        return result;
+    }
+
+    private static ParcelFileDescriptor getSnapshotFile(String method, Bundle extras) {
+        ParcelFileDescriptor file = extras == null ? null
+                : (ParcelFileDescriptor) extras.getParcelable(
+                InventoryContract.EXTRA_SNAPSHOT_FILE);
+        if (file == null) {
+            throw new IllegalArgumentException("Snapshot file is required for " + method);
+        }
+        return file;
+    }
+
+    /**
+     * Compares the stored stock totals with the items and rebuilds them if they differ. Returns
+     * the number of rows that were wrong.
+     */
+    private Bundle checkSummary() {
+        int mismatches = StockSummary.check(mDbHelper.getWritableDatabase(), true);
+
+        // Totals that were wrong have been rebuilt, so let the screens showing them reload.
+        if (mismatches != 0) {
+            notifyChange(InventoryEntry.CONTENT_URI, InventoryContract.CHANGE_UPDATE);
+        }
+
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_MISMATCHES, mismatches);
+        return result;
+    }
+
+    /**
+     * Adds the delta to the item's quantity with one UPDATE statement, records it in the ledger
+     * and reads the new quantity back in the same transaction. Returns null if the item doesn't
+     * exist or the quantity would become negative.
+     */
+    private Bundle adjustQuantity(long id, int delta, String reason) {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long newQuantity;
+        long now = System.currentTimeMillis();
+
+        /*
+        Compiled statements hold their bindings, so only one thread may bind and execute
+        them at a time. The lock is taken inside the transaction, see statements().
+         */
+        database.beginTransaction();
+        try {
+            synchronized (this) {
+                ItemStatements statements = statements(database);
+                if (!statements.adjustQuantity(id, delta, now)) {
+                    // Either the item is gone or there isn't enough stock.
+                    return null;
+                }
+                statements.recordMovement(id, delta, reason, now);
+                newQuantity = statements.quantity(id);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // Only the adjusted item changed, so only notify its URI.
+        notifyChange(InventoryEntry.inventoryUri(id), InventoryContract.CHANGE_UPDATE);
+
+        Bundle result = new Bundle();
+        result.putInt(InventoryContract.EXTRA_QUANTITY, (int) newQuantity);
+        return result;
+    }
+
+    /**
+     * Adds the delta to the quantity of the item with the SKU like {@link #adjustQuantity(long,
+     * int, String)}. The item is found and changed by one UPDATE through the SKU index, then
+     * its ID and new quantity are read back in the same transaction. Returns null if no item
+     * has the SKU or the quantity would become negative.
+     */
+    private Bundle adjustQuantityBySku(String sku, int delta, String reason) {
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long id;
+        long newQuantity;
+        long now = System.currentTimeMillis();
+
+        database.beginTransaction();
+        try {
+            synchronized (this) {
+                ItemStatements statements = statements(database);
+                if (!statements.adjustQuantityBySku(sku, delta, now)) {
+                    // Either no item has the SKU or there isn't enough stock.
+                    return null;
+                }
+                id = statements.idBySku(sku);
+                statements.recordMovement(id, delta, reason, now);
+                newQuantity = statements.quantity(id);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        notifyChange(InventoryEntry.inventoryUri(id), InventoryContract.CHANGE_UPDATE);
+
+        Bundle result = new Bundle();
+        result.putLong(InventoryContract.EXTRA_ID, id);
+        result.putInt(InventoryContract.EXTRA_QUANTITY, (int) newQuantity);
+        return result;
+    }
+
+    /**
+     * Applies many quantity adjustments in one transaction, e.g. a burst of sales gathered by
+     * {@link SaleAccumulator}. Each item's quantity is read once and its adjustments are checked
+     * against it in order, refusing any that would make it negative like {@link
+     * #adjustQuantity(long, int, String)} does. The sum of the ones accepted is then written with
+     * one UPDATE, and recorded in the ledger as one sale and one restock. Returns the quantity
+     * after each adjustment, or -1 where it was refused.
+     */
+    private Bundle adjustQuantities(long[] ids, int[] deltas) {
+        // Positions of each item's adjustments, in the order the items first appear
+        Map<Long, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            List<Integer> itemPositions = positions.get(ids[i]);
+            if (itemPositions == null) {
+                itemPositions = new ArrayList<>();
+                positions.put(ids[i], itemPositions);
+            }
+            itemPositions.add(i);
+        }
+
+        int[] quantities = new int[ids.length];
+        List<Long> changed = new ArrayList<>();
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+
+        database.beginTransaction();
+        try {
+            synchronized (this) {
+                ItemStatements statements = statements(database);
+                for (Map.Entry<Long, List<Integer>> item : positions.entrySet()) {
+                    long id = item.getKey();
+                    long quantity;
+                    try {
+                        quantity = statements.quantity(id);
+                    } catch (SQLiteDoneException e) {
+                        // The item is gone, so every adjustment to it is refused.
+                        for (int position : item.getValue()) {
+                            quantities[position] = -1;
+                        }
+                        continue;
+                    }
+
+                    long sold = 0;
+                    long restocked = 0;
+                    for (int position : item.getValue()) {
+                        int delta = deltas[position];
+                        int adjusted = Items.adjust((int) quantity, delta);
+                        quantities[position] = adjusted;
+                        if (adjusted < 0) {
+                            continue;
+                        }
+                        quantity = adjusted;
+                        if (delta < 0) {
+                            sold += delta;
+                        } else {
+                            restocked += delta;
+                        }
+                    }
+                    if (sold == 0 && restocked == 0) {
+                        continue;
+                    }
+
+                    statements.adjustQuantity(id, sold + restocked, now);
+                    statements.recordMovement(id, sold, MovementEntry.REASON_SALE, now);
+                    statements.recordMovement(id, restocked, MovementEntry.REASON_RESTOCK, now);
+                    changed.add(id);
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // The dispatcher sends these together, as one notification if there are many.
+        for (long id : changed) {
+            notifyChange(InventoryEntry.inventoryUri(id), InventoryContract.CHANGE_UPDATE);
+        }
+
+        Bundle result = new Bundle();
+        result.putIntArray(InventoryContract.EXTRA_QUANTITIES, quantities);
+        return result;
+    }
+
+    /**
+     * Returns the compiled statements for the database, compiling them the first time and
+     * again if the helper has opened the database anew. Must be called while holding the lock
+     * on this, which must be held for as long as the statements are used.
+     * <p>
+     * Take the lock after beginning the transaction, never before: a batch already holds the
+     * database when its updates and deletes of single items get here, so a thread holding the
+     * lock while waiting for the database would deadlock with it.
+     */
+    private ItemStatements statements(SQLiteDatabase database) {
+        if (mStatements == null || mStatements.database != database) {
+            if (mStatements != null) {
+                mStatements.close();
+            }
+            mStatements = new ItemStatements(database);
+        }
+        return mStatements;
+    }
+
     /**
      * Returns the MIME type of data for the content URI.
      */
@@ -302,7 +1516,16 @@ public class InventoryProvider extends ContentProvider {
             case ITEM:
                 return InventoryEntry.CONTENT_LIST_TYPE;
             case ITEM_ID:
+            case ITEM_SKU:
                 return InventoryEntry.CONTENT_ITEM_TYPE;
+            case SEARCH:
+                return InventoryEntry.CONTENT_LIST_TYPE;
+            case SUMMARY:
+                return SummaryEntry.CONTENT_ITEM_TYPE;
+            case SUMMARY_SUPPLIERS:
+                return SummaryEntry.CONTENT_LIST_TYPE;
+            case MOVEMENTS:
+                return MovementEntry.CONTENT_LIST_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
@@ -0,0 +1,212 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.washington.inventoryapp.R;
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the app's calls to the {@link InventoryProvider} off the main thread and hands their
+ * results back to it.
+ * <p>
+ * Writes go through a single writer lane, so they reach the provider in the order they were
+ * made: an update made after an insert never overtakes it. Other work runs on a small pool of
+ * worker threads with a bounded queue, in no particular order. Callbacks are always called on
+ * the main thread, after the work has finished.
+ * <p>
+ * Sales are gathered by a {@link SaleAccumulator} and committed in batches. A write made after
+ * a sale commits the sales waiting before it, so it still can't overtake them.
+ * <p>
+ * If the provider throws, e.g. an IllegalArgumentException for an invalid item, the exception
+ * is thrown again on the main thread, so a bug isn't hidden by moving it off the main thread.
+ */
+public class InventoryRepository {
+
+    /**
+     * Receives the result of a call on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    // Work that may run in any order shares a few threads. Idle threads are let go.
+    private static final int WORKER_THREADS =
+            Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
+    private static final int WORKER_QUEUE_SIZE = 64;
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+
+    private static InventoryRepository sInstance;
+
+    private final ContentResolver mResolver;
+
+    private final ThreadPoolExecutor mWorkers;
+
+    private final SaleAccumulator mSales;
+
+    // Writes run one at a time, in order
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Returns the repository shared by the whole app.
+     */
+    public static synchronized InventoryRepository get(Context context) {
+        if (sInstance == null) {
+            Context app = context.getApplicationContext();
+            sInstance = new InventoryRepository(app.getContentResolver(),
+                    app.getResources().getInteger(R.integer.sale_commit_delay_millis),
+                    app.getResources().getInteger(R.integer.sale_commit_max_events));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param saleDelayMillis how long a sale may wait to be committed with others
+     * @param saleMaxEvents   how many sales are committed together at most
+     */
+    InventoryRepository(ContentResolver resolver, long saleDelayMillis, int saleMaxEvents) {
+        mResolver = resolver;
+        mSales = new SaleAccumulator(this, resolver, saleDelayMillis, saleMaxEvents);
+        mWorkers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS,
+                WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(WORKER_QUEUE_SIZE));
+        mWorkers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Inserts an item. The callback receives its content URI, or null if it wasn't inserted.
+     */
+    public void insert(final ContentValues values, Callback<Uri> callback) {
+        write(new Callable<Uri>() {
+            @Override
+            public Uri call() {
+                return mResolver.insert(InventoryEntry.CONTENT_URI, values);
+            }
+        }, callback);
+    }
+
+    /**
+     * Updates the item or items at the URI. The callback receives the number of rows updated.
+     */
+    public void update(final Uri uri, final ContentValues values, Callback<Integer> callback) {
+        write(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mResolver.update(uri, values, null, null);
+            }
+        }, callback);
+    }
+
+    /**
+     * Deletes the item or items at the URI. The callback receives the number of rows deleted.
+     */
+    public void delete(final Uri uri, Callback<Integer> callback) {
+        write(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mResolver.delete(uri, null, null);
+            }
+        }, callback);
+    }
+
+    /**
+     * Changes an item's quantity as {@link InventoryEntry#adjustQuantity} does. The callback
+     * receives the new quantity, or -1 if the change was refused.
+     */
+    public void adjustQuantity(final long id, final int delta, Callback<Integer> callback) {
+        write(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return InventoryEntry.adjustQuantity(mResolver, id, delta);
+            }
+        }, callback);
+    }
+
+    /**
+     * Sells one of the item. The sale is committed with others made around the same time. The
+     * callback receives the new quantity, or -1 if the item is out of stock.
+     */
+    public void sell(long id, Callback<Integer> callback) {
+        mSales.add(id, -1, callback);
+    }
+
+    /**
+     * Commits the sales that are waiting, e.g. when the app pauses and may be killed.
+     */
+    public void flushSales() {
+        mSales.flush();
+    }
+
+    /**
+     * Runs a write in the writer lane, after every write and sale submitted before it.
+     *
+     * @param callback called with the result on the main thread, or null
+     */
+    public <T> void write(Callable<T> task, Callback<T> callback) {
+        mSales.flush();
+        submitWrite(task, callback);
+    }
+
+    /**
+     * Runs a write in the writer lane without committing the waiting sales first.
+     */
+    <T> void submitWrite(Callable<T> task, Callback<T> callback) {
+        submit(mWriter, task, callback);
+    }
+
+    /**
+     * Runs work that doesn't write, e.g. a query, on a worker thread.
+     *
+     * @param callback called with the result on the main thread, or null
+     * @throws java.util.concurrent.RejectedExecutionException if the workers are too far behind
+     */
+    public <T> void read(Callable<T> task, Callback<T> callback) {
+        submit(mWorkers, task, callback);
+    }
+
+    private <T> void submit(Executor executor, final Callable<T> task,
+                            final Callback<T> callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final T result;
+                try {
+                    result = task.call();
+                } catch (final Exception e) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (e instanceof RuntimeException) {
+                                throw (RuntimeException) e;
+                            }
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                    return;
+                }
+                if (callback != null) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onResult(result);
+                        }
+                    });
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,405 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Backs up the items table to a compact snapshot and restores it, much smaller than a copy of
+ * the database file with its indexes, ledger, free pages and WAL.
+ * <p>
+ * After the header written by {@link SnapshotOutput}, a snapshot holds the time it was taken,
+ * then the items in ID order. Each item is the gap from the previous ID, then its columns, with
+ * numbers as varints and suppliers from a dictionary. A varint 0 ends the items, followed by
+ * the IDs deleted since the base, which only an incremental snapshot has. The derived tables
+ * aren't in the snapshot; the triggers rebuild them as the items are restored.
+ * <p>
+ * An incremental snapshot holds only the items added or changed since a full base snapshot,
+ * found by reading the base alongside the table, both in ID order. The table is compared with
+ * the base rather than trusting updated_at, which sync sets to the time of the change on the
+ * device that made it. To restore, restore the base and then the incremental snapshot.
+ */
+final class InventorySnapshot {
+
+    // Rows read per query while writing
+    private static final int WINDOW_SIZE = 1000;
+
+    // The columns in a snapshot, in the order of Row's fields
+    private static final String[] COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryEntry.COLUMN_ITEM_IMAGE,
+            InventoryEntry.COLUMN_ITEM_SKU,
+            InventoryEntry.COLUMN_ITEM_SYNC_ID,
+            InventoryEntry.COLUMN_ITEM_UPDATED_AT};
+
+    /**
+     * The number of items a snapshot wrote or restored, and the number deleted since its base.
+     */
+    static final class Result {
+        final int rows;
+        final int deleted;
+
+        Result(int rows, int deleted) {
+            this.rows = rows;
+            this.deleted = deleted;
+        }
+    }
+
+    // Made private so the class is not accidentally instantiated.
+    private InventorySnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the items table. The table is read in one transaction, so the
+     * snapshot is consistent, and in windows, so memory use doesn't grow with the table.
+     *
+     * @param base    a full snapshot to write only the changes since, or null for a full one
+     * @param deflate whether to compress the snapshot
+     * @param time    the time the snapshot is taken
+     * @throws IOException if the snapshot can't be written or the base is damaged
+     * @throws IllegalArgumentException if the base is itself incremental
+     */
+    static Result write(SQLiteDatabase db, WritableByteChannel channel, ReadableByteChannel base,
+                        boolean deflate, long time) throws IOException {
+        SnapshotInput baseInput = null;
+        long baseTime = 0;
+        if (base != null) {
+            baseInput = new SnapshotInput(base);
+            if ((baseInput.flags() & SnapshotOutput.FLAG_INCREMENTAL) != 0) {
+                throw new IllegalArgumentException("The base must be a full snapshot");
+            }
+            baseTime = baseInput.readSignedVarint();
+        }
+        SnapshotOutput out = new SnapshotOutput(channel,
+                (deflate ? SnapshotOutput.FLAG_DEFLATE : 0)
+                        | (base != null ? SnapshotOutput.FLAG_INCREMENTAL : 0));
+        out.writeSignedVarint(time);
+
+        int rows = 0;
+        List<Long> deleted = new ArrayList<>();
+        Row row = new Row();
+        Row baseRow = baseInput == null ? null : Row.read(baseInput, 0, baseTime);
+        long lastId = 0;
+        long lastWrittenId = 0;
+
+        db.beginTransactionNonExclusive();
+        try {
+            String[] selectionArgs = new String[1];
+            while (true) {
+                selectionArgs[0] = String.valueOf(lastId);
+                Cursor cursor = db.query(InventoryEntry.TABLE_NAME, COLUMNS,
+                        InventoryEntry._ID + " > ?", selectionArgs, null, null,
+                        InventoryEntry._ID + " ASC", String.valueOf(WINDOW_SIZE));
+                int windowRows;
+                try {
+                    windowRows = cursor.getCount();
+                    while (cursor.moveToNext()) {
+                        row.set(cursor);
+                        lastId = row.id;
+
+                        // Items in the base before this one have been deleted since.
+                        while (baseRow != null && baseRow.id < row.id) {
+                            deleted.add(baseRow.id);
+                            baseRow = Row.read(baseInput, baseRow.id, baseTime);
+                        }
+                        if (baseRow != null && baseRow.id == row.id) {
+                            boolean unchanged = baseRow.equals(row);
+                            baseRow = Row.read(baseInput, baseRow.id, baseTime);
+                            if (unchanged) {
+                                continue;
+                            }
+                        }
+
+                        row.write(out, lastWrittenId, time);
+                        lastWrittenId = row.id;
+                        rows++;
+                    }
+                } finally {
+                    cursor.close();
+                }
+                if (windowRows < WINDOW_SIZE) {
+                    break;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (baseInput != null) {
+            // The rest of the base was deleted too. Then check the base wasn't damaged.
+            while (baseRow != null) {
+                deleted.add(baseRow.id);
+                baseRow = Row.read(baseInput, baseRow.id, baseTime);
+            }
+            if (baseInput.readVarint() != 0) {
+                throw new IOException("The base must be a full snapshot");
+            }
+            baseInput.finish();
+        }
+
+        out.writeVarint(0);
+        out.writeVarint(deleted.size());
+        long previous = 0;
+        for (long id : deleted) {
+            out.writeVarint(id - previous);
+            previous = id;
+        }
+        out.finish();
+        return new Result(rows, deleted.size());
+    }
+
+    /**
+     * Restores a snapshot in one transaction. A full snapshot replaces every item; an
+     * incremental one adds, replaces and deletes items, and must be restored over its base.
+     * The quantities that change are recorded in the ledger.
+     * <p>
+     * Both update the items that are already in the table in place, and a full snapshot deletes
+     * only the items it doesn't hold. Deleting and inserting every item would drop the other
+     * devices' quantity counters and give each whole quantity to this device, which the next
+     * sync would add on top of the other devices' totals.
+     *
+     * @param time the time of the restore, for the ledger
+     * @throws IOException if the snapshot is damaged, in which case nothing is changed
+     */
+    static Result restore(SQLiteDatabase db, ReadableByteChannel channel, long time)
+            throws IOException {
+        SnapshotInput in = new SnapshotInput(channel);
+        boolean incremental = (in.flags() & SnapshotOutput.FLAG_INCREMENTAL) != 0;
+        long snapshotTime = in.readSignedVarint();
+        String reason = MovementEntry.REASON_RESTORE;
+        String columns = TextUtils.join(", ", COLUMNS);
+
+        int rows = 0;
+        int deleted = 0;
+        SQLiteStatement insert = null;
+        SQLiteStatement update = null;
+        SQLiteStatement selectQuantity = null;
+        SQLiteStatement movement = null;
+        db.beginTransaction();
+        try {
+            if (!incremental) {
+                // An item may take a SKU another item holds until it is restored or deleted.
+                ContentValues noSku = new ContentValues();
+                noSku.putNull(InventoryEntry.COLUMN_ITEM_SKU);
+                db.update(InventoryEntry.TABLE_NAME, noSku,
+                        InventoryEntry.COLUMN_ITEM_SKU + " IS NOT NULL", null);
+            }
+
+            insert = db.compileStatement("INSERT INTO " + InventoryEntry.TABLE_NAME + " ("
+                    + columns + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            // The columns after the ID, then the ID, so a row binds the same way.
+            update = db.compileStatement("UPDATE " + InventoryEntry.TABLE_NAME + " SET "
+                    + TextUtils.join(" = ?, ", Arrays.copyOfRange(COLUMNS, 1,
+                    COLUMNS.length)) + " = ? WHERE " + InventoryEntry._ID + " = ?");
+            selectQuantity = db.compileStatement("SELECT "
+                    + InventoryEntry.COLUMN_ITEM_QUANTITY + " FROM " + InventoryEntry.TABLE_NAME
+                    + " WHERE " + InventoryEntry._ID + " = ?");
+            movement = db.compileStatement(StockLedger.SQL_INSERT_MOVEMENT);
+
+            Row row = null;
+            long previousId = 0;
+            while ((row = Row.read(in, previousId, snapshotTime)) != null) {
+                if (!incremental) {
+                    // The items between this one and the previous aren't in the snapshot.
+                    deleted += deleteRange(db, previousId, row.id, reason, time);
+                }
+                previousId = row.id;
+
+                long oldQuantity = 0;
+                boolean exists = false;
+                selectQuantity.bindLong(1, row.id);
+                try {
+                    oldQuantity = selectQuantity.simpleQueryForLong();
+                    exists = true;
+                } catch (SQLiteDoneException e) {
+                    // A new item
+                }
+                if (exists) {
+                    row.bind(update, 1);
+                    update.bindLong(COLUMNS.length, row.id);
+                    update.executeUpdateDelete();
+                } else {
+                    insert.bindLong(1, row.id);
+                    row.bind(insert, 2);
+                    insert.executeInsert();
+                }
+                StockLedger.record(movement, row.id, row.quantity - oldQuantity, reason, time);
+                rows++;
+            }
+
+            long count = in.readVarint();
+            if (!incremental) {
+                if (count != 0) {
+                    throw new IOException("A full snapshot can't delete items");
+                }
+                deleted += deleteRange(db, previousId, Long.MAX_VALUE, reason, time);
+            }
+            long id = 0;
+            for (long i = 0; i < count; i++) {
+                id += in.readVarint();
+                String[] args = {String.valueOf(id)};
+                StockLedger.recordDelete(db, InventoryEntry._ID + " = ?", args, reason, time);
+                deleted += db.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + " = ?",
+                        args);
+            }
+
+            // Only keep what was restored if the whole snapshot is intact.
+            in.finish();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            for (SQLiteStatement statement : new SQLiteStatement[]{insert, update,
+                    selectQuantity, movement}) {
+                if (statement != null) {
+                    statement.close();
+                }
+            }
+        }
+        return new Result(rows, deleted);
+    }
+
+    /**
+     * Deletes the items with IDs between the two, exclusive, taking their stock out in the
+     * ledger, and returns the number deleted.
+     */
+    private static int deleteRange(SQLiteDatabase db, long afterId, long beforeId, String reason,
+                                   long time) {
+        if (beforeId - afterId <= 1) {
+            return 0;
+        }
+        String selection = InventoryEntry._ID + " > ? AND " + InventoryEntry._ID + " < ?";
+        String[] args = {String.valueOf(afterId), String.valueOf(beforeId)};
+        StockLedger.recordDelete(db, selection, args, reason, time);
+        return db.delete(InventoryEntry.TABLE_NAME, selection, args);
+    }
+
+    /**
+     * One item as a snapshot holds it.
+     */
+    private static final class Row {
+        long id;
+        String name;
+        int quantity;
+        long price;
+        String supplier;
+        String image;
+        String sku;
+        String syncId;
+        long updatedAt;
+
+        // Reads a row of COLUMNS.
+        void set(Cursor cursor) {
+            id = cursor.getLong(0);
+            name = cursor.getString(1);
+            quantity = cursor.getInt(2);
+            price = cursor.getLong(3);
+            supplier = cursor.getString(4);
+            image = cursor.getString(5);
+            sku = cursor.getString(6);
+            syncId = cursor.getString(7);
+            updatedAt = cursor.getLong(8);
+        }
+
+        /**
+         * Binds the columns after the ID, starting at the given index.
+         */
+        void bind(SQLiteStatement statement, int index) {
+            statement.bindString(index, name);
+            statement.bindLong(index + 1, quantity);
+            statement.bindLong(index + 2, price);
+            bindNullable(statement, index + 3, supplier);
+            bindNullable(statement, index + 4, image);
+            bindNullable(statement, index + 5, sku);
+            bindNullable(statement, index + 6, syncId);
+            statement.bindLong(index + 7, updatedAt);
+        }
+
+        /**
+         * Writes the row after the one with the previous ID. Times are written as their
+         * distance from the snapshot's, which is short for recently changed items.
+         */
+        void write(SnapshotOutput out, long previousId, long time) throws IOException {
+            if (id <= previousId) {
+                throw new IllegalStateException("Item ID " + id + " is out of order");
+            }
+            out.writeVarint(id - previousId);
+            out.writeString(name);
+            out.writeSignedVarint(quantity);
+            out.writeSignedVarint(price);
+            out.writeSupplier(supplier);
+            out.writeString(image);
+            out.writeString(sku);
+            out.writeString(syncId);
+            out.writeSignedVarint(time - updatedAt);
+        }
+
+        /**
+         * Reads the row after the one with the previous ID, or returns null at the end of
+         * the rows.
+         */
+        static Row read(SnapshotInput in, long previousId, long time) throws IOException {
+            long gap = in.readVarint();
+            if (gap == 0) {
+                return null;
+            }
+            Row row = new Row();
+            row.id = previousId + gap;
+            row.name = in.readString();
+            if (row.name == null) {
+                throw new IOException("Item " + row.id + " has no name");
+            }
+            row.quantity = in.readIntVarint();
+            row.price = in.readSignedVarint();
+            row.supplier = in.readSupplier();
+            row.image = in.readString();
+            row.sku = in.readString();
+            row.syncId = in.readString();
+            row.updatedAt = time - in.readSignedVarint();
+            return row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Row)) {
+                return false;
+            }
+            Row other = (Row) o;
+            return id == other.id && quantity == other.quantity && price == other.price
+                    && updatedAt == other.updatedAt && TextUtils.equals(name, other.name)
+                    && TextUtils.equals(supplier, other.supplier)
+                    && TextUtils.equals(image, other.image) && TextUtils.equals(sku, other.sku)
+                    && TextUtils.equals(syncId, other.syncId);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (id ^ (id >>> 32));
+        }
+
+        private static void bindNullable(SQLiteStatement statement, int index, String value) {
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                statement.bindString(index, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.io.IOException;
+
+/**
+ * Keeps the inventory in step with other devices through a {@link SyncTransport}.
+ * <p>
+ * A sync pushes the provider's outbox, the items changed here since the last push, in batches,
+ * then pulls the changes made elsewhere since the cursor of the last pull and hands them to the
+ * provider to apply. It runs on its own background thread: a short while after the inventory
+ * changes here, and every {@link #SYNC_INTERVAL_MILLIS} to pick up changes from elsewhere. If
+ * the transport fails, the next try waits twice as long as the last, up to {@link
+ * #MAX_BACKOFF_MILLIS}. Nothing is lost meanwhile, since unsent changes stay in the outbox.
+ * <p>
+ * Everything goes through the ContentResolver, so the list and its loaders keep reading while a
+ * sync runs and are told about the items it changes.
+ */
+public class InventorySync {
+
+    private static final String LOG_TAG = InventorySync.class.getSimpleName();
+
+    // How long after a change here the sync starts, so a burst of changes is sent at once
+    static final long SYNC_DELAY_MILLIS = 5000;
+
+    // How often to look for changes made elsewhere
+    static final long SYNC_INTERVAL_MILLIS = 15 * 60 * 1000;
+
+    // How long to wait after the first failure, doubled after each failure in a row
+    static final long INITIAL_BACKOFF_MILLIS = 30 * 1000;
+    static final long MAX_BACKOFF_MILLIS = 60 * 60 * 1000;
+
+    private final ContentResolver mResolver;
+    private final SyncTransport mTransport;
+
+    // Thread the syncs run on, while started
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private ContentObserver mObserver;
+
+    // Uptime the next sync is posted for, or 0 if none is. Guarded by this.
+    private long mScheduledAt;
+
+    // Failed syncs in a row. Only used on the sync thread.
+    private int mFailures;
+
+    private final Runnable mSync = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (InventorySync.this) {
+                mScheduledAt = 0;
+            }
+            if (syncNow()) {
+                schedule(SYNC_INTERVAL_MILLIS);
+            } else {
+                schedule(backoffMillis(mFailures));
+            }
+        }
+    };
+
+    public InventorySync(ContentResolver resolver, SyncTransport transport) {
+        mResolver = resolver;
+        mTransport = transport;
+    }
+
+    /**
+     * Starts syncing in the background, beginning now.
+     */
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+
+        // Send local changes soon after they are made. While failing, the backoff decides.
+        mObserver = new ContentObserver(mHandler) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                if (mFailures == 0) {
+                    schedule(SYNC_DELAY_MILLIS);
+                }
+            }
+        };
+        mResolver.registerContentObserver(InventoryEntry.CONTENT_URI, true, mObserver);
+        schedule(0);
+    }
+
+    /**
+     * Stops syncing. A sync that is running finishes first.
+     */
+    public void stop() {
+        HandlerThread thread;
+        synchronized (this) {
+            if (mThread == null) {
+                return;
+            }
+            mResolver.unregisterContentObserver(mObserver);
+            mHandler.removeCallbacks(mSync);
+            thread = mThread;
+            mThread = null;
+            mHandler = null;
+            mObserver = null;
+            mScheduledAt = 0;
+        }
+        thread.quitSafely();
+    }
+
+    /**
+     * Syncs as soon as possible, e.g. when the user asks to.
+     */
+    public void requestSync() {
+        schedule(0);
+    }
+
+    /**
+     * Posts a sync after the delay, unless one is already posted to run sooner.
+     */
+    private synchronized void schedule(long delayMillis) {
+        if (mHandler == null) {
+            return;
+        }
+        long at = SystemClock.uptimeMillis() + delayMillis;
+        if (mScheduledAt != 0 && mScheduledAt <= at) {
+            return;
+        }
+        mHandler.removeCallbacks(mSync);
+        mHandler.postAtTime(mSync, at);
+        mScheduledAt = at;
+    }
+
+    /**
+     * Pushes the outbox and pulls the changes made elsewhere on the calling thread. A failure
+     * of the transport or of the provider, such as a full disk, fails the sync.
+     *
+     * @return whether the sync finished; if not it should be tried again later
+     */
+    boolean syncNow() {
+        try {
+            push();
+            pull();
+            mFailures = 0;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // A RuntimeException on the sync thread would kill the app, so it is retried too.
+            mFailures++;
+            Log.w(LOG_TAG, "Sync failed " + mFailures + " times in a row", e);
+            return false;
+        }
+    }
+
+    /**
+     * Sends the outbox a batch at a time, taking each batch out once the server has it.
+     */
+    private void push() throws IOException {
+        while (true) {
+            Bundle outbox = mResolver.call(InventoryEntry.CONTENT_URI,
+                    InventoryContract.METHOD_SYNC_OUTBOX, null, null);
+            byte[] batch = outbox == null ? null
+                    : outbox.getByteArray(InventoryContract.EXTRA_SYNC_BATCH);
+            if (batch == null) {
+                return;
+            }
+            mTransport.push(batch);
+            mResolver.call(InventoryEntry.CONTENT_URI, InventoryContract.METHOD_SYNC_ACKNOWLEDGE,
+                    String.valueOf(outbox.getLong(InventoryContract.EXTRA_SYNC_OUTBOX_ID)), null);
+        }
+    }
+
+    /**
+     * Fetches the changes after the stored cursor a batch at a time. Each batch is applied
+     * with its cursor in one transaction, so a sync that stops halfway resumes after the last
+     * applied batch.
+     * <p>
+     * A batch the provider can't decode fails the sync like a transport failure, so it is
+     * fetched again after the backoff. It isn't skipped: the cursor stays before it, since
+     * skipping would lose the changes and quantity counters it holds for good.
+     */
+    private void pull() throws IOException {
+        Bundle state = mResolver.call(InventoryEntry.CONTENT_URI,
+                InventoryContract.METHOD_SYNC_CURSOR, null, null);
+        long cursor = state.getLong(InventoryContract.EXTRA_SYNC_CURSOR);
+        SyncTransport.Pull pull;
+        do {
+            pull = mTransport.pull(cursor);
+            if (pull.batch != null || pull.cursor != cursor) {
+                Bundle extras = new Bundle();
+                extras.putByteArray(InventoryContract.EXTRA_SYNC_BATCH, pull.batch);
+                extras.putLong(InventoryContract.EXTRA_SYNC_CURSOR, pull.cursor);
+                try {
+                    mResolver.call(InventoryEntry.CONTENT_URI,
+                            InventoryContract.METHOD_SYNC_APPLY, null, extras);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Sync batch after cursor " + cursor
+                            + " can't be applied", e);
+                }
+                cursor = pull.cursor;
+            }
+        } while (pull.hasMore);
+    }
+
+    /**
+     * Returns how long to wait before trying again after the given number of failed syncs in
+     * a row.
+     */
+    static long backoffMillis(int failures) {
+        if (failures <= 0) {
+            return 0;
+        }
+        // Stop doubling before the shift could overflow.
+        int doublings = Math.min(failures - 1, 30);
+        return Math.min(INITIAL_BACKOFF_MILLIS << doublings, MAX_BACKOFF_MILLIS);
+    }
+}
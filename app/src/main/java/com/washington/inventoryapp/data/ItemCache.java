@@ -0,0 +1,224 @@
+package com.washington.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+/**
+ * Rows of the items table kept in memory by ID, so the provider can answer repeated lookups of
+ * one item without going to SQLite. Holds at most a fixed number of items, dropping the least
+ * recently used.
+ * <p>
+ * The provider reads through the cache and drops items from it after every write commits. A
+ * row read from the database is only cached if nothing was written while it was being read,
+ * so a reader that saw the row before a write can't put the old row back afterwards.
+ * <p>
+ * May be used from any thread.
+ */
+final class ItemCache {
+
+    /**
+     * Every column of the items table, in the order {@link #read(Cursor)} expects them.
+     */
+    static final String[] COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryEntry.COLUMN_ITEM_IMAGE,
+            InventoryEntry.COLUMN_ITEM_UPDATED_AT,
+            InventoryEntry.COLUMN_ITEM_SKU,
+            InventoryEntry.COLUMN_ITEM_SYNC_ID};
+
+    // Positions of the columns in COLUMNS
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_NAME = 1;
+    private static final int INDEX_QUANTITY = 2;
+    private static final int INDEX_PRICE = 3;
+    private static final int INDEX_SUPPLIER = 4;
+    private static final int INDEX_IMAGE = 5;
+    private static final int INDEX_UPDATED_AT = 6;
+    private static final int INDEX_SKU = 7;
+    private static final int INDEX_SYNC_ID = 8;
+
+    /**
+     * One cached row.
+     */
+    static final class Item {
+        final long id;
+        final String name;
+        final int quantity;
+        // Price in cents
+        final long price;
+        final String supplier;
+        final String image;
+        final long updatedAt;
+        final String sku;
+        final String syncId;
+
+        Item(long id, String name, int quantity, long price, String supplier, String image,
+             long updatedAt, String sku, String syncId) {
+            this.id = id;
+            this.name = name;
+            this.quantity = quantity;
+            this.price = price;
+            this.supplier = supplier;
+            this.image = image;
+            this.updatedAt = updatedAt;
+            this.sku = sku;
+            this.syncId = syncId;
+        }
+
+        // Returns the value of one of COLUMNS
+        private Object get(int index) {
+            switch (index) {
+                case INDEX_ID:
+                    return id;
+                case INDEX_NAME:
+                    return name;
+                case INDEX_QUANTITY:
+                    return quantity;
+                case INDEX_PRICE:
+                    return price;
+                case INDEX_SUPPLIER:
+                    return supplier;
+                case INDEX_IMAGE:
+                    return image;
+                case INDEX_UPDATED_AT:
+                    return updatedAt;
+                case INDEX_SKU:
+                    return sku;
+                default:
+                    return syncId;
+            }
+        }
+    }
+
+    private final LruCache<Long, Item> mItems;
+
+    // Changed by every write, guarded by this
+    private long mGeneration;
+
+    ItemCache(int maxItems) {
+        mItems = new LruCache<>(maxItems);
+    }
+
+    /**
+     * Returns the cached item, or null if it isn't cached.
+     */
+    Item get(long id) {
+        return mItems.get(id);
+    }
+
+    /**
+     * Returns a value to pass to {@link #put(Item, long)}, taken before the row is read.
+     */
+    synchronized long generation() {
+        return mGeneration;
+    }
+
+    /**
+     * Caches an item read from the database, unless anything was written since the generation
+     * was taken.
+     */
+    synchronized void put(Item item, long generation) {
+        if (generation == mGeneration) {
+            mItems.put(item.id, item);
+        }
+    }
+
+    /**
+     * Drops one item after a write to it.
+     */
+    synchronized void remove(long id) {
+        mGeneration++;
+        mItems.remove(id);
+    }
+
+    /**
+     * Drops every item after a write that may have changed any of them.
+     */
+    synchronized void clear() {
+        mGeneration++;
+        mItems.evictAll();
+    }
+
+    // Number of lookups that found their item
+    int hitCount() {
+        return mItems.hitCount();
+    }
+
+    // Number of lookups that had to go to the database
+    int missCount() {
+        return mItems.missCount();
+    }
+
+    // Number of items cached now
+    int size() {
+        return mItems.size();
+    }
+
+    /**
+     * Reads the current row of a cursor that was queried with {@link #COLUMNS}.
+     */
+    static Item read(Cursor cursor) {
+        return new Item(
+                cursor.getLong(INDEX_ID),
+                cursor.getString(INDEX_NAME),
+                cursor.getInt(INDEX_QUANTITY),
+                cursor.getLong(INDEX_PRICE),
+                cursor.getString(INDEX_SUPPLIER),
+                cursor.getString(INDEX_IMAGE),
+                cursor.getLong(INDEX_UPDATED_AT),
+                cursor.getString(INDEX_SKU),
+                cursor.getString(INDEX_SYNC_ID));
+    }
+
+    /**
+     * Returns the positions in {@link #COLUMNS} of the projected columns, all of them for a
+     * null projection, or null if the projection asks for anything that isn't a plain column.
+     */
+    static int[] indexesOf(String[] projection) {
+        if (projection == null) {
+            int[] indexes = new int[COLUMNS.length];
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = i;
+            }
+            return indexes;
+        }
+        int[] indexes = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            indexes[i] = -1;
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (COLUMNS[column].equalsIgnoreCase(projection[i])) {
+                    indexes[i] = column;
+                    break;
+                }
+            }
+            if (indexes[i] == -1) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns a cursor over the item, or over no rows if it is null, with the projected columns.
+     *
+     * @param indexes the result of {@link #indexesOf(String[])} for the projection
+     */
+    static Cursor toCursor(Item item, String[] projection, int[] indexes) {
+        MatrixCursor cursor = new MatrixCursor(projection == null ? COLUMNS : projection, 1);
+        if (item != null) {
+            Object[] row = new Object[indexes.length];
+            for (int i = 0; i < indexes.length; i++) {
+                row[i] = item.get(indexes[i]);
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,171 @@
+package com.washington.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import com.washington.inventoryapp.core.InventorySql;
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+/**
+ * The provider's statements for the fixed paths that touch one item: reading it, setting,
+ * adjusting and reading back its quantity, and deleting it.
+ * <p>
+ * The SQL is shared with the core module's store through {@link InventorySql} where it is the
+ * same. It is built once, the statements are compiled once for the database they were created
+ * for, and IDs and quantities are bound as longs. The generic query, update and delete helpers
+ * build the SQL again on every call, allocate a String array for the ID and hand SQLite a
+ * string to convert back. SQLite keeps each connection's prepared statements by their SQL, so
+ * the same string also means the statement is prepared once per connection.
+ * <p>
+ * A compiled statement holds its bindings, so only one thread may use an instance at a time.
+ * {@link #readItem} doesn't share anything and may be called from any thread.
+ */
+final class ItemStatements {
+
+    // Reads one item's cached columns. Bind args: 1 = item ID.
+    private static final String SQL_READ_ITEM = "SELECT "
+            + TextUtils.join(", ", ItemCache.COLUMNS) + " FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry._ID + " = ?";
+
+    // Selects the item with a SKU. Bind args: 1 = SKU.
+    private static final String SKU_SELECTION = InventoryEntry.COLUMN_ITEM_SKU + "=?";
+
+    /**
+     * Adds a delta to the quantity of the item with a SKU like {@link
+     * InventorySql#ADJUST_QUANTITY}, finding the item through the SKU index.
+     * Bind args: 1 = delta, 2 = updated at, 3 = SKU, 4 = delta.
+     */
+    private static final String SQL_ADJUST_QUANTITY_BY_SKU = "UPDATE "
+            + InventoryEntry.TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_ITEM_QUANTITY + " = "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " + ?, "
+            + InventoryEntry.COLUMN_ITEM_UPDATED_AT + " = ?"
+            + " WHERE " + SKU_SELECTION
+            + " AND " + InventoryEntry.COLUMN_ITEM_QUANTITY + " + ? >= 0";
+
+    // Reads back the ID of the item with a SKU. Bind args: 1 = SKU.
+    private static final String SQL_SELECT_ID_BY_SKU = "SELECT " + InventoryEntry._ID
+            + " FROM " + InventoryEntry.TABLE_NAME + " WHERE " + SKU_SELECTION;
+
+    // The database the statements were compiled for
+    final SQLiteDatabase database;
+
+    private final SQLiteStatement mSelectQuantity;
+    private final SQLiteStatement mSetQuantity;
+    private final SQLiteStatement mAdjustQuantity;
+    private final SQLiteStatement mDelete;
+    private final SQLiteStatement mAdjustQuantityBySku;
+    private final SQLiteStatement mSelectIdBySku;
+    private final SQLiteStatement mRecordMovement;
+
+    ItemStatements(SQLiteDatabase database) {
+        this.database = database;
+        mSelectQuantity = database.compileStatement(InventorySql.SELECT_QUANTITY);
+        mSetQuantity = database.compileStatement(InventorySql.SET_QUANTITY);
+        mAdjustQuantity = database.compileStatement(InventorySql.ADJUST_QUANTITY);
+        mDelete = database.compileStatement(InventorySql.DELETE_ITEM);
+        mAdjustQuantityBySku = database.compileStatement(SQL_ADJUST_QUANTITY_BY_SKU);
+        mSelectIdBySku = database.compileStatement(SQL_SELECT_ID_BY_SKU);
+        mRecordMovement = database.compileStatement(StockLedger.SQL_INSERT_MOVEMENT);
+    }
+
+    /**
+     * Queries the item's {@link ItemCache#COLUMNS}. The cursor is empty if there is no such
+     * item. The ID is bound to the query as a long when the cursor is created.
+     */
+    static Cursor readItem(SQLiteDatabase database, final long id) {
+        return database.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver,
+                                    String editTable, SQLiteQuery query) {
+                query.bindLong(1, id);
+                return new SQLiteCursor(driver, editTable, query);
+            }
+        }, SQL_READ_ITEM, null, InventoryEntry.TABLE_NAME);
+    }
+
+    /**
+     * Returns the item's quantity.
+     *
+     * @throws android.database.sqlite.SQLiteDoneException if there is no such item
+     */
+    long quantity(long id) {
+        mSelectQuantity.bindLong(1, id);
+        return mSelectQuantity.simpleQueryForLong();
+    }
+
+    /**
+     * Sets the item's quantity and returns the number of rows changed.
+     */
+    int setQuantity(long id, long quantity, long now) {
+        mSetQuantity.bindLong(1, quantity);
+        mSetQuantity.bindLong(2, now);
+        mSetQuantity.bindLong(3, id);
+        return mSetQuantity.executeUpdateDelete();
+    }
+
+    /**
+     * Adds the delta to the item's quantity. Returns false if the item doesn't exist or its
+     * quantity would become negative.
+     */
+    boolean adjustQuantity(long id, long delta, long now) {
+        mAdjustQuantity.bindLong(1, delta);
+        mAdjustQuantity.bindLong(2, now);
+        mAdjustQuantity.bindLong(3, id);
+        mAdjustQuantity.bindLong(4, delta);
+        return mAdjustQuantity.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Adds the delta to the quantity of the item with the SKU. Returns false if no item has
+     * the SKU or its quantity would become negative.
+     */
+    boolean adjustQuantityBySku(String sku, long delta, long now) {
+        mAdjustQuantityBySku.bindLong(1, delta);
+        mAdjustQuantityBySku.bindLong(2, now);
+        mAdjustQuantityBySku.bindString(3, sku);
+        mAdjustQuantityBySku.bindLong(4, delta);
+        return mAdjustQuantityBySku.executeUpdateDelete() != 0;
+    }
+
+    /**
+     * Returns the ID of the item with the SKU.
+     *
+     * @throws android.database.sqlite.SQLiteDoneException if no item has it
+     */
+    long idBySku(String sku) {
+        mSelectIdBySku.bindString(1, sku);
+        return mSelectIdBySku.simpleQueryForLong();
+    }
+
+    /**
+     * Deletes the item and returns the number of rows deleted.
+     */
+    int delete(long id) {
+        mDelete.bindLong(1, id);
+        return mDelete.executeUpdateDelete();
+    }
+
+    /**
+     * Appends a movement to the ledger, see {@link StockLedger#record(SQLiteStatement, long,
+     * long, String, long)}.
+     */
+    void recordMovement(long id, long delta, String reason, long now) {
+        StockLedger.record(mRecordMovement, id, delta, reason, now);
+    }
+
+    void close() {
+        mSelectQuantity.close();
+        mSetQuantity.close();
+        mAdjustQuantity.close();
+        mDelete.close();
+        mAdjustQuantityBySku.close();
+        mSelectIdBySku.close();
+        mRecordMovement.close();
+    }
+}
@@ -0,0 +1,156 @@
+package com.washington.inventoryapp.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A quantity that devices change independently and merge without losing any change.
+ * <p>
+ * Every device only adds to its own increment and decrement totals, and the value is all
+ * increments minus all decrements. Merging keeps the larger of each device's totals, so merging
+ * the same counters in any order, any number of times, gives the same value. Two devices that
+ * each sold one of an item while offline end up with both sales counted, where keeping the last
+ * written quantity would count only one.
+ */
+public final class PnCounter {
+
+    // Increment and decrement totals of each device, in that order
+    private final Map<String, long[]> mTotals = new HashMap<>();
+
+    /**
+     * Adds a change made on the given device.
+     */
+    public void add(String device, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        long[] totals = totals(device);
+        if (delta > 0) {
+            totals[0] += delta;
+        } else {
+            totals[1] -= delta;
+        }
+    }
+
+    /**
+     * Sets a device's totals, as read back from storage or received from another device.
+     *
+     * @throws IllegalArgumentException if either total is negative
+     */
+    public void set(String device, long increments, long decrements) {
+        if (increments < 0 || decrements < 0) {
+            throw new IllegalArgumentException("Invalid totals " + increments + ", "
+                    + decrements + " for " + device);
+        }
+        if (increments == 0 && decrements == 0 && !mTotals.containsKey(device)) {
+            // A device that changed nothing isn't kept, so equal counters compare equal.
+            return;
+        }
+        long[] totals = totals(device);
+        totals[0] = increments;
+        totals[1] = decrements;
+    }
+
+    /**
+     * Returns the quantity: every device's increments less every device's decrements.
+     */
+    public long value() {
+        long value = 0;
+        for (long[] totals : mTotals.values()) {
+            value += totals[0] - totals[1];
+        }
+        return value;
+    }
+
+    /**
+     * Takes in the changes of another counter that this one doesn't have yet.
+     *
+     * @return whether this counter changed
+     */
+    public boolean merge(PnCounter other) {
+        boolean changed = false;
+        for (Map.Entry<String, long[]> entry : other.mTotals.entrySet()) {
+            long[] theirs = entry.getValue();
+            long[] ours = mTotals.get(entry.getKey());
+            if (ours == null) {
+                mTotals.put(entry.getKey(), theirs.clone());
+                changed = true;
+            } else if (theirs[0] > ours[0] || theirs[1] > ours[1]) {
+                ours[0] = Math.max(ours[0], theirs[0]);
+                ours[1] = Math.max(ours[1], theirs[1]);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the devices that have changed the quantity.
+     */
+    public Set<String> devices() {
+        return Collections.unmodifiableSet(mTotals.keySet());
+    }
+
+    public long increments(String device) {
+        long[] totals = mTotals.get(device);
+        return totals == null ? 0 : totals[0];
+    }
+
+    public long decrements(String device) {
+        long[] totals = mTotals.get(device);
+        return totals == null ? 0 : totals[1];
+    }
+
+    private long[] totals(String device) {
+        long[] totals = mTotals.get(device);
+        if (totals == null) {
+            totals = new long[2];
+            mTotals.put(device, totals);
+        }
+        return totals;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PnCounter)) {
+            return false;
+        }
+        Map<String, long[]> other = ((PnCounter) o).mTotals;
+        if (other.size() != mTotals.size()) {
+            return false;
+        }
+        for (Map.Entry<String, long[]> entry : mTotals.entrySet()) {
+            long[] theirs = other.get(entry.getKey());
+            if (theirs == null || theirs[0] != entry.getValue()[0]
+                    || theirs[1] != entry.getValue()[1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (Map.Entry<String, long[]> entry : mTotals.entrySet()) {
+            long[] totals = entry.getValue();
+            hash += entry.getKey().hashCode() ^ (int) (totals[0] * 31 + totals[1]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("PnCounter{");
+        for (Map.Entry<String, long[]> entry : mTotals.entrySet()) {
+            builder.append(entry.getKey()).append("=+").append(entry.getValue()[0])
+                    .append("-").append(entry.getValue()[1]).append(' ');
+        }
+        return builder.append("value=").append(value()).append('}').toString();
+    }
+}
@@ -0,0 +1,62 @@
+package com.washington.inventoryapp.data;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Converts between prices as the user types them ("4.99") and the whole number of cents stored
+ * in {@link InventoryContract.InventoryEntry#COLUMN_ITEM_PRICE}.
+ */
+public final class Price {
+
+    // Made private so the class is not accidentally instantiated.
+    private Price() {
+    }
+
+    /**
+     * Parses a price in dollars, e.g. "4.99", "$1,250" or "3", into cents. Fractions of a cent
+     * are rounded half up.
+     *
+     * @throws IllegalArgumentException if the text isn't a price or is negative
+     */
+    public static long parseCents(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("missing price");
+        }
+        String digits = text.trim().replace(",", "");
+        if (digits.startsWith("$")) {
+            digits = digits.substring(1).trim();
+        }
+        BigDecimal dollars;
+        try {
+            dollars = new BigDecimal(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid price " + text);
+        }
+        if (dollars.signum() < 0) {
+            throw new IllegalArgumentException("negative price " + text);
+        }
+        try {
+            return dollars.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("price too large " + text);
+        }
+    }
+
+    /**
+     * Formats cents as dollars with two decimals, e.g. 499 becomes "4.99".
+     */
+    public static String format(long cents) {
+        StringBuilder text = new StringBuilder();
+        if (cents < 0) {
+            text.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        text.append(cents / 100).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+}
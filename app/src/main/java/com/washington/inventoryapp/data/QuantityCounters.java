@@ -0,0 +1,169 @@
+package com.washington.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.util.Map;
+
+/**
+ * Stores each item's quantity as a {@link PnCounter}: the increment and decrement totals of
+ * every device that changed it.
+ * <p>
+ * Triggers add every local quantity change, whichever way it was written, to this device's
+ * totals, so the quantity column and the counters never disagree. Received counters are merged
+ * by {@link SyncStore#apply}, which writes their value back to the quantity column with the
+ * triggers switched off. Readers of the items table, such as the list, keep reading quantity.
+ */
+final class QuantityCounters {
+
+    static final String TABLE_NAME = "quantity_counters";
+
+    // Columns. The item, the device that changed it, and that device's totals.
+    static final String COLUMN_ITEM_ID = "item_id";
+    static final String COLUMN_DEVICE_ID = "device_id";
+    static final String COLUMN_INCREMENTS = "increments";
+    static final String COLUMN_DECREMENTS = "decrements";
+
+    // Sync state column holding this device's ID, random so devices never pick the same one
+    static final String COLUMN_STATE_DEVICE_ID = "device_id";
+
+    // This device's ID, as the triggers see it
+    private static final String SQL_DEVICE_ID = "(SELECT " + COLUMN_STATE_DEVICE_ID + " FROM "
+            + SyncStore.STATE_TABLE_NAME + ")";
+
+    // Made private so the class is not accidentally instantiated.
+    private QuantityCounters() {
+    }
+
+    /**
+     * Gives this device an ID and creates the counters table and its triggers. Items that
+     * already have stock get it as this device's increments, so each counter starts at the
+     * item's quantity. The sync state table must already exist.
+     */
+    static void create(SQLiteDatabase db) {
+        String table = InventoryEntry.TABLE_NAME;
+        String quantity = InventoryEntry.COLUMN_ITEM_QUANTITY;
+
+        db.execSQL("ALTER TABLE " + SyncStore.STATE_TABLE_NAME + " ADD COLUMN "
+                + COLUMN_STATE_DEVICE_ID + " TEXT");
+        db.execSQL("UPDATE " + SyncStore.STATE_TABLE_NAME + " SET " + COLUMN_STATE_DEVICE_ID
+                + " = " + SyncStore.SQL_NEW_SYNC_ID);
+
+        db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
+                + COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + COLUMN_DEVICE_ID + " TEXT NOT NULL, "
+                + COLUMN_INCREMENTS + " INTEGER NOT NULL, "
+                + COLUMN_DECREMENTS + " INTEGER NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_ITEM_ID + ", " + COLUMN_DEVICE_ID + "))");
+
+        /*
+        Local changes only. Received changes are applied with the applying flag set and their
+        counters merged by SyncStore. Deleting an item deletes its counters either way.
+         */
+        String notApplying = " AND (SELECT " + SyncStore.COLUMN_APPLYING + " FROM "
+                + SyncStore.STATE_TABLE_NAME + ") = 0";
+        db.execSQL("CREATE TRIGGER " + TABLE_NAME + "_ai AFTER INSERT ON " + table
+                + " WHEN new." + quantity + " <> 0" + notApplying
+                + " BEGIN INSERT OR REPLACE INTO " + TABLE_NAME + " VALUES (new."
+                + InventoryEntry._ID + ", " + SQL_DEVICE_ID + ", max(new." + quantity
+                + ", 0), max(-new." + quantity + ", 0)); END");
+        db.execSQL("CREATE TRIGGER " + TABLE_NAME + "_au AFTER UPDATE OF " + quantity + " ON "
+                + table + " WHEN new." + quantity + " <> old." + quantity + notApplying
+                + " BEGIN INSERT OR IGNORE INTO " + TABLE_NAME + " VALUES (new."
+                + InventoryEntry._ID + ", " + SQL_DEVICE_ID + ", 0, 0); "
+                + "UPDATE " + TABLE_NAME + " SET "
+                + COLUMN_INCREMENTS + " = " + COLUMN_INCREMENTS + " + max(new." + quantity
+                + " - old." + quantity + ", 0), "
+                + COLUMN_DECREMENTS + " = " + COLUMN_DECREMENTS + " + max(old." + quantity
+                + " - new." + quantity + ", 0) WHERE " + COLUMN_ITEM_ID + " = new."
+                + InventoryEntry._ID + " AND " + COLUMN_DEVICE_ID + " = " + SQL_DEVICE_ID
+                + "; END");
+        db.execSQL("CREATE TRIGGER " + TABLE_NAME + "_ad AFTER DELETE ON " + table
+                + " BEGIN DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_ITEM_ID + " = old."
+                + InventoryEntry._ID + "; END");
+
+        db.execSQL("INSERT INTO " + TABLE_NAME + " SELECT " + InventoryEntry._ID + ", "
+                + SQL_DEVICE_ID + ", max(" + quantity + ", 0), max(-" + quantity + ", 0) FROM "
+                + table + " WHERE " + quantity + " <> 0");
+    }
+
+    /**
+     * Returns this device's ID.
+     */
+    static String deviceId(SQLiteDatabase db) {
+        return DatabaseUtils.stringForQuery(db, "SELECT " + COLUMN_STATE_DEVICE_ID + " FROM "
+                + SyncStore.STATE_TABLE_NAME, null);
+    }
+
+    /**
+     * Returns an item's counter.
+     */
+    static PnCounter read(SQLiteDatabase db, long itemId) {
+        PnCounter counter = new PnCounter();
+        Cursor cursor = db.query(TABLE_NAME, new String[]{COLUMN_DEVICE_ID, COLUMN_INCREMENTS,
+                        COLUMN_DECREMENTS}, COLUMN_ITEM_ID + " = ?",
+                new String[]{String.valueOf(itemId)}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                counter.set(cursor.getString(0), cursor.getLong(1), cursor.getLong(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return counter;
+    }
+
+    /**
+     * Reads the counters of many items with one query. Each is added to the counter the map
+     * holds for its item ID.
+     */
+    static void readAll(SQLiteDatabase db, Map<Long, PnCounter> counters) {
+        if (counters.isEmpty()) {
+            return;
+        }
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_ITEM_ID + ", " + COLUMN_DEVICE_ID + ", "
+                + COLUMN_INCREMENTS + ", " + COLUMN_DECREMENTS + " FROM " + TABLE_NAME
+                + " WHERE " + COLUMN_ITEM_ID + " IN (" + TextUtils.join(", ", counters.keySet())
+                + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                counters.get(cursor.getLong(0)).set(cursor.getString(1), cursor.getLong(2),
+                        cursor.getLong(3));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Stores an item's counter in place of the one it has. Totals only grow, so this is
+     * only called with a counter that was merged into the stored one.
+     */
+    static void write(SQLiteDatabase db, long itemId, PnCounter counter) {
+        for (String device : counter.devices()) {
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_NAME + " VALUES (?, ?, 0, 0)",
+                    new Object[]{itemId, device});
+            db.execSQL("UPDATE " + TABLE_NAME + " SET " + COLUMN_INCREMENTS + " = ?, "
+                            + COLUMN_DECREMENTS + " = ? WHERE " + COLUMN_ITEM_ID + " = ? AND "
+                            + COLUMN_DEVICE_ID + " = ?",
+                    new Object[]{counter.increments(device), counter.decrements(device), itemId,
+                            device});
+        }
+    }
+
+    /**
+     * Returns the number of items whose quantity differs from their counter's value. There
+     * should be none.
+     */
+    static long check(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + InventoryEntry.TABLE_NAME
+                + " i WHERE i." + InventoryEntry.COLUMN_ITEM_QUANTITY + " <> (SELECT "
+                + "ifnull(sum(" + COLUMN_INCREMENTS + " - " + COLUMN_DECREMENTS + "), 0) FROM "
+                + TABLE_NAME + " c WHERE c." + COLUMN_ITEM_ID + " = i." + InventoryEntry._ID
+                + ")", null);
+    }
+}
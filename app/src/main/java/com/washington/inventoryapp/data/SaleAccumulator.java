@@ -0,0 +1,126 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Gathers quantity adjustments, e.g. taps of the Sale button, and commits them together with
+ * one call of {@link InventoryContract#METHOD_ADJUST_QUANTITIES}: one transaction, one write to
+ * the log and one change notification for a burst of sales instead of one of each per sale.
+ * The provider merges the adjustments to the same item into one UPDATE.
+ * <p>
+ * Adjustments are committed a set delay after the first one of a batch, or as soon as a set
+ * number of them are waiting, whichever comes first. Until then they are only in memory and
+ * are lost if the process dies, so the delay is how much a crash can lose. A delay of 0 commits
+ * each adjustment on its own. Call {@link #flush()} when the app pauses.
+ * <p>
+ * May be called from any thread. Batches are committed in the repository's writer lane and
+ * callbacks are called on the main thread, in the order the adjustments were made.
+ */
+final class SaleAccumulator {
+
+    private final InventoryRepository mRepository;
+    private final ContentResolver mResolver;
+    private final long mMaxDelayMillis;
+    private final int mMaxEvents;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Adjustments waiting to be committed, in the order they were made
+    private List<Long> mIds = new ArrayList<>();
+    private List<Integer> mDeltas = new ArrayList<>();
+    private List<InventoryRepository.Callback<Integer>> mCallbacks = new ArrayList<>();
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * @param maxDelayMillis how long an adjustment may wait for others, 0 to commit each at once
+     * @param maxEvents      how many adjustments are committed together at most
+     */
+    SaleAccumulator(InventoryRepository repository, ContentResolver resolver,
+                    long maxDelayMillis, int maxEvents) {
+        if (maxDelayMillis < 0 || maxEvents < 1) {
+            throw new IllegalArgumentException("Invalid batch of " + maxEvents + " in "
+                    + maxDelayMillis + " ms");
+        }
+        mRepository = repository;
+        mResolver = resolver;
+        mMaxDelayMillis = maxDelayMillis;
+        mMaxEvents = maxEvents;
+    }
+
+    /**
+     * Queues an adjustment of the item's quantity.
+     *
+     * @param callback receives the new quantity, or -1 if the adjustment was refused, or null
+     */
+    void add(long id, int delta, InventoryRepository.Callback<Integer> callback) {
+        boolean full;
+        synchronized (this) {
+            mIds.add(id);
+            mDeltas.add(delta);
+            mCallbacks.add(callback);
+            full = mIds.size() >= mMaxEvents || mMaxDelayMillis == 0;
+            if (!full && mIds.size() == 1) {
+                mHandler.postDelayed(mFlush, mMaxDelayMillis);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Commits the adjustments waiting now, ahead of any write submitted after this call.
+     */
+    void flush() {
+        final long[] ids;
+        final int[] deltas;
+        final List<InventoryRepository.Callback<Integer>> callbacks;
+        synchronized (this) {
+            mHandler.removeCallbacks(mFlush);
+            if (mIds.isEmpty()) {
+                return;
+            }
+            ids = new long[mIds.size()];
+            deltas = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = mIds.get(i);
+                deltas[i] = mDeltas.get(i);
+            }
+            callbacks = mCallbacks;
+            mIds = new ArrayList<>();
+            mDeltas = new ArrayList<>();
+            mCallbacks = new ArrayList<>();
+
+            // Submitted while holding the lock, so batches can't overtake each other.
+            mRepository.submitWrite(new Callable<int[]>() {
+                @Override
+                public int[] call() {
+                    return InventoryEntry.adjustQuantities(mResolver, ids, deltas);
+                }
+            }, new InventoryRepository.Callback<int[]>() {
+                @Override
+                public void onResult(int[] quantities) {
+                    for (int i = 0; i < quantities.length; i++) {
+                        if (callbacks.get(i) != null) {
+                            callbacks.get(i).onResult(quantities[i]);
+                        }
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.washington.inventoryapp.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads what a {@link SnapshotOutput} wrote from a channel, a buffer at a time.
+ * <p>
+ * Every read method throws an IOException if the snapshot ends early or holds a value it can't
+ * have. Whether the body is intact is only known once {@link #finish()} has compared the
+ * checksum, so whatever was read before must not be kept if that fails.
+ */
+final class SnapshotInput {
+
+    // Longest string accepted, so a damaged length can't make the reader allocate gigabytes
+    private static final int MAX_STRING_BYTES = 1024 * 1024;
+
+    private final ReadableByteChannel mChannel;
+    private final int mFlags;
+
+    // The body, as read or inflated and not yet consumed
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(SnapshotOutput.BUFFER_SIZE);
+    private final CRC32 mCrc = new CRC32();
+
+    // Null unless the body is deflated
+    private final Inflater mInflater;
+    private final ByteBuffer mRaw;
+
+    // Suppliers in the order they were first written
+    private final List<String> mSuppliers = new ArrayList<>();
+
+    /**
+     * Reads and checks the header.
+     *
+     * @throws IOException if the channel doesn't hold a snapshot this version can read
+     */
+    SnapshotInput(ReadableByteChannel channel) throws IOException {
+        mChannel = channel;
+        ByteBuffer header = ByteBuffer.allocate(6);
+        while (header.hasRemaining()) {
+            if (channel.read(header) == -1) {
+                throw new EOFException("Snapshot header is truncated");
+            }
+        }
+        header.flip();
+        if (header.getInt() != SnapshotOutput.MAGIC) {
+            throw new IOException("Not an inventory snapshot");
+        }
+        int version = header.get() & 0xff;
+        if (version != SnapshotOutput.FORMAT_VERSION) {
+            throw new IOException("Unknown snapshot format " + version);
+        }
+        mFlags = header.get() & 0xff;
+
+        if ((mFlags & SnapshotOutput.FLAG_DEFLATE) != 0) {
+            mInflater = new Inflater();
+            mRaw = ByteBuffer.allocate(SnapshotOutput.BUFFER_SIZE);
+        } else {
+            mInflater = null;
+            mRaw = null;
+        }
+        mBuffer.limit(0);
+    }
+
+    /**
+     * Returns the header's flags, e.g. {@link SnapshotOutput#FLAG_INCREMENTAL}.
+     */
+    int flags() {
+        return mFlags;
+    }
+
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    long readSignedVarint() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a varint that must fit in an int, e.g. a quantity.
+     */
+    int readIntVarint() throws IOException {
+        long value = readSignedVarint();
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Value " + value + " is out of range");
+        }
+        return (int) value;
+    }
+
+    String readString() throws IOException {
+        long length = readVarint();
+        if (length == 0) {
+            return null;
+        }
+        // A damaged length can read as negative, which no string has.
+        if (length < 1 || length - 1 > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string of " + (length - 1) + " bytes");
+        }
+        byte[] bytes = new byte[(int) length - 1];
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!mBuffer.hasRemaining()) {
+                fill();
+            }
+            int count = Math.min(mBuffer.remaining(), bytes.length - offset);
+            mBuffer.get(bytes, offset, count);
+            offset += count;
+        }
+        return new String(bytes, SnapshotOutput.UTF_8);
+    }
+
+    String readSupplier() throws IOException {
+        long reference = readVarint();
+        if (reference == SnapshotOutput.SUPPLIER_NULL) {
+            return null;
+        }
+        if (reference == SnapshotOutput.SUPPLIER_NEW) {
+            String supplier = readString();
+            if (supplier == null) {
+                throw new IOException("New supplier is missing");
+            }
+            mSuppliers.add(supplier);
+            return supplier;
+        }
+        long index = reference - SnapshotOutput.SUPPLIER_FIRST_ENTRY;
+        if (index < 0 || index >= mSuppliers.size()) {
+            throw new IOException("Unknown supplier " + index);
+        }
+        return mSuppliers.get((int) index);
+    }
+
+    /**
+     * Compares the checksum at the end of the body and checks that nothing follows it.
+     *
+     * @throws IOException if the snapshot is damaged
+     */
+    void finish() throws IOException {
+        mCrc.update(mBuffer.array(), 0, mBuffer.position());
+        long expected = mCrc.getValue();
+        // The checksum itself isn't part of the checksum, so start counting afresh.
+        mCrc.reset();
+        int checksum = 0;
+        for (int i = 0; i < 4; i++) {
+            checksum = (checksum << 8) | (readByte() & 0xff);
+        }
+        if ((checksum & 0xffffffffL) != expected) {
+            throw new IOException("Snapshot checksum doesn't match");
+        }
+        if (mBuffer.hasRemaining() || fillMore()) {
+            throw new IOException("Unexpected data after the snapshot");
+        }
+        if (mInflater != null) {
+            mInflater.end();
+            // The deflated body ended, and so must the file.
+            mRaw.clear();
+            if (mChannel.read(mRaw) > 0) {
+                throw new IOException("Unexpected data after the snapshot");
+            }
+        }
+    }
+
+    private byte readByte() throws IOException {
+        if (!mBuffer.hasRemaining()) {
+            fill();
+        }
+        return mBuffer.get();
+    }
+
+    // Refills the empty buffer, or throws if the body has ended.
+    private void fill() throws IOException {
+        if (!fillMore()) {
+            throw new EOFException("Snapshot is truncated");
+        }
+    }
+
+    // Refills the empty buffer. Returns false if the body has ended.
+    private boolean fillMore() throws IOException {
+        // Everything in the buffer was consumed, so it all counts towards the checksum.
+        mCrc.update(mBuffer.array(), 0, mBuffer.position());
+        mBuffer.clear();
+        try {
+            while (mBuffer.position() == 0) {
+                if (mInflater == null) {
+                    if (mChannel.read(mBuffer) == -1) {
+                        break;
+                    }
+                } else if (mInflater.finished()) {
+                    break;
+                } else if (mInflater.needsInput()) {
+                    mRaw.clear();
+                    int count = mChannel.read(mRaw);
+                    if (count == -1) {
+                        throw new EOFException("Snapshot is truncated");
+                    }
+                    mInflater.setInput(mRaw.array(), 0, count);
+                } else {
+                    int count = mInflater.inflate(mBuffer.array());
+                    mBuffer.position(count);
+                    if (count == 0 && mInflater.needsDictionary()) {
+                        throw new IOException("Snapshot is not deflated as expected");
+                    }
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Snapshot is damaged", e);
+        }
+        mBuffer.flip();
+        if (mInflater != null && mInflater.finished() && mInflater.getRemaining() > 0) {
+            throw new IOException("Unexpected data after the snapshot");
+        }
+        return mBuffer.hasRemaining();
+    }
+}
@@ -0,0 +1,193 @@
+package com.washington.inventoryapp.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the encoding of an {@link InventorySnapshot} to a channel, read back by {@link
+ * SnapshotInput}.
+ * <p>
+ * A snapshot starts with a magic number, the format version and flags, then the body: varints,
+ * strings and dictionary references, deflated if asked for. The body ends with the CRC32 of
+ * everything before it, so a damaged file is noticed before any of it is restored. The body is
+ * gathered in a buffer and handed to the channel a buffer at a time, so the snapshot's size
+ * doesn't affect memory use.
+ */
+final class SnapshotOutput {
+
+    static final int MAGIC = 0x494e5653; // "INVS"
+    static final int FORMAT_VERSION = 1;
+
+    // Flags in the header
+    static final int FLAG_DEFLATE = 1;
+    static final int FLAG_INCREMENTAL = 2;
+
+    // Dictionary references: no supplier, a new one written after the reference, and the first
+    // entry of the dictionary. Entry i is written as FIRST_ENTRY + i.
+    static final int SUPPLIER_NULL = 0;
+    static final int SUPPLIER_NEW = 1;
+    static final int SUPPLIER_FIRST_ENTRY = 2;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 mCrc = new CRC32();
+
+    // Null unless the body is deflated
+    private final Deflater mDeflater;
+    private final ByteBuffer mDeflated;
+
+    // Index of every supplier written so far
+    private final Map<String, Integer> mSuppliers = new HashMap<>();
+
+    /**
+     * Writes the header and starts the body.
+     */
+    SnapshotOutput(WritableByteChannel channel, int flags) throws IOException {
+        mChannel = channel;
+        mBuffer.putInt(MAGIC);
+        mBuffer.put((byte) FORMAT_VERSION);
+        mBuffer.put((byte) flags);
+        // The header is checked when read, so it isn't part of the checksum.
+        mBuffer.flip();
+        writeFully(mBuffer);
+        mBuffer.clear();
+
+        if ((flags & FLAG_DEFLATE) != 0) {
+            mDeflater = new Deflater();
+            mDeflated = ByteBuffer.allocate(BUFFER_SIZE);
+        } else {
+            mDeflater = null;
+            mDeflated = null;
+        }
+    }
+
+    /**
+     * Writes a value that is never negative and usually small in as few bytes as possible,
+     * seven bits a byte.
+     */
+    void writeVarint(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7fL) != 0) {
+            mBuffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        mBuffer.put((byte) value);
+    }
+
+    /**
+     * Writes a value that may be negative. Values near 0 either way are written in few bytes.
+     */
+    void writeSignedVarint(long value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a string, which may be null, as its UTF-8 length plus one and its bytes.
+     */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(bytes.length + 1);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Writes a supplier, which may be null. The first time a supplier is written, it is
+     * written in full and added to the dictionary. After that only its index is written.
+     */
+    void writeSupplier(String supplier) throws IOException {
+        if (supplier == null) {
+            writeVarint(SUPPLIER_NULL);
+            return;
+        }
+        Integer index = mSuppliers.get(supplier);
+        if (index != null) {
+            writeVarint(SUPPLIER_FIRST_ENTRY + index);
+            return;
+        }
+        mSuppliers.put(supplier, mSuppliers.size());
+        writeVarint(SUPPLIER_NEW);
+        writeString(supplier);
+    }
+
+    /**
+     * Ends the body with its checksum and writes out everything still buffered. The channel
+     * isn't closed.
+     */
+    void finish() throws IOException {
+        flushBody();
+        mBuffer.putInt((int) mCrc.getValue());
+        // The checksum isn't part of itself, so it goes out without updating the CRC.
+        sendBody();
+        if (mDeflater != null) {
+            mDeflater.finish();
+            while (!mDeflater.finished()) {
+                drainDeflater();
+            }
+            mDeflater.end();
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int count = Math.min(mBuffer.remaining(), bytes.length - offset);
+            mBuffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    // Makes room for at least count bytes in the buffer.
+    private void ensure(int count) throws IOException {
+        if (mBuffer.remaining() < count) {
+            flushBody();
+        }
+    }
+
+    // Adds the buffered body to the checksum and writes it out.
+    private void flushBody() throws IOException {
+        mCrc.update(mBuffer.array(), 0, mBuffer.position());
+        sendBody();
+    }
+
+    // Writes out the buffered body, deflating it if asked to, and empties the buffer.
+    private void sendBody() throws IOException {
+        if (mDeflater == null) {
+            mBuffer.flip();
+            writeFully(mBuffer);
+        } else {
+            mDeflater.setInput(mBuffer.array(), 0, mBuffer.position());
+            while (!mDeflater.needsInput()) {
+                drainDeflater();
+            }
+        }
+        mBuffer.clear();
+    }
+
+    private void drainDeflater() throws IOException {
+        int count = mDeflater.deflate(mDeflated.array());
+        mDeflated.limit(count);
+        writeFully(mDeflated);
+        mDeflated.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+}
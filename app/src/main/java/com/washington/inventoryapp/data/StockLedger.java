@@ -0,0 +1,231 @@
+package com.washington.inventoryapp.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.washington.inventoryapp.core.InventorySql;
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+/**
+ * The append-only ledger of stock movements and the snapshots old movements are compacted into.
+ * <p>
+ * An item's quantity is always its snapshot, if it has one, plus the movements still in the
+ * ledger. The provider appends a movement in the same transaction as each quantity change, and
+ * {@link #compact} folds the movements older than a cutoff into the snapshots, so a point in
+ * time query reads one snapshot and the short tail of movements after it. The movements before
+ * the cutoff are gone, so only the quantities from the cutoff on can still be answered exactly.
+ */
+final class StockLedger {
+
+    private static final String LOG_TAG = StockLedger.class.getSimpleName();
+
+    private static final String MOVEMENTS = MovementEntry.TABLE_NAME;
+    private static final String SNAPSHOTS = MovementEntry.SNAPSHOT_TABLE_NAME;
+
+    // Snapshot columns: the item's quantity once the folded movements are added up, and the
+    // cutoff of the compaction that last changed it.
+    static final String COLUMN_SNAPSHOT_QUANTITY = InventoryEntry.COLUMN_ITEM_QUANTITY;
+    static final String COLUMN_SNAPSHOT_TAKEN_AT = "taken_at";
+
+    // Indexes for reading one item's movements in time order and for finding old movements
+    static final String ITEM_INDEX = "stock_movements_item_idx";
+    static final String TIME_INDEX = "stock_movements_time_idx";
+
+    /**
+     * Appends one movement, with the same SQL as the core module's store.
+     * Bind args: 1 = item ID, 2 = delta, 3 = reason, 4 = created at.
+     */
+    static final String SQL_INSERT_MOVEMENT = InventorySql.INSERT_MOVEMENT;
+
+    // Made private so the class is not accidentally instantiated.
+    private StockLedger() {
+    }
+
+    /**
+     * Creates the ledger and snapshot tables. Items that already have stock get an opening
+     * movement, so their quantity matches the ledger from the start.
+     */
+    static void create(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + MOVEMENTS + " ("
+                + MovementEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_REASON + " TEXT NOT NULL, "
+                + MovementEntry.COLUMN_CREATED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + ITEM_INDEX + " ON " + MOVEMENTS + " ("
+                + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_CREATED_AT + ")");
+        db.execSQL("CREATE INDEX " + TIME_INDEX + " ON " + MOVEMENTS + " ("
+                + MovementEntry.COLUMN_CREATED_AT + ")");
+
+        // Movements are never changed once written. Compaction may only delete them.
+        db.execSQL("CREATE TRIGGER " + MOVEMENTS + "_bu BEFORE UPDATE ON " + MOVEMENTS
+                + " BEGIN SELECT RAISE(ABORT, 'stock movements are append-only'); END");
+
+        db.execSQL("CREATE TABLE " + SNAPSHOTS + " ("
+                + MovementEntry.COLUMN_ITEM_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_SNAPSHOT_QUANTITY + " INTEGER NOT NULL, "
+                + COLUMN_SNAPSHOT_TAKEN_AT + " INTEGER NOT NULL)");
+
+        db.execSQL("INSERT INTO " + MOVEMENTS + " (" + MovementEntry.COLUMN_ITEM_ID + ", "
+                        + MovementEntry.COLUMN_DELTA + ", " + MovementEntry.COLUMN_REASON + ", "
+                        + MovementEntry.COLUMN_CREATED_AT + ") SELECT " + InventoryEntry._ID
+                        + ", " + InventoryEntry.COLUMN_ITEM_QUANTITY + ", ?, ? FROM "
+                        + InventoryEntry.TABLE_NAME + " WHERE "
+                        + InventoryEntry.COLUMN_ITEM_QUANTITY + " <> 0",
+                new Object[]{MovementEntry.REASON_OPENING, System.currentTimeMillis()});
+    }
+
+    /**
+     * Appends one movement with a statement compiled from {@link #SQL_INSERT_MOVEMENT}. Nothing
+     * is written for a delta of 0.
+     */
+    static void record(SQLiteStatement statement, long itemId, long delta, String reason,
+                       long time) {
+        if (delta == 0) {
+            return;
+        }
+        statement.bindLong(1, itemId);
+        statement.bindLong(2, delta);
+        statement.bindString(3, reason);
+        statement.bindLong(4, time);
+        statement.executeInsert();
+    }
+
+    /**
+     * Appends one movement. Nothing is written for a delta of 0.
+     */
+    static void record(SQLiteDatabase db, long itemId, long delta, String reason, long time) {
+        if (delta != 0) {
+            db.execSQL(SQL_INSERT_MOVEMENT, new Object[]{itemId, delta, reason, time});
+        }
+    }
+
+    /**
+     * Appends a movement for every item in the selection whose quantity is about to be set to
+     * newQuantity. Must run in the same transaction as the update, before it.
+     */
+    static void recordUpdate(SQLiteDatabase db, String selection, String[] selectionArgs,
+                             long newQuantity, String reason, long time) {
+        db.execSQL(insertFromItems("? - " + InventoryEntry.COLUMN_ITEM_QUANTITY,
+                        selection, InventoryEntry.COLUMN_ITEM_QUANTITY + " <> ?"),
+                join(new Object[]{newQuantity, reason, time}, selectionArgs, newQuantity));
+    }
+
+    /**
+     * Appends a movement taking out the whole quantity of every item in the selection, which
+     * is about to be deleted. Must run in the same transaction as the delete, before it.
+     */
+    static void recordDelete(SQLiteDatabase db, String selection, String[] selectionArgs,
+                             String reason, long time) {
+        db.execSQL(insertFromItems("-" + InventoryEntry.COLUMN_ITEM_QUANTITY,
+                        selection, InventoryEntry.COLUMN_ITEM_QUANTITY + " <> 0"),
+                join(new Object[]{reason, time}, selectionArgs, null));
+    }
+
+    /**
+     * Builds an INSERT of one movement per item in the selection that also meets the
+     * condition. Bind args: the reason and time, the selection's args, then the condition's.
+     */
+    private static String insertFromItems(String delta, String selection, String condition) {
+        return "INSERT INTO " + MOVEMENTS + " (" + MovementEntry.COLUMN_ITEM_ID + ", "
+                + MovementEntry.COLUMN_DELTA + ", " + MovementEntry.COLUMN_REASON + ", "
+                + MovementEntry.COLUMN_CREATED_AT + ") SELECT " + InventoryEntry._ID + ", "
+                + delta + ", ?, ? FROM " + InventoryEntry.TABLE_NAME + " WHERE "
+                + (selection == null || selection.isEmpty() ? "" : "(" + selection + ") AND ")
+                + condition;
+    }
+
+    /**
+     * Returns the leading args, then the selection args, which may be null, then the trailing
+     * arg if it isn't null.
+     */
+    private static Object[] join(Object[] leading, String[] selectionArgs, Object trailing) {
+        int selectionCount = selectionArgs == null ? 0 : selectionArgs.length;
+        Object[] args = new Object[leading.length + selectionCount + (trailing == null ? 0 : 1)];
+        System.arraycopy(leading, 0, args, 0, leading.length);
+        if (selectionCount > 0) {
+            System.arraycopy(selectionArgs, 0, args, leading.length, selectionCount);
+        }
+        if (trailing != null) {
+            args[args.length - 1] = trailing;
+        }
+        return args;
+    }
+
+    /**
+     * Returns the item's quantity at the given time: its snapshot plus the movements in the
+     * ledger up to that time. The movements are read from the item index, so the cost depends
+     * on how many the item has had since its last compaction, not on the size of the ledger.
+     * <p>
+     * The answer is only exact for times at or after the item's snapshot was taken, the
+     * cutoff of the compaction that last changed it. For an earlier time the movements that
+     * would tell are folded away, and the quantity at the cutoff is returned instead.
+     */
+    static long quantityAt(SQLiteDatabase db, long itemId, long time) {
+        String id = String.valueOf(itemId);
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL((SELECT "
+                + COLUMN_SNAPSHOT_QUANTITY + " FROM " + SNAPSHOTS + " WHERE "
+                + MovementEntry.COLUMN_ITEM_ID + " = ?), 0) + IFNULL((SELECT SUM("
+                + MovementEntry.COLUMN_DELTA + ") FROM " + MOVEMENTS + " WHERE "
+                + MovementEntry.COLUMN_ITEM_ID + " = ? AND " + MovementEntry.COLUMN_CREATED_AT
+                + " <= ?), 0)", new String[]{id, id, String.valueOf(time)});
+    }
+
+    /**
+     * Folds every movement older than the cutoff into its item's snapshot and deletes it.
+     * Snapshots of deleted items with nothing left in the ledger are dropped too.
+     *
+     * @return the number of movements that were folded
+     */
+    static int compact(SQLiteDatabase db, long before) {
+        String cutoff = String.valueOf(before);
+        int folded;
+        db.beginTransaction();
+        try {
+            folded = (int) DatabaseUtils.queryNumEntries(db, MOVEMENTS,
+                    MovementEntry.COLUMN_CREATED_AT + " < ?", new String[]{cutoff});
+            if (folded > 0) {
+                // Add each item's old movements to the snapshot it already has, if any.
+                db.execSQL("INSERT OR REPLACE INTO " + SNAPSHOTS + " ("
+                        + MovementEntry.COLUMN_ITEM_ID + ", " + COLUMN_SNAPSHOT_QUANTITY + ", "
+                        + COLUMN_SNAPSHOT_TAKEN_AT + ") SELECT m." + MovementEntry.COLUMN_ITEM_ID
+                        + ", SUM(m." + MovementEntry.COLUMN_DELTA + ") + IFNULL(s."
+                        + COLUMN_SNAPSHOT_QUANTITY + ", 0), MAX(IFNULL(s."
+                        + COLUMN_SNAPSHOT_TAKEN_AT + ", 0), ?) FROM " + MOVEMENTS
+                        + " m LEFT JOIN " + SNAPSHOTS + " s ON s." + MovementEntry.COLUMN_ITEM_ID
+                        + " = m." + MovementEntry.COLUMN_ITEM_ID + " WHERE m."
+                        + MovementEntry.COLUMN_CREATED_AT + " < ? GROUP BY m."
+                        + MovementEntry.COLUMN_ITEM_ID, new Object[]{before, before});
+                db.delete(MOVEMENTS, MovementEntry.COLUMN_CREATED_AT + " < ?",
+                        new String[]{cutoff});
+                db.delete(SNAPSHOTS, COLUMN_SNAPSHOT_QUANTITY + " = 0 AND "
+                        + MovementEntry.COLUMN_ITEM_ID + " NOT IN (SELECT " + InventoryEntry._ID
+                        + " FROM " + InventoryEntry.TABLE_NAME + ") AND "
+                        + MovementEntry.COLUMN_ITEM_ID + " NOT IN (SELECT "
+                        + MovementEntry.COLUMN_ITEM_ID + " FROM " + MOVEMENTS + ")", null);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.v(LOG_TAG, "Compacted " + folded + " stock movements older than " + before);
+        return folded;
+    }
+
+    /**
+     * Returns the number of items whose quantity isn't their snapshot plus their movements,
+     * which should always be 0.
+     */
+    static int check(SQLiteDatabase db) {
+        return (int) DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM "
+                + InventoryEntry.TABLE_NAME + " i WHERE i." + InventoryEntry.COLUMN_ITEM_QUANTITY
+                + " <> IFNULL((SELECT " + COLUMN_SNAPSHOT_QUANTITY + " FROM " + SNAPSHOTS
+                + " s WHERE s." + MovementEntry.COLUMN_ITEM_ID + " = i." + InventoryEntry._ID
+                + "), 0) + IFNULL((SELECT SUM(" + MovementEntry.COLUMN_DELTA + ") FROM "
+                + MOVEMENTS + " m WHERE m." + MovementEntry.COLUMN_ITEM_ID + " = i."
+                + InventoryEntry._ID + "), 0)", null);
+    }
+}
@@ -0,0 +1,259 @@
+package com.washington.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.SummaryEntry;
+
+/**
+ * Running stock totals kept in two small tables by triggers on the items table, so reading the
+ * totals costs the same however many items there are.
+ * <p>
+ * {@link SummaryEntry#TOTALS_TABLE_NAME} has one row for the whole inventory and {@link
+ * SummaryEntry#SUPPLIERS_TABLE_NAME} one row per supplier. Items without a supplier, null or
+ * empty, share the row whose supplier is the empty string. Each insert, delete or change of
+ * quantity, price or supplier adds its difference to the rows it affects. The low stock count is
+ * kept for {@link InventoryContract#DEFAULT_LOW_STOCK_THRESHOLD}. Other thresholds have to be
+ * computed from the items table.
+ */
+final class StockSummary {
+
+    private static final String LOG_TAG = StockSummary.class.getSimpleName();
+
+    // The _ID of the only row in the totals table
+    static final long TOTALS_ROW_ID = 1;
+
+    private static final String TOTALS = SummaryEntry.TOTALS_TABLE_NAME;
+    private static final String SUPPLIERS = SummaryEntry.SUPPLIERS_TABLE_NAME;
+
+    // The columns both tables keep
+    private static final String[] TOTAL_COLUMNS = {
+            SummaryEntry.COLUMN_ITEM_COUNT,
+            SummaryEntry.COLUMN_TOTAL_UNITS,
+            SummaryEntry.COLUMN_STOCK_VALUE,
+            SummaryEntry.COLUMN_LOW_STOCK_COUNT};
+
+    // Made private so the class is not accidentally instantiated.
+    private StockSummary() {
+    }
+
+    /**
+     * Creates the summary tables and their triggers and fills them from the items already in
+     * the table.
+     */
+    static void create(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TOTALS + " ("
+                + SummaryEntry._ID + " INTEGER PRIMARY KEY, "
+                + SummaryEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_TOTAL_UNITS + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_LOW_STOCK_COUNT + " INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE " + SUPPLIERS + " ("
+                + SummaryEntry.COLUMN_SUPPLIER + " TEXT PRIMARY KEY NOT NULL, "
+                + SummaryEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_TOTAL_UNITS + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_STOCK_VALUE + " INTEGER NOT NULL DEFAULT 0, "
+                + SummaryEntry.COLUMN_LOW_STOCK_COUNT + " INTEGER NOT NULL DEFAULT 0)");
+
+        String table = InventoryEntry.TABLE_NAME;
+        String oldKey = supplierKey("old");
+        String newKey = supplierKey("new");
+
+        // A new item adds to its supplier, whose row is created the first time.
+        db.execSQL("CREATE TRIGGER " + SUPPLIERS + "_ai AFTER INSERT ON " + table + " BEGIN "
+                + "INSERT OR IGNORE INTO " + SUPPLIERS + " (" + SummaryEntry.COLUMN_SUPPLIER
+                + ") VALUES (" + newKey + "); "
+                + addTo(SUPPLIERS, supplierRow(newKey), "+", "new") + "; "
+                + addTo(TOTALS, totalsRow(), "+", "new") + "; END");
+
+        // A deleted item is taken off its supplier, whose row goes once it has no items.
+        db.execSQL("CREATE TRIGGER " + SUPPLIERS + "_ad AFTER DELETE ON " + table + " BEGIN "
+                + addTo(SUPPLIERS, supplierRow(oldKey), "-", "old") + "; "
+                + deleteIfEmpty(oldKey) + "; "
+                + addTo(TOTALS, totalsRow(), "-", "old") + "; END");
+
+        /*
+        A change that keeps the supplier, like a sale, adds the difference to one supplier row.
+        Only changes to the columns the totals use fire these triggers.
+         */
+        String watched = InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+                + InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER;
+        db.execSQL("CREATE TRIGGER " + SUPPLIERS + "_au AFTER UPDATE OF " + watched + " ON "
+                + table + " WHEN " + oldKey + " = " + newKey + " BEGIN "
+                + addDifference(SUPPLIERS, supplierRow(newKey)) + "; "
+                + addDifference(TOTALS, totalsRow()) + "; END");
+
+        // A change of supplier moves the item from one supplier row to the other.
+        db.execSQL("CREATE TRIGGER " + SUPPLIERS + "_au_moved AFTER UPDATE OF " + watched + " ON "
+                + table + " WHEN " + oldKey + " <> " + newKey + " BEGIN "
+                + addTo(SUPPLIERS, supplierRow(oldKey), "-", "old") + "; "
+                + deleteIfEmpty(oldKey) + "; "
+                + "INSERT OR IGNORE INTO " + SUPPLIERS + " (" + SummaryEntry.COLUMN_SUPPLIER
+                + ") VALUES (" + newKey + "); "
+                + addTo(SUPPLIERS, supplierRow(newKey), "+", "new") + "; "
+                + addDifference(TOTALS, totalsRow()) + "; END");
+
+        rebuild(db);
+    }
+
+    /**
+     * Recomputes both tables from the items table.
+     */
+    static void rebuild(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TOTALS);
+            db.execSQL("DELETE FROM " + SUPPLIERS);
+            db.execSQL("INSERT INTO " + TOTALS + " (" + SummaryEntry._ID + ", "
+                    + columnList() + ") SELECT " + TOTALS_ROW_ID + ", " + aggregates()
+                    + " FROM " + InventoryEntry.TABLE_NAME);
+            db.execSQL("INSERT INTO " + SUPPLIERS + " (" + SummaryEntry.COLUMN_SUPPLIER + ", "
+                    + columnList() + ") " + supplierAggregatesSql());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Compares the summary tables with totals computed from the items table, which should
+     * always match. If they don't and repair is true, the tables are rebuilt.
+     *
+     * @return the number of summary rows that were wrong or missing
+     */
+    static int check(SQLiteDatabase db, boolean repair) {
+        int mismatches;
+        db.beginTransaction();
+        try {
+            String totalsSql = "SELECT " + aggregates() + " FROM " + InventoryEntry.TABLE_NAME;
+            String storedTotalsSql = "SELECT " + columnList() + " FROM " + TOTALS
+                    + " WHERE " + SummaryEntry._ID + " = " + TOTALS_ROW_ID;
+            String suppliersSql = supplierAggregatesSql();
+            String storedSuppliersSql = "SELECT " + SummaryEntry.COLUMN_SUPPLIER + ", "
+                    + columnList() + " FROM " + SUPPLIERS;
+
+            mismatches = countDifferences(db, totalsSql, storedTotalsSql)
+                    + countDifferences(db, suppliersSql, storedSuppliersSql);
+            if (mismatches > 0) {
+                Log.w(LOG_TAG, mismatches + " stock summary rows didn't match the items");
+                if (repair) {
+                    rebuild(db);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return mismatches;
+    }
+
+    /**
+     * Returns the number of rows in either query's result that aren't in the other's.
+     */
+    private static int countDifferences(SQLiteDatabase db, String expected, String stored) {
+        Cursor cursor = db.rawQuery("SELECT (SELECT COUNT(*) FROM (" + except(expected, stored)
+                + ")) + (SELECT COUNT(*) FROM (" + except(stored, expected) + "))", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // The rows of the first query that aren't in the second
+    private static String except(String first, String second) {
+        return "SELECT * FROM (" + first + ") EXCEPT SELECT * FROM (" + second + ")";
+    }
+
+    // The key of an item's supplier row, for "old" or "new" in a trigger
+    private static String supplierKey(String row) {
+        return "IFNULL(" + row + "." + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", '')";
+    }
+
+    private static String supplierRow(String key) {
+        return SummaryEntry.COLUMN_SUPPLIER + " = " + key;
+    }
+
+    private static String totalsRow() {
+        return SummaryEntry._ID + " = " + TOTALS_ROW_ID;
+    }
+
+    // Removes a supplier row once its last item has gone
+    private static String deleteIfEmpty(String key) {
+        return "DELETE FROM " + SUPPLIERS + " WHERE " + supplierRow(key) + " AND "
+                + SummaryEntry.COLUMN_ITEM_COUNT + " = 0";
+    }
+
+    /**
+     * Builds an UPDATE that adds ("+") or takes away ("-") one item, "old" or "new", from the
+     * row of the table.
+     */
+    private static String addTo(String table, String where, String sign, String row) {
+        String[] values = itemValues(row);
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < TOTAL_COLUMNS.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(TOTAL_COLUMNS[i]).append(" = ").append(TOTAL_COLUMNS[i])
+                    .append(' ').append(sign).append(' ').append(values[i]);
+        }
+        return sql.append(" WHERE ").append(where).toString();
+    }
+
+    /**
+     * Builds an UPDATE that adds the difference between the new and old item to the row.
+     */
+    private static String addDifference(String table, String where) {
+        String[] oldValues = itemValues("old");
+        String[] newValues = itemValues("new");
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        // The item count doesn't change.
+        for (int i = 1; i < TOTAL_COLUMNS.length; i++) {
+            if (i > 1) {
+                sql.append(", ");
+            }
+            sql.append(TOTAL_COLUMNS[i]).append(" = ").append(TOTAL_COLUMNS[i])
+                    .append(" + ").append(newValues[i]).append(" - ").append(oldValues[i]);
+        }
+        return sql.append(" WHERE ").append(where).toString();
+    }
+
+    // What one item, "old" or "new", adds to each of TOTAL_COLUMNS
+    private static String[] itemValues(String row) {
+        String quantity = row + "." + InventoryEntry.COLUMN_ITEM_QUANTITY;
+        return new String[]{
+                "1",
+                quantity,
+                quantity + " * " + row + "." + InventoryEntry.COLUMN_ITEM_PRICE,
+                "(" + quantity + " < " + InventoryContract.DEFAULT_LOW_STOCK_THRESHOLD + ")"};
+    }
+
+    // TOTAL_COLUMNS as a comma separated list
+    private static String columnList() {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < TOTAL_COLUMNS.length; i++) {
+            if (i > 0) {
+                list.append(", ");
+            }
+            list.append(TOTAL_COLUMNS[i]);
+        }
+        return list.toString();
+    }
+
+    // The totals of TOTAL_COLUMNS over a set of items, computed from the items table
+    private static String aggregates() {
+        String quantity = InventoryEntry.COLUMN_ITEM_QUANTITY;
+        return "COUNT(*), IFNULL(SUM(" + quantity + "), 0), IFNULL(SUM(" + quantity + " * "
+                + InventoryEntry.COLUMN_ITEM_PRICE + "), 0), IFNULL(SUM(" + quantity + " < "
+                + InventoryContract.DEFAULT_LOW_STOCK_THRESHOLD + "), 0)";
+    }
+
+    private static String supplierAggregatesSql() {
+        String key = "IFNULL(" + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", '')";
+        return "SELECT " + key + ", " + aggregates() + " FROM " + InventoryEntry.TABLE_NAME
+                + " GROUP BY " + key;
+    }
+}
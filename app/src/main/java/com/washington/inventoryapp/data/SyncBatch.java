@@ -0,0 +1,154 @@
+package com.washington.inventoryapp.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes batches of {@link SyncChange}s for a {@link SyncTransport}.
+ * <p>
+ * A batch is a format version, the number of changes and then each change's fields with
+ * DataOutputStream, all deflated. Names and suppliers repeat a lot across items, so a batch
+ * compresses well. Version 2 added the quantity's counter after the SKU.
+ */
+public final class SyncBatch {
+
+    // Written first, so a later format can still read batches of this one
+    private static final int FORMAT_VERSION = 2;
+
+    // Made private so the class is not accidentally instantiated.
+    private SyncBatch() {
+    }
+
+    /**
+     * Returns the changes encoded and compressed.
+     */
+    public static byte[] encode(List<SyncChange> changes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(changes.size());
+            for (SyncChange change : changes) {
+                out.writeUTF(change.syncId);
+                out.writeBoolean(change.deleted);
+                out.writeLong(change.updatedAt);
+                if (!change.deleted) {
+                    out.writeUTF(change.name);
+                    out.writeInt(change.quantity);
+                    out.writeLong(change.price);
+                    writeNullable(out, change.supplier);
+                    writeNullable(out, change.sku);
+                    writeCounter(out, change.counter);
+                }
+            }
+            out.close();
+        } catch (IOException e) {
+            // Writing to memory doesn't fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the changes in a batch made by {@link #encode(List)}.
+     *
+     * @throws IOException if the batch is damaged or in an unknown format
+     */
+    public static List<SyncChange> decode(byte[] batch) throws IOException {
+        DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(batch)));
+        try {
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unknown sync batch format " + version);
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid sync batch size " + count);
+            }
+            List<SyncChange> changes = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                String syncId = in.readUTF();
+                boolean deleted = in.readBoolean();
+                long updatedAt = in.readLong();
+                if (deleted) {
+                    changes.add(SyncChange.deletion(syncId, updatedAt));
+                } else {
+                    String name = in.readUTF();
+                    int quantity = in.readInt();
+                    long price = in.readLong();
+                    String supplier = readNullable(in);
+                    String sku = readNullable(in);
+                    PnCounter counter = version >= 2 ? readCounter(in) : null;
+                    if (counter == null) {
+                        changes.add(new SyncChange(syncId, updatedAt, name, quantity, price,
+                                supplier, sku));
+                    } else {
+                        changes.add(new SyncChange(syncId, updatedAt, name, price, supplier, sku,
+                                counter));
+                    }
+                }
+            }
+            if (in.read() != -1) {
+                throw new IOException("Unexpected data after " + count + " sync changes");
+            }
+            return changes;
+        } catch (EOFException e) {
+            throw new IOException("Truncated sync batch", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // A counter is its number of devices, or -1 if there is none, then each device's totals.
+    private static void writeCounter(DataOutputStream out, PnCounter counter)
+            throws IOException {
+        if (counter == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(counter.devices().size());
+        for (String device : counter.devices()) {
+            out.writeUTF(device);
+            out.writeLong(counter.increments(device));
+            out.writeLong(counter.decrements(device));
+        }
+    }
+
+    private static PnCounter readCounter(DataInputStream in) throws IOException {
+        int devices = in.readInt();
+        if (devices < 0) {
+            return null;
+        }
+        PnCounter counter = new PnCounter();
+        for (int i = 0; i < devices; i++) {
+            String device = in.readUTF();
+            long increments = in.readLong();
+            long decrements = in.readLong();
+            if (increments < 0 || decrements < 0) {
+                throw new IOException("Invalid counter totals for " + device);
+            }
+            counter.set(device, increments, decrements);
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,59 @@
+package com.washington.inventoryapp.data;
+
+/**
+ * The state of one item as sync sends it between devices: the whole synced row after a change,
+ * or the fact that the item was deleted. Items are matched across devices by their sync ID.
+ * <p>
+ * Images aren't synced, since they point at files on the device that picked them. The quantity
+ * travels with its {@link PnCounter}, so sales made on different devices add up instead of the
+ * last one overwriting the others.
+ */
+public class SyncChange {
+
+    // The item's InventoryEntry.COLUMN_ITEM_SYNC_ID
+    public final String syncId;
+    public final boolean deleted;
+    // When the item was changed or deleted, in milliseconds since the epoch
+    public final long updatedAt;
+
+    // The synced columns. Unset for a deleted item.
+    public final String name;
+    public final int quantity;
+    // Price in cents
+    public final long price;
+    public final String supplier;
+    public final String sku;
+    // The quantity's counter, or null if the sender only knows the quantity. Not to be changed.
+    public final PnCounter counter;
+
+    public SyncChange(String syncId, long updatedAt, String name, int quantity, long price,
+                      String supplier, String sku) {
+        this(syncId, false, updatedAt, name, quantity, price, supplier, sku, null);
+    }
+
+    public SyncChange(String syncId, long updatedAt, String name, long price, String supplier,
+                      String sku, PnCounter counter) {
+        this(syncId, false, updatedAt, name, (int) counter.value(), price, supplier, sku,
+                counter);
+    }
+
+    private SyncChange(String syncId, boolean deleted, long updatedAt, String name, int quantity,
+                       long price, String supplier, String sku, PnCounter counter) {
+        this.syncId = syncId;
+        this.deleted = deleted;
+        this.updatedAt = updatedAt;
+        this.name = name;
+        this.quantity = quantity;
+        this.price = price;
+        this.supplier = supplier;
+        this.sku = sku;
+        this.counter = counter;
+    }
+
+    /**
+     * Returns the change that deletes the item.
+     */
+    public static SyncChange deletion(String syncId, long deletedAt) {
+        return new SyncChange(syncId, true, deletedAt, null, 0, 0, null, null, null);
+    }
+}
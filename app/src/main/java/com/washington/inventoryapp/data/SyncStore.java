@@ -0,0 +1,309 @@
+package com.washington.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.washington.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.washington.inventoryapp.data.InventoryContract.MovementEntry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The local side of sync: the outbox of items changed on this device and the cursor of the
+ * changes received from other devices.
+ * <p>
+ * Triggers on the items table put the sync ID of every inserted, changed or deleted item in the
+ * outbox, whichever way it was written. An item changed many times before the next push is in
+ * the outbox once, so only the rows that changed are sent, each in its latest state. Changes
+ * received from other devices are applied with the triggers switched off, so they aren't sent
+ * back. When a local and a received change meet, the one with the newer updated_at wins,
+ * except for the quantity: both sides' {@link QuantityCounters} are merged, so no sale is lost.
+ */
+final class SyncStore {
+
+    private static final String LOG_TAG = SyncStore.class.getSimpleName();
+
+    static final String OUTBOX_TABLE_NAME = "sync_outbox";
+    static final String STATE_TABLE_NAME = "sync_state";
+    static final String SYNC_ID_INDEX = "inventory_sync_id_idx";
+
+    // Outbox columns. Whether the item was deleted, and when it was last changed.
+    private static final String COLUMN_DELETED = "deleted";
+    private static final String COLUMN_CHANGED_AT = "changed_at";
+
+    // State columns. Set while received changes are applied, and the server's cursor.
+    static final String COLUMN_APPLYING = "applying";
+    private static final String COLUMN_CURSOR = "pull_cursor";
+
+    // A new random sync ID
+    static final String SQL_NEW_SYNC_ID = "lower(hex(randomblob(16)))";
+
+    // The current time in milliseconds since the epoch, as the outbox triggers see it
+    private static final String SQL_NOW_MILLIS =
+            "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    // The columns a received change sets
+    private static final String[] ITEM_COLUMNS = {
+            InventoryEntry._ID,
+            InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryEntry.COLUMN_ITEM_UPDATED_AT};
+
+    /**
+     * The oldest unsent changes and the outbox ID of the newest of them.
+     */
+    static final class Outbox {
+        final List<SyncChange> changes;
+        final long lastId;
+
+        Outbox(List<SyncChange> changes, long lastId) {
+            this.changes = changes;
+            this.lastId = lastId;
+        }
+    }
+
+    // Made private so the class is not accidentally instantiated.
+    private SyncStore() {
+    }
+
+    /**
+     * Creates the outbox and state tables and the triggers that fill the outbox. Items that
+     * already exist get a sync ID and are put in the outbox, so the first push sends them.
+     * The items table must already have the sync ID column.
+     */
+    static void create(SQLiteDatabase db) {
+        String table = InventoryEntry.TABLE_NAME;
+        String syncId = InventoryEntry.COLUMN_ITEM_SYNC_ID;
+
+        db.execSQL("UPDATE " + table + " SET " + syncId + " = " + SQL_NEW_SYNC_ID);
+        db.execSQL("CREATE UNIQUE INDEX " + SYNC_ID_INDEX + " ON " + table + " (" + syncId
+                + ")");
+
+        // Every inserted item gets a sync ID unless it came with one, e.g. from another device.
+        db.execSQL("CREATE TRIGGER " + table + "_sync_id_ai AFTER INSERT ON " + table
+                + " WHEN new." + syncId + " IS NULL BEGIN UPDATE " + table + " SET " + syncId
+                + " = " + SQL_NEW_SYNC_ID + " WHERE " + InventoryEntry._ID + " = new."
+                + InventoryEntry._ID + "; END");
+
+        db.execSQL("CREATE TABLE " + OUTBOX_TABLE_NAME + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + syncId + " TEXT NOT NULL UNIQUE, "
+                + COLUMN_DELETED + " INTEGER NOT NULL, "
+                + COLUMN_CHANGED_AT + " INTEGER NOT NULL)");
+
+        db.execSQL("CREATE TABLE " + STATE_TABLE_NAME + " ("
+                + "_id INTEGER PRIMARY KEY, "
+                + COLUMN_APPLYING + " INTEGER NOT NULL, "
+                + COLUMN_CURSOR + " INTEGER NOT NULL)");
+        db.execSQL("INSERT INTO " + STATE_TABLE_NAME + " VALUES (1, 0, 0)");
+
+        /*
+        Replacing the outbox row gives it a new _id, so a change made while a batch is being
+        pushed isn't removed when that batch is acknowledged. Changes to the image or
+        updated_at alone aren't synced.
+         */
+        String notApplying = " AND (SELECT " + COLUMN_APPLYING + " FROM " + STATE_TABLE_NAME
+                + ") = 0";
+        String queueNew = " BEGIN INSERT OR REPLACE INTO " + OUTBOX_TABLE_NAME + " (" + syncId
+                + ", " + COLUMN_DELETED + ", " + COLUMN_CHANGED_AT + ") VALUES (new." + syncId
+                + ", 0, new." + InventoryEntry.COLUMN_ITEM_UPDATED_AT + "); END";
+        db.execSQL("CREATE TRIGGER " + OUTBOX_TABLE_NAME + "_ai AFTER INSERT ON " + table
+                + " WHEN new." + syncId + " IS NOT NULL" + notApplying + queueNew);
+        db.execSQL("CREATE TRIGGER " + OUTBOX_TABLE_NAME + "_au AFTER UPDATE OF "
+                + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_QUANTITY
+                + ", " + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+                + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_SKU
+                + ", " + syncId + " ON " + table
+                + " WHEN new." + syncId + " IS NOT NULL" + notApplying + queueNew);
+        db.execSQL("CREATE TRIGGER " + OUTBOX_TABLE_NAME + "_ad AFTER DELETE ON " + table
+                + " WHEN old." + syncId + " IS NOT NULL" + notApplying
+                + " BEGIN INSERT OR REPLACE INTO " + OUTBOX_TABLE_NAME + " (" + syncId + ", "
+                + COLUMN_DELETED + ", " + COLUMN_CHANGED_AT + ") VALUES (old." + syncId
+                + ", 1, " + SQL_NOW_MILLIS + "); END");
+
+        db.execSQL("INSERT INTO " + OUTBOX_TABLE_NAME + " (" + syncId + ", " + COLUMN_DELETED
+                + ", " + COLUMN_CHANGED_AT + ") SELECT " + syncId + ", 0, "
+                + InventoryEntry.COLUMN_ITEM_UPDATED_AT + " FROM " + table);
+    }
+
+    /**
+     * Returns up to limit of the oldest unsent changes, each item as it is now with its
+     * quantity's counter.
+     */
+    static Outbox readOutbox(SQLiteDatabase db, int limit) {
+        List<SyncChange> changes = new ArrayList<>();
+        long lastId = 0;
+        Cursor cursor = db.rawQuery("SELECT o._id, o." + InventoryEntry.COLUMN_ITEM_SYNC_ID
+                + ", o." + COLUMN_CHANGED_AT + ", i." + InventoryEntry._ID
+                + ", i." + InventoryEntry.COLUMN_ITEM_UPDATED_AT
+                + ", i." + InventoryEntry.COLUMN_ITEM_NAME
+                + ", i." + InventoryEntry.COLUMN_ITEM_PRICE
+                + ", i." + InventoryEntry.COLUMN_ITEM_SUPPLIER
+                + ", i." + InventoryEntry.COLUMN_ITEM_SKU
+                + " FROM " + OUTBOX_TABLE_NAME + " o LEFT JOIN " + InventoryEntry.TABLE_NAME
+                + " i ON i." + InventoryEntry.COLUMN_ITEM_SYNC_ID + " = o."
+                + InventoryEntry.COLUMN_ITEM_SYNC_ID
+                + " ORDER BY o._id LIMIT " + limit, null);
+        try {
+            // The counters are read for the whole batch at once, before the changes are made.
+            Map<Long, PnCounter> counters = new HashMap<>();
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(3)) {
+                    counters.put(cursor.getLong(3), new PnCounter());
+                }
+            }
+            QuantityCounters.readAll(db, counters);
+
+            cursor.moveToPosition(-1);
+            while (cursor.moveToNext()) {
+                lastId = cursor.getLong(0);
+                if (cursor.isNull(3)) {
+                    // The item isn't here any more, so it was deleted.
+                    changes.add(SyncChange.deletion(cursor.getString(1), cursor.getLong(2)));
+                } else {
+                    changes.add(new SyncChange(cursor.getString(1), cursor.getLong(4),
+                            cursor.getString(5), cursor.getLong(6), cursor.getString(7),
+                            cursor.getString(8), counters.get(cursor.getLong(3))));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return new Outbox(changes, lastId);
+    }
+
+    /**
+     * Removes the outbox entries up to the given ID, which the server now has. Items changed
+     * again since have a newer entry and stay.
+     */
+    static void acknowledge(SQLiteDatabase db, long lastId) {
+        db.delete(OUTBOX_TABLE_NAME, "_id <= ?", new String[]{String.valueOf(lastId)});
+    }
+
+    /**
+     * Returns the cursor stored by the last {@link #apply}.
+     */
+    static long cursor(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "SELECT " + COLUMN_CURSOR + " FROM "
+                + STATE_TABLE_NAME, null);
+    }
+
+    /**
+     * Applies changes received from the server and stores its cursor, in one transaction. The
+     * name, price, supplier and SKU of a change are only applied if it is newer than the item
+     * here, but its quantity counter is always merged. Quantity changes are recorded in the
+     * ledger. A change that would give an item the SKU of another is skipped.
+     *
+     * @return the number of items that changed
+     */
+    static int apply(SQLiteDatabase db, List<SyncChange> changes, long cursor, long now) {
+        int applied = 0;
+        db.beginTransaction();
+        try {
+            db.execSQL("UPDATE " + STATE_TABLE_NAME + " SET " + COLUMN_APPLYING + " = 1");
+            for (SyncChange change : changes) {
+                if (applyChange(db, change, now)) {
+                    applied++;
+                }
+            }
+            db.execSQL("UPDATE " + STATE_TABLE_NAME + " SET " + COLUMN_APPLYING + " = 0, "
+                    + COLUMN_CURSOR + " = ?", new Object[]{cursor});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return applied;
+    }
+
+    // Applies one change where it is newer or adds to the quantity. Returns whether anything
+    // changed.
+    private static boolean applyChange(SQLiteDatabase db, SyncChange change, long now) {
+        String[] syncIdArgs = {change.syncId};
+        long id = -1;
+        long quantity = 0;
+        long updatedAt = 0;
+        Cursor cursor = db.query(InventoryEntry.TABLE_NAME, ITEM_COLUMNS,
+                InventoryEntry.COLUMN_ITEM_SYNC_ID + " = ?", syncIdArgs, null, null, null);
+        try {
+            if (cursor.moveToFirst()) {
+                id = cursor.getLong(0);
+                quantity = cursor.getLong(1);
+                updatedAt = cursor.getLong(2);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // If not, the item changed here since, and that change will be pushed.
+        boolean newer = id == -1 || change.updatedAt > updatedAt;
+
+        if (change.deleted) {
+            if (id == -1 || !newer) {
+                return false;
+            }
+            db.delete(InventoryEntry.TABLE_NAME, InventoryEntry._ID + " = " + id, null);
+            StockLedger.record(db, id, -quantity, MovementEntry.REASON_SYNC, now);
+            db.delete(OUTBOX_TABLE_NAME, InventoryEntry.COLUMN_ITEM_SYNC_ID + " = ?",
+                    syncIdArgs);
+            return true;
+        }
+
+        /*
+        Every sale either side made counts, whichever change is newer. A sender that only knows
+        the quantity, from before counters, is taken at its word if its change is newer.
+         */
+        PnCounter counter = id == -1 ? new PnCounter() : QuantityCounters.read(db, id);
+        boolean counted = change.counter != null && counter.merge(change.counter);
+        long newQuantity;
+        if (change.counter != null) {
+            newQuantity = counter.value();
+        } else {
+            newQuantity = newer ? change.quantity : quantity;
+        }
+        if (!newer && !counted) {
+            return false;
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryEntry.COLUMN_ITEM_QUANTITY, newQuantity);
+        if (newer) {
+            values.put(InventoryEntry.COLUMN_ITEM_NAME, change.name);
+            values.put(InventoryEntry.COLUMN_ITEM_PRICE, change.price);
+            values.put(InventoryEntry.COLUMN_ITEM_SUPPLIER, change.supplier);
+            values.put(InventoryEntry.COLUMN_ITEM_SKU, change.sku);
+            values.put(InventoryEntry.COLUMN_ITEM_UPDATED_AT, change.updatedAt);
+        }
+        if (id == -1) {
+            values.put(InventoryEntry.COLUMN_ITEM_SYNC_ID, change.syncId);
+            id = db.insertWithOnConflict(InventoryEntry.TABLE_NAME, null, values,
+                    SQLiteDatabase.CONFLICT_IGNORE);
+            if (id == -1) {
+                Log.w(LOG_TAG, "Skipped synced item " + change.syncId + " with SKU "
+                        + change.sku + " that another item has");
+                return false;
+            }
+        } else if (db.updateWithOnConflict(InventoryEntry.TABLE_NAME, values,
+                InventoryEntry._ID + " = " + id, null, SQLiteDatabase.CONFLICT_IGNORE) == 0) {
+            Log.w(LOG_TAG, "Skipped synced change to " + change.syncId + " with SKU "
+                    + change.sku + " that another item has");
+            return false;
+        }
+        if (counted) {
+            QuantityCounters.write(db, id, counter);
+        }
+        StockLedger.record(db, id, newQuantity - quantity, MovementEntry.REASON_SYNC, now);
+
+        // If the item is now as the server has it, there is nothing of it left to send. If
+        // this device has counts the server lacks, it stays in the outbox to send them.
+        if (newer && (change.counter == null || counter.equals(change.counter))) {
+            db.delete(OUTBOX_TABLE_NAME, InventoryEntry.COLUMN_ITEM_SYNC_ID + " = ?",
+                    syncIdArgs);
+        }
+        return true;
+    }
+}
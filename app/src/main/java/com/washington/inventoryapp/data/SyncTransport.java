@@ -0,0 +1,49 @@
+package com.washington.inventoryapp.data;
+
+import java.io.IOException;
+
+/**
+ * Carries batches of changes between this device and the sync server. Batches are encoded by
+ * {@link SyncBatch}, so a transport only moves bytes. Both methods are called on the sync
+ * thread and may block.
+ * <p>
+ * The server keeps the newest change of every item, except that it merges the quantity counters
+ * of every change it receives with {@link PnCounter#merge}. It stamps each change it accepts
+ * with its own updated_at, which only goes up. A device pulls the changes stamped after the last
+ * one it has seen, so it never downloads the whole inventory again.
+ */
+public interface SyncTransport {
+
+    /**
+     * Sends a batch of local changes.
+     *
+     * @throws IOException if the server may not have them, so they will be sent again
+     */
+    void push(byte[] batch) throws IOException;
+
+    /**
+     * Returns the changes the server stamped after the cursor, oldest first.
+     *
+     * @param cursor the cursor of the last pull, or 0 for every change
+     * @throws IOException if the changes couldn't be fetched
+     */
+    Pull pull(long cursor) throws IOException;
+
+    /**
+     * The result of one pull.
+     */
+    class Pull {
+        // The changes, or null if there were none
+        public final byte[] batch;
+        // The server's updated_at of the last change in the batch, passed to the next pull
+        public final long cursor;
+        // Whether the server has more changes after this batch
+        public final boolean hasMore;
+
+        public Pull(byte[] batch, long cursor, boolean hasMore) {
+            this.batch = batch;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+    }
+}
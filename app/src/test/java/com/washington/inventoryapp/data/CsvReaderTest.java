@@ -0,0 +1,62 @@
+package com.washington.inventoryapp.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Local unit tests for {@link CsvReader}.
+ */
+public class CsvReaderTest {
+
+    @Test
+    public void readsPlainRecords() throws Exception {
+        CsvReader reader = reader("name,quantity\nHeadphones,45\r\nCables,3", ',');
+
+        assertEquals(Arrays.asList("name", "quantity"), reader.readRecord());
+        assertEquals(Arrays.asList("Headphones", "45"), reader.readRecord());
+        assertEquals(Arrays.asList("Cables", "3"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void readsQuotedFields() throws Exception {
+        CsvReader reader = reader("\"Cable, 2m\",\"12\"\"\",\"two\nlines\"\n", ',');
+
+        assertEquals(Arrays.asList("Cable, 2m", "12\"", "two\nlines"), reader.readRecord());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void readsTabSeparatedAndEmptyFields() throws Exception {
+        CsvReader reader = reader("Headphones\t\t5\t", '\t');
+
+        assertEquals(Arrays.asList("Headphones", "", "5", ""), reader.readRecord());
+    }
+
+    @Test
+    public void tracksRecordLines() throws Exception {
+        CsvReader reader = reader("a\n\n\"b\nb\"\nc\n", ',');
+
+        reader.readRecord();
+        assertEquals(1, reader.getRecordLine());
+        reader.readRecord();
+        assertEquals(3, reader.getRecordLine());
+        reader.readRecord();
+        assertEquals(5, reader.getRecordLine());
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuoteFails() throws Exception {
+        reader("\"never closed\n", ',').readRecord();
+    }
+
+    private static CsvReader reader(String text, char delimiter) {
+        return new CsvReader(new StringReader(text), delimiter);
+    }
+}
@@ -0,0 +1,137 @@
+package com.washington.inventoryapp.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link PnCounter}. The property tests run many random histories of
+ * devices changing and merging counters, each from a fixed seed so a failure can be replayed.
+ */
+public class PnCounterTest {
+
+    private static final int RUNS = 500;
+    private static final int MAX_DEVICES = 6;
+    private static final int MAX_STEPS = 200;
+
+    @Test
+    public void countsEveryDevicesChanges() {
+        PnCounter counter = new PnCounter();
+        counter.add("a", 10);
+        counter.add("a", -3);
+        counter.add("b", -2);
+
+        assertEquals(5, counter.value());
+        assertEquals(10, counter.increments("a"));
+        assertEquals(3, counter.decrements("a"));
+        assertEquals(2, counter.decrements("b"));
+    }
+
+    @Test
+    public void mergeKeepsSalesMadeOnBothDevices() {
+        PnCounter a = new PnCounter();
+        a.add("a", 12);
+        PnCounter b = new PnCounter();
+        b.merge(a);
+
+        a.add("a", -2);
+        b.add("b", -5);
+
+        assertTrue(a.merge(b));
+        assertTrue(b.merge(a));
+        assertEquals(5, a.value());
+        assertEquals(a, b);
+        assertFalse(a.merge(b));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeTotals() {
+        new PnCounter().set("a", -1, 0);
+    }
+
+    @Test
+    public void replicasConvergeWhateverTheMergeOrder() {
+        for (int run = 0; run < RUNS; run++) {
+            Random random = new Random(run);
+            int devices = 1 + random.nextInt(MAX_DEVICES);
+            PnCounter[] replicas = newReplicas(devices);
+            long expected = 0;
+
+            // Devices change their own replica and now and then merge another's.
+            int steps = random.nextInt(MAX_STEPS);
+            for (int step = 0; step < steps; step++) {
+                int device = random.nextInt(devices);
+                if (random.nextInt(4) == 0) {
+                    replicas[device].merge(replicas[random.nextInt(devices)]);
+                } else {
+                    long delta = random.nextInt(21) - 10;
+                    replicas[device].add("device" + device, delta);
+                    expected += delta;
+                }
+            }
+
+            // Deliver every final state to a fresh replica in a random order.
+            List<PnCounter> order = new ArrayList<>();
+            Collections.addAll(order, replicas);
+            Collections.shuffle(order, random);
+            PnCounter first = new PnCounter();
+            for (PnCounter replica : order) {
+                first.merge(replica);
+            }
+            Collections.shuffle(order, random);
+            PnCounter second = new PnCounter();
+            for (PnCounter replica : order) {
+                second.merge(replica);
+            }
+
+            assertEquals("seed " + run, first, second);
+            assertEquals("seed " + run, expected, first.value());
+        }
+    }
+
+    @Test
+    public void mergeIsCommutativeAssociativeAndIdempotent() {
+        for (int run = 0; run < RUNS; run++) {
+            Random random = new Random(run);
+            PnCounter a = randomCounter(random);
+            PnCounter b = randomCounter(random);
+            PnCounter c = randomCounter(random);
+
+            assertEquals("seed " + run, merged(a, b), merged(b, a));
+            assertEquals("seed " + run, merged(merged(a, b), c), merged(a, merged(b, c)));
+            assertEquals("seed " + run, a, merged(a, a));
+        }
+    }
+
+    private static PnCounter[] newReplicas(int count) {
+        PnCounter[] replicas = new PnCounter[count];
+        for (int i = 0; i < count; i++) {
+            replicas[i] = new PnCounter();
+        }
+        return replicas;
+    }
+
+    private static PnCounter randomCounter(Random random) {
+        PnCounter counter = new PnCounter();
+        int devices = random.nextInt(MAX_DEVICES);
+        for (int i = 0; i < devices; i++) {
+            counter.set("device" + random.nextInt(MAX_DEVICES), random.nextInt(100),
+                    random.nextInt(100));
+        }
+        return counter;
+    }
+
+    private static PnCounter merged(PnCounter a, PnCounter b) {
+        PnCounter result = new PnCounter();
+        result.merge(a);
+        result.merge(b);
+        return result;
+    }
+}
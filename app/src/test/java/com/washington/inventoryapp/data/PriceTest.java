@@ -0,0 +1,44 @@
+package com.washington.inventoryapp.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link Price}.
+ */
+public class PriceTest {
+
+    @Test
+    public void parsesDollarsIntoCents() {
+        assertEquals(499, Price.parseCents("4.99"));
+        assertEquals(500, Price.parseCents("5"));
+        assertEquals(50, Price.parseCents(".5"));
+        assertEquals(125000, Price.parseCents(" $1,250 "));
+        assertEquals(1000, Price.parseCents("9.995"));
+        assertEquals(0, Price.parseCents("0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsText() {
+        Price.parseCents("five");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativePrices() {
+        Price.parseCents("-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyText() {
+        Price.parseCents("");
+    }
+
+    @Test
+    public void formatsCentsAsDollars() {
+        assertEquals("4.99", Price.format(499));
+        assertEquals("5.00", Price.format(500));
+        assertEquals("0.05", Price.format(5));
+        assertEquals("-1.20", Price.format(-120));
+    }
+}
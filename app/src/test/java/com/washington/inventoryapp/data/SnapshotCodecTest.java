@@ -0,0 +1,167 @@
+package com.washington.inventoryapp.data;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link SnapshotOutput} and {@link SnapshotInput}.
+ */
+public class SnapshotCodecTest {
+
+    private static final long[] VALUES = {0, 1, 127, 128, 300, -1, -64, 1500000000000L,
+            Long.MAX_VALUE, Long.MIN_VALUE};
+
+    // Enough records to fill several buffers
+    private static final int RECORDS = 20000;
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        for (int flags : new int[]{0, SnapshotOutput.FLAG_DEFLATE}) {
+            byte[] snapshot = write(flags);
+            SnapshotInput in = open(snapshot);
+            assertEquals(flags, in.flags());
+            readAll(in);
+            in.finish();
+        }
+    }
+
+    @Test
+    public void smallValuesTakeOneByte() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(Channels.newChannel(bytes), 0);
+        for (int i = 0; i < 100; i++) {
+            out.writeVarint(127);
+            out.writeSignedVarint(-64);
+        }
+        out.finish();
+
+        // Header, 200 one-byte values and the checksum
+        assertEquals(6 + 200 + 4, bytes.size());
+    }
+
+    @Test
+    public void repeatedSuppliersAreWrittenOnce() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(Channels.newChannel(bytes), 0);
+        for (int i = 0; i < 1000; i++) {
+            out.writeSupplier("Acme Supply Company");
+        }
+        out.finish();
+        assertTrue(bytes.size() < 6 + 1000 + 30);
+
+        SnapshotInput in = open(bytes.toByteArray());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("Acme Supply Company", in.readSupplier());
+        }
+        in.finish();
+    }
+
+    @Test
+    public void deflatedIsSmaller() throws IOException {
+        assertTrue(write(SnapshotOutput.FLAG_DEFLATE).length < write(0).length / 2);
+    }
+
+    @Test
+    public void rejectsDamagedSnapshots() throws IOException {
+        for (int flags : new int[]{0, SnapshotOutput.FLAG_DEFLATE}) {
+            byte[] snapshot = write(flags);
+            for (int position : new int[]{8, snapshot.length / 2, snapshot.length - 1}) {
+                byte[] damaged = snapshot.clone();
+                damaged[position] ^= 0x10;
+                assertRejected(damaged);
+            }
+            assertRejected(Arrays.copyOf(snapshot, snapshot.length - 3));
+            assertRejected(Arrays.copyOf(snapshot, snapshot.length + 2));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        open("id,name,quantity\n".getBytes("UTF-8"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeStringLengths() throws IOException {
+        open(writeVarint(-1)).readString();
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeSupplierIndexes() throws IOException {
+        open(writeVarint(-1)).readSupplier();
+    }
+
+    private static byte[] write(int flags) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(Channels.newChannel(bytes), flags);
+        for (int i = 0; i < RECORDS; i++) {
+            for (long value : VALUES) {
+                out.writeSignedVarint(value);
+            }
+            out.writeVarint(i);
+            out.writeString(i % 3 == 0 ? null : "Item \u00e9 " + i);
+            out.writeSupplier(i % 5 == 0 ? null : "Supplier " + (i % 7));
+        }
+        out.finish();
+        return bytes.toByteArray();
+    }
+
+    // Writes a snapshot holding only the value, e.g. one a damaged snapshot could hold
+    private static byte[] writeVarint(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(Channels.newChannel(bytes), 0);
+        out.writeVarint(value);
+        out.finish();
+        return bytes.toByteArray();
+    }
+
+    private static void readAll(SnapshotInput in) throws IOException {
+        for (int i = 0; i < RECORDS; i++) {
+            for (long value : VALUES) {
+                assertEquals(value, in.readSignedVarint());
+            }
+            assertEquals(i, in.readVarint());
+            if (i % 3 == 0) {
+                assertNull(in.readString());
+            } else {
+                assertEquals("Item \u00e9 " + i, in.readString());
+            }
+            if (i % 5 == 0) {
+                assertNull(in.readSupplier());
+            } else {
+                assertEquals("Supplier " + (i % 7), in.readSupplier());
+            }
+        }
+    }
+
+    private static void assertRejected(byte[] snapshot) {
+        try {
+            SnapshotInput in = open(snapshot);
+            // Damaged values are only caught by the checksum, so skip them unchecked.
+            for (int i = 0; i < RECORDS; i++) {
+                for (int j = 0; j < VALUES.length; j++) {
+                    in.readSignedVarint();
+                }
+                in.readVarint();
+                in.readString();
+                in.readSupplier();
+            }
+            in.finish();
+        } catch (IOException expected) {
+            return;
+        }
+        throw new AssertionError("Damaged snapshot was read");
+    }
+
+    private static SnapshotInput open(byte[] snapshot) throws IOException {
+        return new SnapshotInput(Channels.newChannel(new ByteArrayInputStream(snapshot)));
+    }
+}
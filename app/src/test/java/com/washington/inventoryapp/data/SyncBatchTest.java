@@ -0,0 +1,87 @@
+package com.washington.inventoryapp.data;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link SyncBatch}.
+ */
+public class SyncBatchTest {
+
+    @Test
+    public void decodesWhatItEncodes() throws IOException {
+        List<SyncChange> changes = Arrays.asList(
+                new SyncChange("a1", 1000, "Hammer", 12, 1999, "Acme", "HAM-1"),
+                new SyncChange("b2", 2000, "Nails", 0, 5, null, null),
+                SyncChange.deletion("c3", 3000));
+
+        List<SyncChange> decoded = SyncBatch.decode(SyncBatch.encode(changes));
+
+        assertEquals(3, decoded.size());
+        SyncChange hammer = decoded.get(0);
+        assertEquals("a1", hammer.syncId);
+        assertEquals(false, hammer.deleted);
+        assertEquals(1000, hammer.updatedAt);
+        assertEquals("Hammer", hammer.name);
+        assertEquals(12, hammer.quantity);
+        assertEquals(1999, hammer.price);
+        assertEquals("Acme", hammer.supplier);
+        assertEquals("HAM-1", hammer.sku);
+        assertNull(hammer.counter);
+
+        SyncChange nails = decoded.get(1);
+        assertEquals("Nails", nails.name);
+        assertNull(nails.supplier);
+        assertNull(nails.sku);
+
+        SyncChange deleted = decoded.get(2);
+        assertEquals("c3", deleted.syncId);
+        assertTrue(deleted.deleted);
+        assertEquals(3000, deleted.updatedAt);
+    }
+
+    @Test
+    public void carriesQuantityCounters() throws IOException {
+        PnCounter counter = new PnCounter();
+        counter.add("device1", 12);
+        counter.add("device2", -5);
+
+        SyncChange decoded = SyncBatch.decode(SyncBatch.encode(Arrays.asList(
+                new SyncChange("a1", 1000, "Hammer", 1999, null, null, counter)))).get(0);
+
+        assertEquals(counter, decoded.counter);
+        assertEquals(7, decoded.quantity);
+    }
+
+    @Test
+    public void compressesRepeatedValues() {
+        List<SyncChange> changes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            changes.add(new SyncChange(String.format("%032x", i), 1000 + i, "Widget", i, 250,
+                    "Acme Supply Co.", "WID-" + i));
+        }
+
+        // Each change is over 80 bytes before compression.
+        assertTrue(SyncBatch.encode(changes).length < 500 * 40);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedBatches() throws IOException {
+        byte[] batch = SyncBatch.encode(Arrays.asList(
+                new SyncChange("a1", 1000, "Hammer", 12, 1999, "Acme", "HAM-1")));
+        SyncBatch.decode(Arrays.copyOf(batch, batch.length / 2));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsDataThatIsNotABatch() throws IOException {
+        SyncBatch.decode("not a batch".getBytes("UTF-8"));
+    }
+}
@@ -0,0 +1,179 @@
+package com.washington.inventoryapp.benchmark;
+
+import com.washington.inventoryapp.core.InventorySql;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A database with the app's inventory schema, on the JVM through sqlite-jdbc.
+ * <p>
+ * The app's classes need Android. The items table, the ledger and the statements come from the
+ * core module's {@link InventorySql}, which the app shares; the full-text search index and its
+ * triggers are repeated from InventoryDbHelper. The stock summary, sync and quantity counter
+ * triggers are left out, so the numbers are for comparing one build with another rather than
+ * for predicting times on a device.
+ * <p>
+ * The connection uses the settings from res/values/database.xml: write-ahead logging,
+ * synchronous NORMAL and a 4 MiB page cache. Writes are committed one transaction at a time, as
+ * the provider does.
+ */
+final class BenchmarkDatabase {
+
+    static final String TABLE = InventorySql.ITEMS;
+    static final String SEARCH_TABLE = "inventory_search";
+    static final String MOVEMENTS = InventorySql.MOVEMENTS;
+
+    // Puts back a deleted item. Bind args as InventorySql.INSERT_ITEM, and 8 = the item ID.
+    private static final String SQL_RESTORE_ITEM = "INSERT INTO " + TABLE
+            + " (name, quantity, price, supplier, image, updated_at, sku, _id)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Suppliers the items are spread over
+    private static final int SUPPLIERS = 50;
+
+    final Connection connection;
+    private final File mFile;
+
+    private final PreparedStatement mInsertItem;
+    private final PreparedStatement mRestoreItem;
+    private final PreparedStatement mInsertMovement;
+
+    private BenchmarkDatabase(File file) throws SQLException {
+        mFile = file;
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            // A negative cache size is in KiB rather than pages.
+            statement.execute("PRAGMA cache_size = -4096");
+            statement.execute("PRAGMA journal_size_limit = " + 1024 * 1024);
+            createSchema(statement);
+        } finally {
+            statement.close();
+        }
+        connection.setAutoCommit(false);
+
+        mInsertItem = connection.prepareStatement(InventorySql.INSERT_ITEM,
+                Statement.RETURN_GENERATED_KEYS);
+        mRestoreItem = connection.prepareStatement(SQL_RESTORE_ITEM);
+        mInsertMovement = connection.prepareStatement(InventorySql.INSERT_MOVEMENT);
+    }
+
+    /**
+     * Creates a database in a temporary file with the given number of items. Their IDs are 1 to
+     * rows.
+     */
+    static BenchmarkDatabase create(int rows) throws IOException, SQLException {
+        File file = File.createTempFile("inventory", ".db");
+        BenchmarkDatabase database = new BenchmarkDatabase(file);
+        long now = System.currentTimeMillis();
+        for (int n = 0; n < rows; n++) {
+            database.insertItem(n, now);
+        }
+        database.connection.commit();
+        return database;
+    }
+
+    /**
+     * Inserts the nth item with its opening movement, as the provider's insert does, and
+     * returns its ID. The caller commits.
+     */
+    long insertItem(int n, long now) throws SQLException {
+        bindItem(mInsertItem, n, now);
+        mInsertItem.executeUpdate();
+        ResultSet keys = mInsertItem.getGeneratedKeys();
+        long id;
+        try {
+            keys.next();
+            id = keys.getLong(1);
+        } finally {
+            keys.close();
+        }
+        recordMovement(id, quantityOf(n), InventorySql.REASON_RECEIVED, now);
+        return id;
+    }
+
+    /**
+     * Puts back an item that was deleted, with the values and ID it was created with. The
+     * caller commits.
+     */
+    void restoreItem(long id, long now) throws SQLException {
+        int n = (int) (id - 1);
+        bindItem(mRestoreItem, n, now);
+        mRestoreItem.setLong(8, id);
+        mRestoreItem.executeUpdate();
+        recordMovement(id, quantityOf(n), InventorySql.REASON_RECEIVED, now);
+    }
+
+    /**
+     * Appends a movement to the ledger. The caller commits.
+     */
+    void recordMovement(long id, long delta, String reason, long now) throws SQLException {
+        mInsertMovement.setLong(1, id);
+        mInsertMovement.setLong(2, delta);
+        mInsertMovement.setString(3, reason);
+        mInsertMovement.setLong(4, now);
+        mInsertMovement.executeUpdate();
+    }
+
+    /**
+     * Closes the connection and deletes the database and its log.
+     */
+    void close() throws SQLException {
+        mInsertItem.close();
+        mRestoreItem.close();
+        mInsertMovement.close();
+        connection.close();
+        mFile.delete();
+        new File(mFile.getPath() + "-wal").delete();
+        new File(mFile.getPath() + "-shm").delete();
+    }
+
+    private static void bindItem(PreparedStatement insert, int n, long now)
+            throws SQLException {
+        insert.setString(1, "Item " + n);
+        insert.setInt(2, quantityOf(n));
+        // Prices in cents
+        insert.setLong(3, 99 + n % 5000);
+        insert.setString(4, "Supplier " + n % SUPPLIERS);
+        insert.setString(5, null);
+        insert.setLong(6, now);
+        insert.setString(7, "SKU" + n);
+    }
+
+    private static int quantityOf(int n) {
+        return n % 100;
+    }
+
+    /**
+     * Creates the items table, the ledger and the search index the item paths use.
+     */
+    private static void createSchema(Statement statement) throws SQLException {
+        for (String sql : InventorySql.SCHEMA) {
+            statement.execute(sql);
+        }
+
+        statement.execute("CREATE VIRTUAL TABLE " + SEARCH_TABLE + " USING fts4(content=\""
+                + TABLE + "\", name, supplier)");
+        statement.execute("CREATE TRIGGER " + SEARCH_TABLE + "_bd BEFORE DELETE ON " + TABLE
+                + " BEGIN DELETE FROM " + SEARCH_TABLE + " WHERE docid = old._id; END");
+        statement.execute("CREATE TRIGGER " + SEARCH_TABLE + "_bu BEFORE UPDATE OF name, "
+                + "supplier ON " + TABLE + " BEGIN DELETE FROM " + SEARCH_TABLE
+                + " WHERE docid = old._id; END");
+        statement.execute("CREATE TRIGGER " + SEARCH_TABLE + "_ai AFTER INSERT ON " + TABLE
+                + " BEGIN INSERT INTO " + SEARCH_TABLE + "(docid, name, supplier) VALUES "
+                + "(new._id, new.name, new.supplier); END");
+        statement.execute("CREATE TRIGGER " + SEARCH_TABLE + "_au AFTER UPDATE OF name, "
+                + "supplier ON " + TABLE + " BEGIN INSERT INTO " + SEARCH_TABLE
+                + "(docid, name, supplier) VALUES (new._id, new.name, new.supplier); END");
+    }
+}
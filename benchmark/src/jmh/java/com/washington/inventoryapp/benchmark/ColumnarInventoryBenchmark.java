@@ -0,0 +1,166 @@
+package com.washington.inventoryapp.benchmark;
+
+import com.washington.inventoryapp.core.ColumnarInventory;
+import com.washington.inventoryapp.core.InventorySql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loading every item's ID, quantity, price and supplier and writing back a recount of every
+ * item, through {@link ColumnarInventory} and the way the app does it one row at a time.
+ * <p>
+ * ContentValues needs Android, so the row path holds each row as a map of boxed values, which
+ * is what ContentValues wraps, and writes each one with an UPDATE built from the map's keys
+ * and compiled once per distinct SQL, as SQLiteDatabase.update() does with its statement
+ * cache. Both paths write a correction to the ledger for each changed quantity and commit
+ * the recount in one transaction.
+ * <p>
+ * The gc profiler's gc.alloc.rate.norm for the load benchmarks is the bytes a load allocates,
+ * which bounds the memory the loaded rows hold.
+ */
+@State(Scope.Thread)
+public class ColumnarInventoryBenchmark {
+
+    private static final String SQL_LOAD = "SELECT " + InventorySql.COLUMN_ID + ", "
+            + InventorySql.COLUMN_QUANTITY + ", " + InventorySql.COLUMN_PRICE + ", "
+            + InventorySql.COLUMN_SUPPLIER + " FROM " + InventorySql.ITEMS;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase mDatabase;
+
+    // The items as each path loaded them, kept up to date with the recounts
+    private ColumnarInventory mInventory;
+    private Map<Long, Map<String, Object>> mRowMaps;
+
+    // Statements the row path compiled, by SQL
+    private final Map<String, PreparedStatement> mStatements = new HashMap<>();
+
+    // Recounts add 1 to every quantity, then take it away.
+    private int mDelta = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mDatabase = BenchmarkDatabase.create(rows);
+        mInventory = ColumnarInventory.load(mDatabase.connection);
+        mRowMaps = loadRowMaps();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        for (PreparedStatement statement : mStatements.values()) {
+            statement.close();
+        }
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public ColumnarInventory loadColumnar() throws SQLException {
+        return ColumnarInventory.load(mDatabase.connection);
+    }
+
+    /**
+     * Reads each row into a map, as DatabaseUtils.cursorRowToContentValues() does, and keeps
+     * the maps by ID.
+     */
+    @Benchmark
+    public Map<Long, Map<String, Object>> loadRowMaps() throws SQLException {
+        Map<Long, Map<String, Object>> rowMaps = new HashMap<>();
+        Statement statement = mDatabase.connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery(SQL_LOAD);
+            try {
+                while (result.next()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put(InventorySql.COLUMN_ID, result.getLong(1));
+                    row.put(InventorySql.COLUMN_QUANTITY, result.getInt(2));
+                    row.put(InventorySql.COLUMN_PRICE, result.getLong(3));
+                    row.put(InventorySql.COLUMN_SUPPLIER, result.getString(4));
+                    rowMaps.put(result.getLong(1), row);
+                }
+            } finally {
+                result.close();
+            }
+        } finally {
+            statement.close();
+        }
+        return rowMaps;
+    }
+
+    @Benchmark
+    public int recountColumnar() throws SQLException {
+        int delta = nextDelta();
+        for (int row = 0; row < mInventory.size(); row++) {
+            mInventory.setQuantity(row, mInventory.quantity(row) + delta);
+        }
+        return mInventory.writeChanges(mDatabase.connection);
+    }
+
+    @Benchmark
+    public int recountRowMaps() throws SQLException {
+        int delta = nextDelta();
+        long now = System.currentTimeMillis();
+        int written = 0;
+        for (Map<String, Object> row : mRowMaps.values()) {
+            long id = (Long) row.get(InventorySql.COLUMN_ID);
+            int quantity = (Integer) row.get(InventorySql.COLUMN_QUANTITY) + delta;
+            Map<String, Object> values = new HashMap<>();
+            values.put(InventorySql.COLUMN_QUANTITY, quantity);
+            values.put(InventorySql.COLUMN_UPDATED_AT, now);
+            written += update(values, id);
+            mDatabase.recordMovement(id, delta, InventorySql.REASON_CORRECTION, now);
+            row.put(InventorySql.COLUMN_QUANTITY, quantity);
+        }
+        mDatabase.connection.commit();
+        return written;
+    }
+
+    /**
+     * Updates an item with the values, building the SQL from their keys as
+     * SQLiteDatabase.update() does.
+     */
+    private int update(Map<String, Object> values, long id) throws SQLException {
+        StringBuilder sql = new StringBuilder(120);
+        sql.append("UPDATE ").append(InventorySql.ITEMS).append(" SET ");
+        Object[] args = new Object[values.size() + 1];
+        int i = 0;
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            sql.append(i > 0 ? ", " : "").append(value.getKey()).append(" = ?");
+            args[i++] = value.getValue();
+        }
+        args[i] = id;
+        sql.append(" WHERE ").append(InventorySql.COLUMN_ID).append(" = ?");
+
+        String key = sql.toString();
+        PreparedStatement statement = mStatements.get(key);
+        if (statement == null) {
+            statement = mDatabase.connection.prepareStatement(key);
+            mStatements.put(key, statement);
+        }
+        for (int arg = 0; arg < args.length; arg++) {
+            statement.setObject(arg + 1, args[arg]);
+        }
+        return statement.executeUpdate();
+    }
+
+    private int nextDelta() {
+        int delta = mDelta;
+        mDelta = -mDelta;
+        return delta;
+    }
+}
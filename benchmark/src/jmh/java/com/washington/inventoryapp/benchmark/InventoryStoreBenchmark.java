@@ -0,0 +1,108 @@
+package com.washington.inventoryapp.benchmark;
+
+import com.washington.inventoryapp.core.InMemoryInventoryStore;
+import com.washington.inventoryapp.core.InventoryStore;
+import com.washington.inventoryapp.core.Item;
+import com.washington.inventoryapp.core.SqliteInventoryStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The core module's {@link InventoryStore} implementations, headless: reading an item, adjusting
+ * its quantity as a sale or restock, and listing every item.
+ */
+@State(Scope.Thread)
+public class InventoryStoreBenchmark {
+
+    @Param({"memory", "sqlite"})
+    public String store;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private InventoryStore mStore;
+
+    // The SQLite store's database, null for the in-memory store
+    private File mFile;
+    private Connection mConnection;
+
+    // Picks the items to read. Seeded, so every run reads the same ones.
+    private final Random mRandom = new Random(42);
+
+    // The next item to adjust. Adjustments add 1 to every item, then take it away.
+    private long mNextId = 1;
+    private int mDelta = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        if ("sqlite".equals(store)) {
+            mFile = File.createTempFile("store", ".db");
+            mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getPath());
+            Statement statement = mConnection.createStatement();
+            try {
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = NORMAL");
+            } finally {
+                statement.close();
+            }
+            SqliteInventoryStore.createSchema(mConnection);
+            mStore = new SqliteInventoryStore(mConnection);
+        } else {
+            mStore = new InMemoryInventoryStore();
+        }
+        for (int n = 0; n < rows; n++) {
+            mStore.insert(new Item("Item " + n, n % 100, 99 + n % 5000, "Supplier " + n % 50,
+                    null, "SKU" + n));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (mConnection != null) {
+            ((SqliteInventoryStore) mStore).close();
+            mConnection.close();
+            mFile.delete();
+            new File(mFile.getPath() + "-wal").delete();
+            new File(mFile.getPath() + "-shm").delete();
+        }
+    }
+
+    @Benchmark
+    public Item get() {
+        return mStore.get(1 + mRandom.nextInt(rows));
+    }
+
+    @Benchmark
+    public int adjustQuantity() {
+        long id = mNextId;
+        if (++mNextId > rows) {
+            mNextId = 1;
+            mDelta = -mDelta;
+        }
+        int quantity = mStore.adjustQuantity(id, mDelta);
+        if (quantity < 0) {
+            throw new IllegalStateException("Adjustment of item " + id + " refused");
+        }
+        return quantity;
+    }
+
+    @Benchmark
+    public List<Item> list() {
+        return mStore.list();
+    }
+}
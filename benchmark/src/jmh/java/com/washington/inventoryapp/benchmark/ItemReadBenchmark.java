@@ -0,0 +1,93 @@
+package com.washington.inventoryapp.benchmark;
+
+import com.washington.inventoryapp.core.InventorySql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+/**
+ * Reading one item by ID, as the details screen and the item cache do, and reading the whole
+ * list in ID order, as the pager does page by page.
+ */
+@State(Scope.Thread)
+public class ItemReadBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mReadItem;
+    private PreparedStatement mReadAll;
+
+    // Picks the items to read. Seeded, so every run reads the same ones.
+    private final Random mRandom = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mDatabase = BenchmarkDatabase.create(rows);
+        mReadItem = mDatabase.connection.prepareStatement(InventorySql.SELECT_ITEM);
+        mReadAll = mDatabase.connection.prepareStatement(InventorySql.SELECT_ITEMS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mReadItem.close();
+        mReadAll.close();
+        mDatabase.close();
+    }
+
+    @Benchmark
+    public void queryById(Blackhole blackhole) throws SQLException {
+        mReadItem.setLong(1, 1 + mRandom.nextInt(rows));
+        ResultSet result = mReadItem.executeQuery();
+        try {
+            if (!result.next()) {
+                throw new IllegalStateException("Missing item");
+            }
+            consumeItem(result, blackhole);
+        } finally {
+            result.close();
+        }
+    }
+
+    @Benchmark
+    public int queryAll(Blackhole blackhole) throws SQLException {
+        int count = 0;
+        ResultSet result = mReadAll.executeQuery();
+        try {
+            while (result.next()) {
+                consumeItem(result, blackhole);
+                count++;
+            }
+        } finally {
+            result.close();
+        }
+        return count;
+    }
+
+    /**
+     * Reads every column of the row, as ItemCache.read() does.
+     */
+    private static void consumeItem(ResultSet result, Blackhole blackhole) throws SQLException {
+        blackhole.consume(result.getLong(1));
+        blackhole.consume(result.getString(2));
+        blackhole.consume(result.getInt(3));
+        blackhole.consume(result.getLong(4));
+        blackhole.consume(result.getString(5));
+        blackhole.consume(result.getString(6));
+        blackhole.consume(result.getLong(7));
+        blackhole.consume(result.getString(8));
+    }
+}
@@ -0,0 +1,167 @@
+package com.washington.inventoryapp.benchmark;
+
+import com.washington.inventoryapp.core.InventorySql;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The provider's writes, each in its own transaction with its ledger movement: inserting one
+ * item, inserting a batch of items as bulkInsert() does, adjusting a quantity as a sale or
+ * restock does, and deleting an item.
+ * <p>
+ * Each invocation commits to disk, which takes far longer than JMH's per-invocation
+ * bookkeeping, so the rows an invocation inserted or deleted are put back after it. That keeps
+ * the table at the row count being measured.
+ */
+@State(Scope.Thread)
+public class ItemWriteBenchmark {
+
+    // Items inserted in one transaction by bulkInsert
+    private static final int BULK_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private BenchmarkDatabase mDatabase;
+    private PreparedStatement mAdjustQuantity;
+    private PreparedStatement mSelectQuantity;
+    private PreparedStatement mDelete;
+    private PreparedStatement mDeleteMovements;
+
+    // Items the last invocation inserted, or deleted, to be put back after it
+    private final List<Long> mInserted = new ArrayList<>();
+    private long mDeleted = -1;
+
+    // The next item to adjust or delete. Adjustments add 1 to every item, then take it away.
+    private long mNextId = 1;
+    private int mDelta = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        mDatabase = BenchmarkDatabase.create(rows);
+        mAdjustQuantity = mDatabase.connection.prepareStatement(InventorySql.ADJUST_QUANTITY);
+        mSelectQuantity = mDatabase.connection.prepareStatement(InventorySql.SELECT_QUANTITY);
+        mDelete = mDatabase.connection.prepareStatement(InventorySql.DELETE_ITEM);
+        mDeleteMovements = mDatabase.connection.prepareStatement("DELETE FROM "
+                + BenchmarkDatabase.MOVEMENTS + " WHERE item_id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        mAdjustQuantity.close();
+        mSelectQuantity.close();
+        mDelete.close();
+        mDeleteMovements.close();
+        mDatabase.close();
+    }
+
+    /**
+     * Removes the items the last invocation inserted and puts back the one it deleted.
+     */
+    @TearDown(Level.Invocation)
+    public void restore() throws SQLException {
+        if (mInserted.isEmpty() && mDeleted < 0) {
+            return;
+        }
+        for (long id : mInserted) {
+            mDelete.setLong(1, id);
+            mDelete.executeUpdate();
+            mDeleteMovements.setLong(1, id);
+            mDeleteMovements.executeUpdate();
+        }
+        mInserted.clear();
+        if (mDeleted >= 0) {
+            mDatabase.restoreItem(mDeleted, System.currentTimeMillis());
+            mDeleted = -1;
+        }
+        mDatabase.connection.commit();
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        long id = mDatabase.insertItem(rows, System.currentTimeMillis());
+        mDatabase.connection.commit();
+        mInserted.add(id);
+        return id;
+    }
+
+    @Benchmark
+    public long bulkInsert() throws SQLException {
+        long now = System.currentTimeMillis();
+        long id = -1;
+        for (int i = 0; i < BULK_SIZE; i++) {
+            id = mDatabase.insertItem(rows + i, now);
+            mInserted.add(id);
+        }
+        mDatabase.connection.commit();
+        return id;
+    }
+
+    /**
+     * Adjusts a quantity and reads it back, as the provider's adjustQuantity call does.
+     */
+    @Benchmark
+    public long updateQuantity() throws SQLException {
+        long id = nextId();
+        long now = System.currentTimeMillis();
+        mAdjustQuantity.setLong(1, mDelta);
+        mAdjustQuantity.setLong(2, now);
+        mAdjustQuantity.setLong(3, id);
+        mAdjustQuantity.setLong(4, mDelta);
+        if (mAdjustQuantity.executeUpdate() == 0) {
+            throw new IllegalStateException("Adjustment of item " + id + " refused");
+        }
+        mDatabase.recordMovement(id, mDelta, mDelta < 0 ? InventorySql.REASON_SALE
+                : InventorySql.REASON_RESTOCK, now);
+        long quantity = quantity(id);
+        mDatabase.connection.commit();
+        return quantity;
+    }
+
+    @Benchmark
+    public int delete() throws SQLException {
+        long id = nextId();
+        mDatabase.recordMovement(id, -quantity(id), InventorySql.REASON_REMOVED,
+                System.currentTimeMillis());
+        mDelete.setLong(1, id);
+        int deleted = mDelete.executeUpdate();
+        mDatabase.connection.commit();
+        mDeleted = id;
+        return deleted;
+    }
+
+    private long nextId() {
+        long id = mNextId;
+        if (++mNextId > rows) {
+            mNextId = 1;
+            mDelta = -mDelta;
+        }
+        return id;
+    }
+
+    private long quantity(long id) throws SQLException {
+        mSelectQuantity.setLong(1, id);
+        ResultSet result = mSelectQuantity.executeQuery();
+        try {
+            if (!result.next()) {
+                throw new IllegalStateException("Missing item " + id);
+            }
+            return result.getLong(1);
+        } finally {
+            result.close();
+        }
+    }
+}
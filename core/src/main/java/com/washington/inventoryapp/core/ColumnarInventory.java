@@ -0,0 +1,356 @@
+package com.washington.inventoryapp.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ID, quantity, price and supplier of every item, held in one primitive array per column
+ * for bulk work without the app, such as a nightly recount or a reload of a supplier's prices.
+ * Each row costs under 100 bytes with its index slots and no objects, where a row read into a
+ * map of boxed values, as ContentValues holds it, costs several hundred bytes in a dozen
+ * objects.
+ * <p>
+ * Rows are found by ID through a {@link LongIntIndex}, and each supplier name is kept once, as
+ * a code. {@link #load(Connection)} reads the items in one query, and {@link
+ * #writeChanges(Connection)} writes back only the rows whose quantity or price changed.
+ * <p>
+ * An inventory isn't thread-safe.
+ */
+public final class ColumnarInventory {
+
+    // Code of a row that has no supplier
+    public static final int NO_SUPPLIER = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private static final String SQL_LOAD = "SELECT " + InventorySql.COLUMN_ID + ", "
+            + InventorySql.COLUMN_QUANTITY + ", " + InventorySql.COLUMN_PRICE + ", "
+            + InventorySql.COLUMN_SUPPLIER + " FROM " + InventorySql.ITEMS;
+
+    /**
+     * Sets the quantity and price of an item, unless either changed since they were loaded.
+     * Bind args: 1 = quantity, 2 = price, 3 = updated at, 4 = item ID, 5 = loaded quantity,
+     * 6 = loaded price.
+     */
+    private static final String SQL_WRITE_ROW = "UPDATE " + InventorySql.ITEMS + " SET "
+            + InventorySql.COLUMN_QUANTITY + " = ?, " + InventorySql.COLUMN_PRICE + " = ?, "
+            + InventorySql.COLUMN_UPDATED_AT + " = ? WHERE " + InventorySql.COLUMN_ID
+            + " = ? AND " + InventorySql.COLUMN_QUANTITY + " = ? AND "
+            + InventorySql.COLUMN_PRICE + " = ?";
+
+    private long[] mIds;
+    private int[] mQuantities;
+    private long[] mPrices;
+    private int[] mSuppliers;
+
+    // Quantities and prices as loaded or last written, to tell which rows changed
+    private int[] mLoadedQuantities;
+    private long[] mLoadedPrices;
+
+    private int mSize;
+    private final LongIntIndex mIndex;
+
+    // Supplier names by code, and codes by name
+    private final List<String> mSupplierNames = new ArrayList<>();
+    private final Map<String, Integer> mSupplierCodes = new HashMap<>();
+
+    /**
+     * Creates an empty inventory with room for the expected number of rows. It grows past
+     * them if it has to.
+     */
+    public ColumnarInventory(int expectedRows) {
+        int capacity = Math.max(expectedRows, MIN_CAPACITY);
+        mIds = new long[capacity];
+        mQuantities = new int[capacity];
+        mPrices = new long[capacity];
+        mSuppliers = new int[capacity];
+        mLoadedQuantities = new int[capacity];
+        mLoadedPrices = new long[capacity];
+        mIndex = new LongIntIndex(capacity);
+    }
+
+    /**
+     * Reads every item's ID, quantity, price and supplier in one query.
+     */
+    public static ColumnarInventory load(Connection connection) throws SQLException {
+        ColumnarInventory inventory = new ColumnarInventory(count(connection));
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery(SQL_LOAD);
+            try {
+                while (result.next()) {
+                    inventory.add(result.getLong(1), result.getInt(2), result.getLong(3),
+                            result.getString(4));
+                }
+            } finally {
+                result.close();
+            }
+        } finally {
+            statement.close();
+        }
+        return inventory;
+    }
+
+    /**
+     * Adds a row with the values an item has in the database, and returns its row number. The
+     * row counts as unchanged.
+     *
+     * @throws IllegalArgumentException if there is already a row with the ID, or the quantity
+     *                                  or price is negative
+     */
+    public int add(long id, int quantity, long price, String supplier) {
+        checkQuantity(quantity);
+        checkPrice(price);
+        if (mIndex.get(id) >= 0) {
+            throw new IllegalArgumentException("Item " + id + " was already added");
+        }
+        if (mSize == mIds.length) {
+            grow();
+        }
+        int row = mSize++;
+        mIds[row] = id;
+        mQuantities[row] = quantity;
+        mLoadedQuantities[row] = quantity;
+        mPrices[row] = price;
+        mLoadedPrices[row] = price;
+        mSuppliers[row] = intern(supplier);
+        mIndex.put(id, row);
+        return row;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the row of the item, or -1 if there is none.
+     */
+    public int rowOf(long id) {
+        return mIndex.get(id);
+    }
+
+    public long id(int row) {
+        return mIds[checkRow(row)];
+    }
+
+    public int quantity(int row) {
+        return mQuantities[checkRow(row)];
+    }
+
+    // Returns the price in cents
+    public long price(int row) {
+        return mPrices[checkRow(row)];
+    }
+
+    /**
+     * Returns the code of the row's supplier, or {@link #NO_SUPPLIER}. Comparing codes finds a
+     * supplier's rows without comparing strings.
+     */
+    public int supplierCode(int row) {
+        return mSuppliers[checkRow(row)];
+    }
+
+    /**
+     * Returns the code of the supplier, or {@link #NO_SUPPLIER} if no row has it.
+     */
+    public int supplierCode(String supplier) {
+        Integer code = mSupplierCodes.get(supplier);
+        return code != null ? code : NO_SUPPLIER;
+    }
+
+    public String supplier(int row) {
+        int code = supplierCode(row);
+        return code != NO_SUPPLIER ? mSupplierNames.get(code) : null;
+    }
+
+    /**
+     * Sets the row's quantity, such as a counted one.
+     *
+     * @throws IllegalArgumentException if the quantity is negative
+     */
+    public void setQuantity(int row, int quantity) {
+        checkQuantity(quantity);
+        mQuantities[checkRow(row)] = quantity;
+    }
+
+    /**
+     * Adds the delta to the row's quantity, and returns the new quantity, or -1 without
+     * changing it if that would take the quantity below 0 or past the largest int.
+     */
+    public int adjustQuantity(int row, int delta) {
+        int quantity = Items.adjust(mQuantities[checkRow(row)], delta);
+        if (quantity >= 0) {
+            mQuantities[row] = quantity;
+        }
+        return quantity;
+    }
+
+    /**
+     * Sets the row's price in cents.
+     *
+     * @throws IllegalArgumentException if the price is negative
+     */
+    public void setPrice(int row, long price) {
+        checkPrice(price);
+        mPrices[checkRow(row)] = price;
+    }
+
+    /**
+     * Returns whether the row's quantity or price differs from the one it was loaded with or
+     * last written.
+     */
+    public boolean isChanged(int row) {
+        return changed(checkRow(row));
+    }
+
+    public int changedCount() {
+        int count = 0;
+        for (int row = 0; row < mSize; row++) {
+            if (changed(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the quantity and price of every changed row in one transaction, with a correction
+     * in the ledger for each change of quantity, and returns the number of rows written.
+     * <p>
+     * A row is written only if the item still has the quantity and price it was loaded with.
+     * One that was changed or deleted meanwhile is left for the caller, still changed, rather
+     * than overwriting the other change.
+     */
+    public int writeChanges(Connection connection) throws SQLException {
+        long now = System.currentTimeMillis();
+        boolean autoCommit = connection.getAutoCommit();
+        boolean success = false;
+        // Rows written so far. They count as unchanged once the transaction is committed.
+        int[] writtenRows = new int[changedCount()];
+        int written = 0;
+        PreparedStatement writeRow = connection.prepareStatement(SQL_WRITE_ROW);
+        PreparedStatement insertMovement =
+                connection.prepareStatement(InventorySql.INSERT_MOVEMENT);
+        connection.setAutoCommit(false);
+        try {
+            for (int row = 0; row < mSize; row++) {
+                if (!changed(row)) {
+                    continue;
+                }
+                writeRow.setInt(1, mQuantities[row]);
+                writeRow.setLong(2, mPrices[row]);
+                writeRow.setLong(3, now);
+                writeRow.setLong(4, mIds[row]);
+                writeRow.setInt(5, mLoadedQuantities[row]);
+                writeRow.setLong(6, mLoadedPrices[row]);
+                if (writeRow.executeUpdate() == 0) {
+                    continue;
+                }
+                long delta = (long) mQuantities[row] - mLoadedQuantities[row];
+                if (delta != 0) {
+                    insertMovement.setLong(1, mIds[row]);
+                    insertMovement.setLong(2, delta);
+                    insertMovement.setString(3, InventorySql.REASON_CORRECTION);
+                    insertMovement.setLong(4, now);
+                    insertMovement.executeUpdate();
+                }
+                writtenRows[written++] = row;
+            }
+            connection.commit();
+            success = true;
+        } finally {
+            writeRow.close();
+            insertMovement.close();
+            if (!success) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(autoCommit);
+        }
+
+        for (int i = 0; i < written; i++) {
+            int row = writtenRows[i];
+            mLoadedQuantities[row] = mQuantities[row];
+            mLoadedPrices[row] = mPrices[row];
+        }
+        return written;
+    }
+
+    /**
+     * Returns the bytes the columns, the index and the supplier codes take, without object
+     * headers and the supplier names themselves.
+     */
+    public long arrayBytes() {
+        // An ID, quantity, price, supplier code, loaded quantity and loaded price per row
+        return mIds.length * 36L + mIndex.arrayBytes();
+    }
+
+    private boolean changed(int row) {
+        return mQuantities[row] != mLoadedQuantities[row] || mPrices[row] != mLoadedPrices[row];
+    }
+
+    private int intern(String supplier) {
+        if (supplier == null) {
+            return NO_SUPPLIER;
+        }
+        Integer code = mSupplierCodes.get(supplier);
+        if (code == null) {
+            code = mSupplierNames.size();
+            mSupplierNames.add(supplier);
+            mSupplierCodes.put(supplier, code);
+        }
+        return code;
+    }
+
+    private void grow() {
+        int capacity = mIds.length * 2;
+        mIds = Arrays.copyOf(mIds, capacity);
+        mQuantities = Arrays.copyOf(mQuantities, capacity);
+        mPrices = Arrays.copyOf(mPrices, capacity);
+        mSuppliers = Arrays.copyOf(mSuppliers, capacity);
+        mLoadedQuantities = Arrays.copyOf(mLoadedQuantities, capacity);
+        mLoadedPrices = Arrays.copyOf(mLoadedPrices, capacity);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= mSize) {
+            throw new IllegalArgumentException("Invalid row " + row);
+        }
+        return row;
+    }
+
+    private static void checkQuantity(int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Invalid quantity " + quantity);
+        }
+    }
+
+    private static void checkPrice(long price) {
+        if (price < 0) {
+            throw new IllegalArgumentException("Invalid price " + price);
+        }
+    }
+
+    // Returns the number of items, to size the arrays before they are read
+    private static int count(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery(InventorySql.COUNT_ITEMS);
+            try {
+                result.next();
+                return result.getInt(1);
+            } finally {
+                result.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+}
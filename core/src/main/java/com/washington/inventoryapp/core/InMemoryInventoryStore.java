@@ -0,0 +1,106 @@
+package com.washington.inventoryapp.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A store that keeps the items in memory, for tests and for running the inventory without a
+ * database. IDs start at 1 and aren't reused, as in the SQLite store.
+ */
+public class InMemoryInventoryStore implements InventoryStore {
+
+    // Items by ID, guarded by this
+    private final TreeMap<Long, Item> mItems = new TreeMap<>();
+
+    // IDs of the items that have a SKU, by SKU, guarded by this
+    private final Map<String, Long> mSkus = new HashMap<>();
+
+    private long mLastId;
+
+    @Override
+    public synchronized long insert(Item item) {
+        Items.check(item);
+        checkSku(item.sku, Item.NO_ID);
+        long id = ++mLastId;
+        put(item.stored(id, System.currentTimeMillis()));
+        return id;
+    }
+
+    @Override
+    public synchronized Item get(long id) {
+        return mItems.get(id);
+    }
+
+    @Override
+    public synchronized List<Item> list() {
+        return new ArrayList<>(mItems.values());
+    }
+
+    @Override
+    public synchronized int count() {
+        return mItems.size();
+    }
+
+    @Override
+    public synchronized boolean update(Item item) {
+        Items.check(item);
+        Item old = mItems.get(item.id);
+        if (old == null) {
+            return false;
+        }
+        checkSku(item.sku, item.id);
+        remove(old);
+        put(item.stored(item.id, System.currentTimeMillis()));
+        return true;
+    }
+
+    @Override
+    public synchronized int adjustQuantity(long id, int delta) {
+        Item item = mItems.get(id);
+        if (item == null) {
+            return -1;
+        }
+        int quantity = Items.adjust(item.quantity, delta);
+        if (quantity >= 0) {
+            put(item.withQuantity(quantity).stored(id, System.currentTimeMillis()));
+        }
+        return quantity;
+    }
+
+    @Override
+    public synchronized boolean delete(long id) {
+        Item item = mItems.get(id);
+        if (item == null) {
+            return false;
+        }
+        remove(item);
+        return true;
+    }
+
+    /**
+     * Refuses a SKU another item already has.
+     */
+    private void checkSku(String sku, long id) {
+        Long owner = sku == null ? null : mSkus.get(sku);
+        if (owner != null && owner != id) {
+            throw new IllegalArgumentException("SKU " + sku + " is taken by item " + owner);
+        }
+    }
+
+    private void put(Item item) {
+        mItems.put(item.id, item);
+        if (item.sku != null) {
+            mSkus.put(item.sku, item.id);
+        }
+    }
+
+    private void remove(Item item) {
+        mItems.remove(item.id);
+        if (item.sku != null) {
+            mSkus.remove(item.sku);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.washington.inventoryapp.core;
+
+/**
+ * The names and SQL of the inventory tables, shared by the app's provider and {@link
+ * SqliteInventoryStore}, so a database written by one can be read by the other.
+ * <p>
+ * The app creates and upgrades its database itself, with the search index, stock totals and
+ * sync tables on top. {@link #SCHEMA} creates only the items and the stock movement ledger, for
+ * a database that is used without the app.
+ */
+public final class InventorySql {
+
+    // Name of the items table
+    public static final String ITEMS = "Inventory";
+
+    // Columns of the items table. Prices are in cents, times in milliseconds since the epoch.
+    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_NAME = "name";
+    public static final String COLUMN_QUANTITY = "quantity";
+    public static final String COLUMN_PRICE = "price";
+    public static final String COLUMN_SUPPLIER = "supplier";
+    public static final String COLUMN_IMAGE = "image";
+    public static final String COLUMN_UPDATED_AT = "updated_at";
+    public static final String COLUMN_SKU = "sku";
+    public static final String COLUMN_SYNC_ID = "sync_id";
+
+    // Name of the stock movement ledger, one row per change of quantity
+    public static final String MOVEMENTS = "stock_movements";
+
+    // Columns of the ledger
+    public static final String COLUMN_ITEM_ID = "item_id";
+    public static final String COLUMN_DELTA = "delta";
+    public static final String COLUMN_REASON = "reason";
+    public static final String COLUMN_CREATED_AT = "created_at";
+
+    // Reason for the quantity a new item starts with
+    public static final String REASON_RECEIVED = "received";
+
+    // Reason for a sale, the default for a negative adjustment
+    public static final String REASON_SALE = "sale";
+
+    // Reason for new stock, the default for a positive adjustment
+    public static final String REASON_RESTOCK = "restock";
+
+    // Reason for a quantity that was edited, the default for an update
+    public static final String REASON_CORRECTION = "correction";
+
+    // Reason for the quantity taken out when an item is deleted
+    public static final String REASON_REMOVED = "removed";
+
+    /**
+     * The columns of an {@link Item}, in the order {@link #SELECT_ITEM} and {@link
+     * #SELECT_ITEMS} return them.
+     */
+    static final String ITEM_COLUMNS = COLUMN_ID + ", " + COLUMN_NAME + ", " + COLUMN_QUANTITY
+            + ", " + COLUMN_PRICE + ", " + COLUMN_SUPPLIER + ", " + COLUMN_IMAGE + ", "
+            + COLUMN_UPDATED_AT + ", " + COLUMN_SKU;
+
+    // Reads one item. Bind args: 1 = item ID.
+    public static final String SELECT_ITEM = "SELECT " + ITEM_COLUMNS + " FROM " + ITEMS
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    // Reads every item in ID order.
+    public static final String SELECT_ITEMS = "SELECT " + ITEM_COLUMNS + " FROM " + ITEMS
+            + " ORDER BY " + COLUMN_ID;
+
+    // Counts the items.
+    public static final String COUNT_ITEMS = "SELECT COUNT(*) FROM " + ITEMS;
+
+    /**
+     * Inserts an item. Bind args: 1 = name, 2 = quantity, 3 = price, 4 = supplier, 5 = image,
+     * 6 = updated at, 7 = SKU.
+     */
+    public static final String INSERT_ITEM = "INSERT INTO " + ITEMS + " (" + COLUMN_NAME + ", "
+            + COLUMN_QUANTITY + ", " + COLUMN_PRICE + ", " + COLUMN_SUPPLIER + ", "
+            + COLUMN_IMAGE + ", " + COLUMN_UPDATED_AT + ", " + COLUMN_SKU
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Replaces an item's values. Bind args: 1 = name, 2 = quantity, 3 = price, 4 = supplier,
+     * 5 = image, 6 = updated at, 7 = SKU, 8 = item ID.
+     */
+    public static final String UPDATE_ITEM = "UPDATE " + ITEMS + " SET " + COLUMN_NAME + " = ?, "
+            + COLUMN_QUANTITY + " = ?, " + COLUMN_PRICE + " = ?, " + COLUMN_SUPPLIER + " = ?, "
+            + COLUMN_IMAGE + " = ?, " + COLUMN_UPDATED_AT + " = ?, " + COLUMN_SKU + " = ?"
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    // Reads one item's quantity. Bind args: 1 = item ID.
+    public static final String SELECT_QUANTITY = "SELECT " + COLUMN_QUANTITY + " FROM " + ITEMS
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    // Sets one item's quantity. Bind args: 1 = quantity, 2 = updated at, 3 = item ID.
+    public static final String SET_QUANTITY = "UPDATE " + ITEMS + " SET " + COLUMN_QUANTITY
+            + " = ?, " + COLUMN_UPDATED_AT + " = ? WHERE " + COLUMN_ID + " = ?";
+
+    /**
+     * Adds a delta to one item's quantity, but only if the result stays at 0 or above.
+     * Bind args: 1 = delta, 2 = updated at, 3 = item ID, 4 = delta.
+     */
+    public static final String ADJUST_QUANTITY = "UPDATE " + ITEMS + " SET " + COLUMN_QUANTITY
+            + " = " + COLUMN_QUANTITY + " + ?, " + COLUMN_UPDATED_AT + " = ?"
+            + " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_QUANTITY + " + ? >= 0";
+
+    // Deletes one item. Bind args: 1 = item ID.
+    public static final String DELETE_ITEM = "DELETE FROM " + ITEMS + " WHERE " + COLUMN_ID
+            + " = ?";
+
+    /**
+     * Appends one movement to the ledger.
+     * Bind args: 1 = item ID, 2 = delta, 3 = reason, 4 = created at.
+     */
+    public static final String INSERT_MOVEMENT = "INSERT INTO " + MOVEMENTS + " ("
+            + COLUMN_ITEM_ID + ", " + COLUMN_DELTA + ", " + COLUMN_REASON + ", "
+            + COLUMN_CREATED_AT + ") VALUES (?, ?, ?, ?)";
+
+    /**
+     * Creates the items table and the ledger with the app's columns and indexes, if they don't
+     * exist yet.
+     */
+    public static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS " + ITEMS + " ("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_NAME + " TEXT NOT NULL, "
+                    + COLUMN_QUANTITY + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_PRICE + " INTEGER NOT NULL, "
+                    + COLUMN_IMAGE + " TEXT, "
+                    + COLUMN_SUPPLIER + " TEXT, "
+                    + COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0, "
+                    + COLUMN_SKU + " TEXT, "
+                    + COLUMN_SYNC_ID + " TEXT)",
+            "CREATE INDEX IF NOT EXISTS inventory_name_idx ON " + ITEMS + " ("
+                    + COLUMN_NAME + " COLLATE NOCASE)",
+            "CREATE INDEX IF NOT EXISTS inventory_supplier_stock_idx ON " + ITEMS + " ("
+                    + COLUMN_SUPPLIER + ", " + COLUMN_QUANTITY + ", " + COLUMN_PRICE + ")",
+            "CREATE INDEX IF NOT EXISTS inventory_quantity_idx ON " + ITEMS + " ("
+                    + COLUMN_QUANTITY + ")",
+            "CREATE UNIQUE INDEX IF NOT EXISTS inventory_sku_idx ON " + ITEMS + " ("
+                    + COLUMN_SKU + ")",
+            "CREATE TABLE IF NOT EXISTS " + MOVEMENTS + " ("
+                    + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                    + COLUMN_DELTA + " INTEGER NOT NULL, "
+                    + COLUMN_REASON + " TEXT NOT NULL, "
+                    + COLUMN_CREATED_AT + " INTEGER NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS stock_movements_item_idx ON " + MOVEMENTS + " ("
+                    + COLUMN_ITEM_ID + ", " + COLUMN_CREATED_AT + ")",
+            "CREATE INDEX IF NOT EXISTS stock_movements_time_idx ON " + MOVEMENTS + " ("
+                    + COLUMN_CREATED_AT + ")"
+    };
+
+    // Made private so the class is not accidentally instantiated.
+    private InventorySql() {
+    }
+}
@@ -0,0 +1,58 @@
+package com.washington.inventoryapp.core;
+
+import java.util.List;
+
+/**
+ * Where the items are kept. Every implementation checks items with {@link Items#check(Item)}
+ * before storing them, refuses adjustments that would take stock below 0, and stamps each write
+ * with the time it was made. Implementations are safe to use from several threads.
+ */
+public interface InventoryStore {
+
+    /**
+     * Stores a new item. Its ID is ignored.
+     *
+     * @return the new item's ID
+     * @throws IllegalArgumentException if the item breaks one of the rules, or its SKU is
+     *                                  already taken
+     */
+    long insert(Item item);
+
+    /**
+     * Returns the item, or null if there is no such item.
+     */
+    Item get(long id);
+
+    /**
+     * Returns every item in ID order.
+     */
+    List<Item> list();
+
+    /**
+     * Returns the number of items.
+     */
+    int count();
+
+    /**
+     * Replaces the values of the item with the same ID.
+     *
+     * @return false if there is no such item
+     * @throws IllegalArgumentException if the item breaks one of the rules, or its SKU is
+     *                                  already taken
+     */
+    boolean update(Item item);
+
+    /**
+     * Adds the delta to the item's quantity, negative for a sale.
+     *
+     * @return the new quantity, or -1 if there is no such item or there isn't enough stock
+     */
+    int adjustQuantity(long id, int delta);
+
+    /**
+     * Deletes the item.
+     *
+     * @return false if there is no such item
+     */
+    boolean delete(long id);
+}
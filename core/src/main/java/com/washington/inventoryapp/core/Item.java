@@ -0,0 +1,96 @@
+package com.washington.inventoryapp.core;
+
+/**
+ * One item of the inventory. Items are immutable; a store hands back a new one for every
+ * change.
+ */
+public final class Item {
+
+    /**
+     * The ID of an item that hasn't been stored yet.
+     */
+    public static final long NO_ID = -1;
+
+    public final long id;
+    public final String name;
+    public final int quantity;
+    // Price in cents
+    public final long price;
+    public final String supplier;
+    public final String image;
+    // The item's SKU or barcode, null if it has none
+    public final String sku;
+    // When the item was last stored, in milliseconds since the epoch
+    public final long updatedAt;
+
+    public Item(long id, String name, int quantity, long price, String supplier, String image,
+                String sku, long updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.quantity = quantity;
+        this.price = price;
+        this.supplier = supplier;
+        this.image = image;
+        this.sku = sku;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Creates an item that hasn't been stored yet.
+     */
+    public Item(String name, int quantity, long price, String supplier, String image,
+                String sku) {
+        this(NO_ID, name, quantity, price, supplier, image, sku, 0);
+    }
+
+    /**
+     * Returns this item as stored with the given ID and time.
+     */
+    public Item stored(long id, long updatedAt) {
+        return new Item(id, name, quantity, price, supplier, image, sku, updatedAt);
+    }
+
+    /**
+     * Returns this item with another quantity.
+     */
+    public Item withQuantity(int quantity) {
+        return new Item(id, name, quantity, price, supplier, image, sku, updatedAt);
+    }
+
+    /**
+     * Compares the item's values. The time it was stored at is left out, so an item equals
+     * the one it was stored as.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Item)) {
+            return false;
+        }
+        Item other = (Item) o;
+        return id == other.id
+                && quantity == other.quantity
+                && price == other.price
+                && equal(name, other.name)
+                && equal(supplier, other.supplier)
+                && equal(image, other.image)
+                && equal(sku, other.sku);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (id ^ (id >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "Item{id=" + id + ", name=" + name + ", quantity=" + quantity + ", price=" + price
+                + ", supplier=" + supplier + ", sku=" + sku + "}";
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
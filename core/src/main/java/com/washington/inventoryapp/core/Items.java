@@ -0,0 +1,89 @@
+package com.washington.inventoryapp.core;
+
+/**
+ * The rules every item follows, wherever it is edited or stored: it has a name, its quantity is
+ * a whole number of 0 or more, and its price isn't negative. Stock can go up by any amount but
+ * never below 0.
+ */
+public final class Items {
+
+    // Made private so the class is not accidentally instantiated.
+    private Items() {
+    }
+
+    /**
+     * Returns the name without surrounding white space.
+     *
+     * @throws IllegalArgumentException if the name is missing or blank
+     */
+    public static String checkName(String name) {
+        String trimmed = name == null ? "" : name.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("missing name");
+        }
+        return trimmed;
+    }
+
+    /**
+     * Parses a quantity as the user types it, e.g. "12".
+     *
+     * @throws IllegalArgumentException if the text isn't a whole number of 0 or more
+     */
+    public static int parseQuantity(String text) {
+        String digits = text == null ? "" : text.trim();
+        if (digits.isEmpty()) {
+            throw new IllegalArgumentException("missing quantity");
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid quantity " + text);
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("negative quantity " + text);
+        }
+        return quantity;
+    }
+
+    /**
+     * Checks an item before it is stored.
+     *
+     * @throws IllegalArgumentException if it breaks one of the rules
+     */
+    public static void check(Item item) {
+        checkName(item.name);
+        if (item.quantity < 0) {
+            throw new IllegalArgumentException("negative quantity " + item.quantity);
+        }
+        if (item.price < 0) {
+            throw new IllegalArgumentException("negative price " + item.price);
+        }
+    }
+
+    /**
+     * Returns the quantity after one more is added. It stops at the largest int.
+     */
+    public static int increment(int quantity) {
+        return quantity == Integer.MAX_VALUE ? quantity : quantity + 1;
+    }
+
+    /**
+     * Returns the quantity after one is taken away. It stops at 0.
+     */
+    public static int decrement(int quantity) {
+        return quantity <= 0 ? 0 : quantity - 1;
+    }
+
+    /**
+     * Returns the quantity after the delta is added, or -1 if that would take it below 0 or
+     * past the largest int, in which case the adjustment is refused.
+     */
+    public static int adjust(int quantity, int delta) {
+        long adjusted = (long) quantity + delta;
+        if (adjusted < 0 || adjusted > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) adjusted;
+    }
+}
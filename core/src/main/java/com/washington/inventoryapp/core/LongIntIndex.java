@@ -0,0 +1,117 @@
+package com.washington.inventoryapp.core;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to int values in two primitive arrays, with open addressing and linear
+ * probing, so a lookup neither boxes the key nor follows a pointer to an entry. Entries can't be
+ * removed. {@link Long#MIN_VALUE} marks free slots and can't be used as a key.
+ */
+final class LongIntIndex {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    // The table is grown once it is half full, which keeps probe sequences short.
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mMask;
+    private int mSize;
+
+    LongIntIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Returns the value of the key, or -1 if it has none.
+     */
+    int get(long key) {
+        int slot = slot(key);
+        while (true) {
+            long found = mKeys[slot];
+            if (found == key) {
+                return mValues[slot];
+            }
+            if (found == FREE) {
+                return -1;
+            }
+            slot = (slot + 1) & mMask;
+        }
+    }
+
+    /**
+     * Sets the value of the key, replacing the value it had.
+     *
+     * @throws IllegalArgumentException if the key is {@link Long#MIN_VALUE}
+     */
+    void put(long key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Invalid key " + key);
+        }
+        if ((mSize + 1) * 2 > mKeys.length) {
+            grow();
+        }
+        int slot = slot(key);
+        while (mKeys[slot] != FREE && mKeys[slot] != key) {
+            slot = (slot + 1) & mMask;
+        }
+        if (mKeys[slot] == FREE) {
+            mKeys[slot] = key;
+            mSize++;
+        }
+        mValues[slot] = value;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns the bytes the arrays take, without the object headers.
+     */
+    long arrayBytes() {
+        return mKeys.length * 12L;
+    }
+
+    private void grow() {
+        long[] keys = mKeys;
+        int[] values = mValues;
+        allocate(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                int slot = slot(keys[i]);
+                while (mKeys[slot] != FREE) {
+                    slot = (slot + 1) & mMask;
+                }
+                mKeys[slot] = keys[i];
+                mValues[slot] = values[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        Arrays.fill(mKeys, FREE);
+        mValues = new int[capacity];
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Returns the first slot to probe for the key. Item IDs are mostly consecutive, so the bits
+     * are mixed before they are masked, or neighbouring IDs would fill runs of slots.
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mMask;
+    }
+
+    // Returns the power of two that holds the size at most half full
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < size * 2L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,321 @@
+package com.washington.inventoryapp.core;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A store in a SQLite database, through JDBC. It runs the same SQL as the app's provider, from
+ * {@link InventorySql}, and records every change of quantity in the stock movement ledger as
+ * the provider does, so the app can open a database the store has written.
+ * <p>
+ * Each write is one transaction. The statements are prepared once and hold their bindings, so
+ * one thread at a time goes through them. The caller owns the connection, which the store
+ * switches in and out of auto-commit, and closes it after {@link #close()}.
+ */
+public class SqliteInventoryStore implements InventoryStore {
+
+    // SQLite's result code for a constraint that failed, such as a SKU that is taken
+    private static final int SQLITE_CONSTRAINT = 19;
+
+    private final Connection mConnection;
+
+    private final PreparedStatement mSelectItem;
+    private final PreparedStatement mSelectItems;
+    private final PreparedStatement mCountItems;
+    private final PreparedStatement mInsertItem;
+    private final PreparedStatement mUpdateItem;
+    private final PreparedStatement mSelectQuantity;
+    private final PreparedStatement mAdjustQuantity;
+    private final PreparedStatement mDeleteItem;
+    private final PreparedStatement mInsertMovement;
+
+    /**
+     * Creates a store on a database that already has the {@link InventorySql#SCHEMA}.
+     */
+    public SqliteInventoryStore(Connection connection) throws SQLException {
+        mConnection = connection;
+        mSelectItem = connection.prepareStatement(InventorySql.SELECT_ITEM);
+        mSelectItems = connection.prepareStatement(InventorySql.SELECT_ITEMS);
+        mCountItems = connection.prepareStatement(InventorySql.COUNT_ITEMS);
+        mInsertItem = connection.prepareStatement(InventorySql.INSERT_ITEM,
+                Statement.RETURN_GENERATED_KEYS);
+        mUpdateItem = connection.prepareStatement(InventorySql.UPDATE_ITEM);
+        mSelectQuantity = connection.prepareStatement(InventorySql.SELECT_QUANTITY);
+        mAdjustQuantity = connection.prepareStatement(InventorySql.ADJUST_QUANTITY);
+        mDeleteItem = connection.prepareStatement(InventorySql.DELETE_ITEM);
+        mInsertMovement = connection.prepareStatement(InventorySql.INSERT_MOVEMENT);
+    }
+
+    /**
+     * Creates the items table and the ledger, unless the database already has them.
+     */
+    public static void createSchema(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            for (String sql : InventorySql.SCHEMA) {
+                statement.execute(sql);
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public synchronized long insert(Item item) {
+        Items.check(item);
+        long now = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            begin();
+            bindItem(mInsertItem, item, now);
+            mInsertItem.executeUpdate();
+            long id;
+            ResultSet keys = mInsertItem.getGeneratedKeys();
+            try {
+                keys.next();
+                id = keys.getLong(1);
+            } finally {
+                keys.close();
+            }
+            recordMovement(id, item.quantity, InventorySql.REASON_RECEIVED, now);
+            success = true;
+            return id;
+        } catch (SQLException e) {
+            throw failure("Insert of " + item + " failed", e);
+        } finally {
+            end(success);
+        }
+    }
+
+    @Override
+    public synchronized Item get(long id) {
+        try {
+            mSelectItem.setLong(1, id);
+            ResultSet result = mSelectItem.executeQuery();
+            try {
+                return result.next() ? readItem(result) : null;
+            } finally {
+                result.close();
+            }
+        } catch (SQLException e) {
+            throw failure("Query of item " + id + " failed", e);
+        }
+    }
+
+    @Override
+    public synchronized List<Item> list() {
+        try {
+            List<Item> items = new ArrayList<>();
+            ResultSet result = mSelectItems.executeQuery();
+            try {
+                while (result.next()) {
+                    items.add(readItem(result));
+                }
+            } finally {
+                result.close();
+            }
+            return items;
+        } catch (SQLException e) {
+            throw failure("Query of the items failed", e);
+        }
+    }
+
+    @Override
+    public synchronized int count() {
+        try {
+            ResultSet result = mCountItems.executeQuery();
+            try {
+                result.next();
+                return result.getInt(1);
+            } finally {
+                result.close();
+            }
+        } catch (SQLException e) {
+            throw failure("Count of the items failed", e);
+        }
+    }
+
+    /**
+     * Replaces the item's values. A change of quantity is recorded in the ledger as a
+     * correction, in the same transaction.
+     */
+    @Override
+    public synchronized boolean update(Item item) {
+        Items.check(item);
+        long now = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            begin();
+            long oldQuantity = quantity(item.id);
+            if (oldQuantity < 0) {
+                return false;
+            }
+            recordMovement(item.id, item.quantity - oldQuantity, InventorySql.REASON_CORRECTION,
+                    now);
+            bindItem(mUpdateItem, item, now);
+            mUpdateItem.setLong(8, item.id);
+            mUpdateItem.executeUpdate();
+            success = true;
+            return true;
+        } catch (SQLException e) {
+            throw failure("Update of " + item + " failed", e);
+        } finally {
+            end(success);
+        }
+    }
+
+    /**
+     * Adjusts the quantity with one UPDATE that refuses to go below 0, records the movement as
+     * a sale or restock, and reads the new quantity back, in one transaction.
+     */
+    @Override
+    public synchronized int adjustQuantity(long id, int delta) {
+        long now = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            begin();
+            mAdjustQuantity.setLong(1, delta);
+            mAdjustQuantity.setLong(2, now);
+            mAdjustQuantity.setLong(3, id);
+            mAdjustQuantity.setLong(4, delta);
+            if (mAdjustQuantity.executeUpdate() == 0) {
+                // Either the item is gone or there isn't enough stock.
+                return -1;
+            }
+            recordMovement(id, delta, delta < 0 ? InventorySql.REASON_SALE
+                    : InventorySql.REASON_RESTOCK, now);
+            int quantity = (int) quantity(id);
+            success = true;
+            return quantity;
+        } catch (SQLException e) {
+            throw failure("Adjustment of item " + id + " failed", e);
+        } finally {
+            end(success);
+        }
+    }
+
+    /**
+     * Deletes the item, recording the stock it still had as removed, in one transaction.
+     */
+    @Override
+    public synchronized boolean delete(long id) {
+        long now = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            begin();
+            long quantity = quantity(id);
+            if (quantity < 0) {
+                return false;
+            }
+            recordMovement(id, -quantity, InventorySql.REASON_REMOVED, now);
+            mDeleteItem.setLong(1, id);
+            mDeleteItem.executeUpdate();
+            success = true;
+            return true;
+        } catch (SQLException e) {
+            throw failure("Delete of item " + id + " failed", e);
+        } finally {
+            end(success);
+        }
+    }
+
+    /**
+     * Closes the statements. The connection stays open.
+     */
+    public synchronized void close() throws SQLException {
+        mSelectItem.close();
+        mSelectItems.close();
+        mCountItems.close();
+        mInsertItem.close();
+        mUpdateItem.close();
+        mSelectQuantity.close();
+        mAdjustQuantity.close();
+        mDeleteItem.close();
+        mInsertMovement.close();
+    }
+
+    // Returns the item's quantity, or -1 if there is no such item
+    private long quantity(long id) throws SQLException {
+        mSelectQuantity.setLong(1, id);
+        ResultSet result = mSelectQuantity.executeQuery();
+        try {
+            return result.next() ? result.getLong(1) : -1;
+        } finally {
+            result.close();
+        }
+    }
+
+    /**
+     * Appends a movement to the ledger. Changes of 0 aren't recorded.
+     */
+    private void recordMovement(long id, long delta, String reason, long now)
+            throws SQLException {
+        if (delta == 0) {
+            return;
+        }
+        mInsertMovement.setLong(1, id);
+        mInsertMovement.setLong(2, delta);
+        mInsertMovement.setString(3, reason);
+        mInsertMovement.setLong(4, now);
+        mInsertMovement.executeUpdate();
+    }
+
+    private void begin() throws SQLException {
+        mConnection.setAutoCommit(false);
+    }
+
+    /**
+     * Commits the transaction if it succeeded and rolls it back otherwise.
+     */
+    private void end(boolean success) {
+        try {
+            if (success) {
+                mConnection.commit();
+            } else {
+                mConnection.rollback();
+            }
+            mConnection.setAutoCommit(true);
+        } catch (SQLException e) {
+            throw failure("End of transaction failed", e);
+        }
+    }
+
+    /**
+     * Binds an item's values to {@link InventorySql#INSERT_ITEM} or the first seven arguments
+     * of {@link InventorySql#UPDATE_ITEM}.
+     */
+    private static void bindItem(PreparedStatement statement, Item item, long now)
+            throws SQLException {
+        statement.setString(1, item.name);
+        statement.setInt(2, item.quantity);
+        statement.setLong(3, item.price);
+        statement.setString(4, item.supplier);
+        statement.setString(5, item.image);
+        statement.setLong(6, now);
+        statement.setString(7, item.sku);
+    }
+
+    // Reads the current row of a query of InventorySql.ITEM_COLUMNS
+    private static Item readItem(ResultSet result) throws SQLException {
+        return new Item(result.getLong(1), result.getString(2), result.getInt(3),
+                result.getLong(4), result.getString(5), result.getString(6),
+                result.getString(8), result.getLong(7));
+    }
+
+    /**
+     * Returns the exception to throw for a failed statement: an IllegalArgumentException if
+     * the values broke a constraint, such as a SKU that is taken, and an IllegalStateException
+     * otherwise.
+     */
+    private static RuntimeException failure(String message, SQLException e) {
+        if ((e.getErrorCode() & 0xff) == SQLITE_CONSTRAINT) {
+            return new IllegalArgumentException(message, e);
+        }
+        return new IllegalStateException(message, e);
+    }
+}
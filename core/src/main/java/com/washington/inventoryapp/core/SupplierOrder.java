@@ -0,0 +1,20 @@
+package com.washington.inventoryapp.core;
+
+/**
+ * An email ordering more of an item from its supplier.
+ */
+public final class SupplierOrder {
+
+    // How many are ordered unless the user asks for another amount
+    public static final int DEFAULT_QUANTITY = 10;
+
+    public final String email;
+    public final String subject;
+    public final String text;
+
+    public SupplierOrder(String itemName, String supplier, int quantity) {
+        email = "udasupply@nano" + supplier + ".net";
+        subject = "Order Shipment: " + itemName;
+        text = "Item: " + itemName + " \nQuantity: " + quantity;
+    }
+}
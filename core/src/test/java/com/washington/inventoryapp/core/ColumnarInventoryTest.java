@@ -0,0 +1,144 @@
+package com.washington.inventoryapp.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Local unit tests for {@link ColumnarInventory} and its {@link LongIntIndex}, on an in-memory
+ * database written by {@link SqliteInventoryStore}.
+ */
+public class ColumnarInventoryTest {
+
+    private Connection mConnection;
+    private SqliteInventoryStore mStore;
+
+    @Before
+    public void setUp() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SqliteInventoryStore.createSchema(mConnection);
+        mStore = new SqliteInventoryStore(mConnection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+    }
+
+    @Test
+    public void index_findsEveryKeyAfterGrowing() {
+        LongIntIndex index = new LongIntIndex(0);
+        for (int i = 0; i < 1000; i++) {
+            index.put(i * 7L - 3000, i);
+        }
+        index.put(-3000, 42);
+
+        assertEquals(1000, index.size());
+        assertEquals(42, index.get(-3000));
+        for (int i = 1; i < 1000; i++) {
+            assertEquals(i, index.get(i * 7L - 3000));
+        }
+        assertEquals(-1, index.get(1));
+    }
+
+    @Test
+    public void load_readsEveryItemAndInternsSuppliers() throws SQLException {
+        long cable = mStore.insert(new Item("Cable", 3, 499, "Acme", null, null));
+        long plug = mStore.insert(new Item("Plug", 0, 250, "Acme", null, null));
+        long fuse = mStore.insert(new Item("Fuse", 9, 75, null, null, null));
+
+        ColumnarInventory inventory = ColumnarInventory.load(mConnection);
+
+        assertEquals(3, inventory.size());
+        int row = inventory.rowOf(cable);
+        assertEquals(cable, inventory.id(row));
+        assertEquals(3, inventory.quantity(row));
+        assertEquals(499, inventory.price(row));
+        assertEquals("Acme", inventory.supplier(row));
+        assertEquals(inventory.supplierCode(row), inventory.supplierCode(inventory.rowOf(plug)));
+        assertEquals(inventory.supplierCode("Acme"), inventory.supplierCode(row));
+        assertNull(inventory.supplier(inventory.rowOf(fuse)));
+        assertEquals(ColumnarInventory.NO_SUPPLIER, inventory.supplierCode("Nobody"));
+        assertEquals(-1, inventory.rowOf(fuse + 1));
+        assertEquals(0, inventory.changedCount());
+    }
+
+    @Test
+    public void writeChanges_writesOnlyTheChangedRows() throws SQLException {
+        long cable = mStore.insert(new Item("Cable", 3, 499, "Acme", null, null));
+        long plug = mStore.insert(new Item("Plug", 1, 250, "Acme", null, null));
+        long fuse = mStore.insert(new Item("Fuse", 9, 75, null, null, null));
+        long updatedAt = mStore.get(fuse).updatedAt;
+
+        ColumnarInventory inventory = ColumnarInventory.load(mConnection);
+        inventory.setQuantity(inventory.rowOf(cable), 5);
+        inventory.setPrice(inventory.rowOf(plug), 275);
+        assertEquals(-1, inventory.adjustQuantity(inventory.rowOf(plug), -2));
+        // Counted as it was, so it stays unchanged.
+        inventory.setQuantity(inventory.rowOf(fuse), 9);
+
+        assertEquals(2, inventory.changedCount());
+        assertEquals(2, inventory.writeChanges(mConnection));
+        assertEquals(0, inventory.changedCount());
+        assertEquals(5, mStore.get(cable).quantity);
+        assertEquals(275, mStore.get(plug).price);
+        assertEquals(1, mStore.get(plug).quantity);
+        assertEquals(updatedAt, mStore.get(fuse).updatedAt);
+        assertEquals(5 + 1 + 9, ledgerTotal());
+    }
+
+    @Test
+    public void writeChanges_leavesItemsThatChangedMeanwhile() throws SQLException {
+        long cable = mStore.insert(new Item("Cable", 3, 499, null, null, null));
+        long plug = mStore.insert(new Item("Plug", 1, 250, null, null, null));
+
+        ColumnarInventory inventory = ColumnarInventory.load(mConnection);
+        inventory.setQuantity(inventory.rowOf(cable), 10);
+        inventory.setQuantity(inventory.rowOf(plug), 4);
+        mStore.adjustQuantity(cable, -1);
+
+        assertEquals(1, inventory.writeChanges(mConnection));
+        assertEquals(2, mStore.get(cable).quantity);
+        assertEquals(4, mStore.get(plug).quantity);
+        assertTrue(inventory.isChanged(inventory.rowOf(cable)));
+        assertFalse(inventory.isChanged(inventory.rowOf(plug)));
+        assertEquals(2 + 4, ledgerTotal());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_rejectsADuplicateId() {
+        ColumnarInventory inventory = new ColumnarInventory(1);
+        inventory.add(1, 0, 0, null);
+        inventory.add(1, 0, 0, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setQuantity_rejectsNegativeQuantities() {
+        ColumnarInventory inventory = new ColumnarInventory(1);
+        inventory.setQuantity(inventory.add(1, 0, 0, null), -1);
+    }
+
+    private long ledgerTotal() throws SQLException {
+        Statement statement = mConnection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT SUM(" + InventorySql.COLUMN_DELTA
+                    + ") FROM " + InventorySql.MOVEMENTS);
+            result.next();
+            return result.getLong(1);
+        } finally {
+            statement.close();
+        }
+    }
+}
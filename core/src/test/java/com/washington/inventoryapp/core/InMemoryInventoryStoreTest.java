@@ -0,0 +1,12 @@
+package com.washington.inventoryapp.core;
+
+/**
+ * Runs the {@link InventoryStoreTest}s against {@link InMemoryInventoryStore}.
+ */
+public class InMemoryInventoryStoreTest extends InventoryStoreTest {
+
+    @Override
+    protected InventoryStore createStore() {
+        return new InMemoryInventoryStore();
+    }
+}
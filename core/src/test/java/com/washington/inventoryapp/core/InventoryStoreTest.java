@@ -0,0 +1,77 @@
+package com.washington.inventoryapp.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests every {@link InventoryStore} has to pass. Subclasses create the store.
+ */
+public abstract class InventoryStoreTest {
+
+    private InventoryStore mStore;
+
+    protected abstract InventoryStore createStore() throws Exception;
+
+    @Before
+    public void setUp() throws Exception {
+        mStore = createStore();
+    }
+
+    @Test
+    public void insert_storesTheItemUnderANewId() {
+        long cable = mStore.insert(new Item("Cable", 3, 499, "Acme", null, "123"));
+        long plug = mStore.insert(new Item("Plug", 0, 250, null, "plug.png", null));
+
+        assertTrue(plug > cable);
+        assertEquals(new Item(cable, "Cable", 3, 499, "Acme", null, "123", 0),
+                mStore.get(cable));
+        assertTrue(mStore.get(cable).updatedAt > 0);
+        assertEquals(Arrays.asList(mStore.get(cable), mStore.get(plug)), mStore.list());
+        assertEquals(2, mStore.count());
+        assertNull(mStore.get(plug + 1));
+    }
+
+    @Test
+    public void adjustQuantity_refusesToGoBelowZero() {
+        long id = mStore.insert(new Item("Cable", 2, 499, null, null, null));
+
+        assertEquals(1, mStore.adjustQuantity(id, -1));
+        assertEquals(-1, mStore.adjustQuantity(id, -2));
+        assertEquals(0, mStore.adjustQuantity(id, -1));
+        assertEquals(5, mStore.adjustQuantity(id, 5));
+        assertEquals(5, mStore.get(id).quantity);
+        assertEquals(-1, mStore.adjustQuantity(id + 1, 1));
+    }
+
+    @Test
+    public void updateAndDelete_reportMissingItems() {
+        long id = mStore.insert(new Item("Cable", 2, 499, null, null, null));
+
+        Item renamed = new Item(id, "USB cable", 4, 599, "Acme", null, "123", 0);
+        assertTrue(mStore.update(renamed));
+        assertEquals(renamed, mStore.get(id));
+
+        assertTrue(mStore.delete(id));
+        assertFalse(mStore.delete(id));
+        assertFalse(mStore.update(renamed));
+        assertEquals(0, mStore.count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_rejectsATakenSku() {
+        mStore.insert(new Item("Cable", 2, 499, null, null, "123"));
+        mStore.insert(new Item("Plug", 2, 250, null, null, "123"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void insert_rejectsAnItemWithoutAName() {
+        mStore.insert(new Item(" ", 2, 499, null, null, null));
+    }
+}
@@ -0,0 +1,43 @@
+package com.washington.inventoryapp.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Local unit tests for {@link Items}.
+ */
+public class ItemsTest {
+
+    @Test
+    public void parsesQuantities() {
+        assertEquals(12, Items.parseQuantity("12"));
+        assertEquals(0, Items.parseQuantity(" 0 "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeQuantities() {
+        Items.parseQuantity("-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsQuantitiesThatAreNotWholeNumbers() {
+        Items.parseQuantity("1.5");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBlankNames() {
+        Items.checkName("  ");
+    }
+
+    @Test
+    public void keepsStockAtZeroOrMore() {
+        assertEquals(0, Items.decrement(0));
+        assertEquals(4, Items.decrement(5));
+        assertEquals(6, Items.increment(5));
+        assertEquals(Integer.MAX_VALUE, Items.increment(Integer.MAX_VALUE));
+        assertEquals(2, Items.adjust(5, -3));
+        assertEquals(-1, Items.adjust(2, -3));
+        assertEquals(-1, Items.adjust(Integer.MAX_VALUE, 1));
+    }
+}
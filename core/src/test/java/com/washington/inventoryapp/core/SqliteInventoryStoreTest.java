@@ -0,0 +1,56 @@
+package com.washington.inventoryapp.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the {@link InventoryStoreTest}s against {@link SqliteInventoryStore} on an in-memory
+ * database, and checks the ledger it keeps.
+ */
+public class SqliteInventoryStoreTest extends InventoryStoreTest {
+
+    private Connection mConnection;
+    private SqliteInventoryStore mStore;
+
+    @Override
+    protected InventoryStore createStore() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        SqliteInventoryStore.createSchema(mConnection);
+        mStore = new SqliteInventoryStore(mConnection);
+        return mStore;
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+    }
+
+    @Test
+    public void ledger_addsUpToTheQuantity() throws SQLException {
+        long id = mStore.insert(new Item("Cable", 5, 499, null, null, null));
+        mStore.adjustQuantity(id, -2);
+        mStore.adjustQuantity(id, -4);
+        mStore.update(mStore.get(id).withQuantity(7));
+
+        Statement statement = mConnection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT SUM(" + InventorySql.COLUMN_DELTA
+                    + "), COUNT(*) FROM " + InventorySql.MOVEMENTS);
+            result.next();
+            assertEquals(7, result.getLong(1));
+            // Received, sold and corrected. The refused sale isn't recorded.
+            assertEquals(3, result.getInt(2));
+        } finally {
+            statement.close();
+        }
+    }
+}